@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.bench;
+
+import pixelitor.Build;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.filters.Filter;
+import pixelitor.filters.FilterAction;
+import pixelitor.filters.FilterUtils;
+import pixelitor.layers.BlendingMode;
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.Layer;
+import pixelitor.layers.LayerMask;
+import pixelitor.menus.MenuBar;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Creates the benchmark inputs, and the headless environment
+ * in which the filters and compositions can be used.
+ */
+public class BenchImages {
+    private static boolean initialized = false;
+
+    private BenchImages() {
+    }
+
+    public static synchronized void initHeadless() {
+        if (initialized) {
+            return;
+        }
+        // Not the unit testing mode, because that requires assertions,
+        // which would distort the measurements. As in the batch mode,
+        // the headless layers get non-Swing UIs.
+        if (!Build.isHeadless()) {
+            throw new IllegalStateException("run the benchmarks with -Djava.awt.headless=true");
+        }
+        TestHelper.setupMockFgBgSelector();
+        MenuBar.createFilterActions();
+        initialized = true;
+    }
+
+    /**
+     * Returns the names of the filters that can run without a GUI.
+     */
+    public static String[] getHeadlessFilterNames() {
+        initHeadless();
+        BufferedImage testImage = createImage(32, 32, true);
+        List<String> names = new ArrayList<>();
+        for (FilterAction fa : FilterUtils.getAllFiltersSorted()) {
+            try {
+                fa.getFilter().transformImage(testImage);
+                names.add(fa.getName());
+            } catch (Exception | AssertionError e) {
+                System.out.printf("Skipping \"%s\": %s%n", fa.getName(), e);
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    public static Filter findFilter(String name) {
+        initHeadless();
+        for (FilterAction fa : FilterUtils.getAllFiltersSorted()) {
+            if (fa.getName().equals(name)) {
+                return fa.getFilter();
+            }
+        }
+        throw new IllegalArgumentException("filter \"" + name + "\" not found");
+    }
+
+    public static int widthFor(int megapixels) {
+        // 4:3 aspect ratio, as in most camera images
+        return (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 4 / 3.0));
+    }
+
+    public static int heightFor(int megapixels) {
+        return megapixels * 1_000_000 / widthFor(megapixels);
+    }
+
+    public static BufferedImage createImage(int megapixels, boolean transparent) {
+        return createImage(widthFor(megapixels), heightFor(megapixels), transparent);
+    }
+
+    /**
+     * Creates an image with gradients and some noise, which is
+     * more realistic for compression than pure noise.
+     */
+    public static BufferedImage createImage(int width, int height, boolean transparent) {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        int[] pixels = ImageUtils.getPixelsAsArray(img);
+        Random random = new Random(width * 31L + height);
+        int cx = width / 2;
+        int cy = height / 2;
+        double maxDist = Math.sqrt(cx * cx + cy * cy) + 1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(16);
+                int r = (x * 255 / width + noise) & 0xFF;
+                int g = (y * 255 / height + noise) & 0xFF;
+                int b = ((x + y) * 127 / (width + height) + noise) & 0xFF;
+                int a = 255;
+                if (transparent) {
+                    double dist = Math.sqrt((x - cx) * (x - cx) + (y - cy) * (y - cy));
+                    a = (int) (255 * (1 - dist / maxDist));
+                }
+                pixels[y * width + x] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Creates a gray mask with a horizontal gradient.
+     */
+    public static BufferedImage createMaskImage(int width, int height) {
+        BufferedImage mask = new BufferedImage(width, height, TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (byte) (x * 255 / width);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Creates an opaque base layer and the given number of
+     * transparent layers above it with the given blending mode.
+     */
+    public static Composition createComposition(int megapixels, int numUpperLayers,
+                                                BlendingMode mode, boolean masks) {
+        initHeadless();
+        int width = widthFor(megapixels);
+        int height = heightFor(megapixels);
+
+        var comp = Composition.fromImage(createImage(width, height, false), null, "Benchmark");
+        TestHelper.setupMockViewFor(comp);
+        for (int i = 0; i < numUpperLayers; i++) {
+            var layer = new ImageLayer(comp, createImage(width, height, true), "Layer " + (i + 2));
+            comp.addLayerInInitMode(layer);
+            layer.setBlendingMode(mode, false, false, false);
+            if (masks) {
+                addMask(layer, width, height);
+            }
+        }
+        return comp;
+    }
+
+    private static void addMask(Layer layer, int width, int height) {
+        var mask = new LayerMask(layer.getComp(), createMaskImage(width, height), layer, 0, 0);
+        layer.addConfiguredMask(mask, false);
+    }
+
+    /**
+     * Makes sure that all layer images are in memory, even
+     * if they are loaded lazily from a file.
+     */
+    public static void loadAllImages(Composition comp) {
+        for (int i = 0; i < comp.getNumLayers(); i++) {
+            Layer layer = comp.getLayer(i);
+            if (layer instanceof ImageLayer) {
+                ((ImageLayer) layer).getImage();
+            }
+            if (layer.hasMask()) {
+                layer.getMask().getImage();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pixelitor.Composition;
+import pixelitor.io.OpenRaster;
+import pixelitor.io.PXCFormat;
+import pixelitor.layers.BlendingMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads a composition with two layers
+ * and a layer mask in the PXC and OpenRaster formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class FileFormatBenchmark {
+    @Param({"1", "12", "50"})
+    public int megapixels;
+
+    private Composition comp;
+
+    // the files written in the write benchmarks
+    private File pxcOut;
+    private File oraOut;
+
+    // the files read in the read benchmarks
+    private File pxcIn;
+    private File oraIn;
+
+    @Setup
+    public void setup() throws IOException {
+        comp = BenchImages.createComposition(megapixels, 1, BlendingMode.NORMAL, true);
+
+        pxcOut = File.createTempFile("bench_out", ".pxc");
+        oraOut = File.createTempFile("bench_out", ".ora");
+        pxcIn = File.createTempFile("bench_in", ".pxc");
+        oraIn = File.createTempFile("bench_in", ".ora");
+
+        PXCFormat.write(comp, pxcIn);
+        OpenRaster.write(comp, oraIn, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pxcOut.delete();
+        oraOut.delete();
+        pxcIn.delete();
+        oraIn.delete();
+    }
+
+    @Benchmark
+    public void writePXC() {
+        PXCFormat.write(comp, pxcOut);
+    }
+
+    @Benchmark
+    public Composition readPXC() throws Exception {
+        Composition read = PXCFormat.read(pxcIn);
+        // the layer images are loaded lazily
+        BenchImages.loadAllImages(read);
+        return read;
+    }
+
+    @Benchmark
+    public void writeOpenRaster() throws IOException {
+        OpenRaster.write(comp, oraOut, true);
+    }
+
+    @Benchmark
+    public Composition readOpenRaster() throws Exception {
+        return OpenRaster.read(oraIn);
+    }
+}
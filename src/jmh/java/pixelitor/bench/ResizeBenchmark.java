@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes an image with {@link ImageUtils#resizeAsync}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class ResizeBenchmark {
+    @Param({"1", "12", "50"})
+    public int megapixels;
+
+    // downscaling by more than half uses a different algorithm
+    @Param({"0.25", "0.75", "1.5"})
+    public double scale;
+
+    @Param({"false", "true"})
+    public boolean transparent;
+
+    private BufferedImage src;
+    private int targetWidth;
+    private int targetHeight;
+
+    @Setup
+    public void setup() {
+        src = BenchImages.createImage(megapixels, transparent);
+        targetWidth = (int) (src.getWidth() * scale);
+        targetHeight = (int) (src.getHeight() * scale);
+    }
+
+    @Benchmark
+    public BufferedImage resize() {
+        return ImageUtils.resizeAsync(src, targetWidth, targetHeight).join();
+    }
+}
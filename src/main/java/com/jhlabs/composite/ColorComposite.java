@@ -32,9 +32,6 @@ public final class ColorComposite extends RGBComposite {
     }
 
     static class Context extends RGBCompositeContext {
-        private final float[] sHSB = new float[3];
-        private final float[] dHSB = new float[3];
-
         public Context(float alpha, ColorModel srcColorModel, ColorModel dstColorModel) {
             super(alpha, srcColorModel, dstColorModel);
         }
@@ -42,6 +39,9 @@ public final class ColorComposite extends RGBComposite {
         @Override
         public void composeRGB(int[] src, int[] dst, float alpha) {
             int w = src.length;
+            // local, because this can be called concurrently
+            float[] sHSB = new float[3];
+            float[] dHSB = new float[3];
 
             for (int i = 0; i < w; i += 4) {
                 int sr = src[i];
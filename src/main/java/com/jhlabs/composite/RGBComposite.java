@@ -16,11 +16,17 @@ limitations under the License.
 
 package com.jhlabs.composite;
 
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
 import java.awt.Composite;
 import java.awt.CompositeContext;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 public abstract class RGBComposite implements Composite {
     protected float extraAlpha;
@@ -60,6 +66,14 @@ public abstract class RGBComposite implements Composite {
     }
 
     public abstract static class RGBCompositeContext implements CompositeContext {
+        // the number of pixels that are unpacked and blended together
+        private static final int BAND_PIXELS = 16 * 1024;
+
+        // smaller rasters are blended on the calling thread
+        private static final int MIN_PARALLEL_PIXELS = 128 * 1024;
+
+        private static final int[] ARGB_MASKS = {0xFF_00_00, 0xFF_00, 0xFF, 0xFF_00_00_00};
+
         private final float alpha;
 //        private final ColorModel srcColorModel;
 //        private final ColorModel dstColorModel;
@@ -84,10 +98,133 @@ public abstract class RGBComposite implements Composite {
             return a < 0 ? 0 : a > 255 ? 255 : a;
         }
 
+        /**
+         * Blends the unpacked (r, g, b, a) samples of src into dst.
+         * It can be called concurrently for different pixels.
+         */
         public abstract void composeRGB(int[] src, int[] dst, float alpha);
 
         @Override
         public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
+            if (isPackedARGB(src) && isPackedARGB(dstIn) && isPackedARGB(dstOut)) {
+                composePacked(src, dstIn, dstOut);
+            } else {
+                composeSamples(src, dstIn, dstOut);
+            }
+        }
+
+        /**
+         * Returns true if the pixels of the raster are ints in the
+         * ARGB order, as in TYPE_INT_ARGB and TYPE_INT_ARGB_PRE images.
+         * The premultiplied and non-premultiplied images have the
+         * same samples, so they are blended the same way.
+         */
+        private static boolean isPackedARGB(Raster raster) {
+            if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                    || !(raster.getDataBuffer() instanceof DataBufferInt)) {
+                return false;
+            }
+            var sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            return Arrays.equals(sm.getBitMasks(), ARGB_MASKS);
+        }
+
+        /**
+         * Blends directly on the backing int arrays, in parallel for big rasters.
+         */
+        private void composePacked(Raster src, Raster dstIn, WritableRaster dstOut) {
+            int width = dstOut.getWidth();
+            int height = dstOut.getHeight();
+            if (width == 0 || height == 0) {
+                return;
+            }
+            int rowsPerBand = Math.max(1, BAND_PIXELS / width);
+
+            if (width * height < MIN_PARALLEL_PIXELS || ThreadPool.getNumCores() == 1) {
+                composePackedRows(src, dstIn, dstOut, 0, height, rowsPerBand);
+            } else {
+                int numBands = (height + rowsPerBand - 1) / rowsPerBand;
+                ThreadPool.runInChunks(numBands, (start, end) ->
+                                composePackedRows(src, dstIn, dstOut,
+                                        start * rowsPerBand,
+                                        Math.min(height, end * rowsPerBand),
+                                        rowsPerBand),
+                        ProgressTracker.NULL_TRACKER);
+            }
+        }
+
+        /**
+         * Blends the rows from startRow (inclusive) to endRow (exclusive),
+         * relative to the minimum y coordinate of dstOut.
+         */
+        private void composePackedRows(Raster src, Raster dstIn, WritableRaster dstOut,
+                                       int startRow, int endRow, int rowsPerBand) {
+            int width = dstOut.getWidth();
+            int x = dstOut.getMinX();
+            int y0 = dstOut.getMinY();
+
+            int[] srcPix = null;
+            int[] dstPix = null;
+            for (int bandStart = startRow; bandStart < endRow; bandStart += rowsPerBand) {
+                int bandRows = Math.min(rowsPerBand, endRow - bandStart);
+                int numSamples = width * bandRows * 4;
+                if (srcPix == null || srcPix.length != numSamples) {
+                    // composeRGB processes whole arrays
+                    srcPix = new int[numSamples];
+                    dstPix = new int[numSamples];
+                }
+
+                for (int row = 0; row < bandRows; row++) {
+                    int y = y0 + bandStart + row;
+                    unpackRow(src, x, y, width, srcPix, row * width * 4);
+                    unpackRow(dstIn, x, y, width, dstPix, row * width * 4);
+                }
+
+                composeRGB(srcPix, dstPix, alpha);
+
+                for (int row = 0; row < bandRows; row++) {
+                    packRow(dstPix, row * width * 4, dstOut, x, y0 + bandStart + row, width);
+                }
+            }
+        }
+
+        private static int pixelIndex(Raster raster, int x, int y) {
+            var sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            return raster.getDataBuffer().getOffset() + sm.getOffset(
+                    x - raster.getSampleModelTranslateX(),
+                    y - raster.getSampleModelTranslateY());
+        }
+
+        private static void unpackRow(Raster raster, int x, int y, int width,
+                                      int[] samples, int samplesOffset) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int index = pixelIndex(raster, x, y);
+            int s = samplesOffset;
+            for (int i = 0; i < width; i++) {
+                int argb = pixels[index + i];
+                samples[s] = (argb >>> 16) & 0xFF;
+                samples[s + 1] = (argb >>> 8) & 0xFF;
+                samples[s + 2] = argb & 0xFF;
+                samples[s + 3] = argb >>> 24;
+                s += 4;
+            }
+        }
+
+        private static void packRow(int[] samples, int samplesOffset,
+                                    WritableRaster raster, int x, int y, int width) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int index = pixelIndex(raster, x, y);
+            int s = samplesOffset;
+            for (int i = 0; i < width; i++) {
+                // masked like in setPixels
+                pixels[index + i] = (samples[s + 3] & 0xFF) << 24
+                        | (samples[s] & 0xFF) << 16
+                        | (samples[s + 1] & 0xFF) << 8
+                        | (samples[s + 2] & 0xFF);
+                s += 4;
+            }
+        }
+
+        private void composeSamples(Raster src, Raster dstIn, WritableRaster dstOut) {
             float alpha = this.alpha;
 
             int[] srcPix = null;
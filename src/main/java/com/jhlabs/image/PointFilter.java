@@ -20,7 +20,6 @@ import pixelitor.ThreadPool;
 import pixelitor.utils.ImageUtils;
 
 import java.awt.image.BufferedImage;
-import java.util.concurrent.Future;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 
@@ -50,19 +49,14 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         int[] outPixels = ImageUtils.getPixelsAsArray(dst);
 
         pt = createProgressTracker(height);
-        Future<?>[] futures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable calculateLineTask = () -> {
+        ThreadPool.runInChunks(height, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
                 for (int x = 0; x < width; x++) {
-                    int index = finalY * width + x;
-                    outPixels[index] = filterRGB(x, finalY, inPixels[index]);
+                    int index = y * width + x;
+                    outPixels[index] = filterRGB(x, y, inPixels[index]);
                 }
-            };
-            futures[y] = ThreadPool.submit(calculateLineTask);
-        }
-
-        ThreadPool.waitFor(futures, pt);
+            }
+        }, pt);
         finishProgressTracker();
 
         return dst;
@@ -73,20 +67,18 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         int height = src.getHeight();
 
         pt = createProgressTracker(height);
-        Future<?>[] futures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable calculateLineTask = () -> {
-                int[] inPixels = new int[width];
-                src.getRGB(0, finalY, width, 1, inPixels, 0, width);
+        ThreadPool.runInChunks(height, (startY, endY) -> {
+            int numLines = endY - startY;
+            int[] pixels = new int[width * numLines];
+            src.getRGB(0, startY, width, numLines, pixels, 0, width);
+            for (int y = startY; y < endY; y++) {
+                int offset = (y - startY) * width;
                 for (int x = 0; x < width; x++) {
-                    inPixels[x] = filterRGB(x, finalY, inPixels[x]);
+                    pixels[offset + x] = filterRGB(x, y, pixels[offset + x]);
                 }
-                dst.setRGB(0, finalY, width, 1, inPixels, 0, width);
-            };
-            futures[y] = ThreadPool.submit(calculateLineTask);
-        }
-        ThreadPool.waitFor(futures, pt);
+            }
+            dst.setRGB(0, startY, width, numLines, pixels, 0, width);
+        }, pt);
         finishProgressTracker();
 
         return dst;
@@ -18,12 +18,11 @@ package com.jhlabs.image;
 
 import net.jafama.FastMath;
 import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
 
 /**
  * An abstract superclass for filters which distort images in some way. The subclass only needs to override
@@ -79,6 +78,11 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      */
     protected int interpolation = BILINEAR;
 
+    /**
+     * The calculated region of the output, or null for the whole output.
+     */
+    private Rectangle destRegion;
+
     /**
      * The output image rectangle.
      */
@@ -122,6 +126,17 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         this.interpolation = interpolation;
     }
 
+    /**
+     * Restricts the calculation to a region of the output. The destination
+     * image must have the size of the region, but the geometry of the
+     * transformation remains that of the whole image.
+     *
+     * @param destRegion the region of the output, or null for the whole output
+     */
+    public void setDestRegion(Rectangle destRegion) {
+        this.destRegion = destRegion;
+    }
+
     /**
      * Get the type of interpolation to perform.
      *
@@ -172,10 +187,17 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 
         int[] inPixels = getRGB(src, 0, 0, srcWidth, srcHeight, null);
 
+        Rectangle outRegion = destRegion;
+        if (outRegion == null) {
+            outRegion = new Rectangle(0, 0, srcWidth, srcHeight);
+        } else {
+            assert interpolation == BILINEAR || interpolation == NEAREST_NEIGHBOUR;
+        }
+
         if (interpolation == BILINEAR) {
-            return filterPixelsBilinear(dst, srcWidth, srcHeight, inPixels);
+            return filterPixelsBilinear(dst, srcWidth, srcHeight, inPixels, outRegion);
         } else if (interpolation == NEAREST_NEIGHBOUR) {
-            return filterPixelsNN(dst, srcWidth, srcHeight, inPixels);
+            return filterPixelsNN(dst, srcWidth, srcHeight, inPixels, outRegion);
         } else if (interpolation == BILINEAR_OLD) {
             return filterPixelsBilinearOLD(dst, srcWidth, srcHeight, inPixels);
         } else if (interpolation == NEAREST_NEIGHBOUR_OLD) {
@@ -253,65 +275,59 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         return dst;
     }
 
-    protected BufferedImage filterPixelsNN(BufferedImage dst, int width, int height, int[] inPixels) {
+    protected BufferedImage filterPixelsNN(BufferedImage dst, int width, int height,
+                                           int[] inPixels, Rectangle outRegion) {
         int srcWidth = width;
         int srcHeight = height;
-        int outWidth = width;
-        int outHeight = height;
+        int outX = outRegion.x;
+        int outY = outRegion.y;
+        int outWidth = outRegion.width;
+        int outHeight = outRegion.height;
 
         pt = createProgressTracker(outHeight);
-
-        @SuppressWarnings("unchecked")
-        Future<int[]>[] resultLines = new Future[outHeight];
-
-        for (int y = 0; y < outHeight; y++) {
+        ThreadPool.runInChunks(outHeight, (startRow, endRow) -> {
             float[] out = new float[2];
-            int finalY = y;
-            Callable<int[]> calculateLineTask = () -> {
-                int srcX, srcY;
-                int[] outPixels = new int[outWidth];
-
-                for (int x = 0; x < outWidth; x++) {
-                    transformInverse(x, finalY, out);
-                    srcX = (int) out[0];
-                    srcY = (int) out[1];
+            ChunkPixels chunk = new ChunkPixels(dst, outWidth, startRow, endRow);
+            int[] outPixels = chunk.pixels;
+            for (int row = startRow; row < endRow; row++) {
+                int offset = chunk.getLineOffset(row);
+                int y = outY + row;
+                for (int col = 0; col < outWidth; col++) {
+                    transformInverse(outX + col, y, out);
+                    int srcX = (int) out[0];
+                    int srcY = (int) out[1];
                     // int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
-                    outPixels[x] = getPixelNN(inPixels, srcWidth, srcHeight, srcX, srcY, out);
+                    outPixels[offset + col] = getPixelNN(inPixels, srcWidth, srcHeight, srcX, srcY, out);
                 }
-
-                return outPixels;
-
-            };
-            resultLines[finalY] = ThreadPool.submit2(calculateLineTask);
-        }
-        ThreadPool.waitFor2(resultLines, dst, width, pt);
+            }
+            chunk.finish();
+        }, pt);
         finishProgressTracker();
 
         return dst;
     }
 
-    private BufferedImage filterPixelsBilinear(BufferedImage dst, int width, int height, int[] inPixels) {
+    private BufferedImage filterPixelsBilinear(BufferedImage dst, int width, int height,
+                                               int[] inPixels, Rectangle outRegion) {
         int srcWidth = width;
         int srcHeight = height;
         int srcWidth1 = width - 1;
         int srcHeight1 = height - 1;
-        int outWidth = width;
-        int outHeight = height;
-//        int outX, outY;
-//		int index = 0;
+        int outX = outRegion.x;
+        int outY = outRegion.y;
+        int outWidth = outRegion.width;
+        int outHeight = outRegion.height;
 
         pt = createProgressTracker(outHeight);
-
-        @SuppressWarnings("unchecked")
-        Future<int[]>[] resultLines = new Future[outHeight];
-
-        for (int y = 0; y < outHeight; y++) {
+        ThreadPool.runInChunks(outHeight, (startRow, endRow) -> {
             float[] out = new float[2];
-            int finalY = y;
-            Callable<int[]> calculateLineTask = () -> {
-                int[] outPixels = new int[outWidth];
-                for (int x = 0; x < outWidth; x++) {
-                    transformInverse(x, finalY, out);
+            ChunkPixels chunk = new ChunkPixels(dst, outWidth, startRow, endRow);
+            int[] outPixels = chunk.pixels;
+            for (int row = startRow; row < endRow; row++) {
+                int offset = chunk.getLineOffset(row);
+                int y = outY + row;
+                for (int col = 0; col < outWidth; col++) {
+                    transformInverse(outX + col, y, out);
                     int srcX = (int) FastMath.floor(out[0]);
                     int srcY = (int) FastMath.floor(out[1]);
                     float xWeight = out[0] - srcX;
@@ -332,19 +348,59 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
                         sw = getPixelBL(inPixels, srcX, srcY + 1, srcWidth, srcHeight);
                         se = getPixelBL(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight);
                     }
-                    outPixels[x] = ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
+                    outPixels[offset + col] = ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
                 }
-                return outPixels;
-            };
-
-            resultLines[finalY] = ThreadPool.submit2(calculateLineTask);
-        }
-        ThreadPool.waitFor2(resultLines, dst, width, pt);
+            }
+            chunk.finish();
+        }, pt);
         finishProgressTracker();
 
         return dst;
     }
 
+    /**
+     * The destination pixels for a chunk of lines. If possible, these are
+     * directly the pixels of the destination image, otherwise they are
+     * collected in a buffer, which is copied into the image at the end.
+     */
+    private static class ChunkPixels {
+        private final BufferedImage dst;
+        private final int width;
+        private final int startY;
+        private final int endY;
+        private final boolean direct;
+        final int[] pixels;
+
+        ChunkPixels(BufferedImage dst, int width, int startY, int endY) {
+            this.dst = dst;
+            this.width = width;
+            this.startY = startY;
+            this.endY = endY;
+
+            direct = ImageUtils.hasPackedIntArray(dst)
+                    && dst.getWidth() == width
+                    && dst.getRaster().getParent() == null;
+            if (direct) {
+                pixels = ImageUtils.getPixelsAsArray(dst);
+            } else {
+                pixels = new int[width * (endY - startY)];
+            }
+        }
+
+        int getLineOffset(int y) {
+            if (direct) {
+                return y * width;
+            }
+            return (y - startY) * width;
+        }
+
+        void finish() {
+            if (!direct) {
+                setRGB(dst, 0, startY, width, endY - startY, pixels);
+            }
+        }
+    }
+
     private int getPixelBL(int[] pixels, int x, int y, int width, int height) {
         if ((x < 0) || (x >= width)) {  // x out of range
             if ((y < 0) || (y >= height)) { // y also out of range {
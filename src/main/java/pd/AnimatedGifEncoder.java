@@ -8,13 +8,22 @@ package pd;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class AnimatedGifEncoder - Encodes a GIF file consisting of one or more
@@ -30,6 +39,9 @@ import java.io.OutputStream;
  *     e.finish();
  * </pre>
  *
+ * The frames are quantized and LZW-compressed on several threads, but
+ * they are written out in the order in which they were added.
+ *
  * No copyright asserted on the source code of this class. May be used for any
  * purpose, however, refer to the Unisys LZW patent for restrictions on use of
  * the associated LZWEncoder class. Please forward any corrections to
@@ -41,14 +53,18 @@ import java.io.OutputStream;
 
 public class AnimatedGifEncoder {
 
+    private static final int COLOR_DEPTH = 8; // number of bit planes
+
+    private static final int PAL_SIZE = 7; // color table size (bits-1)
+
+    private static final int DISPOSE_LEAVE_IN_PLACE = 1;
+
     private int width; // image size
 
     private int height;
 
     private Color transparent = null; // transparent color if given
 
-    private int transIndex; // transparent index in color table
-
     private int repeat = -1; // no repeat
 
     private int delay = 0; // frame delay (hundredths)
@@ -57,30 +73,35 @@ public class AnimatedGifEncoder {
 
     private OutputStream out;
 
-    private BufferedImage image; // current frame
+    private int dispose = -1; // disposal code (-1 = use default)
 
-    private byte[] pixels; // BGR byte array from frame
+    private boolean closeStream = false; // close stream when finished
 
-    private byte[] indexedPixels; // converted frame indexed to palette
+    private boolean firstFrame = true;
 
-    private int colorDepth; // number of bit planes
+    private boolean headerWritten = false;
 
-    private byte[] colorTab; // RGB palette
+    private boolean sizeSet = false; // if false, get size from first frame
 
-    private final boolean[] usedEntry = new boolean[256]; // active palette entries
+    private int sample = 10; // default sample interval for quantizer
+    private File file;
 
-    private int palSize = 7; // color table size (bits-1)
+    private boolean globalPalette = false; // one palette for all frames
 
-    private int dispose = -1; // disposal code (-1 = use default)
+    private NeuQuant globalQuant; // quantizer of the first frame, if shared
 
-    private boolean closeStream = false; // close stream when finished
+    private byte[] globalColorTab;
 
-    private boolean firstFrame = true;
+    private boolean frameDifferencing = false; // write only the changed rectangles
 
-    private boolean sizeSet = false; // if false, get size from first frame
+    private byte[] prevPixels; // BGR pixels of the previous frame
 
-    private int sample = 10; // default sample interval for quantizer
-    private File file;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService executor;
+
+    // the frames that are being encoded, in the order of writing
+    private final Deque<Future<EncodedFrame>> pendingFrames = new ArrayDeque<>();
 
     /**
      * Sets the delay time between each frame, or changes it for subsequent frames
@@ -133,11 +154,51 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Adds next GIF frame. The frame is not written immediately, but is actually
-     * deferred until the next frame is received so that timing data can be
-     * inserted. Invoking <code>finish()</code> flushes all frames. If
+     * Sets whether the color table of the first frame should be used for all
+     * frames. This is faster and produces smaller files, but the colors of the
+     * later frames can be worse if they are very different from the first one.
+     * Must be invoked before the first image is added.
+     *
+     * @param b true if all frames should share the global color table.
+     */
+    public void setGlobalPalette(boolean b) {
+        if (firstFrame) {
+            globalPalette = b;
+        }
+    }
+
+    /**
+     * Sets whether only the rectangle that changed since the previous frame
+     * should be written. The unchanged pixels are left in place from the
+     * previous frame, and a frame without changes is written as a single
+     * transparent pixel. Ignored for frames with a transparent color,
+     * because those are cleared before the next frame. Off by default.
+     *
+     * @param b true if the frames should be written as changed rectangles.
+     */
+    public void setFrameDifferencing(boolean b) {
+        frameDifferencing = b;
+    }
+
+    /**
+     * Sets the number of threads used for encoding the frames.
+     * Must be invoked before the encoding is started.
+     *
+     * @param n int number of threads, at least 1.
+     */
+    public void setNumThreads(int n) {
+        if (!started && n >= 1) {
+            numThreads = n;
+        }
+    }
+
+    /**
+     * Adds next GIF frame. The frame is encoded in the background, and
+     * it is written after all the previously added frames. Invoking
+     * <code>finish()</code> flushes all frames. If
      * <code>setSize</code> was not invoked, the size of the first image is used
-     * for all subsequent frames.
+     * for all subsequent frames. The image is copied, therefore it can be
+     * modified after this method returns.
      *
      * @param im BufferedImage containing frame to write.
      * @return true if successful.
@@ -152,25 +213,47 @@ public class AnimatedGifEncoder {
                 // use first frame's size
                 setSize(im.getWidth(), im.getHeight());
             }
-            image = im;
-            getImagePixels(); // convert to correct format if necessary
-            analyzePixels(); // build color table & map pixels
-            if (firstFrame) {
-                writeLSD(); // logical screen descriptior
-                writePalette(); // global color table
-                if (repeat >= 0) {
-                    // use NS app extension to indicate reps
-                    writeNetscapeExt();
+            byte[] pixels = getImagePixels(im); // convert to correct format
+
+            FrameSettings settings = new FrameSettings();
+            settings.delay = delay;
+            settings.transparent = transparent;
+            settings.dispose = dispose;
+            settings.bounds = new Rectangle(0, 0, width, height);
+            if (frameDifferencing && transparent == null) {
+                if (prevPixels != null) {
+                    Rectangle changed = findChangedBounds(prevPixels, pixels);
+                    if (changed == null) {
+                        // a frame is still needed for the delay
+                        settings.unchanged = true;
+                        changed = new Rectangle(0, 0, 1, 1);
+                    }
+                    settings.bounds = changed;
+                }
+                if (dispose < 0) {
+                    settings.dispose = DISPOSE_LEAVE_IN_PLACE;
                 }
+                prevPixels = pixels;
+            } else {
+                prevPixels = null;
             }
-            writeGraphicCtrlExt(); // write graphic control extension
-            writeImageDesc(); // image descriptor
-            if (!firstFrame) {
-                writePalette(); // local color table
+
+            if (firstFrame && globalPalette) {
+                // the first frame's palette is needed by all frames
+                globalQuant = new NeuQuant(pixels, pixels.length, sample);
+                globalColorTab = toRGB(globalQuant.process());
             }
-            writePixels(); // encode and write pixel data
+            settings.localPalette = !firstFrame && !globalPalette && !settings.unchanged;
+            NeuQuant sharedQuant = globalQuant;
+            pendingFrames.add(executor.submit(() ->
+                    encodeFrame(pixels, settings, sharedQuant)));
             firstFrame = false;
-        } catch (IOException e) {
+
+            writeEncodedFrames(false);
+        } catch (IOException | ExecutionException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             ok = false;
         }
 
@@ -188,8 +271,27 @@ public class AnimatedGifEncoder {
         boolean ok = true;
         started = false;
         try {
+            writeEncodedFrames(true);
+        } catch (IOException | ExecutionException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        }
+        pendingFrames.forEach(f -> f.cancel(true));
+        pendingFrames.clear();
+        executor.shutdownNow();
+
+        try {
+            if (!headerWritten) { // no frames were written
+                writeHeader(new byte[0]);
+            }
             out.write(0x3b); // gif trailer
             out.flush();
+        } catch (IOException e) {
+            ok = false;
+        }
+        try {
             if (closeStream) {
                 out.close();
             }
@@ -198,22 +300,24 @@ public class AnimatedGifEncoder {
         }
 
         // reset for subsequent use
-        transIndex = 0;
         out = null;
-        image = null;
-        pixels = null;
-        indexedPixels = null;
-        colorTab = null;
+        executor = null;
+        prevPixels = null;
+        globalQuant = null;
+        globalColorTab = null;
         closeStream = false;
         firstFrame = true;
+        headerWritten = false;
 
         return ok;
     }
 
     public void cancel() {
-        if (finish()) {
-            file.delete();
-        }
+        // the frames that are not written yet are not needed anymore
+        pendingFrames.forEach(f -> f.cancel(true));
+        pendingFrames.clear();
+        finish();
+        file.delete();
     }
 
     /**
@@ -286,6 +390,13 @@ public class AnimatedGifEncoder {
         } catch (IOException e) {
             ok = false;
         }
+        if (ok) {
+            executor = Executors.newFixedThreadPool(numThreads, r -> {
+                Thread thread = new Thread(r, "[gif encoder]");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         return started = ok;
     }
 
@@ -299,8 +410,7 @@ public class AnimatedGifEncoder {
         this.file = file;
         boolean ok = true;
         try {
-            out = new BufferedOutputStream(new FileOutputStream(file));
-            ok = start(out);
+            ok = start(new BufferedOutputStream(new FileOutputStream(file)));
             closeStream = true;
         } catch (IOException e) {
             ok = false;
@@ -309,42 +419,171 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Analyzes image colors and creates color map.
+     * Writes the encoded frames in order. If all is false, then only the
+     * already finished frames are written, unless too many frames are waiting,
+     * which also limits the memory used by the unwritten frames.
      */
-    private void analyzePixels() {
-        int len = pixels.length;
-        int nPix = len / 3;
-        indexedPixels = new byte[nPix];
-        NeuQuant nq = new NeuQuant(pixels, len, sample);
-        // initialize quantizer
-        colorTab = nq.process(); // create reduced palette
-        // convert map from BGR to RGB
-        for (int i = 0; i < colorTab.length; i += 3) {
-            byte temp = colorTab[i];
-            colorTab[i] = colorTab[i + 2];
-            colorTab[i + 2] = temp;
-            usedEntry[i / 3] = false;
+    private void writeEncodedFrames(boolean all)
+            throws IOException, ExecutionException, InterruptedException {
+        while (!pendingFrames.isEmpty()) {
+            Future<EncodedFrame> next = pendingFrames.peek();
+            if (!all && !next.isDone() && pendingFrames.size() <= 2 * numThreads) {
+                return;
+            }
+            EncodedFrame frame = next.get();
+            pendingFrames.remove();
+            if (!headerWritten) {
+                writeHeader(globalPalette ? globalColorTab : frame.colorTab);
+            }
+            frame.data.writeTo(out);
+        }
+    }
+
+    /**
+     * Writes the logical screen descriptor, the global color
+     * table, and the repeat count before the first frame.
+     */
+    private void writeHeader(byte[] colorTab) throws IOException {
+        writeLSD(); // logical screen descriptior
+        writePalette(colorTab); // global color table
+        if (repeat >= 0) {
+            // use NS app extension to indicate reps
+            writeNetscapeExt();
         }
-        // map image pixels to new palette
+        headerWritten = true;
+    }
+
+    /**
+     * Quantizes and compresses a frame into a byte array, including
+     * its graphic control extension, image descriptor and color table.
+     * Runs on the encoder threads.
+     */
+    private EncodedFrame encodeFrame(byte[] framePixels, FrameSettings settings,
+                                     NeuQuant sharedQuant) throws IOException {
+        if (settings.unchanged) {
+            // a transparent pixel doesn't need a palette,
+            // and it leaves the previous frame visible
+            ByteArrayOutputStream data = new ByteArrayOutputStream(64);
+            writeGraphicCtrlExt(data, settings, 0);
+            writeImageDesc(data, settings);
+            new LZWEncoder(1, 1, new byte[1], COLOR_DEPTH).encode(data);
+            return new EncodedFrame(null, data);
+        }
+
+        Rectangle bounds = settings.bounds;
+        byte[] pixels = framePixels;
+        if (bounds.width != width || bounds.height != height) {
+            pixels = cropPixels(framePixels, bounds);
+        }
+
+        NeuQuant nq = sharedQuant;
+        byte[] colorTab = null;
+        if (nq == null) {
+            nq = new NeuQuant(pixels, pixels.length, sample);
+            colorTab = toRGB(nq.process()); // create reduced palette
+        }
+
+        // map image pixels to the palette
+        int nPix = pixels.length / 3;
+        byte[] indexedPixels = new byte[nPix];
+        boolean[] usedEntry = new boolean[256];
         int k = 0;
         for (int i = 0; i < nPix; i++) {
             int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
             usedEntry[index] = true;
             indexedPixels[i] = (byte) index;
         }
-        pixels = null;
-        colorDepth = 8;
-        palSize = 7;
+
+        int transIndex = 0;
         // get closest match to transparent color if specified
-        if (transparent != null) {
-            transIndex = findClosest(transparent);
+        if (settings.transparent != null) {
+            transIndex = findClosest(settings.transparent,
+                    colorTab != null ? colorTab : globalColorTab, usedEntry);
+        }
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream(nPix / 2 + 1024);
+        writeGraphicCtrlExt(data, settings, transIndex); // write graphic control extension
+        writeImageDesc(data, settings); // image descriptor
+        if (settings.localPalette) {
+            writePalette(data, colorTab); // local color table
+        }
+        // encode and write pixel data
+        LZWEncoder encoder = new LZWEncoder(bounds.width, bounds.height,
+                indexedPixels, COLOR_DEPTH);
+        encoder.encode(data);
+
+        return new EncodedFrame(colorTab, data);
+    }
+
+    /**
+     * Converts a color table from BGR to RGB.
+     */
+    private static byte[] toRGB(byte[] colorTab) {
+        for (int i = 0; i < colorTab.length; i += 3) {
+            byte temp = colorTab[i];
+            colorTab[i] = colorTab[i + 2];
+            colorTab[i + 2] = temp;
+        }
+        return colorTab;
+    }
+
+    /**
+     * Returns the smallest rectangle containing the pixels that differ
+     * in the given BGR arrays, or null if they are equal.
+     */
+    private Rectangle findChangedBounds(byte[] prev, byte[] curr) {
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        int rowLength = width * 3;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * rowLength;
+            int first = -1;
+            for (int i = rowStart; i < rowStart + rowLength; i++) {
+                if (prev[i] != curr[i]) {
+                    first = i;
+                    break;
+                }
+            }
+            if (first < 0) {
+                continue;
+            }
+            int last = first;
+            for (int i = rowStart + rowLength - 1; i > first; i--) {
+                if (prev[i] != curr[i]) {
+                    last = i;
+                    break;
+                }
+            }
+            minX = Math.min(minX, (first - rowStart) / 3);
+            maxX = Math.max(maxX, (last - rowStart) / 3);
+            minY = Math.min(minY, y);
+            maxY = y;
+        }
+        if (maxX < 0) {
+            return null;
         }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Copies the given rectangle of the frame's BGR pixels.
+     */
+    private byte[] cropPixels(byte[] pixels, Rectangle bounds) {
+        int rowLength = bounds.width * 3;
+        byte[] cropped = new byte[rowLength * bounds.height];
+        for (int y = 0; y < bounds.height; y++) {
+            int srcPos = ((bounds.y + y) * width + bounds.x) * 3;
+            System.arraycopy(pixels, srcPos, cropped, y * rowLength, rowLength);
+        }
+        return cropped;
     }
 
     /**
      * Returns index of palette color closest to c
      */
-    private int findClosest(Color c) {
+    private static int findClosest(Color c, byte[] colorTab, boolean[] usedEntry) {
         if (colorTab == null) {
             return -1;
         }
@@ -370,73 +609,113 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Extracts image pixels into byte array "pixels"
+     * Extracts image pixels into a new BGR byte array. The common
+     * int types are converted directly, without a temporary image.
      */
-    private void getImagePixels() {
+    private byte[] getImagePixels(BufferedImage image) {
         int w = image.getWidth();
         int h = image.getHeight();
         int type = image.getType();
-        if ((w != width) || (h != height) || (type != BufferedImage.TYPE_3BYTE_BGR)) {
-            // create new image with right size/format
-            BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-            Graphics2D g = temp.createGraphics();
-            g.drawImage(image, 0, 0, null);
-            image = temp;
-        }
-        pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        boolean sameSize = w == width && h == height;
+        if (sameSize && type == BufferedImage.TYPE_3BYTE_BGR) {
+            return ((DataBufferByte) image.getRaster().getDataBuffer()).getData().clone();
+        }
+        if (sameSize && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && (type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && image.getRaster().getSampleModelTranslateX() == 0
+                && image.getRaster().getSampleModelTranslateY() == 0
+                && image.getRaster().getDataBuffer().getSize() == w * h) {
+            int[] src = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            // drawing on an opaque image would blend the
+            // non-premultiplied colors with black
+            boolean multiplyAlpha = type == BufferedImage.TYPE_INT_ARGB;
+            byte[] pixels = new byte[w * h * 3];
+            int k = 0;
+            for (int rgb : src) {
+                int r = (rgb >>> 16) & 0xFF;
+                int g = (rgb >>> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                if (multiplyAlpha) {
+                    int a = rgb >>> 24;
+                    if (a != 255) {
+                        r = (r * a + 127) / 255;
+                        g = (g * a + 127) / 255;
+                        b = (b * a + 127) / 255;
+                    }
+                }
+                pixels[k++] = (byte) b;
+                pixels[k++] = (byte) g;
+                pixels[k++] = (byte) r;
+            }
+            return pixels;
+        }
+
+        // create new image with right size/format
+        BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = temp.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return ((DataBufferByte) temp.getRaster().getDataBuffer()).getData();
     }
 
     /**
      * Writes Graphic Control Extension
      */
-    private void writeGraphicCtrlExt() throws IOException {
-        out.write(0x21); // extension introducer
-        out.write(0xf9); // GCE label
-        out.write(4); // data block size
+    private static void writeGraphicCtrlExt(OutputStream os, FrameSettings settings,
+                                            int transIndex) throws IOException {
+        os.write(0x21); // extension introducer
+        os.write(0xf9); // GCE label
+        os.write(4); // data block size
         int transp, disp;
-        if (transparent == null) {
+        if (settings.transparent == null) {
             transp = 0;
             disp = 0; // dispose = no action
         } else {
             transp = 1;
             disp = 2; // force clear if using transparent color
         }
-        if (dispose >= 0) {
-            disp = dispose & 7; // user override
+        if (settings.unchanged) {
+            transp = 1; // the single pixel of the frame is transparent
+        }
+        if (settings.dispose >= 0) {
+            disp = settings.dispose & 7; // user override
         }
         disp <<= 2;
 
         // packed fields
-        out.write(0 | // 1:3 reserved
+        os.write(0 | // 1:3 reserved
                 disp | // 4:6 disposal
                 0 | // 7 user input - 0 = none
                 transp); // 8 transparency flag
 
-        writeShort(delay); // delay x 1/100 sec
-        out.write(transIndex); // transparent color index
-        out.write(0); // block terminator
+        writeShort(os, settings.delay); // delay x 1/100 sec
+        os.write(transIndex); // transparent color index
+        os.write(0); // block terminator
     }
 
     /**
      * Writes Image Descriptor
      */
-    private void writeImageDesc() throws IOException {
-        out.write(0x2c); // image separator
-        writeShort(0); // image position x,y = 0,0
-        writeShort(0);
-        writeShort(width); // image size
-        writeShort(height);
+    private static void writeImageDesc(OutputStream os, FrameSettings settings) throws IOException {
+        Rectangle bounds = settings.bounds;
+        os.write(0x2c); // image separator
+        writeShort(os, bounds.x); // image position x,y
+        writeShort(os, bounds.y);
+        writeShort(os, bounds.width); // image size
+        writeShort(os, bounds.height);
         // packed fields
-        if (firstFrame) {
-            // no LCT - GCT is used for first (or only) frame
-            out.write(0);
-        } else {
+        if (settings.localPalette) {
             // specify normal LCT
-            out.write(0x80 | // 1 local color table 1=yes
+            os.write(0x80 | // 1 local color table 1=yes
                     0 | // 2 interlace - 0=no
                     0 | // 3 sorted - 0=no
                     0 | // 4-5 reserved
-                    palSize); // 6-8 size of color table
+                    PAL_SIZE); // 6-8 size of color table
+        } else {
+            // no LCT - GCT is used
+            os.write(0);
         }
     }
 
@@ -445,13 +724,13 @@ public class AnimatedGifEncoder {
      */
     private void writeLSD() throws IOException {
         // logical screen size
-        writeShort(width);
-        writeShort(height);
+        writeShort(out, width);
+        writeShort(out, height);
         // packed fields
         out.write((0x80 | // 1 : global color table flag = 1 (gct used)
                 0x70 | // 2-4 : color resolution = 7
                 0x00 | // 5 : gct sort flag = 0
-                palSize)); // 6-8 : gct size
+                PAL_SIZE)); // 6-8 : gct size
 
         out.write(0); // background color index
         out.write(0); // pixel aspect ratio - assume 1:1
@@ -467,35 +746,31 @@ public class AnimatedGifEncoder {
         writeString("NETSCAPE" + "2.0"); // app id + auth code
         out.write(3); // sub-block size
         out.write(1); // loop sub-block id
-        writeShort(repeat); // loop count (extra iterations, 0=repeat forever)
+        writeShort(out, repeat); // loop count (extra iterations, 0=repeat forever)
         out.write(0); // block terminator
     }
 
     /**
      * Writes color table
      */
-    private void writePalette() throws IOException {
-        out.write(colorTab, 0, colorTab.length);
+    private void writePalette(byte[] colorTab) throws IOException {
+        writePalette(out, colorTab);
+    }
+
+    private static void writePalette(OutputStream os, byte[] colorTab) throws IOException {
+        os.write(colorTab, 0, colorTab.length);
         int n = (3 * 256) - colorTab.length;
         for (int i = 0; i < n; i++) {
-            out.write(0);
+            os.write(0);
         }
     }
 
-    /**
-     * Encodes and writes pixel data
-     */
-    private void writePixels() throws IOException {
-        LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
-        encoder.encode(out);
-    }
-
     /**
      * Write 16-bit value to output stream, LSB first
      */
-    private void writeShort(int value) throws IOException {
-        out.write(value & 0xff);
-        out.write((value >> 8) & 0xff);
+    private static void writeShort(OutputStream os, int value) throws IOException {
+        os.write(value & 0xff);
+        os.write((value >> 8) & 0xff);
     }
 
     /**
@@ -506,6 +781,32 @@ public class AnimatedGifEncoder {
             out.write((byte) s.charAt(i));
         }
     }
+
+    /**
+     * The settings of a frame, captured when it was added.
+     */
+    private static class FrameSettings {
+        int delay;
+        int dispose;
+        Color transparent;
+        Rectangle bounds; // the written rectangle of the frame
+        boolean localPalette;
+        boolean unchanged; // written as a single transparent pixel
+    }
+
+    /**
+     * The encoded data of a frame, and its color table,
+     * which is needed as the global one for the first frame.
+     */
+    private static class EncodedFrame {
+        final byte[] colorTab;
+        final ByteArrayOutputStream data;
+
+        EncodedFrame(byte[] colorTab, ByteArrayOutputStream data) {
+            this.colorTab = colorTab;
+            this.data = data;
+        }
+    }
 }
 
 /*
@@ -16,13 +16,17 @@
 
 package pd;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.System.arraycopy;
@@ -36,13 +40,21 @@ import static java.lang.System.arraycopy;
  * </p>
  *
  * <p>
+ * Reading only indexes the frames: it records where the compressed data
+ * of each frame starts, and the frames are decoded only when they are
+ * requested. A single working raster is kept for the disposal handling,
+ * therefore the memory usage is proportional to one frame, plus the
+ * frames that the caller keeps.
+ * </p>
+ *
+ * <p>
  * Example usage:
  * </p>
  *
  * <p>
  *
  * <pre>
- * final GifImage gifImage = GifDecoder.read(int[] data);
+ * final GifImage gifImage = GifDecoder.read(file);
  * final int width = gifImage.getWidth();
  * final int height = gifImage.getHeight();
  * final int frameCount = gifImage.getFrameCount();
@@ -165,10 +177,14 @@ public final class GifDecoder {
         private int firstCodeSize; // LZW minimum code size + 1 for CLEAR & EOI
         private int clearCode;
         private int endOfInfoCode;
-        private byte[] data; // Holds LZW encoded data
-        private BufferedImage img; // Full drawn image, not just the frame area
+        private int dataPos; // Position of the first sub-block of LZW data
+        private int dataSize; // Number of LZW data bytes in all sub-blocks
     }
 
+    /**
+     * The indexed frames of a GIF image. It is not thread-safe,
+     * because the frames are drawn on a shared working raster.
+     */
     public static final class GifImage {
         public String header; // Bytes 0-5, GIF87a or GIF89a
         private int w; // Unsigned 16 Bit, least significant byte first
@@ -185,26 +201,35 @@ public final class GifDecoder {
         public String appId = ""; // 8 Bytes at in[i+3], usually "NETSCAPE"
         public String appAuthCode = ""; // 3 Bytes at in[i+11], usually "2.0"
         public int repetitions = 0; // 0: infinite loop, N: number of loops
-        private BufferedImage img = null; // Currently drawn frame
-        private int[] prevPx = null; // Previous frame's pixels
+        private ByteBuffer in; // Raw data, read on demand
+        private int[] canvas = null; // Working raster, disposal already applied
+        private int nextFrame = 0; // Index of the next frame to be drawn
+        private int[] prevPx = null; // Saved canvas for RESTORE_PREV
+        private int[] framePx = null; // Decoded pixels of the frame area
+        private int[] deinterlacedPx = null;
+        private byte[] data = null; // LZW data of the current frame
         private final BitReader bits = new BitReader();
         private final CodeTable codes = new CodeTable();
-        private Graphics2D g;
 
         private int[] decode(GifFrame fr, int[] activeColTbl) {
             codes.init(fr, activeColTbl, bits);
-            bits.init(fr.data); // Incoming codes
+            bits.init(readData(fr)); // Incoming codes
             int clearCode = fr.clearCode, endCode = fr.endOfInfoCode;
-            int[] out = new int[wh]; // Target image pixel array
+            if (framePx == null || framePx.length < fr.wh) {
+                framePx = new int[fr.wh];
+            } else { // Missing pixels of truncated data are transparent
+                Arrays.fill(framePx, 0, fr.wh, 0);
+            }
+            int[] out = framePx; // Target image pixel array
             int[][] tbl = codes.tbl; // Code table
             int outPos = 0; // Next pixel position in the output image array
             codes.clear(); // Init code table
             bits.read(); // Skip leading clear code
             int code = bits.read(); // Read first code
-            int[] pixels = tbl[code]; // Output pixel for first code
-            arraycopy(pixels, 0, out, outPos, pixels.length);
-            outPos += pixels.length;
             try {
+                int[] pixels = tbl[code]; // Output pixel for first code
+                arraycopy(pixels, 0, out, outPos, pixels.length);
+                outPos += pixels.length;
                 while (true) {
                     int prevCode = code;
                     code = bits.read(); // Get next code in stream
@@ -234,13 +259,49 @@ public final class GifDecoder {
                     codes.add(prevValsAndK); // Previous indices + K
                 }
             } catch (ArrayIndexOutOfBoundsException e) {
+                // Corrupt or truncated data, keep what was decoded so far
+                if (outPos < fr.wh) {
+                    Arrays.fill(out, outPos, fr.wh, 0);
+                }
             }
             return out;
         }
 
-        private static int[] deinterlace(int[] src, GifFrame fr) {
+        /**
+         * Collects the LZW data of the given frame from its sub-blocks
+         * into the reused data array, followed by two 0-bytes.
+         */
+        private byte[] readData(GifFrame fr) {
+            if (data == null || data.length < fr.dataSize + 2) {
+                data = new byte[fr.dataSize + 2];
+            }
+            ByteBuffer src = in.duplicate();
+            int i = fr.dataPos;
+            int dataLen = 0;
+            int limit = src.limit();
+            while (dataLen < fr.dataSize && i < limit) {
+                int subBlockSize = src.get(i) & 0xFF;
+                // The last sub-block can exceed the file end
+                int len = Math.min(Math.min(subBlockSize, fr.dataSize - dataLen), limit - i - 1);
+                if (len <= 0) {
+                    break;
+                }
+                src.position(i + 1);
+                src.get(data, dataLen, len);
+                dataLen += len;
+                i += subBlockSize + 1;
+            }
+            data[dataLen] = 0;
+            data[dataLen + 1] = 0;
+            return data;
+        }
+
+        private int[] deinterlace(int[] src, GifFrame fr) {
             int w = fr.w, h = fr.h, wh = fr.wh;
-            int[] dest = new int[src.length];
+            if (deinterlacedPx == null || deinterlacedPx.length < wh) {
+                deinterlacedPx = new int[wh];
+            }
+            int[] dest = deinterlacedPx;
             // Interlaced images are organized in 4 sets of pixel lines
             int set2Y = (h + 7) >>> 3; // Line no. = ceil(h/8.0)
             int set3Y = set2Y + ((h + 3) >>> 3); // ceil(h-4/8.0)
@@ -266,45 +327,61 @@ public final class GifDecoder {
             return dest; // All pixel lines have now been rearranged
         }
 
-        private void drawFrame(GifFrame fr) {
+        /**
+         * Draws the given frame on the working raster. If result is
+         * not null, the drawn canvas is copied into it before the
+         * disposal of the frame is applied.
+         */
+        private void drawFrame(GifFrame fr, int[] result) {
             // Determine the color table that will be active for this frame
             int[] activeColTbl = fr.hasLocColTbl ? fr.localColTbl : globalColTbl;
+            if (activeColTbl == null) { // Broken file, there are no colors
+                activeColTbl = new int[1 << (fr.firstCodeSize - 1)];
+            }
+            if (fr.disposalMethod == 3) {
+                // Keep the canvas before this frame to restore it later
+                if (prevPx == null) {
+                    prevPx = new int[wh];
+                }
+                arraycopy(canvas, 0, prevPx, 0, wh);
+            }
+
             // Get pixels from data stream
             int[] pixels = decode(fr, activeColTbl);
             if (fr.interlaceFlag) {
                 pixels = deinterlace(pixels, fr); // Rearrange pixel lines
             }
-            // Create image of type 2=ARGB for frame area
-            BufferedImage frame = new BufferedImage(fr.w, fr.h, 2);
-            arraycopy(pixels, 0, ((DataBufferInt) frame.getRaster().getDataBuffer()).getData(), 0, fr.wh);
-            // Draw frame area on top of working image
-            g.drawImage(frame, fr.x, fr.y, null);
-
-            // Visualize frame boundaries during testing
-            // if (DEBUG_MODE) {
-            // if (prev != null) {
-            // g.setColor(Color.RED); // Previous frame color
-            // g.drawRect(prev.x, prev.y, prev.w - 1, prev.h - 1);
-            // }
-            // g.setColor(Color.GREEN); // New frame color
-            // g.drawRect(fr.x, fr.y, fr.w - 1, fr.h - 1);
-            // }
-
-            // Keep one copy as "previous frame" in case we need to restore it
-            prevPx = new int[wh];
-            arraycopy(((DataBufferInt) img.getRaster().getDataBuffer()).getData(), 0, prevPx, 0, wh);
-
-            // Create another copy for the end user to not expose internal state
-            fr.img = new BufferedImage(w, h, 2); // 2 = ARGB
-            arraycopy(prevPx, 0, ((DataBufferInt) fr.img.getRaster().getDataBuffer()).getData(), 0, wh);
+
+            // Draw the frame area on top of the canvas, clipped to the canvas,
+            // where the transparent pixels leave the canvas unchanged
+            int minX = Math.max(fr.x, 0);
+            int maxX = Math.min(fr.x + fr.w, w);
+            int minY = Math.max(fr.y, 0);
+            int maxY = Math.min(fr.y + fr.h, h);
+            for (int y = minY; y < maxY; y++) {
+                int src = (y - fr.y) * fr.w + (minX - fr.x);
+                int dest = y * w + minX;
+                for (int x = minX; x < maxX; x++, src++, dest++) {
+                    int px = pixels[src];
+                    if (px != 0) {
+                        canvas[dest] = px;
+                    }
+                }
+            }
+
+            if (result != null) {
+                arraycopy(canvas, 0, result, 0, wh);
+            }
 
             // Handle disposal of current frame
             if (fr.disposalMethod == 2) {
                 // Restore to background color (clear frame area only)
-                g.clearRect(fr.x, fr.y, fr.w, fr.h);
-            } else if (fr.disposalMethod == 3 && prevPx != null) {
+                for (int y = minY; y < maxY; y++) {
+                    Arrays.fill(canvas, y * w + minX, y * w + maxX, 0);
+                }
+            } else if (fr.disposalMethod == 3) {
                 // Restore previous frame
-                arraycopy(prevPx, 0, ((DataBufferInt) img.getRaster().getDataBuffer()).getData(), 0, wh);
+                arraycopy(prevPx, 0, canvas, 0, wh);
             }
         }
 
@@ -344,28 +421,31 @@ public final class GifDecoder {
          *              run time is O(1) as only one frame is drawn per call. For
          *              random access calls such as [7, 12, ...] the run time is
          *              O(N+1) with N being the number of previous frames that
-         *              need to be drawn before N+1 can be drawn on top. Once a
-         *              frame has been drawn it is being cached and the run time
-         *              is more or less O(0) to retrieve it from the list.
-         * @return A BufferedImage for the specified frame.
+         *              need to be drawn before N+1 can be drawn on top. The
+         *              frames are not cached, a backwards jump starts again
+         *              from the first frame.
+         * @return A new BufferedImage for the specified frame.
          */
         public final BufferedImage getFrame(int index) {
-            if (img == null) { // Init
-                img = new BufferedImage(w, h, 2); // 2 = ARGB
-                g = img.createGraphics();
-                g.setBackground(new Color(0, true)); // Transparent color
+            if (index < 0 || index >= frames.size()) {
+                throw new IndexOutOfBoundsException("frame " + index + ", frame count = " + frames.size());
             }
-            GifFrame fr = frames.get(index);
-            if (fr.img == null) {
-                // Draw all frames until and including the requested frame
-                for (int i = 0; i <= index; i++) {
-                    fr = frames.get(i);
-                    if (fr.img == null) {
-                        drawFrame(fr);
-                    }
+            if (canvas == null || index < nextFrame) { // Start from an empty canvas
+                if (canvas == null) {
+                    canvas = new int[wh];
+                } else {
+                    Arrays.fill(canvas, 0);
                 }
+                nextFrame = 0;
+            }
+            // Draw all frames until the requested frame
+            for (; nextFrame < index; nextFrame++) {
+                drawFrame(frames.get(nextFrame), null);
             }
-            return fr.img;
+            BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            drawFrame(frames.get(index), ((DataBufferInt) img.getRaster().getDataBuffer()).getData());
+            nextFrame = index + 1;
+            return img;
         }
 
         /**
@@ -398,27 +478,66 @@ public final class GifDecoder {
      * @throws IOException If the image violates the GIF specification or is truncated.
      */
     public static GifImage read(byte[] in) throws IOException {
+        return read(ByteBuffer.wrap(in));
+    }
+
+    /**
+     * Reads the whole GIF file into memory. The file isn't
+     * used anymore after this method returns.
+     *
+     * @param file The GIF file
+     * @return A GifImage object exposing the properties of the GIF image.
+     * @throws IOException If an I/O error occurs, the image violates the GIF
+     *                     specification or the GIF is truncated.
+     */
+    public static GifImage read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file is too big: " + file);
+            }
+            ByteBuffer in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) {
+                    throw new IOException("Unexpected end of file.");
+                }
+            }
+            in.flip();
+            return read(in);
+        }
+    }
+
+    /**
+     * Indexes the frames of the given data in one pass. The buffer must
+     * not be modified as long as the frames of the returned image are used.
+     */
+    private static GifImage read(ByteBuffer in) throws IOException {
 //        final GifDecoder decoder = new GifDecoder();
         GifImage img = new GifImage();
+        img.in = in;
+        int length = in.limit();
         GifFrame frame = null; // Currently open frame
         int pos = readHeader(in, img); // Read header, get next byte position
+        checkAvailable(in, pos, 7);
         pos = readLogicalScreenDescriptor(img, in, pos);
         if (img.hasGlobColTbl) {
             img.globalColTbl = new int[img.sizeOfGlobColTbl];
+            checkAvailable(in, pos, 3 * img.sizeOfGlobColTbl);
             pos = readColTbl(in, img.globalColTbl, pos);
         }
-        while (pos < in.length) {
-            int block = in[pos] & 0xFF;
+        while (pos < length) {
+            int block = in.get(pos) & 0xFF;
             switch (block) {
                 case 0x21: // Extension introducer
-                    if (pos + 1 >= in.length) {
+                    if (pos + 1 >= length) {
                         throw new IOException("Unexpected end of file.");
                     }
-                    switch (in[pos + 1] & 0xFF) {
+                    switch (in.get(pos + 1) & 0xFF) {
                         case 0xFE: // Comment extension
                             pos = readTextExtension(in, pos);
                             break;
                         case 0xFF: // Application extension
+                            checkAvailable(in, pos, 15);
                             pos = readAppExt(img, in, pos);
                             break;
                         case 0x01: // Plain text extension
@@ -430,6 +549,7 @@ public final class GifDecoder {
                                 frame = new GifFrame();
                                 img.frames.add(frame);
                             }
+                            checkAvailable(in, pos, 8);
                             pos = readGraphicControlExt(frame, in, pos);
                             break;
                         default:
@@ -441,9 +561,11 @@ public final class GifDecoder {
                         frame = new GifFrame();
                         img.frames.add(frame);
                     }
+                    checkAvailable(in, pos, 11);
                     pos = readImgDescr(frame, in, pos);
                     if (frame.hasLocColTbl) {
                         frame.localColTbl = new int[frame.sizeOfLocColTbl];
+                        checkAvailable(in, pos, 3 * frame.sizeOfLocColTbl);
                         pos = readColTbl(in, frame.localColTbl, pos);
                     }
                     pos = readImgData(frame, in, pos);
@@ -456,30 +578,44 @@ public final class GifDecoder {
                     // and wait for a valid block. Experience: It'll get worse. b)
                     // Throw exception. c) Return gracefully if we are almost done
                     // processing. The frames we have so far should be error-free.
-                    double progress = 1.0 * pos / in.length;
+                    double progress = 1.0 * pos / length;
                     if (progress < 0.9) {
                         throw new IOException("Unknown block at: " + pos);
                     }
-                    pos = in.length; // Exit loop
+                    pos = length; // Exit loop
             }
         }
+        if (frame != null && frame.dataSize == 0 && frame.w == 0) {
+            // A graphic control extension without image at the end
+            img.frames.remove(frame);
+        }
         return img;
     }
 
     /**
      * @param is Image data as input stream. This method will read from the
-     *           input stream's current position. It will not reset the
-     *           position before reading and won't reset or close the stream
-     *           afterwards. Call these methods before and after calling this
-     *           method as needed.
+     *           input stream's current position until the end of the stream.
+     *           It will not reset the position before reading and won't reset
+     *           or close the stream afterwards. Call these methods before and
+     *           after calling this method as needed.
      * @return A GifImage object exposing the properties of the GIF image.
      * @throws IOException If an I/O error occurs, the image violates the GIF
      *                     specification or the GIF is truncated.
      */
     public static GifImage read(InputStream is) throws IOException {
-        byte[] data = new byte[is.available()];
-        is.read(data, 0, data.length);
-        return read(data);
+        return read(is.readAllBytes());
+    }
+
+    private static void checkAvailable(ByteBuffer in, int pos, int numBytes) throws IOException {
+        if (pos + numBytes > in.limit()) {
+            throw new IOException("Image is truncated.");
+        }
+    }
+
+    private static String readString(ByteBuffer in, int pos, int length) {
+        byte[] bytes = new byte[length];
+        in.duplicate().position(pos).get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
     }
 
     /**
@@ -488,19 +624,19 @@ public final class GifDecoder {
      * @param i   Index of the first byte of the application extension
      * @return Index of the first byte after this extension
      */
-    static int readAppExt(GifImage img, byte[] in, int i) {
-        img.appId = new String(in, i + 3, 8); // should be "NETSCAPE"
-        img.appAuthCode = new String(in, i + 11, 3); // should be "2.0"
+    static int readAppExt(GifImage img, ByteBuffer in, int i) {
+        img.appId = readString(in, i + 3, 8); // should be "NETSCAPE"
+        img.appAuthCode = readString(in, i + 11, 3); // should be "2.0"
         i += 14; // Go to sub-block size, it's value should be 3
-        int subBlockSize = in[i] & 0xFF;
+        int subBlockSize = in.get(i) & 0xFF;
         // The only app extension widely used is NETSCAPE, it's got 3 data bytes
-        if (subBlockSize == 3) {
+        if (subBlockSize == 3 && i + 4 < in.limit()) {
             // in[i+1] should have value 01, in[i+5] should be block terminator
-            img.repetitions = (in[i + 2] & 0xFF) | (in[i + 3] & (0xFF << 8)); // Short
+            img.repetitions = (in.get(i + 2) & 0xFF) | (in.get(i + 3) & (0xFF << 8)); // Short
             return i + 5;
         } // Skip unknown application extensions
-        while ((in[i] & 0xFF) != 0) { // While sub-block size != 0
-            i += (in[i] & 0xFF) + 1; // Skip to next sub-block
+        while (i < in.limit() && (in.get(i) & 0xFF) != 0) { // While sub-block size != 0
+            i += (in.get(i) & 0xFF) + 1; // Skip to next sub-block
         }
         return i + 1;
     }
@@ -511,13 +647,13 @@ public final class GifDecoder {
      * @param i      Index of the color table's first byte
      * @return Index of the first byte after the color table
      */
-    static int readColTbl(byte[] in, int[] colors, int i) {
+    static int readColTbl(ByteBuffer in, int[] colors, int i) {
         int numColors = colors.length;
         for (int c = 0; c < numColors; c++) {
             final int a = 0xFF; // Alpha 255 (opaque)
-            int r = in[i++] & 0xFF; // 1st byte is red
-            int g = in[i++] & 0xFF; // 2nd byte is green
-            int b = in[i++] & 0xFF; // 3rd byte is blue
+            int r = in.get(i++) & 0xFF; // 1st byte is red
+            int g = in.get(i++) & 0xFF; // 2nd byte is green
+            int b = in.get(i++) & 0xFF; // 3rd byte is blue
             colors[c] = ((a << 8 | r) << 8 | g) << 8 | b;
         }
         return i;
@@ -529,11 +665,11 @@ public final class GifDecoder {
      * @param i   Index of the extension introducer
      * @return Index of the first byte after this block
      */
-    static int readGraphicControlExt(GifFrame fr, byte[] in, int i) {
-        fr.disposalMethod = (in[i + 3] & 0b00011100) >>> 2; // Bits 4-2
-        fr.transpColFlag = (in[i + 3] & 1) == 1; // Bit 0
-        fr.delay = (in[i + 4] & 0xFF) | ((in[i + 5] & 0xFF) << 8); // 16 bit LSB
-        fr.transpColIndex = in[i + 6] & 0xFF; // Byte 6
+    static int readGraphicControlExt(GifFrame fr, ByteBuffer in, int i) {
+        fr.disposalMethod = (in.get(i + 3) & 0b00011100) >>> 2; // Bits 4-2
+        fr.transpColFlag = (in.get(i + 3) & 1) == 1; // Bit 0
+        fr.delay = (in.get(i + 4) & 0xFF) | ((in.get(i + 5) & 0xFF) << 8); // 16 bit LSB
+        fr.transpColIndex = in.get(i + 6) & 0xFF; // Byte 6
         return i + 8; // Skipped byte 7 (blockTerminator), as it's always 0x00
     }
 
@@ -543,11 +679,11 @@ public final class GifDecoder {
      * @return Index of the first byte after this block
      * @throws IOException If the GIF header/trailer is missing, incomplete or unknown
      */
-    static int readHeader(byte[] in, GifImage img) throws IOException {
-        if (in.length < 6) { // Check first 6 bytes
+    static int readHeader(ByteBuffer in, GifImage img) throws IOException {
+        if (in.limit() < 6) { // Check first 6 bytes
             throw new IOException("Image is truncated.");
         }
-        img.header = new String(in, 0, 6);
+        img.header = readString(in, 0, 6);
         if (!img.header.equals("GIF87a") && !img.header.equals("GIF89a")) {
             throw new IOException("Invalid GIF header.");
         }
@@ -555,78 +691,55 @@ public final class GifDecoder {
     }
 
     /**
+     * Only indexes the image data, which is decoded when the frame is needed.
+     *
      * @param fr The GIF frame to whom this image descriptor belongs
      * @param in Raw data
      * @param i  Index of the first byte of this block, i.e. the minCodeSize
-     * @return
+     * @return Index of the first byte after this block
+     * @throws IOException If the file ends before the image data
      */
-    static int readImgData(GifFrame fr, byte[] in, int i) {
-        int fileSize = in.length;
-        int minCodeSize = in[i++] & 0xFF; // Read code size, go to block
+    static int readImgData(GifFrame fr, ByteBuffer in, int i) throws IOException {
+        checkAvailable(in, i, 2);
+        int fileSize = in.limit();
+        int minCodeSize = in.get(i++) & 0xFF; // Read code size, go to block
         int clearCode = 1 << minCodeSize; // CLEAR = 2^minCodeSize
         fr.firstCodeSize = minCodeSize + 1; // Add 1 bit for CLEAR and EOI
         fr.clearCode = clearCode;
         fr.endOfInfoCode = clearCode + 1;
-        int imgDataSize = readImgDataSize(in, i);
-        byte[] imgData = new byte[imgDataSize + 2];
-        int imgDataPos = 0;
-        int subBlockSize = in[i] & 0xFF;
+        fr.dataPos = i;
+        int imgDataSize = 0;
+        int subBlockSize = in.get(i) & 0xFF;
         while (subBlockSize > 0) { // While block has data
-            try { // Next line may throw exception if sub-block size is fake
-                int nextSubBlockSizePos = i + subBlockSize + 1;
-                int nextSubBlockSize = in[nextSubBlockSizePos] & 0xFF;
-                arraycopy(in, i + 1, imgData, imgDataPos, subBlockSize);
-                imgDataPos += subBlockSize; // Move output data position
-                i = nextSubBlockSizePos; // Move to next sub-block size
-                subBlockSize = nextSubBlockSize;
-            } catch (Exception e) {
+            int nextSubBlockSizePos = i + subBlockSize + 1;
+            if (nextSubBlockSizePos >= fileSize) {
                 // Sub-block exceeds file end, only use remaining bytes
-                subBlockSize = fileSize - i - 1; // Remaining bytes
-                arraycopy(in, i + 1, imgData, imgDataPos, subBlockSize);
-                imgDataPos += subBlockSize; // Move output data position
-                i += subBlockSize + 1; // Move to next sub-block size
+                imgDataSize += fileSize - i - 1;
+                i = fileSize - 1;
                 break;
             }
+            imgDataSize += subBlockSize; // Move output data position
+            i = nextSubBlockSizePos; // Move to next sub-block size
+            subBlockSize = in.get(i) & 0xFF;
         }
-        fr.data = imgData; // Holds LZW encoded data
+        fr.dataSize = imgDataSize;
         i++; // Skip last sub-block size, should be 0
         return i;
     }
 
-    static int readImgDataSize(byte[] in, int i) {
-        int fileSize = in.length;
-        int imgDataPos = 0;
-        int subBlockSize = in[i] & 0xFF;
-        while (subBlockSize > 0) { // While block has data
-            try { // Next line may throw exception if sub-block size is fake
-                int nextSubBlockSizePos = i + subBlockSize + 1;
-                int nextSubBlockSize = in[nextSubBlockSizePos] & 0xFF;
-                imgDataPos += subBlockSize; // Move output data position
-                i = nextSubBlockSizePos; // Move to next sub-block size
-                subBlockSize = nextSubBlockSize;
-            } catch (Exception e) {
-                // Sub-block exceeds file end, only use remaining bytes
-                subBlockSize = fileSize - i - 1; // Remaining bytes
-                imgDataPos += subBlockSize; // Move output data position
-                break;
-            }
-        }
-        return imgDataPos;
-    }
-
     /**
      * @param fr The GIF frame to whom this image descriptor belongs
      * @param in Raw data
      * @param i  Index of the image separator, i.e. the first block byte
      * @return Index of the first byte after this block
      */
-    static int readImgDescr(GifFrame fr, byte[] in, int i) {
-        fr.x = (in[++i] & 0xFF) | ((in[++i] & 0xFF) << 8); // Byte 1-2: left
-        fr.y = (in[++i] & 0xFF) | ((in[++i] & 0xFF) << 8); // Byte 3-4: top
-        fr.w = (in[++i] & 0xFF) | ((in[++i] & 0xFF) << 8); // Byte 5-6: width
-        fr.h = (in[++i] & 0xFF) | ((in[++i] & 0xFF) << 8); // Byte 7-8: height
+    static int readImgDescr(GifFrame fr, ByteBuffer in, int i) {
+        fr.x = (in.get(++i) & 0xFF) | ((in.get(++i) & 0xFF) << 8); // Byte 1-2: left
+        fr.y = (in.get(++i) & 0xFF) | ((in.get(++i) & 0xFF) << 8); // Byte 3-4: top
+        fr.w = (in.get(++i) & 0xFF) | ((in.get(++i) & 0xFF) << 8); // Byte 5-6: width
+        fr.h = (in.get(++i) & 0xFF) | ((in.get(++i) & 0xFF) << 8); // Byte 7-8: height
         fr.wh = fr.w * fr.h;
-        byte b = in[++i]; // Byte 9 is a packed byte
+        byte b = in.get(++i); // Byte 9 is a packed byte
         fr.hasLocColTbl = (b & 0b10000000) >>> 7 == 1; // Bit 7
         fr.interlaceFlag = (b & 0b01000000) >>> 6 == 1; // Bit 6
         fr.sortFlag = (b & 0b00100000) >>> 5 == 1; // Bit 5
@@ -640,19 +753,19 @@ public final class GifDecoder {
      * @param i   Start index of this block.
      * @return Index of the first byte after this block.
      */
-    static int readLogicalScreenDescriptor(GifImage img, byte[] in, int i) {
-        img.w = (in[i] & 0xFF) | ((in[i + 1] & 0xFF) << 8); // 16 bit, LSB 1st
-        img.h = (in[i + 2] & 0xFF) | ((in[i + 3] & 0xFF) << 8); // 16 bit
+    static int readLogicalScreenDescriptor(GifImage img, ByteBuffer in, int i) {
+        img.w = (in.get(i) & 0xFF) | ((in.get(i + 1) & 0xFF) << 8); // 16 bit, LSB 1st
+        img.h = (in.get(i + 2) & 0xFF) | ((in.get(i + 3) & 0xFF) << 8); // 16 bit
         img.wh = img.w * img.h;
-        byte b = in[i + 4]; // Byte 4 is a packed byte
+        byte b = in.get(i + 4); // Byte 4 is a packed byte
         img.hasGlobColTbl = (b & 0b10000000) >>> 7 == 1; // Bit 7
         int colResPower = ((b & 0b01110000) >>> 4) + 1; // Bits 6-4
         img.colorResolution = 1 << colResPower; // 2^(N+1), As per the spec
         img.sortFlag = (b & 0b00001000) >>> 3 == 1; // Bit 3
         int globColTblSizePower = (b & 7) + 1; // Bits 0-2
         img.sizeOfGlobColTbl = 1 << globColTblSizePower; // 2^(N+1), see spec
-        img.bgColIndex = in[i + 5] & 0xFF; // 1 Byte
-        img.pxAspectRatio = in[i + 6] & 0xFF; // 1 Byte
+        img.bgColIndex = in.get(i + 5) & 0xFF; // 1 Byte
+        img.pxAspectRatio = in.get(i + 6) & 0xFF; // 1 Byte
         return i + 7;
     }
 
@@ -661,12 +774,16 @@ public final class GifDecoder {
      * @param pos Index of the extension introducer
      * @return Index of the first byte after this block
      */
-    static int readTextExtension(byte[] in, int pos) {
+    static int readTextExtension(ByteBuffer in, int pos) {
         int i = pos + 2; // Skip extension introducer and label
-        int subBlockSize = in[i++] & 0xFF;
-        while (subBlockSize != 0 && i < in.length) {
+        int length = in.limit();
+        if (i >= length) {
+            return length;
+        }
+        int subBlockSize = in.get(i++) & 0xFF;
+        while (subBlockSize != 0 && i < length) {
             i += subBlockSize;
-            subBlockSize = in[i++] & 0xFF;
+            subBlockSize = i < length ? in.get(i++) & 0xFF : 0;
         }
         return i;
     }
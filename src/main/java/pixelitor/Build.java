@@ -24,6 +24,7 @@ import pixelitor.utils.Lazy;
 import pixelitor.utils.Utils;
 
 import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 
 /**
  * The type of the "build" - in development mode there are additional
@@ -82,6 +83,14 @@ public enum Build {
         return unitTesting;
     }
 
+    /**
+     * Returns true if there is no GUI, as in the batch processing
+     * mode started from the command line
+     */
+    public static boolean isHeadless() {
+        return GraphicsEnvironment.isHeadless();
+    }
+
     public static void setUnitTestingMode() {
         unitTesting = true;
         History.setUndoLevels(15);
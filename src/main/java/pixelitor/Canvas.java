@@ -69,10 +69,13 @@ public class Canvas implements Serializable {
         width = newImWidth;
         height = newImHeight;
 
-        // also update the component space values
-        recalcCoSize(view);
+        // compositions processed in headless mode have no view
+        if (view != null) {
+            // also update the component space values
+            recalcCoSize(view);
 
-        activeCanvasImSizeChanged(this);
+            activeCanvasImSizeChanged(this);
+        }
     }
 
     /**
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor;
+
+import pixelitor.utils.MipmapPyramid;
+import pixelitor.utils.TileHistograms;
+import pixelitor.utils.TileValidity;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * The cached composite image of a {@link Composition}.
+ *
+ * The canvas is divided into square tiles with separately tracked
+ * validity, so that a small change (such as a brush dab) invalidates
+ * only the tiles it touches, and only those are recomposited the
+ * next time the composite image is requested.
+ *
+ * The downsampled versions used for painting at small zoom levels
+ * are kept in a {@link MipmapPyramid}, which is invalidated
+ * by the same changes as the composite image, and so are the
+ * partial histograms of the tiles in {@link TileHistograms}.
+ */
+class CompositeCache {
+    static final int TILE_SIZE = 256;
+
+    private final Composition comp;
+
+    private BufferedImage image;
+    private TileValidity validity;
+
+    // true if the image was handed out as a stable image,
+    // and therefore it must not be updated in place anymore
+    private boolean shared;
+
+    private final MipmapPyramid mipmaps = new MipmapPyramid();
+    private TileHistograms histograms;
+
+    CompositeCache(Composition comp) {
+        this.comp = comp;
+    }
+
+    /**
+     * Returns the up-to-date composite image. If share is true, then
+     * the returned image will never be modified by this cache.
+     * Otherwise it can be updated in place after partial changes,
+     * and therefore it should not be retained by the caller.
+     */
+    synchronized BufferedImage getImage(boolean share) {
+        Canvas canvas = comp.getCanvas();
+        int width = canvas.getImWidth();
+        int height = canvas.getImHeight();
+
+        if (image == null || !validity.hasSize(width, height)) {
+            recalculate(width, height);
+        } else if (validity.hasInvalidTiles()) {
+            if (shared || !comp.canBeCompositedInRegions()) {
+                recalculate(width, height);
+            } else {
+                // the consecutive invalid tiles in a row are recomposited together
+                validity.validate(canvas.getImBounds(), this::compositeRegion);
+            }
+        }
+
+        if (share) {
+            shared = true;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the given mipmap level of the composite image,
+     * which can be updated in place later.
+     */
+    synchronized BufferedImage getMipmap(int level) {
+        return mipmaps.getLevel(getImage(false), level);
+    }
+
+    /**
+     * Returns the partial histograms of the tiles, which can be
+     * calculated outside the EDT from the image returned by
+     * {@link #getImage(boolean)}, because all its later changes
+     * are invalidated in this cache first.
+     */
+    synchronized TileHistograms getHistograms() {
+        BufferedImage img = getImage(false);
+        if (histograms == null || !histograms.hasSize(img.getWidth(), img.getHeight())) {
+            histograms = new TileHistograms(img.getWidth(), img.getHeight());
+        }
+        return histograms;
+    }
+
+    /**
+     * Sets an already calculated composite image
+     * instead of compositing the layers.
+     */
+    synchronized void init(BufferedImage compositeImage) {
+        invalidateAll();
+        image = compositeImage;
+        validity = new TileValidity(image.getWidth(), image.getHeight(), TILE_SIZE, true);
+    }
+
+    /**
+     * Invalidates the whole cache.
+     */
+    synchronized void invalidateAll() {
+        if (image != null && !shared) {
+            image.flush();
+        }
+        image = null;
+        validity = null;
+        shared = false;
+        mipmaps.invalidateAll();
+        if (histograms != null) {
+            histograms.invalidateAll();
+        }
+    }
+
+    /**
+     * Invalidates only the tiles intersecting the given
+     * image-space (canvas-relative) area.
+     */
+    synchronized void invalidate(Rectangle area) {
+        if (image == null) {
+            return; // everything is invalid anyway
+        }
+        validity.invalidate(area);
+        mipmaps.invalidate(area);
+        if (histograms != null) {
+            histograms.invalidate(area);
+        }
+    }
+
+    private void recalculate(int width, int height) {
+        invalidateAll();
+        image = comp.calculateCompositeImage();
+        validity = new TileValidity(width, height, TILE_SIZE, true);
+    }
+
+    private void compositeRegion(Rectangle region) {
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fill(region);
+        g.dispose();
+
+        comp.compositeRegion(image, region);
+    }
+}
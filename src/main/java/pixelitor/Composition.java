@@ -38,6 +38,7 @@ import pixelitor.history.SelectionShapeChangeEdit;
 import pixelitor.io.IOThread;
 import pixelitor.io.OutputFormat;
 import pixelitor.io.SaveSettings;
+import pixelitor.layers.AdjustmentLayer;
 import pixelitor.layers.ContentLayer;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.ImageLayer;
@@ -58,6 +59,9 @@ import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.MipmapPyramid;
+import pixelitor.utils.ProgressTracker;
+import pixelitor.utils.TileHistograms;
 import pixelitor.utils.VisibleForTesting;
 
 import javax.swing.*;
@@ -78,6 +82,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -85,6 +90,7 @@ import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static pixelitor.Composition.ImageChangeActions.FULL;
+import static pixelitor.Composition.ImageChangeActions.INVALIDATE_CACHE;
 import static pixelitor.Composition.LayerAdder.Position.ABOVE_ACTIVE;
 import static pixelitor.Composition.LayerAdder.Position.BELLOW_ACTIVE;
 import static pixelitor.Composition.LayerAdder.Position.TOP;
@@ -98,6 +104,10 @@ public class Composition implements Serializable {
     // serialization is used for saving in the pxc format
     private static final long serialVersionUID = 1L;
 
+    // the minimum canvas size and band height for the parallel compositing
+    private static final int MIN_PARALLEL_COMPOSITE_PIXELS = 512 * 512;
+    private static final int MIN_PARALLEL_BAND_HEIGHT = 32;
+
     // a counter for the names of new layers
     private int newLayerCount = 1;
 
@@ -115,7 +125,7 @@ public class Composition implements Serializable {
     private transient File file;
     private transient boolean dirty = false;
 
-    private transient BufferedImage compositeImage;
+    private transient CompositeCache compositeCache;
 
     private transient View view;
 
@@ -132,6 +142,7 @@ public class Composition implements Serializable {
      */
     private Composition(Canvas canvas) {
         this.canvas = canvas;
+        compositeCache = new CompositeCache(this);
     }
 
     /**
@@ -218,7 +229,7 @@ public class Composition implements Serializable {
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         // init transient variables
-        compositeImage = null; // will be set when needed
+        compositeCache = new CompositeCache(this);
         file = null; // will be set later
         dirty = false;
         view = null; // will be set later
@@ -401,6 +412,8 @@ public class Composition implements Serializable {
         }
         g.dispose();
 
+        // the pixels were changed in place, even if updateGUI is false
+        layerImageChanged(bellowLayer, INVALIDATE_CACHE);
         bellowLayer.updateIconImage();
 
         deleteLayer(layer, false, updateGUI);
@@ -448,6 +461,8 @@ public class Composition implements Serializable {
             }
 
             imageChanged();
+        } else {
+            compositingChanged(INVALIDATE_CACHE, false);
         }
     }
 
@@ -764,7 +779,7 @@ public class Composition implements Serializable {
         layerList.add(newIndex, layer);
 
         view.changeLayerButtonOrder(oldIndex, newIndex);
-        imageChanged();
+        compositingChanged();
         Layers.layerOrderChanged(this);
 
         if (addToHistory) {
@@ -815,12 +830,29 @@ public class Composition implements Serializable {
 
         BufferedImage imageSoFar = new BufferedImage(
                 canvas.getImWidth(), canvas.getImHeight(), TYPE_INT_ARGB_PRE);
+
+        if (canBeCompositedInParallel()) {
+            compositeInParallelBands(imageSoFar);
+            return imageSoFar;
+        }
+
         Graphics2D g = imageSoFar.createGraphics();
 
         boolean firstVisibleLayer = true;
-        for (Layer layer : layerList) {
+        for (int i = 0; i < layerList.size(); i++) {
+            Layer layer = layerList.get(i);
             if (layer.isVisible()) {
-                BufferedImage result = layer.applyLayer(g, imageSoFar, firstVisibleLayer);
+                BufferedImage result;
+                List<AdjustmentLayer> fusedLayers = firstVisibleLayer
+                        ? List.of() : findFusableAdjustments(i);
+                if (fusedLayers.size() > 1) {
+                    // several consecutive point operations in one pass
+                    AdjustmentLayer last = fusedLayers.get(fusedLayers.size() - 1);
+                    result = last.applyFused(fusedLayers, imageSoFar);
+                    i = layerList.indexOf(last);
+                } else {
+                    result = layer.applyLayer(g, imageSoFar, firstVisibleLayer, true);
+                }
                 if (result != null) { // adjustment layer or watermarking text layer
                     imageSoFar = result;
                     if (g != null) {
@@ -837,6 +869,120 @@ public class Composition implements Serializable {
         return imageSoFar;
     }
 
+    /**
+     * Returns the consecutive visible adjustment layers starting at the
+     * given index that can be fused into a single pass. Hidden layers
+     * between them are skipped, because they don't affect the result.
+     */
+    private List<AdjustmentLayer> findFusableAdjustments(int startIndex) {
+        List<AdjustmentLayer> fusable = new ArrayList<>();
+        for (int i = startIndex; i < layerList.size(); i++) {
+            Layer layer = layerList.get(i);
+            if (!layer.isVisible()) {
+                continue;
+            }
+            if (!(layer instanceof AdjustmentLayer)
+                    || !((AdjustmentLayer) layer).canBeFused()) {
+                break;
+            }
+            fusable.add((AdjustmentLayer) layer);
+        }
+        return fusable;
+    }
+
+    /**
+     * Returns true if the composite can be calculated independently
+     * in different regions of the canvas with {@link #compositeRegion}.
+     * Adjustment layers and watermarked text layers transform the
+     * whole image bellow them, and they might be non-local, so they can't.
+     */
+    boolean canBeCompositedInRegions() {
+        if (Tools.isShapesDrawing()) {
+            // the dragged shapes are painted with the selection clipping
+            return false;
+        }
+        for (Layer layer : layerList) {
+            if (layer.isVisible() && layer.isAdjustment()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the canvas is big enough for the parallel compositing,
+     * and all the visible layers are image layers, which can be
+     * safely painted from multiple threads.
+     */
+    private boolean canBeCompositedInParallel() {
+        if (ThreadPool.getNumCores() < 2 || ThreadPool.isPoolThread()) {
+            // waiting in a pool thread for other pool tasks could deadlock
+            return false;
+        }
+        if ((long) canvas.getImWidth() * canvas.getImHeight() < MIN_PARALLEL_COMPOSITE_PIXELS) {
+            return false;
+        }
+        for (Layer layer : layerList) {
+            if (layer.isVisible() && !(layer instanceof ImageLayer)) {
+                return false;
+            }
+        }
+        return canBeCompositedInRegions();
+    }
+
+    private void compositeInParallelBands(BufferedImage dest) {
+        int width = dest.getWidth();
+        int height = dest.getHeight();
+
+        int numBands = Math.max(1, Math.min(
+                2 * ThreadPool.getNumCores(), height / MIN_PARALLEL_BAND_HEIGHT));
+        int bandHeight = (height + numBands - 1) / numBands;
+
+        List<Future<?>> futures = new ArrayList<>(numBands);
+        for (int y = 0; y < height; y += bandHeight) {
+            var band = new Rectangle(0, y, width, Math.min(bandHeight, height - y));
+            futures.add(ThreadPool.submit(() -> compositeRegion(dest, band)));
+        }
+        ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+    }
+
+    /**
+     * Composites the layers into the given region of the given
+     * canvas-sized image, which must be transparent in that region.
+     * It gives the same pixels as {@link #calculateCompositeImage()},
+     * because the layers are painted with the same composites, only
+     * clipped to the region, but it can be called only if
+     * {@link #canBeCompositedInRegions()} returns true.
+     */
+    void compositeRegion(BufferedImage dest, Rectangle region) {
+        Graphics2D g = createRegionGraphics(dest, region);
+
+        boolean firstVisibleLayer = true;
+        for (Layer layer : layerList) {
+            if (layer.isVisible()) {
+                BufferedImage result = layer.applyLayer(g, dest, firstVisibleLayer);
+                if (result != null) { // a text layer without settings
+                    assert result == dest;
+                    g.dispose();
+                    g = createRegionGraphics(dest, region);
+                }
+                firstVisibleLayer = false;
+            }
+        }
+        g.dispose();
+    }
+
+    private static Graphics2D createRegionGraphics(BufferedImage dest, Rectangle region) {
+        // painting on a subimage, so that concurrent calls for
+        // different regions don't share the surface of the image
+        BufferedImage regionImage = dest.getSubimage(
+                region.x, region.y, region.width, region.height);
+        Graphics2D g = regionImage.createGraphics();
+        g.translate(-region.x, -region.y);
+        g.setClip(region);
+        return g;
+    }
+
     public String generateNewLayerName() {
         String retVal = "layer " + newLayerCount;
         newLayerCount++;
@@ -844,7 +990,13 @@ public class Composition implements Serializable {
     }
 
     public void repaintRegion(PPoint start, PPoint end, double thickness) {
-        invalidateCompositeCache();
+        double minX = Math.min(start.getImX(), end.getImX()) - thickness;
+        double minY = Math.min(start.getImY(), end.getImY()) - thickness;
+        double maxX = Math.max(start.getImX(), end.getImX()) + thickness;
+        double maxY = Math.max(start.getImY(), end.getImY()) + thickness;
+        invalidateCompositeCache(new Rectangle2D.Double(
+                minX, minY, maxX - minX, maxY - minY));
+
         if (view != null) { // during reload image it can be null
             view.repaintRegion(start, end, thickness);
             view.repaintNavigator(false);
@@ -852,7 +1004,8 @@ public class Composition implements Serializable {
     }
 
     public void repaintRegion(PRectangle area) {
-        invalidateCompositeCache();
+        invalidateCompositeCache(area.getIm());
+
         if (view != null) { // during reload image it can be null
             view.repaintRegion(area);
             view.repaintNavigator(false);
@@ -1138,12 +1291,50 @@ public class Composition implements Serializable {
 
     /**
      * Returns the composite image, which has the same dimensions as the canvas.
+     * The returned image is not modified later, so it can be retained.
      */
     public BufferedImage getCompositeImage() {
-        if(compositeImage == null) {
-            compositeImage = calculateCompositeImage();
-        }
-        return compositeImage;
+        return compositeCache.getImage(true);
+    }
+
+    /**
+     * Sets the composite image stored in a pxc file, so that
+     * the layers don't have to be loaded to show the image.
+     */
+    public void initCompositeImage(BufferedImage compositeImage) {
+        compositeCache.init(compositeImage);
+    }
+
+    /**
+     * Like {@link #getCompositeImage()}, but the returned image can be
+     * updated in place after a partial change, so it should be used only
+     * immediately (for painting or reading pixels), and not retained.
+     */
+    public BufferedImage getCachedCompositeImage() {
+        return compositeCache.getImage(false);
+    }
+
+    /**
+     * Returns a downsampled version of the cached composite image for painting
+     * at small zoom levels, where each mipmap level is half the size of the
+     * previous one. The level should be chosen by {@link MipmapPyramid#levelFor},
+     * and the returned image should not be retained, just like the image
+     * returned by {@link #getCachedCompositeImage()}.
+     */
+    public BufferedImage getCachedCompositeImage(int mipmapLevel) {
+        return compositeCache.getMipmap(mipmapLevel);
+    }
+
+    /**
+     * Calculates the red, green and blue histograms of the composite image
+     * on the {@link ThreadPool}. Only the tiles that were changed since
+     * the last calculation are scanned again.
+     */
+    public CompletableFuture<int[][]> calcHistogramsAsync() {
+        BufferedImage image = compositeCache.getImage(false);
+        TileHistograms histograms = compositeCache.getHistograms();
+        return CompletableFuture.supplyAsync(() -> histograms.calculate(image),
+                ThreadPool.getExecutor());
     }
 
     public void imageChanged() {
@@ -1159,8 +1350,52 @@ public class Composition implements Serializable {
      * and additional actions might be necessary
      */
     public void imageChanged(ImageChangeActions actions, boolean sizeChanged) {
+        // the pixels of any layer could have been changed in place
+        if (layerList != null) { // null while deserializing
+            for (Layer layer : layerList) {
+                layer.invalidateCachedImages();
+            }
+        }
+        compositingChanged(actions, sizeChanged);
+    }
+
+    /**
+     * Only the way the layers are combined has been changed (visibility,
+     * opacity, blending mode, order), so the cached images of
+     * the individual layers remain valid.
+     */
+    public void compositingChanged() {
+        compositingChanged(FULL, false);
+    }
+
+    /**
+     * Only the pixels of the given layer have been changed.
+     */
+    public void layerImageChanged(Layer layer) {
+        layerImageChanged(layer, FULL);
+    }
+
+    public void layerImageChanged(Layer layer, ImageChangeActions actions) {
+        layer.invalidateCachedImages();
+        compositingChanged(actions, false);
+    }
+
+    /**
+     * Only the pixels of the active layer (or its mask) within the given
+     * canvas-relative area have been changed, for example by a brush
+     * stroke, so only the cached tiles touching the area are invalidated.
+     */
+    public void regionChanged(Rectangle area, ImageChangeActions actions) {
+        invalidateCompositeCache(area);
+        runChangeActions(actions, false);
+    }
+
+    private void compositingChanged(ImageChangeActions actions, boolean sizeChanged) {
         invalidateCompositeCache();
+        runChangeActions(actions, sizeChanged);
+    }
 
+    private void runChangeActions(ImageChangeActions actions, boolean sizeChanged) {
         if (actions.repaintNeeded()) {
             if (view != null) {
                 view.repaint();
@@ -1174,10 +1409,21 @@ public class Composition implements Serializable {
     }
 
     private void invalidateCompositeCache() {
-        if(compositeImage != null) {
-            compositeImage.flush();
-        }
-        compositeImage = null;
+        compositeCache.invalidateAll();
+    }
+
+    /**
+     * Invalidates only the cached composite tiles touched by the given
+     * image-space area. Some extra space is added for the antialiasing.
+     */
+    private void invalidateCompositeCache(Rectangle2D imArea) {
+        Rectangle area = imArea.getBounds();
+        area.grow(1, 1);
+        compositeCache.invalidate(area);
+
+        // the region repaints come from the brushes,
+        // which paint only on the active layer or its mask
+        activeLayer.invalidateCachedImages(area);
     }
 
     public boolean isActive() {
@@ -1281,19 +1527,6 @@ public class Composition implements Serializable {
         return true;
     }
 
-    public int calcNumImages() {
-        int count = 0;
-        for (Layer layer : layerList) {
-            if (layer instanceof ImageLayer) {
-                count++;
-            }
-            if (layer.hasMask()) {
-                count++;
-            }
-        }
-        return count;
-    }
-
     public CompletableFuture<Void> saveAsync(SaveSettings saveSettings,
                                              boolean addToRecentMenus) {
         OutputFormat format = saveSettings.getOutputFormat();
@@ -1536,6 +1769,8 @@ public class Composition implements Serializable {
 
                 if (refresh) {
                     comp.imageChanged();
+                } else {
+                    comp.compositingChanged(INVALIDATE_CACHE, false);
                 }
             }
             if (editName != null) {
@@ -19,6 +19,7 @@ package pixelitor;
 
 import com.bric.util.JVM;
 import net.jafama.FastMath;
+import pixelitor.automate.BatchCommandLine;
 import pixelitor.colors.FgBgColors;
 import pixelitor.colors.FillType;
 import pixelitor.filters.Filter;
@@ -50,6 +51,7 @@ import java.awt.event.KeyEvent;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
@@ -87,6 +89,14 @@ public class Pixelitor {
 
         Texts.loadLanguage();
 
+        if (args.length > 0 && BatchCommandLine.OPTION.equals(args[0])) {
+            // batch processing without a GUI, which
+            // must be set before AWT is initialized
+            System.setProperty("java.awt.headless", "true");
+            int exitCode = BatchCommandLine.run(Arrays.copyOfRange(args, 1, args.length));
+            System.exit(exitCode);
+        }
+
         System.setProperty("com.apple.mrj.application.apple.menu.about.name", "Pixelitor");
 
         if (JVM.isLinux) {
@@ -95,7 +105,8 @@ public class Pixelitor {
             System.setProperty("swing.aatext", "true");
 
             if (GraphicsEnvironment.isHeadless()) {
-                System.err.println("Pixelitor can't be used in headless mode");
+                System.err.println("Pixelitor can't be used in headless mode, except for "
+                        + BatchCommandLine.OPTION + " processing");
                 System.exit(1);
             }
         }
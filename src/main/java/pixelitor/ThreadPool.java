@@ -17,16 +17,16 @@
 
 package pixelitor;
 
-import com.jhlabs.image.AbstractBufferedImageOp;
 import pixelitor.utils.ProgressTracker;
 
-import java.awt.image.BufferedImage;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A thread pool for parallel execution on multiple CPU cores
@@ -35,11 +35,24 @@ public class ThreadPool {
     private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
 
     private static final ExecutorService executorService =
-            Executors.newFixedThreadPool(NUM_CORES);
+            Executors.newFixedThreadPool(NUM_CORES, PoolThread::new);
 
     private ThreadPool() {
     }
 
+    public static int getNumCores() {
+        return NUM_CORES;
+    }
+
+    /**
+     * Returns true if the current thread belongs to this thread pool.
+     * Tasks running in the pool shouldn't submit more tasks and wait for
+     * them, because if all threads are waiting, then nothing progresses.
+     */
+    public static boolean isPoolThread() {
+        return Thread.currentThread() instanceof PoolThread;
+    }
+
     /**
      * Submits a task that doesn't return anything
      */
@@ -94,27 +107,188 @@ public class ThreadPool {
     }
 
     /**
-     * Similar to waitFor, but works with futures
-     * that return an int array representing a line, and
-     * updates the given destination image with the new pixels.
+     * Processes the work units (usually lines of pixels)
+     * from start (inclusive) to end (exclusive).
      */
-    public static void waitFor2(Future<int[]>[] futures, BufferedImage dst, int width, ProgressTracker pt) {
+    @FunctionalInterface
+    public interface RangeTask {
+        void process(int start, int end);
+    }
+
+    /**
+     * Runs the given task for all the work units from 0 to numUnits
+     * in parallel, and returns when all of them are processed.
+     *
+     * Instead of one future per line, the units are split into chunks
+     * which are claimed dynamically by the workers, so that the faster
+     * workers take over the remaining work of the slower ones. The chunks
+     * get smaller towards the end to balance the load. The given
+     * {@link ProgressTracker} is updated on the calling thread.
+     *
+     * The calling thread also works on the chunks, therefore it's safe to
+     * call this even from a pool thread: if no other worker can start,
+     * then the calling thread processes everything.
+     *
+     * If the calling thread is interrupted, then the chunks that were not
+     * started yet are skipped, and a {@link CancellationException} is thrown
+     * after the already started chunks are finished.
+     */
+    public static void runInChunks(int numUnits, RangeTask task, ProgressTracker pt) {
         assert pt != null;
+        if (numUnits <= 0) {
+            return;
+        }
+        new ChunkedRun(numUnits, task).run(pt);
+    }
 
-        try {
-            for (int i = 0; i < futures.length; i++) {
-                var lineFuture = futures[i];
-                int[] linePixels = lineFuture.get();
-                AbstractBufferedImageOp.setRGB(dst, 0, i, width, 1, linePixels);
+    public static Executor getExecutor() {
+        return executorService;
+    }
 
-                pt.unitDone();
+    private static class ChunkedRun {
+        private final int numUnits;
+        private final RangeTask task;
+        private final int numWorkers;
+        private final Thread caller = Thread.currentThread();
+
+        private final AtomicInteger nextUnit = new AtomicInteger();
+
+        // guarded by this
+        private int unitsDone;
+        private Throwable failure;
+        private boolean cancelled;
+        private boolean callerInterrupted;
+
+        ChunkedRun(int numUnits, RangeTask task) {
+            this.numUnits = numUnits;
+            this.task = task;
+            numWorkers = Math.min(NUM_CORES, numUnits);
+        }
+
+        void run(ProgressTracker pt) {
+            for (int i = 1; i < numWorkers; i++) {
+                executorService.execute(() -> processChunks(null));
+            }
+            int reported = processChunks(pt);
+
+            // wait for the chunks claimed by the other workers
+            int done;
+            while ((done = waitForProgress(reported)) < numUnits) {
+                reported = reportProgress(done, reported, pt);
+            }
+            reportProgress(done, reported, pt);
+
+            synchronized (this) {
+                if (callerInterrupted) {
+                    // restore the flag cleared by wait()
+                    caller.interrupt();
+                }
+                if (failure != null) {
+                    throw new IllegalStateException(failure);
+                }
+                if (cancelled) {
+                    throw new CancellationException();
+                }
             }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
+        }
+
+        /**
+         * Processes chunks until all of them are claimed. The progress is
+         * reported only if a tracker is given (on the calling thread).
+         * Returns the number of reported units.
+         */
+        private int processChunks(ProgressTracker pt) {
+            int reported = 0;
+            int start;
+            while ((start = nextUnit.get()) < numUnits) {
+                if (caller.isInterrupted()) {
+                    skipRemaining();
+                    break;
+                }
+                int end = claimChunk(start);
+                if (end == -1) {
+                    continue; // another worker was faster
+                }
+                try {
+                    task.process(start, end);
+                } catch (Throwable t) {
+                    setFailure(t);
+                }
+                int done = chunkDone(end - start);
+                if (pt != null) {
+                    reported = reportProgress(done, reported, pt);
+                }
+            }
+            return reported;
+        }
+
+        /**
+         * Tries to claim the chunk starting at the given unit,
+         * and returns its end, or -1 if another worker was faster.
+         */
+        private int claimChunk(int start) {
+            int remaining = numUnits - start;
+            int size = Math.max(1, remaining / (2 * numWorkers));
+            int end = start + size;
+            if (nextUnit.compareAndSet(start, end)) {
+                return end;
+            }
+            return -1;
+        }
+
+        /**
+         * Claims all the remaining units without processing them.
+         */
+        private void skipRemaining() {
+            int start = nextUnit.getAndSet(numUnits);
+            if (start < numUnits) {
+                synchronized (this) {
+                    cancelled = true;
+                    chunkDone(numUnits - start);
+                }
+            }
+        }
+
+        private synchronized int chunkDone(int units) {
+            unitsDone += units;
+            notifyAll();
+            return unitsDone;
+        }
+
+        private synchronized int waitForProgress(int reported) {
+            while (unitsDone == reported && unitsDone < numUnits) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // the started chunks can't be interrupted,
+                    // so wait for them, but don't start new ones
+                    callerInterrupted = true;
+                    skipRemaining();
+                }
+            }
+            return unitsDone;
+        }
+
+        private synchronized void setFailure(Throwable t) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+
+        private static int reportProgress(int done, int reported, ProgressTracker pt) {
+            if (done > reported) {
+                pt.unitsDone(done - reported);
+            }
+            return done;
         }
     }
 
-    public static Executor getExecutor() {
-        return executorService;
+    private static class PoolThread extends Thread {
+        private static final AtomicInteger nextId = new AtomicInteger(1);
+
+        PoolThread(Runnable task) {
+            // descriptive names for the thread dumps and profilers
+            super(task, "[pool thread " + nextId.getAndIncrement() + "]");
+        }
     }
 }
@@ -17,25 +17,21 @@
 
 package pixelitor.automate;
 
-import pixelitor.Composition;
-import pixelitor.OpenImages;
-import pixelitor.compactions.CompAction;
 import pixelitor.gui.PixelitorWindow;
-import pixelitor.gui.View;
 import pixelitor.gui.utils.GUIUtils;
 import pixelitor.io.Dirs;
 import pixelitor.io.FileUtils;
-import pixelitor.io.OpenSave;
 import pixelitor.io.OutputFormat;
-import pixelitor.io.SaveSettings;
 import pixelitor.utils.Messages;
 
 import javax.swing.*;
 import java.awt.EventQueue;
 import java.io.File;
-import java.util.concurrent.CompletableFuture;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
 import static javax.swing.JOptionPane.WARNING_MESSAGE;
 
 /**
@@ -47,17 +43,18 @@ public class Automate {
     private static final String OVERWRITE_NO = "No (Skip)";
     private static final String OVERWRITE_CANCEL = "Cancel Processing";
 
+    private static final int MAX_LISTED_FAILURES = 10;
+
     private static volatile boolean overwriteAll = false;
-    private static volatile boolean stopProcessing = false;
 
     private Automate() {
     }
 
     /**
-     * Processes each file in the input directory
-     * with the given {@link CompAction}
+     * Processes each file in the input directory with the
+     * given {@link BatchProcessor}, which already has its steps
      */
-    public static void processEachFile(CompAction action,
+    public static void processEachFile(BatchProcessor processor,
                                        String dialogTitle) {
         File openDir = Dirs.getLastOpen();
         File saveDir = Dirs.getLastSave();
@@ -70,105 +67,98 @@ public class Automate {
 
         var progressMonitor = GUIUtils.createPercentageProgressMonitor(
                 dialogTitle);
-        var worker = new SwingWorker<Void, Void>() {
-            @Override
-            public Void doInBackground() {
-                overwriteAll = false;
-
-                for (int i = 0, nrOfFiles = inputFiles.length; i < nrOfFiles; i++) {
+        int nrOfFiles = inputFiles.length;
+        processor.setOutputDir(saveDir)
+                .setOutputFormat(OutputFormat.getLastUsed())
+                .setOverwriteChecker(file -> askOverwrite(file, processor))
+                .setProgressListener(numFinished -> EventQueue.invokeLater(() -> {
                     if (progressMonitor.isCanceled()) {
-                        break;
+                        processor.cancel();
                     }
+                    progressMonitor.setProgress(numFinished * 100 / nrOfFiles);
 
-                    File file = inputFiles[i];
-                    progressMonitor.setProgress((int) ((float) i * 100 / nrOfFiles));
-
-                    String msg = "Processing " + (i + 1) + " of " + nrOfFiles;
+                    String msg = "Processed " + numFinished + " of " + nrOfFiles;
                     progressMonitor.setNote(msg);
                     System.out.println(msg);
+                }));
 
-                    processFile(file, action, saveDir);
-
-                    if (stopProcessing) {
-                        break;
-                    }
+        var worker = new SwingWorker<Void, Void>() {
+            @Override
+            public Void doInBackground() throws InterruptedException {
+                overwriteAll = false;
+                processor.process(inputFiles);
+                return null;
+            }
 
-                } // end of for loop
+            @Override
+            protected void done() {
                 progressMonitor.close();
-                return null;
-            } // end of doInBackground
+                showFailures(processor.getFailures(), nrOfFiles);
+            }
         };
         worker.execute();
     }
 
-    private static void processFile(File file, CompAction action, File saveDir) {
-        OpenSave.openFileAsync(file)
-                .thenComposeAsync(
-                        comp -> process(comp, action),
-                        EventQueue::invokeLater)
-                .thenComposeAsync(
-                        comp -> saveAndClose(comp, saveDir),
-                        EventQueue::invokeLater)
-                .exceptionally(Messages::showExceptionOnEDT)
-                .join();
+    /**
+     * Called on the EDT after the batch processing
+     */
+    private static void showFailures(List<BatchProcessor.Failure> failures, int nrOfFiles) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        if (failures.size() > 1) {
+            String fileNames = failures.stream()
+                    .limit(MAX_LISTED_FAILURES)
+                    .map(failure -> failure.getFile().getName())
+                    .collect(joining("<br>"));
+            if (failures.size() > MAX_LISTED_FAILURES) {
+                fileNames += "<br>...";
+            }
+            Messages.showError("Batch Processing Error", format(
+                    "<html>%d of %d files could not be processed:<br>%s",
+                    failures.size(), nrOfFiles, fileNames));
+        }
+        // the details of the first one
+        Messages.showException(failures.get(0).getCause());
     }
 
-    private static CompletableFuture<Composition> process(Composition comp,
-                                                          CompAction action) {
-        assert EventQueue.isDispatchThread() : "not EDT thread";
-        assert comp.getView() != null : "no view for " + comp.getName();
-
-        return action.process(comp);
-    }
+    /**
+     * Called on a reading thread of the batch processor
+     */
+    private static boolean askOverwrite(File outputFile, BatchProcessor processor) {
+        if (overwriteAll) {
+            return true;
+        }
 
-    private static CompletableFuture<Void> saveAndClose(Composition comp, File lastSaveDir) {
-        View view = comp.getView();
-        assert view != null : "no view for " + comp.getName();
-
-        var outputFormat = OutputFormat.getLastUsed();
-        File outputFile = calcOutputFile(comp, lastSaveDir, outputFormat);
-        CompletableFuture<Void> retVal = null;
-
-        // so that it doesn't ask to save again after we just saved it
-        comp.setDirty(false);
-
-        var saveSettings = new SaveSettings(outputFormat, outputFile);
-        if (outputFile.exists() && !overwriteAll) {
-            String answer = showOverwriteWarningDialog(outputFile);
-
-            switch (answer) {
-                case OVERWRITE_YES:
-                    retVal = comp.saveAsync(saveSettings, false);
-                    break;
-                case OVERWRITE_YES_ALL:
-                    retVal = comp.saveAsync(saveSettings, false);
-                    overwriteAll = true;
-                    break;
-                case OVERWRITE_NO:
-                    // do nothing
-                    break;
-                case OVERWRITE_CANCEL:
-                    OpenImages.warnAndClose(view);
-                    stopProcessing = true;
-                    return CompletableFuture.completedFuture(null);
-            }
-        } else { // the file does not exist or overwrite all was pressed previously
-            view.paintImmediately();
-            retVal = comp.saveAsync(saveSettings, false);
+        String[] answer = new String[1];
+        try {
+            EventQueue.invokeAndWait(() -> answer[0] = showOverwriteWarningDialog(outputFile));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            answer[0] = OVERWRITE_CANCEL;
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
         }
-        OpenImages.warnAndClose(view);
-        stopProcessing = false;
-        if (retVal != null) {
-            return retVal;
-        } else {
-            return CompletableFuture.completedFuture(null);
+
+        switch (answer[0]) {
+            case OVERWRITE_YES:
+                return true;
+            case OVERWRITE_YES_ALL:
+                overwriteAll = true;
+                return true;
+            case OVERWRITE_NO:
+                return false;
+            case OVERWRITE_CANCEL:
+                processor.cancel();
+                return false;
+            default:
+                throw new IllegalStateException("answer = " + answer[0]);
         }
     }
 
-    private static File calcOutputFile(Composition comp, File lastSaveDir, OutputFormat outputFormat) {
-        String inFileName = comp.getFile().getName();
-        String outFileName = FileUtils.replaceExt(inFileName, outputFormat.toString());
-        return new File(lastSaveDir, outFileName);
+    static File calcOutputFile(File inputFile, File saveDir, OutputFormat outputFormat) {
+        String outFileName = FileUtils.replaceExt(inputFile.getName(), outputFormat.toString());
+        return new File(saveDir, outFileName);
     }
 
     private static String showOverwriteWarningDialog(File outputFile) {
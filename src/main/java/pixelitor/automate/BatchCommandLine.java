@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import pixelitor.compactions.Resize;
+import pixelitor.filters.FilterAction;
+import pixelitor.filters.FilterUtils;
+import pixelitor.io.FileUtils;
+import pixelitor.io.OutputFormat;
+import pixelitor.menus.MenuBar;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the {@link BatchProcessor} with the options
+ * given on the command line after {@link #OPTION}
+ */
+public class BatchCommandLine {
+    public static final String OPTION = "--batch";
+
+    private static final String USAGE = "Usage: pixelitor --batch [options] <input files or directories>\n"
+            + "Options:\n"
+            + "  --output <dir>      the output directory (required)\n"
+            + "  --format <format>   the output format: jpg, png, tiff, gif, bmp, pxc or ora\n"
+            + "                      (by default the format of the input file)\n"
+            + "  --filter <name>     runs the filter with its default settings\n"
+            + "  --resize <w>x<h>    resizes the image to fit into the given size\n"
+            + "  --threads <n>       the number of files processed at the same time\n"
+            + "  --io-threads <n>    the number of files read and written at the same time\n"
+            + "  --overwrite         overwrites the existing output files\n"
+            + "The filters and resizings are applied in the given order.";
+
+    private BatchCommandLine() {
+    }
+
+    /**
+     * Returns the exit code of the application
+     */
+    public static int run(String[] args) {
+        try {
+            return parseAndRun(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private static int parseAndRun(String[] args) throws InterruptedException {
+        var processor = new BatchProcessor();
+        File outputDir = null;
+        List<File> inputFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--output":
+                    outputDir = new File(getValue(args, ++i, arg));
+                    processor.setOutputDir(outputDir);
+                    break;
+                case "--format":
+                    processor.setOutputFormat(parseFormat(getValue(args, ++i, arg)));
+                    break;
+                case "--filter":
+                    FilterAction filterAction = findFilter(getValue(args, ++i, arg));
+                    processor.addFilter(filterAction::createNewFilter);
+                    break;
+                case "--resize":
+                    processor.addAction(parseResize(getValue(args, ++i, arg)));
+                    break;
+                case "--threads":
+                    processor.setNumThreads(parsePositiveInt(getValue(args, ++i, arg), arg));
+                    break;
+                case "--io-threads":
+                    processor.setNumIOThreads(parsePositiveInt(getValue(args, ++i, arg), arg));
+                    break;
+                case "--overwrite":
+                    processor.setOverwrite(true);
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    addInputFiles(new File(arg), inputFiles);
+            }
+        }
+
+        if (outputDir == null) {
+            throw new IllegalArgumentException("The output directory is not given.");
+        }
+        if (inputFiles.isEmpty()) {
+            throw new IllegalArgumentException("There are no input files.");
+        }
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            System.err.println("Could not create " + outputDir.getAbsolutePath());
+            return 1;
+        }
+
+        int numFiles = inputFiles.size();
+        processor.setProgressListener(numFinished ->
+                System.out.printf("Finished %d of %d%n", numFinished, numFiles));
+        int numFailed = processor.process(inputFiles.toArray(new File[0]));
+        processor.getStageStats().forEach(System.out::println);
+        for (File skipped : processor.getSkippedFiles()) {
+            System.err.printf("Skipped %s, because its output file already exists%n",
+                    skipped.getName());
+        }
+        for (BatchProcessor.Failure failure : processor.getFailures()) {
+            System.err.printf("Error while processing %s: %s%n",
+                    failure.getFile(), failure.getCause());
+        }
+        if (numFailed > 0) {
+            System.err.printf("%d of %d files could not be processed%n",
+                    numFailed, numFiles);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int parsePositiveInt(String s, String option) {
+        try {
+            int value = Integer.parseInt(s);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + s);
+    }
+
+    private static OutputFormat parseFormat(String s) {
+        try {
+            return OutputFormat.fromExtension(s);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + s);
+        }
+    }
+
+    private static Resize parseResize(String s) {
+        String[] parts = s.split("x");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid size: " + s);
+        }
+        int width = parsePositiveInt(parts[0], "--resize");
+        int height = parsePositiveInt(parts[1], "--resize");
+        return new Resize(width, height, true);
+    }
+
+    private static FilterAction findFilter(String name) {
+        MenuBar.createFilterActions();
+        for (FilterAction action : FilterUtils.getAllFiltersSorted()) {
+            if (action.getName().equalsIgnoreCase(name)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Unknown filter: " + name);
+    }
+
+    private static void addInputFiles(File file, List<File> inputFiles) {
+        if (file.isDirectory()) {
+            File[] files = FileUtils.listSupportedInputFilesIn(file);
+            if (files != null) {
+                Collections.addAll(inputFiles, files);
+            }
+        } else if (file.exists()) {
+            inputFiles.add(file);
+        } else {
+            throw new IllegalArgumentException("File not found: " + file.getAbsolutePath());
+        }
+    }
+}
@@ -18,13 +18,10 @@
 package pixelitor.automate;
 
 import pixelitor.filters.Filter;
-import pixelitor.gui.PixelitorWindow;
 import pixelitor.layers.Drawable;
 
 import java.awt.Component;
-import java.util.concurrent.CompletableFuture;
 
-import static pixelitor.ChangeReason.BATCH_AUTOMATE;
 import static pixelitor.automate.BatchFilterWizardPage.SELECT_FILTER_AND_DIRS;
 
 /**
@@ -50,15 +47,11 @@ public class BatchFilterWizard extends Wizard {
 
     @Override
     protected void finalAction() {
-        var busyCursorParent = PixelitorWindow.getInstance();
         var dialogTitle = "Batch Filter Progress";
 
-        Automate.processEachFile(comp -> {
-                    filter.run(
-                            comp.getActiveDrawableOrThrow(),
-                            BATCH_AUTOMATE, busyCursorParent);
-                    return CompletableFuture.completedFuture(comp);
-                },
+        // the filter was configured in this wizard, therefore the
+        // same instance is used for all files, one file at a time
+        Automate.processEachFile(new BatchProcessor().addFilter(filter),
                 dialogTitle);
     }
 
@@ -0,0 +1,533 @@
+/*
+ * Copyright 2018 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import pixelitor.ChangeReason;
+import pixelitor.Composition;
+import pixelitor.ThreadPool;
+import pixelitor.compactions.CompAction;
+import pixelitor.filters.Filter;
+import pixelitor.io.OpenSave;
+import pixelitor.io.OutputFormat;
+import pixelitor.io.SaveSettings;
+import pixelitor.layers.Drawable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * Batch processing without views. The files are decoded, processed
+ * and encoded in a pipeline of three stages, each with its own worker
+ * threads, so that the CPU-bound processing overlaps with the disk IO.
+ * The stages are connected by bounded queues, which keeps the number
+ * of compositions in memory bounded, even if one stage is much slower.
+ */
+public class BatchProcessor {
+    private static final Job END = new Job(null);
+
+    // each processing worker creates its own pipeline from these,
+    // because most filters can't be shared between threads
+    private final List<Supplier<CompAction>> steps = new ArrayList<>();
+
+    private File outputDir;
+
+    // if null, the output has the same format as the input
+    private OutputFormat outputFormat;
+
+    private int numThreads = ThreadPool.getNumCores();
+    private int numIOThreads = 2;
+
+    // decides whether an existing output file can be overwritten
+    private Predicate<File> overwriteChecker = file -> false;
+
+    private IntConsumer progressListener = numFinished -> {
+    };
+
+    private volatile boolean canceled = false;
+    private List<Stage> stages = List.of();
+
+    // the results of the last run, which are reported by the caller
+    private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+    private final List<File> skippedFiles = Collections.synchronizedList(new ArrayList<>());
+
+    public BatchProcessor setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+        return this;
+    }
+
+    public BatchProcessor setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+        return this;
+    }
+
+    /**
+     * Adds a step that can be shared between the workers,
+     * and that supports compositions without a view.
+     */
+    public BatchProcessor addAction(CompAction action) {
+        steps.add(() -> action);
+        return this;
+    }
+
+    /**
+     * Adds a step that runs a filter on the active layer.
+     * The supplier is called once for each processing worker.
+     */
+    public BatchProcessor addFilter(Supplier<Filter> filterSupplier) {
+        steps.add(() -> createFilterStep(filterSupplier.get()));
+        return this;
+    }
+
+    /**
+     * Adds a step that runs the given, already configured filter
+     * instance. Since it is shared, it filters one image at a time.
+     */
+    public BatchProcessor addFilter(Filter filter) {
+        CompAction filterStep = createFilterStep(filter);
+        return addAction(comp -> {
+            synchronized (filter) {
+                return filterStep.process(comp);
+            }
+        });
+    }
+
+    private static CompAction createFilterStep(Filter filter) {
+        return comp -> {
+            Drawable dr = comp.getActiveDrawableOrThrow();
+            filter.runWithoutGUI(dr, ChangeReason.BATCH_AUTOMATE);
+            return CompletableFuture.completedFuture(comp);
+        };
+    }
+
+    /**
+     * Sets the number of processing threads
+     */
+    public BatchProcessor setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads = " + numThreads);
+        }
+        this.numThreads = numThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of both the reading and the writing threads
+     */
+    public BatchProcessor setNumIOThreads(int numIOThreads) {
+        if (numIOThreads < 1) {
+            throw new IllegalArgumentException("numIOThreads = " + numIOThreads);
+        }
+        this.numIOThreads = numIOThreads;
+        return this;
+    }
+
+    public BatchProcessor setOverwrite(boolean overwrite) {
+        overwriteChecker = file -> overwrite;
+        return this;
+    }
+
+    /**
+     * Sets the object that is asked (one file at a time)
+     * whether an existing output file can be overwritten
+     */
+    public BatchProcessor setOverwriteChecker(Predicate<File> overwriteChecker) {
+        this.overwriteChecker = overwriteChecker;
+        return this;
+    }
+
+    /**
+     * Sets the listener that is notified with the number of
+     * finished files after each file, on a worker thread
+     */
+    public BatchProcessor setProgressListener(IntConsumer progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Stops reading new files. The files that are already
+     * in the pipeline are still processed and saved.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Processes the given files, and waits until all of them are
+     * finished. Returns the number of files that couldn't be processed.
+     * The reasons are available through {@link #getFailures()}.
+     */
+    public int process(File[] inputFiles) throws InterruptedException {
+        if (outputDir == null) {
+            throw new IllegalStateException("no output dir");
+        }
+        canceled = false;
+        failures.clear();
+        skippedFiles.clear();
+
+        // the output files of this run, reserved by the reading stage,
+        // so that two inputs (like a.png and a.jpg) can't both write them
+        Set<File> reservedOutputs = ConcurrentHashMap.newKeySet();
+
+        // enough for keeping all processing workers busy
+        int queueSize = numThreads;
+        var decoded = new ArrayBlockingQueue<Job>(queueSize);
+        var processed = new ArrayBlockingQueue<Job>(queueSize);
+
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger numFinished = new AtomicInteger();
+        AtomicInteger numFailed = new AtomicInteger();
+
+        Stage reading = new Stage("read", numIOThreads, null, decoded) {
+            @Override
+            Job nextJob() {
+                int index = nextIndex.getAndIncrement();
+                if (canceled || index >= inputFiles.length) {
+                    return END;
+                }
+                return new Job(inputFiles[index]);
+            }
+
+            @Override
+            boolean run(Job job) throws Exception {
+                job.outputFile = calcOutputFile(job.inputFile);
+                if (!reservedOutputs.add(job.outputFile)) {
+                    throw new IllegalStateException(format(
+                            "%s would overwrite the output of another input file",
+                            job.outputFile.getName()));
+                }
+                if (job.outputFile.exists() && !canOverwrite(job.outputFile)) {
+                    skippedFiles.add(job.inputFile);
+                    return false;
+                }
+                job.comp = OpenSave.loadComp(job.inputFile);
+                return true;
+            }
+        };
+        Stage processing = new Stage("process", numThreads, decoded, processed) {
+            private final ThreadLocal<List<CompAction>> pipelines
+                    = ThreadLocal.withInitial(BatchProcessor.this::createPipeline);
+
+            @Override
+            boolean run(Job job) {
+                Composition comp = job.comp;
+                for (CompAction step : pipelines.get()) {
+                    comp = step.process(comp).join();
+                }
+                job.comp = comp;
+                return true;
+            }
+        };
+        Stage writing = new Stage("write", numIOThreads, processed, null) {
+            @Override
+            boolean run(Job job) {
+                OutputFormat format = getOutputFormat(job.inputFile);
+                format.getSaveTask(job.comp, new SaveSettings(format, job.outputFile)).run();
+                job.comp = null;
+                return true;
+            }
+        };
+        stages = List.of(reading, processing, writing);
+
+        CountDownLatch allFinished = new CountDownLatch(1);
+        for (Stage stage : stages) {
+            stage.start(job -> {
+                if (job.failed) {
+                    numFailed.incrementAndGet();
+                }
+                progressListener.accept(numFinished.incrementAndGet());
+            }, () -> {
+                if (stage == writing) {
+                    allFinished.countDown();
+                }
+            });
+        }
+        allFinished.await();
+
+        return numFailed.get();
+    }
+
+    private List<CompAction> createPipeline() {
+        List<CompAction> pipeline = new ArrayList<>(steps.size());
+        for (Supplier<CompAction> step : steps) {
+            pipeline.add(step.get());
+        }
+        return pipeline;
+    }
+
+    private synchronized boolean canOverwrite(File file) {
+        // synchronized, because the checker could show a dialog
+        return overwriteChecker.test(file);
+    }
+
+    private File calcOutputFile(File inputFile) {
+        return Automate.calcOutputFile(inputFile, outputDir, getOutputFormat(inputFile));
+    }
+
+    private OutputFormat getOutputFormat(File inputFile) {
+        if (outputFormat != null) {
+            return outputFormat;
+        }
+        return OutputFormat.fromFile(inputFile);
+    }
+
+    /**
+     * Returns the files that couldn't be processed in the last run, with the reasons
+     */
+    public List<Failure> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /**
+     * Returns the input files of the last run that were skipped,
+     * because their output file already existed
+     */
+    public List<File> getSkippedFiles() {
+        synchronized (skippedFiles) {
+            return new ArrayList<>(skippedFiles);
+        }
+    }
+
+    /**
+     * Returns the current statistics of the reading,
+     * processing and writing stages
+     */
+    public List<StageStats> getStageStats() {
+        List<StageStats> stats = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            stats.add(stage.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * A file as it moves through the stages
+     */
+    private static class Job {
+        private final File inputFile;
+        private File outputFile;
+        private Composition comp;
+        private boolean failed = false;
+
+        Job(File inputFile) {
+            this.inputFile = inputFile;
+        }
+    }
+
+    /**
+     * A stage of the pipeline, with its own worker threads.
+     * The jobs are passed to the next stage, unless they are finished.
+     */
+    private abstract class Stage {
+        private final String name;
+        private final int numWorkers;
+        private final BlockingQueue<Job> input;
+        private final BlockingQueue<Job> output;
+
+        private final AtomicInteger numRunning = new AtomicInteger();
+        private final AtomicInteger numDone = new AtomicInteger();
+        private volatile long startTime;
+        private volatile long endTime;
+
+        Stage(String name, int numWorkers, BlockingQueue<Job> input, BlockingQueue<Job> output) {
+            this.name = name;
+            this.numWorkers = numWorkers;
+            this.input = input;
+            this.output = output;
+        }
+
+        /**
+         * Returns the next job for this stage, or {@link #END}
+         */
+        Job nextJob() throws InterruptedException {
+            return input.take();
+        }
+
+        /**
+         * Returns false if the job was skipped and shouldn't be passed on
+         */
+        abstract boolean run(Job job) throws Exception;
+
+        void start(Consumer<Job> jobFinished, Runnable stageFinished) {
+            startTime = System.nanoTime();
+            endTime = 0;
+            numRunning.set(numWorkers);
+            for (int i = 0; i < numWorkers; i++) {
+                Thread worker = new Thread(() -> work(jobFinished, stageFinished),
+                        "[batch " + name + " worker]");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        private void work(Consumer<Job> jobFinished, Runnable stageFinished) {
+            boolean gotEnd = false;
+            try {
+                Job job;
+                while ((job = nextJob()) != END) {
+                    boolean passOn = runSafely(job);
+                    numDone.incrementAndGet();
+                    if (passOn && output != null) {
+                        output.put(job);
+                    } else {
+                        jobFinished.accept(job);
+                    }
+                }
+                gotEnd = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // even if the worker stops unexpectedly, the next
+                // stage must be stopped, otherwise process() never returns
+                workerFinished(gotEnd, stageFinished);
+            }
+        }
+
+        private void workerFinished(boolean gotEnd, Runnable stageFinished) {
+            try {
+                if (numRunning.decrementAndGet() == 0) {
+                    endTime = System.nanoTime();
+
+                    // the last worker of this stage tells
+                    // each worker of the next stage to stop
+                    signalEnd();
+                    stageFinished.run();
+                } else if (gotEnd && input != null) {
+                    // the other workers of this stage also need the signal
+                    input.put(END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void signalEnd() throws InterruptedException {
+            if (output != null) {
+                output.put(END);
+            }
+        }
+
+        private boolean runSafely(Job job) {
+            try {
+                return run(job);
+            } catch (Throwable e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                failures.add(new Failure(job.inputFile, cause));
+                job.failed = true;
+                job.comp = null;
+                return false;
+            }
+        }
+
+        StageStats getStats() {
+            long end = endTime != 0 ? endTime : System.nanoTime();
+            double seconds = (end - startTime) / 1.0e9;
+            int queueDepth = input == null ? 0 : input.size();
+            return new StageStats(name, numDone.get(), queueDepth, numDone.get() / seconds);
+        }
+    }
+
+    /**
+     * An input file that couldn't be processed
+     */
+    public static class Failure {
+        private final File file;
+        private final Throwable cause;
+
+        private Failure(File file, Throwable cause) {
+            this.file = file;
+            this.cause = cause;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s: %s", file.getName(), cause);
+        }
+    }
+
+    /**
+     * A snapshot of the progress of a stage
+     */
+    public static class StageStats {
+        private final String name;
+        private final int numDone;
+        private final int queueDepth;
+        private final double throughput;
+
+        private StageStats(String name, int numDone, int queueDepth, double throughput) {
+            this.name = name;
+            this.numDone = numDone;
+            this.queueDepth = queueDepth;
+            this.throughput = throughput;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getNumDone() {
+            return numDone;
+        }
+
+        /**
+         * Returns the number of files waiting for this stage
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of files per second
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s: %d files, %.2f files/s, queue depth %d",
+                    name, numDone, throughput, queueDepth);
+        }
+    }
+}
@@ -51,7 +51,8 @@ public class BatchResize {
         int maxHeight = p.getNewHeight();
 
         var resizeAction = new Resize(maxWidth, maxHeight, true);
-        Automate.processEachFile(resizeAction, "Batch Resize...");
+        Automate.processEachFile(
+                new BatchProcessor().addAction(resizeAction), "Batch Resize...");
     }
 
     /**
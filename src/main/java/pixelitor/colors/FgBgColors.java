@@ -19,6 +19,9 @@ package pixelitor.colors;
 
 import java.awt.Color;
 
+import static java.awt.Color.BLACK;
+import static java.awt.Color.WHITE;
+
 /**
  * This class is used for global access to foreground
  * and background colors, and also for separating the
@@ -40,18 +43,31 @@ public class FgBgColors {
     }
 
     public static Color getFGColor() {
+        // there is no selector in the headless batch mode
+        if (selector == null) {
+            return BLACK;
+        }
         return selector.getFgColor();
     }
 
     public static Color getBGColor() {
+        if (selector == null) {
+            return WHITE;
+        }
         return selector.getBgColor();
     }
 
     public static Color getRealFgColor() {
+        if (selector == null) {
+            return BLACK;
+        }
         return selector.getRealFgColor();
     }
 
     public static Color getRealBgColor() {
+        if (selector == null) {
+            return WHITE;
+        }
         return selector.getRealBgColor();
     }
 
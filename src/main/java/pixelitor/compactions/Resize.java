@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static java.lang.String.format;
+import static pixelitor.Composition.ImageChangeActions.INVALIDATE_CACHE;
 import static pixelitor.Composition.ImageChangeActions.REPAINT;
 
 /**
@@ -83,6 +84,13 @@ public class Resize implements CompAction {
         }
         Dimension targetSize = new Dimension(canvasTargetWidth, canvasTargetHeight);
 
+        if (comp.getView() == null) {
+            // in the headless batch mode there is no view, history
+            // or progress bar, and the composition can be changed in place
+            return resizeLayers(comp, targetSize)
+                    .thenApply(c -> afterHeadlessResize(c, targetSize));
+        }
+
         // The resize runs outside the EDT so that the progress bar animation
         // can update and multiple resizing operations can run in parallel
         var progressHandler = Messages.startProgress("Resizing", -1);
@@ -149,6 +157,17 @@ public class Resize implements CompAction {
         return newComp;
     }
 
+    private static Composition afterHeadlessResize(Composition comp, Dimension targetSize) {
+        Canvas canvas = comp.getCanvas();
+        double sx = targetSize.getWidth() / canvas.getImWidth();
+        double sy = targetSize.getHeight() / canvas.getImHeight();
+        comp.imCoordsChanged(AffineTransform.getScaleInstance(sx, sy), false);
+
+        canvas.changeImSize(targetSize.width, targetSize.height, null);
+        comp.imageChanged(INVALIDATE_CACHE, true);
+        return comp;
+    }
+
     private static CompletableFuture<Composition> resizeLayers(Composition comp, Dimension newSize) {
         // this could be called on the EDT or on another thread, the layers
         // themselves are resized in parallel using the thread pool's threads
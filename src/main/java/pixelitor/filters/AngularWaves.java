@@ -23,6 +23,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.AngularWavesFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -60,6 +61,12 @@ public class AngularWaves extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new AngularWavesFilter();
         }
@@ -75,7 +82,13 @@ public class AngularWaves extends ParametrizedFilter {
         filter.setAmount(amount.getPercentageValF());
         filter.setWaveType(waveType.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
@@ -38,7 +38,7 @@ import static pixelitor.gui.utils.SliderSpinner.TextPosition.NONE;
 /**
  * The Channel Mixer filter
  */
-public class ChannelMixer extends ParametrizedFilter {
+public class ChannelMixer extends ParametrizedFilter implements PointOpFilter {
     public static final String NAME = "Channel Mixer";
 
     private static final int MIN_PERCENT = -200;
@@ -441,6 +441,33 @@ public class ChannelMixer extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public PointOp getPointOp() {
+        float rfr = redFromRed.getPercentageValF();
+        float rfg = redFromGreen.getPercentageValF();
+        float rfb = redFromBlue.getPercentageValF();
+
+        float gfr = greenFromRed.getPercentageValF();
+        float gfg = greenFromGreen.getPercentageValF();
+        float gfb = greenFromBlue.getPercentageValF();
+
+        float bfr = blueFromRed.getPercentageValF();
+        float bfg = blueFromGreen.getPercentageValF();
+        float bfb = blueFromBlue.getPercentageValF();
+
+        return PointOp.fromFunction(rgb -> {
+            int r = (rgb >>> 16) & 0xFF;
+            int g = (rgb >>> 8) & 0xFF;
+            int b = rgb & 0xFF;
+
+            int newRed = PixelUtils.clamp((int) (rfr * r + rfg * g + rfb * b));
+            int newGreen = PixelUtils.clamp((int) (gfr * r + gfg * g + gfb * b));
+            int newBlue = PixelUtils.clamp((int) (bfr * r + bfg * g + bfb * b));
+
+            return newRed << 16 | newGreen << 8 | newBlue;
+        });
+    }
+
     @Override
     public FilterGUI createGUI(Drawable dr) {
         return new ChannelMixerGUI(this, dr, presets);
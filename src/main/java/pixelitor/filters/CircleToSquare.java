@@ -23,6 +23,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.CircleToSquareFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -56,6 +57,12 @@ public class CircleToSquare extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new CircleToSquareFilter();
         }
@@ -75,11 +82,17 @@ public class CircleToSquare extends ParametrizedFilter {
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
 
         setAffectedAreaShapes(filter.getAffectedAreaShapes());
 
         return dest;
     }
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
 }
 
@@ -23,6 +23,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.DrosteFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -67,6 +68,12 @@ public class Droste extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new DrosteFilter(NAME);
         }
@@ -81,7 +88,13 @@ public class Droste extends ParametrizedFilter {
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
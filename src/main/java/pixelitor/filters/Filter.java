@@ -29,6 +29,7 @@ import pixelitor.utils.Messages;
 import pixelitor.utils.test.RandomGUITest;
 
 import java.awt.Component;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
@@ -41,6 +42,19 @@ import static pixelitor.ChangeReason.FILTER_WITHOUT_DIALOG;
 public abstract class Filter implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Returned by {@link #getRegionMargin()} if the
+     * result can be calculated only for the whole image.
+     */
+    public static final int NOT_REGION_COMPUTABLE = -1;
+
+    /**
+     * Returned by {@link #getRegionMargin()} if the result can be
+     * calculated for a region, but it depends on the whole source
+     * image (for example in the case of distortions)
+     */
+    public static final int WHOLE_SOURCE_NEEDED = Integer.MAX_VALUE;
+
     private transient FilterAction filterAction;
 
     // used for making sure that there are no
@@ -92,49 +106,67 @@ public abstract class Filter implements Serializable {
     }
 
     private void transformAndHandleExceptions(Drawable dr, ChangeReason cr) {
-        BufferedImage dest;
-
         try {
             if (dr == null) {
                 throw new IllegalStateException("not image layer or mask");
             }
 
-            BufferedImage src = dr.getFilterSourceImage();
-            dest = transformImage(src);
+            runWithoutGUI(dr, cr);
+        } catch (Throwable e) {
+            handleException(e, dr);
+        }
+    }
+
+    /**
+     * Runs the filter on the given {@link Drawable} on the current thread,
+     * without a busy cursor, and without handling the exceptions.
+     * Used directly when there is no GUI, like in batch processing.
+     */
+    public void runWithoutGUI(Drawable dr, ChangeReason cr) {
+        BufferedImage src = dr.getFilterSourceImage();
+        BufferedImage dest = transformImage(src);
+
+        assert dest != null;
 
-            assert dest != null;
+        if (cr.isPreview()) {
+            dr.changePreviewImage(dest, getName(), cr);
+        } else {
+            dr.filterWithoutDialogFinished(dest, cr, getName());
+        }
+    }
 
-            if (cr.isPreview()) {
-                dr.changePreviewImage(dest, getName(), cr);
-            } else {
-                dr.filterWithoutDialogFinished(dest, cr, getName());
-            }
-        } catch (OutOfMemoryError e) {
-            Dialogs.showOutOfMemoryDialog(e);
-        } catch (Throwable e) {
-            Layer layer = (Layer) dr;
-            if (layer instanceof LayerMask) {
-                layer = layer.getOwner();
-            }
-            String msg = String.format(
-                    "Error while running the filter '%s'\n" +
-                            "composition = '%s'\n" +
-                            "layer = '%s' (%s)\n" +
-                            "hasMask = '%s'\n" +
-                            "mask editing = '%b'",
-                    getName(), layer.getComp()
-                            .getName(),
-                    layer.getName(), layer.getClass()
-                            .getSimpleName(),
-                    layer.hasMask(), layer.isMaskEditing());
-
-
-            var ise = new IllegalStateException(msg, e);
-            if (RandomGUITest.isRunning()) {
-                throw ise; // we can debug the exact filter parameters only in RandomGUITest
-            }
-            Messages.showException(ise);
+    /**
+     * Shows the given exception, which was thrown while
+     * running this filter on the given {@link Drawable}.
+     */
+    public void handleException(Throwable e, Drawable dr) {
+        if (e instanceof OutOfMemoryError) {
+            Dialogs.showOutOfMemoryDialog((OutOfMemoryError) e);
+            return;
+        }
+
+        Layer layer = (Layer) dr;
+        if (layer instanceof LayerMask) {
+            layer = layer.getOwner();
         }
+        String msg = String.format(
+                "Error while running the filter '%s'\n" +
+                        "composition = '%s'\n" +
+                        "layer = '%s' (%s)\n" +
+                        "hasMask = '%s'\n" +
+                        "mask editing = '%b'",
+                getName(), layer.getComp()
+                        .getName(),
+                layer.getName(), layer.getClass()
+                        .getSimpleName(),
+                layer.hasMask(), layer.isMaskEditing());
+
+
+        var ise = new IllegalStateException(msg, e);
+        if (RandomGUITest.isRunning()) {
+            throw ise; // we can debug the exact filter parameters only in RandomGUITest
+        }
+        Messages.showException(ise);
     }
 
     public BufferedImage transformImage(BufferedImage src) {
@@ -164,10 +196,80 @@ public abstract class Filter implements Serializable {
         return dest;
     }
 
+    /**
+     * Returns by how many pixels a region of the source image has to be
+     * extended, so that filtering only the extended region gives the same
+     * result inside the original region as filtering the whole image.
+     */
+    public int getRegionMargin() {
+        if (this instanceof PointOpFilter) {
+            return 0;
+        }
+        return NOT_REGION_COMPUTABLE;
+    }
+
+    public boolean canTransformRegion(BufferedImage src) {
+        if (src.getType() == TYPE_BYTE_GRAY && !supportsGray()) {
+            return false;
+        }
+        return getRegionMargin() != NOT_REGION_COMPUTABLE;
+    }
+
+    /**
+     * Calculates the result of this filter only in the given region of
+     * the source image, and returns it in an image with the size of the region.
+     * It should be called only if {@link #canTransformRegion(BufferedImage)} is true.
+     */
+    public BufferedImage transformRegion(BufferedImage src, Rectangle region) {
+        assert canTransformRegion(src);
+
+        int margin = getRegionMargin();
+        if (margin == WHOLE_SOURCE_NEEDED) {
+            // the distortions calculate only the region of the destination
+            BufferedImage dest = transformDestRegion(src,
+                    ImageUtils.createImageWithSameCM(src, region.width, region.height),
+                    region);
+            runCount++;
+            if (dest == src) { // no change
+                return ImageUtils.getCopyOfSubimage(src, region);
+            }
+            assert dest.getWidth() == region.width : getName() + " ignored the region";
+            return dest;
+        }
+
+        Rectangle srcRegion = new Rectangle(region);
+        srcRegion.grow(margin, margin);
+        srcRegion = srcRegion.intersection(
+                new Rectangle(0, 0, src.getWidth(), src.getHeight()));
+
+        // a copy, because the filters might assume that
+        // the pixel array of the source has its own size
+        BufferedImage srcPart = ImageUtils.getCopyOfSubimage(src, srcRegion);
+        BufferedImage destPart = transformImage(srcPart);
+
+        return destPart.getSubimage(region.x - srcRegion.x,
+                region.y - srcRegion.y, region.width, region.height);
+    }
+
+    /**
+     * Calculates only the given region of the result into the given
+     * destination image, which has the size of the region. Only the
+     * filters returning {@link #WHOLE_SOURCE_NEEDED} as their
+     * region margin have to implement this.
+     */
+    protected BufferedImage transformDestRegion(BufferedImage src, BufferedImage dest,
+                                                Rectangle destRegion) {
+        throw new UnsupportedOperationException(getName());
+    }
+
     public void setFilterAction(FilterAction filterAction) {
         this.filterAction = filterAction;
     }
 
+    public FilterAction getFilterAction() {
+        return filterAction;
+    }
+
     public String getName() {
         if (filterAction != null) {
             return filterAction.getName();
@@ -83,6 +83,16 @@ public class FilterAction extends DrawableAction {
         return filter;
     }
 
+    /**
+     * Returns a new filter instance, independent of the one returned by
+     * {@link #getFilter()}, so that they can run at the same time
+     */
+    public Filter createNewFilter() {
+        Filter newFilter = filterSupplier.get();
+        newFilter.setFilterAction(this);
+        return newFilter;
+    }
+
     public FilterAction withListNamePrefix(String listNamePrefix) {
         this.listNamePrefix = listNamePrefix;
         return this;
@@ -22,6 +22,7 @@ import pixelitor.filters.gui.IntChoiceParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.TilesFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -54,6 +55,12 @@ public class GlassTiles extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new TilesFilter(NAME);
         }
@@ -68,8 +75,14 @@ public class GlassTiles extends ParametrizedFilter {
         filter.setShiftX(phase.getValueAsPercentage(0));
         filter.setShiftY(phase.getValueAsPercentage(1));
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
 }
 
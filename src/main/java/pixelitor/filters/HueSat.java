@@ -27,7 +27,7 @@ import java.awt.image.BufferedImage;
 /**
  * Hue-Saturation (and Colorize) filter
  */
-public class HueSat extends ParametrizedFilter {
+public class HueSat extends ParametrizedFilter implements PointOpFilter {
     public static final String NAME = "Hue/Saturation";
 
     private static final int MIN_HUE = -180;
@@ -75,6 +75,20 @@ public class HueSat extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public PointOp getPointOp() {
+        if (hue.getValue() == 0 && saturation.getValue() == 0 && brightness.getValue() == 0) {
+            return PointOp.identity();
+        }
+
+        float satShift = saturation.getPercentageValF();
+        float briShift = brightness.getPercentageValF();
+        float hueShift = hue.getValueAsFloat() / 360.0f;
+
+        var impl = new Impl(hueShift, satShift, briShift);
+        return PointOp.fromFunction(rgb -> impl.filterRGB(0, 0, rgb));
+    }
+
     private static class Impl extends PointFilter {
         private final float hueShift;
         private final float satShift;
@@ -24,7 +24,7 @@ import java.awt.image.BufferedImage;
 /**
  * Invert filter
  */
-public class Invert extends Filter {
+public class Invert extends Filter implements PointOpFilter {
     // for compatibility with older adjustment layer tests
     private static final long serialVersionUID = -6279018636064203421L;
 
@@ -94,6 +94,15 @@ public class Invert extends Filter {
         }
     }
 
+    @Override
+    public PointOp getPointOp() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = 255 - i;
+        }
+        return PointOp.fromTables(table, table, table);
+    }
+
     public static void quickInvert(BufferedImage dest) {
         int[] pixels = ImageUtils.getPixelsAsArray(dest);
         for (int i = 0, pixelsLength = pixels.length; i < pixelsLength; i++) {
@@ -25,6 +25,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.LittlePlanetFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -59,6 +60,12 @@ public class LittlePlanet extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new LittlePlanetFilter();
         }
@@ -72,7 +79,13 @@ public class LittlePlanet extends ParametrizedFilter {
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
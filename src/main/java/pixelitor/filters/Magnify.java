@@ -25,6 +25,7 @@ import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.MagnifyFilter;
 import pixelitor.utils.BlurredShape;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -63,6 +64,12 @@ public class Magnify extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new MagnifyFilter(NAME);
         }
@@ -92,11 +99,17 @@ public class Magnify extends ParametrizedFilter {
         filter.calcAbsoluteCenter(src);
 
         filter.setShape(shape.getValue());
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
 
         setAffectedAreaShapes(filter.getAffectedAreaShapes());
 
         return dest;
     }
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
 }
 
@@ -24,6 +24,7 @@ import pixelitor.filters.gui.IntChoiceParam.Value;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.MirrorFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -58,6 +59,12 @@ public class Mirror extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new MirrorFilter();
         }
@@ -69,8 +76,14 @@ public class Mirror extends ParametrizedFilter {
 
         filter.setInterpolation(TransformFilter.NEAREST_NEIGHBOUR);
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
 }
 
@@ -27,6 +27,7 @@ import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.layers.Drawable;
 import pixelitor.utils.ImageUtils;
 
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.image.BufferedImage;
 
@@ -76,8 +77,25 @@ public abstract class ParametrizedFilter extends FilterWithGUI {
         return dest;
     }
 
+    @Override
+    protected BufferedImage transformDestRegion(BufferedImage src, BufferedImage dest,
+                                                Rectangle destRegion) {
+        // the affected area shapes are not shown in the region previews
+        return doTransform(src, dest, destRegion);
+    }
+
     public abstract BufferedImage doTransform(BufferedImage src, BufferedImage dest);
 
+    /**
+     * Calculates only the given region of the result, see
+     * {@link Filter#transformDestRegion(BufferedImage, BufferedImage, Rectangle)}.
+     * The destination region is null if the whole result is needed.
+     */
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
+        throw new UnsupportedOperationException(getName());
+    }
+
     private void setParamSet(ParamSet paramSet) {
         this.paramSet = paramSet;
         // switch the affected area functionality here on-off
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import com.jhlabs.image.PixelUtils;
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ShortLookupTable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * A color transformation which changes each pixel independently
+ * from the others and from its position. It doesn't change the alpha.
+ *
+ * Consecutive point operations can be fused into a single one,
+ * which needs only one pass over the image. Lookup tables are
+ * fused into a single lookup table. For the translucent pixels of
+ * premultiplied images the fused steps are still applied one after
+ * the other, with the same rounding as the corresponding filters.
+ */
+public final class PointOp {
+    private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+
+    private static final PointOp IDENTITY = new PointOp(new int[][]{
+            createIdentityTable(), createIdentityTable(), createIdentityTable()},
+            null, false, new PointOp[0]);
+
+    // the red, green and blue lookup tables, or null for a general function
+    private final int[][] tables;
+    private final IntUnaryOperator function;
+
+    // whether the translucent pixels of premultiplied images are
+    // unpremultiplied before this operation and premultiplied after it
+    private final boolean unpremultiplies;
+
+    // the fused operations in their original order, or null
+    // if this is a single operation, which wasn't fused
+    private final PointOp[] steps;
+
+    private PointOp(int[][] tables, IntUnaryOperator function, boolean unpremultiplies) {
+        this(tables, function, unpremultiplies, null);
+    }
+
+    private PointOp(int[][] tables, IntUnaryOperator function,
+                    boolean unpremultiplies, PointOp[] steps) {
+        this.tables = tables;
+        this.function = function;
+        this.unpremultiplies = unpremultiplies;
+        this.steps = steps;
+    }
+
+    public static PointOp identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * Creates a point operation from 256-element lookup tables.
+     * The values outside the 0..255 range are clamped. The translucent
+     * pixels of premultiplied images are unpremultiplied for the lookup,
+     * like in {@link pixelitor.filters.lookup.FastLookupOp}.
+     */
+    public static PointOp fromTables(int[] redTable, int[] greenTable, int[] blueTable) {
+        return new PointOp(new int[][]{
+                clampedCopy(redTable),
+                clampedCopy(greenTable),
+                clampedCopy(blueTable)}, null, true);
+    }
+
+    public static PointOp fromLookup(ShortLookupTable lut) {
+        short[][] table = lut.getTable();
+        int[][] tables = new int[3][];
+        for (int c = 0; c < 3; c++) {
+            // a single table is used for all channels
+            short[] channelTable = table[table.length == 1 ? 0 : c];
+            int[] intTable = new int[256];
+            for (int i = 0; i < 256; i++) {
+                intTable[i] = PixelUtils.clamp(channelTable[i]);
+            }
+            tables[c] = intTable;
+        }
+        return new PointOp(tables, null, true);
+    }
+
+    /**
+     * Creates a point operation from a general function, which receives
+     * and returns ARGB values. The returned alpha is ignored.
+     * For premultiplied images the function receives the premultiplied
+     * values, just like the filters that work directly on the pixel data.
+     */
+    public static PointOp fromFunction(IntUnaryOperator function) {
+        return new PointOp(null, function, false);
+    }
+
+    /**
+     * Returns the same operation, but without unpremultiplying the
+     * pixels of premultiplied images, like the filters that transform
+     * the stored pixel values directly.
+     */
+    public PointOp onPremultipliedValues() {
+        assert steps == null : "fused";
+        return new PointOp(tables, function, false);
+    }
+
+    /**
+     * Fuses the point operations of the given filters
+     * into a single operation, in the given order.
+     */
+    public static PointOp fuse(List<? extends PointOpFilter> filters) {
+        PointOp fused = IDENTITY;
+        for (PointOpFilter filter : filters) {
+            fused = fused.andThen(filter.getPointOp());
+        }
+        return fused;
+    }
+
+    /**
+     * Returns the point operation that first applies
+     * this operation, and then the given one.
+     */
+    public PointOp andThen(PointOp next) {
+        if (this == IDENTITY) {
+            return next;
+        }
+        if (next == IDENTITY) {
+            return this;
+        }
+        PointOp[] fusedSteps = Stream.concat(
+                Arrays.stream(getSteps()), Arrays.stream(next.getSteps()))
+                .toArray(PointOp[]::new);
+        if (tables != null && next.tables != null) {
+            int[][] fused = new int[3][256];
+            for (int c = 0; c < 3; c++) {
+                for (int i = 0; i < 256; i++) {
+                    fused[c][i] = next.tables[c][tables[c][i]];
+                }
+            }
+            return new PointOp(fused, null, false, fusedSteps);
+        }
+        IntUnaryOperator first = toFunction();
+        IntUnaryOperator second = next.toFunction();
+        return new PointOp(null,
+                rgb -> second.applyAsInt(first.applyAsInt(rgb)), false, fusedSteps);
+    }
+
+    private PointOp[] getSteps() {
+        return steps == null ? new PointOp[]{this} : steps;
+    }
+
+    private IntUnaryOperator toFunction() {
+        if (function != null) {
+            return function;
+        }
+        return this::lookup;
+    }
+
+    /**
+     * Transforms the given non-premultiplied ARGB value.
+     */
+    public int apply(int rgb) {
+        int a = rgb & 0xFF_00_00_00;
+        if (tables != null) {
+            return a | (lookup(rgb) & 0x00_FF_FF_FF);
+        }
+        return a | (function.applyAsInt(rgb) & 0x00_FF_FF_FF);
+    }
+
+    private int lookup(int rgb) {
+        int r = tables[0][(rgb >>> 16) & 0xFF];
+        int g = tables[1][(rgb >>> 8) & 0xFF];
+        int b = tables[2][rgb & 0xFF];
+        return (rgb & 0xFF_00_00_00) | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Applies this operation in a single parallel pass. Both images
+     * must have packed int pixels and the same dimensions and alpha
+     * premultiplication. They can also be the same image.
+     */
+    public BufferedImage filter(BufferedImage src, BufferedImage dest) {
+        assert ImageUtils.hasPackedIntArray(src);
+        assert ImageUtils.hasPackedIntArray(dest);
+        assert src.isAlphaPremultiplied() == dest.isAlphaPremultiplied();
+
+        int[] srcData = ImageUtils.getPixelsAsArray(src);
+        int[] destData = ImageUtils.getPixelsAsArray(dest);
+        assert srcData.length == destData.length;
+
+        boolean premultiplied = src.isAlphaPremultiplied();
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        if (srcData.length < MIN_PARALLEL_PIXELS) {
+            filterPixels(srcData, destData, 0, srcData.length, premultiplied);
+        } else {
+            ThreadPool.runInChunks(height, (startY, endY) ->
+                    filterPixels(srcData, destData, startY * width,
+                            endY * width, premultiplied),
+                    ProgressTracker.NULL_TRACKER);
+        }
+
+        return dest;
+    }
+
+    private void filterPixels(int[] srcData, int[] destData,
+                              int start, int end, boolean premultiplied) {
+        PointOp[] premultipliedSteps = getSteps();
+        for (int i = start; i < end; i++) {
+            int rgb = srcData[i];
+            int a = (rgb >>> 24) & 0xFF;
+
+            if (a == 255 || !premultiplied) {
+                destData[i] = apply(rgb);
+            } else {
+                // the rounding errors of the steps can't be fused
+                for (PointOp step : premultipliedSteps) {
+                    rgb = step.applyPremultiplied(rgb);
+                }
+                destData[i] = rgb;
+            }
+        }
+    }
+
+    /**
+     * Transforms the given premultiplied ARGB value in the same way
+     * as the filter of this (not fused) operation would.
+     */
+    private int applyPremultiplied(int rgb) {
+        int a = (rgb >>> 24) & 0xFF;
+        if (!unpremultiplies || a == 255) {
+            return apply(rgb);
+        }
+        if (a == 0) {
+            return 0;
+        }
+
+        // unpremultiply
+        float f = 255.0f / a;
+        int ur = Math.min(255, (int) (((rgb >>> 16) & 0xFF) * f));
+        int ug = Math.min(255, (int) (((rgb >>> 8) & 0xFF) * f));
+        int ub = Math.min(255, (int) ((rgb & 0xFF) * f));
+
+        int changed = apply(a << 24 | ur << 16 | ug << 8 | ub);
+
+        // premultiply
+        float f2 = a * (1.0f / 255.0f);
+        int r = PixelUtils.clamp((int) (((changed >>> 16) & 0xFF) * f2));
+        int g = PixelUtils.clamp((int) (((changed >>> 8) & 0xFF) * f2));
+        int b = PixelUtils.clamp((int) ((changed & 0xFF) * f2));
+
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int[] createIdentityTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+        return table;
+    }
+
+    private static int[] clampedCopy(int[] table) {
+        assert table.length == 256;
+
+        int[] copy = new int[256];
+        for (int i = 0; i < 256; i++) {
+            copy[i] = PixelUtils.clamp(table[i]);
+        }
+        return copy;
+    }
+}
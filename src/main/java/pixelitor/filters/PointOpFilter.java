@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+/**
+ * A filter that only changes the color of each pixel independently,
+ * so that it can be fused with similar filters into a single pass.
+ */
+public interface PointOpFilter {
+    /**
+     * Returns the effect of this filter with the current
+     * settings as a {@link PointOp}.
+     */
+    PointOp getPointOp();
+
+    /**
+     * Returns true if {@link #getPointOp()} can be called, which is
+     * not the case for filters that are not fully initialized yet.
+     */
+    default boolean hasPointOp() {
+        return true;
+    }
+}
@@ -25,6 +25,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.filters.impl.PolarTilesFilter;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import static pixelitor.filters.gui.ReseedActions.reseedNoise;
@@ -70,6 +71,12 @@ public class PolarTiles extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if (filter == null) {
             filter = new PolarTilesFilter();
         }
@@ -85,7 +92,13 @@ public class PolarTiles extends ParametrizedFilter {
         filter.setCurvature(curvature.getValueAsDouble());
         filter.setRandomness(randomness.getPercentageValF());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
@@ -29,7 +29,7 @@ import java.awt.image.ShortLookupTable;
 /**
  * Posterize filter
  */
-public class Posterize extends ParametrizedFilter {
+public class Posterize extends ParametrizedFilter implements PointOpFilter {
     public static final String NAME = "Posterize";
 
     private final RangeParam redLevels = new RangeParam("Red", 2, 2, 50);
@@ -51,16 +51,25 @@ public class Posterize extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        BufferedImageOp filterOp = new FastLookupOp(createLookupTable());
+        filterOp.filter(src, dest);
+
+        return dest;
+    }
+
+    @Override
+    public PointOp getPointOp() {
+        return PointOp.fromLookup(createLookupTable());
+    }
+
+    private ShortLookupTable createLookupTable() {
         int numRedLevels = redLevels.getValue();
         int numGreenLevels = greenLevels.getValue();
         int numBlueLevels = blueLevels.getValue();
         var rgbLookup = new RGBLookup();
         rgbLookup.initFromPosterize(numRedLevels, numGreenLevels, numBlueLevels);
 
-        BufferedImageOp filterOp = new FastLookupOp((ShortLookupTable) rgbLookup.getLookupOp());
-        filterOp.filter(src, dest);
-
-        return dest;
+        return (ShortLookupTable) rgbLookup.getLookupOp();
     }
 
     @Override
@@ -80,7 +80,22 @@ public class RandomFilterGUI extends FilterGUI {
         forwardButton.setEnabled(filterSource.hasNext());
     }
 
+    @Override
+    public void finishPreview() {
+        if (lastFilterPanel instanceof FilterGUI) {
+            ((FilterGUI) lastFilterPanel).finishPreview();
+        }
+    }
+
+    @Override
+    public void cancelPreview() {
+        if (lastFilterPanel instanceof FilterGUI) {
+            ((FilterGUI) lastFilterPanel).cancelPreview();
+        }
+    }
+
     private void showFilter(Filter newFilter) {
+        cancelPreview(); // of the previous filter
         if (lastFilterPanel != null) {
             realSettingsPanel.remove(lastFilterPanel);
         }
@@ -28,8 +28,11 @@ import java.io.File;
 public class AnimGIFWriter implements AnimationWriter {
     private final AnimatedGifEncoder encoder;
 
-    public AnimGIFWriter(File file, int delayMillis) {
+    public AnimGIFWriter(File file, int delayMillis,
+                         boolean globalPalette, boolean frameDifferencing) {
         encoder = new AnimatedGifEncoder();
+        encoder.setGlobalPalette(globalPalette);
+        encoder.setFrameDifferencing(frameDifferencing);
         encoder.start(file);
         encoder.setDelay(delayMillis);
         encoder.setRepeat(0);
@@ -17,10 +17,6 @@
 
 package pixelitor.filters.animation;
 
-import pixelitor.filters.Filter;
-import pixelitor.filters.ParametrizedFilter;
-import pixelitor.filters.gui.CompositeState;
-import pixelitor.gui.PixelitorWindow;
 import pixelitor.gui.utils.GUIUtils;
 import pixelitor.layers.Drawable;
 import pixelitor.utils.Messages;
@@ -28,20 +24,43 @@ import pixelitor.utils.Messages;
 import javax.swing.*;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 import static pixelitor.ChangeReason.TWEEN_PREVIEW;
 
 /**
- * A SwingWorker for rendering the frames of a tween animation
+ * A SwingWorker for rendering the frames of a tween animation.
+ * The filtered images of the next frames are calculated on several
+ * threads, while the current frame is written out on a separate thread.
  */
 class RenderTweenFramesTask extends SwingWorker<Void, Void> {
+    // how many frames can be rendered in advance by each renderer thread
+    private static final int FRAMES_AHEAD_PER_THREAD = 2;
+
     private final TweenAnimation animation;
     private final Drawable dr;
+    private final String filterName;
+
+    private int numFrames;
+    private TweenFrameRenderer renderer;
+
+    // The frames of the forward animation that are written again
+    // in the backward half of a ping-pong animation. They are
+    // soft references, because they can take a lot of memory.
+    private SoftReference<BufferedImage>[] pongFrames;
 
     public RenderTweenFramesTask(TweenAnimation tweenAnimation, Drawable dr) {
         animation = tweenAnimation;
         this.dr = dr;
+        filterName = tweenAnimation.getFilter().getName();
     }
 
     void onPropertyChange(PropertyChangeEvent evt,
@@ -76,66 +95,99 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         return null;
     }
 
+    @SuppressWarnings("unchecked")
     private void renderFrames() {
-        int numFrames = animation.getNumFrames();
-        ParametrizedFilter filter = animation.getFilter();
-
+        numFrames = animation.getNumFrames();
         AnimationWriter animationWriter = animation.createAnimationWriter();
-        boolean canceled = false;
 
-        PixelitorWindow busyCursorParent = PixelitorWindow.getInstance();
-
-        dr.tweenCalculatingStarted();
+        GUIUtils.invokeAndWait(() -> {
+            dr.tweenCalculatingStarted();
+            renderer = new TweenFrameRenderer(animation, dr);
+        });
+        if (renderer == null) { // the exception was already shown
+            finish(animationWriter, true);
+            return;
+        }
 
         int numTotalFrames = numFrames;
         boolean pingPong = animation.isPingPong() && numFrames > 2;
         if (pingPong) {
             numTotalFrames = 2 * numFrames - 2;
+            pongFrames = new SoftReference[numFrames];
         }
 
-        for (int frameNr = 0; frameNr < numTotalFrames; frameNr++) {
-            if (isCancelled()) {
-                canceled = true;
-                break;
+        ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "[tween writer]");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<?> lastWrite = null;
+
+        int maxFramesAhead = FRAMES_AHEAD_PER_THREAD * renderer.getNumThreads();
+        Deque<Frame> startedFrames = new ArrayDeque<>();
+        int numStartedFrames = 0;
+        boolean canceled = false;
+
+        try {
+            for (int frameNr = 0; frameNr < numTotalFrames; frameNr++) {
+                while (numStartedFrames < numTotalFrames
+                        && numStartedFrames <= frameNr + maxFramesAhead
+                        && canStart(numStartedFrames, frameNr)) {
+                    startedFrames.add(startFrame(numStartedFrames));
+                    numStartedFrames++;
+                }
+
+                if (isCancelled()) {
+                    canceled = true;
+                    break;
+                }
+                int percentProgress = (int) ((100.0 * frameNr) / numTotalFrames);
+                setProgress(percentProgress);
+
+                BufferedImage image = startedFrames.remove().getImage();
+                if (pingPong && frameNr > 0 && frameNr < numFrames - 1) {
+                    pongFrames[frameNr] = new SoftReference<>(image);
+                }
+
+                // the previous frame must be written before
+                // this one, and it also limits the used memory
+                if (lastWrite != null) {
+                    lastWrite.get();
+                }
+                lastWrite = writer.submit(() -> {
+                    animationWriter.addFrame(image);
+                    return null;
+                });
             }
-            int percentProgress = (int) ((100.0 * frameNr) / numTotalFrames);
-            setProgress(percentProgress);
-
-            double time;
-            if (frameNr < numFrames) { // ping: normal animation forwards
-                time = ((double) frameNr) / numFrames;
-            } else { // pong: animating backwards
-                // TODO we are calculating the same frames again
-                // they could be cached somewhere
-                // perhaps in an array of soft references with the
-                // calculated frames or in the case of file sequence
-                // output one could simply make copies of the files.
-                int effectiveFrame = 2 * (numFrames - 1) - frameNr;
-                time = ((double) effectiveFrame) / numFrames;
+            if (lastWrite != null) {
+                lastWrite.get();
             }
+        } catch (ExecutionException e) {
+            canceled = true;
+            Messages.showException(e.getCause());
+        } catch (InterruptedException e) {
+            canceled = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            renderer.shutDown();
+            writer.shutdown();
+        }
 
-            try {
-                // first render the frame...
-                BufferedImage image = renderFrame(filter, time, busyCursorParent);
-
-                // ...then write the file
-                // TODO ideally while writing out the frame,
-                // the rendering of the next frame should be
-                // started on another thread
-                animationWriter.addFrame(image);
-            } catch (Exception e) {
-                canceled = true;
-                Messages.showException(e);
-                break;
-            }
+        try {
+            // the writer can't be canceled while it's adding a frame
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
         setProgress(100);
+        finish(animationWriter, canceled);
+    }
 
-        boolean finalCanceled = canceled;
+    private void finish(AnimationWriter animationWriter, boolean canceled) {
         SwingUtilities.invokeLater(() -> {
             dr.tweenCalculatingEnded();
-            if (finalCanceled) {
+            if (canceled) {
                 animationWriter.cancel();
             } else {
                 animationWriter.finish();
@@ -143,29 +195,72 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         });
     }
 
-    private BufferedImage renderFrame(ParametrizedFilter filter,
-                                      double time,
-                                      PixelitorWindow busyCursorParent) {
-
-        long runCountBefore = Filter.runCount;
-
-        CompositeState intermediateState = animation.tween(time);
-        filter.getParamSet().setState(intermediateState);
+    /**
+     * A backward frame can be started only after the same forward
+     * frame was written, because it might be reused.
+     */
+    private boolean canStart(int frameNr, int firstUnwrittenFrameNr) {
+        if (frameNr < numFrames) {
+            return true;
+        }
+        int effectiveFrame = 2 * (numFrames - 1) - frameNr;
+        return effectiveFrame < firstUnwrittenFrameNr;
+    }
 
-        // all sorts of problems can happen
-        // if filters run outside of EDT
-        Runnable filterRunTask = () -> filter.run(dr, TWEEN_PREVIEW, busyCursorParent);
-        GUIUtils.invokeAndWait(filterRunTask);
+    private Frame startFrame(int frameNr) {
+        int effectiveFrame = frameNr;
+        if (frameNr >= numFrames) { // pong: animating backwards
+            effectiveFrame = 2 * (numFrames - 1) - frameNr;
+            BufferedImage written = pongFrames[effectiveFrame].get();
+            if (written != null) {
+                return new Frame(written);
+            }
+        }
+        double time = ((double) effectiveFrame) / numFrames;
+        return new Frame(renderer.render(time));
+    }
 
-        long runCountAfter = Filter.runCount;
-        assert runCountAfter == runCountBefore + 1;
+    /**
+     * Shows the filtered image in the composition and
+     * returns the resulting composite image.
+     */
+    private BufferedImage showFrame(BufferedImage filtered) {
+        GUIUtils.invokeAndWait(() ->
+                dr.changePreviewImage(filtered, filterName, TWEEN_PREVIEW));
 
         var comp = dr.getComp();
         comp.repaint();
 
+        // the shared composite images are not modified later
         return comp.getCompositeImage();
     }
 
+    /**
+     * A frame that is either being rendered, or
+     * that can be reused because it was already written.
+     */
+    private class Frame {
+        private final Future<BufferedImage> filtered;
+        private final BufferedImage written;
+
+        Frame(Future<BufferedImage> filtered) {
+            this.filtered = filtered;
+            written = null;
+        }
+
+        Frame(BufferedImage written) {
+            filtered = null;
+            this.written = written;
+        }
+
+        BufferedImage getImage() throws ExecutionException, InterruptedException {
+            if (written != null) {
+                return written;
+            }
+            return showFrame(filtered.get());
+        }
+    }
+
     @Override
     protected void done() {
     }
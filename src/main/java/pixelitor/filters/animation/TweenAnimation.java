@@ -36,6 +36,7 @@ public class TweenAnimation {
     private TweenOutputType outputType;
     private File output; // file or directory
     private boolean pingPong;
+    private boolean frameDifferencing;
 
     public ParametrizedFilter getFilter() {
         return filter;
@@ -81,9 +82,13 @@ public class TweenAnimation {
         this.outputType = outputType;
     }
 
+    public void setFrameDifferencing(boolean frameDifferencing) {
+        this.frameDifferencing = frameDifferencing;
+    }
+
     public AnimationWriter createAnimationWriter() {
         return outputType.createAnimationWriter(
-                output, millisBetweenFrames);
+                output, millisBetweenFrames, frameDifferencing);
     }
 
     public CompositeState tween(double time) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.animation;
+
+import pixelitor.ThreadPool;
+import pixelitor.filters.FilterAction;
+import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.gui.ParamSet;
+import pixelitor.layers.Drawable;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates the filtered images of the tween animation frames
+ * on several threads. The filters are not thread-safe, therefore
+ * each thread works with its own copy of the animated filter.
+ */
+class TweenFrameRenderer {
+    private final TweenAnimation animation;
+    private final BufferedImage src;
+    private final int numThreads;
+
+    // the filter copies that are not used by a thread at the moment
+    private final BlockingQueue<ParametrizedFilter> idleFilters;
+    private final ExecutorService executor;
+
+    /**
+     * Must be called on the EDT, while the settings
+     * of the animated filter can't change.
+     */
+    TweenFrameRenderer(TweenAnimation animation, Drawable dr) {
+        assert EventQueue.isDispatchThread() : "not EDT thread";
+
+        this.animation = animation;
+        src = dr.getFilterSourceImage();
+
+        ParametrizedFilter filter = animation.getFilter();
+        FilterAction filterAction = filter.getFilterAction();
+
+        // without a filter action the filter can't be copied,
+        // and the frames are rendered one after the other
+        numThreads = filterAction == null ? 1 : ThreadPool.getNumCores();
+        idleFilters = new ArrayBlockingQueue<>(numThreads);
+        if (filterAction == null) {
+            idleFilters.add(filter);
+        } else {
+            ParamSet origParams = filter.getParamSet();
+            for (int i = 0; i < numThreads; i++) {
+                var copy = (ParametrizedFilter) filterAction.createNewFilter();
+                ParamSet copyParams = copy.getParamSet();
+                // the ranges must be adjusted before the values are copied
+                copyParams.considerImageSize(dr.getComp().getCanvas().getImBounds());
+                copyParams.copyValuesFrom(origParams);
+                idleFilters.add(copy);
+            }
+        }
+
+        executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "[tween renderer]");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Starts the rendering of the filtered image at the given animation time.
+     */
+    Future<BufferedImage> render(double time) {
+        return executor.submit(() -> {
+            ParametrizedFilter filter = idleFilters.take();
+            try {
+                filter.getParamSet().setState(animation.tween(time));
+                return filter.transformImage(src);
+            } finally {
+                idleFilters.add(filter);
+            }
+        });
+    }
+
+    /**
+     * Cancels the frames that are not rendered yet.
+     */
+    void shutDown() {
+        executor.shutdownNow();
+    }
+}
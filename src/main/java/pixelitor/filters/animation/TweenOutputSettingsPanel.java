@@ -56,6 +56,7 @@ public class TweenOutputSettingsPanel extends ValidatedPanel
     private JComboBox<Interpolation> ipCB;
     private JComboBox<TweenOutputType> outputTypeCB;
     private final JCheckBox pingPongCB = new JCheckBox();
+    private final JCheckBox frameDifferencingCB = new JCheckBox();
     private final BrowseFilesSupport browseFilesSupport = new BrowseFilesSupport(
             Dirs.getLastSave().getAbsolutePath());
     private JTextField fileNameTF;
@@ -76,6 +77,7 @@ public class TweenOutputSettingsPanel extends ValidatedPanel
         addAnimationLengthSelector(tfLayerUI, gbh);
         addInterpolationSelector(gbh);
         addPingPongSelector(gbh);
+        addFrameDifferencingSelector(gbh);
         addFileSelector(tfLayerUI, gbh);
     }
 
@@ -126,6 +128,12 @@ public class TweenOutputSettingsPanel extends ValidatedPanel
         pingPongCB.addActionListener(e -> updateCalculations());
     }
 
+    private void addFrameDifferencingSelector(GridBagHelper gbh) {
+        // smaller files, but the unchanged areas keep the colors of the earlier frames
+        frameDifferencingCB.setToolTipText("Only write the areas that changed since the previous frame");
+        gbh.addLabelAndControl("Only Changed Areas:", frameDifferencingCB);
+    }
+
     private void addFileSelector(LayerUI<JTextField> tfLayerUI, GridBagHelper gbh) {
         JPanel filePanel = new JPanel(new FlowLayout());
         filePanel.setBorder(createTitledBorder("Output File/Folder"));
@@ -145,6 +153,7 @@ public class TweenOutputSettingsPanel extends ValidatedPanel
             browseFilesSupport.setFileChooserTitle("Select Output File");
             browseFilesSupport.setFileFilter(selected.getFileFilter());
         }
+        frameDifferencingCB.setEnabled(selected.supportsFrameDifferencing());
         if (fileNameTF != null) { // not the initial setup
             fileNameTF.repaint();
         }
@@ -218,6 +227,8 @@ public class TweenOutputSettingsPanel extends ValidatedPanel
         animation.setMillisBetweenFrames((int) (1000.0 / fps));
         animation.setInterpolation((Interpolation) ipCB.getSelectedItem());
         animation.setPingPong(pingPongCB.isSelected());
+        animation.setFrameDifferencing(type.supportsFrameDifferencing()
+                && frameDifferencingCB.isSelected());
 
         if (output.isDirectory()) {
             Dirs.setLastSaveIfValid(output);
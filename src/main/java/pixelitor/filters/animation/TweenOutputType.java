@@ -30,7 +30,7 @@ import static java.lang.String.format;
 public enum TweenOutputType {
     PNG_FILE_SEQUENCE("PNG File Sequence") {
         @Override
-        AnimationWriter createAnimationWriter(File file, int delayMillis) {
+        AnimationWriter createAnimationWriter(File file, int delayMillis, boolean frameDifferencing) {
             return new PNGFileSequenceWriter(file);
         }
 
@@ -50,8 +50,29 @@ public enum TweenOutputType {
         }
     }, ANIM_GIF("Animated GIF File") {
         @Override
-        AnimationWriter createAnimationWriter(File file, int delayMillis) {
-            return new AnimGIFWriter(file, delayMillis);
+        AnimationWriter createAnimationWriter(File file, int delayMillis, boolean frameDifferencing) {
+            return new AnimGIFWriter(file, delayMillis, false, frameDifferencing);
+        }
+
+        @Override
+        public String isOK(File output) {
+            return expectFileInExistingDir(output, this, "GIF");
+        }
+
+        @Override
+        public boolean needsDirectory() {
+            return false;
+        }
+
+        @Override
+        public FileNameExtensionFilter getFileFilter() {
+            return FileChoosers.gifFilter;
+        }
+    }, ANIM_GIF_GLOBAL_PALETTE("Animated GIF File, Global Palette") {
+        @Override
+        AnimationWriter createAnimationWriter(File file, int delayMillis, boolean frameDifferencing) {
+            // faster and smaller, but the colors of the first frame are used
+            return new AnimGIFWriter(file, delayMillis, true, frameDifferencing);
         }
 
         @Override
@@ -76,7 +97,7 @@ public enum TweenOutputType {
         this.guiName = guiName;
     }
 
-    abstract AnimationWriter createAnimationWriter(File file, int delayMillis);
+    abstract AnimationWriter createAnimationWriter(File file, int delayMillis, boolean frameDifferencing);
 
     /**
      * Returns the error message or null if the argument is OK as output
@@ -85,6 +106,13 @@ public enum TweenOutputType {
 
     public abstract boolean needsDirectory();
 
+    /**
+     * Returns whether only the changed areas of the frames can be written
+     */
+    public boolean supportsFrameDifferencing() {
+        return !needsDirectory();
+    }
+
     private static String expectFileInExistingDir(File output,
                                                   TweenOutputType type,
                                                   String fileType) {
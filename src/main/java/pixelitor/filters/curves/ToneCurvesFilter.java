@@ -19,6 +19,8 @@
 package pixelitor.filters.curves;
 
 import com.jhlabs.image.CurvesFilter;
+import pixelitor.filters.PointOp;
+import pixelitor.filters.PointOpFilter;
 import pixelitor.filters.gui.FilterGUI;
 import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.layers.Drawable;
@@ -30,7 +32,7 @@ import java.awt.image.BufferedImage;
  *
  * @author Łukasz Kurzaj lukaszkurzaj@gmail.com
  */
-public class ToneCurvesFilter extends FilterWithGUI {
+public class ToneCurvesFilter extends FilterWithGUI implements PointOpFilter {
     public static final String NAME = "Curves";
 
     private CurvesFilter filter;
@@ -47,22 +49,37 @@ public class ToneCurvesFilter extends FilterWithGUI {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        if (filter == null) {
-            filter = new CurvesFilter(NAME);
-        }
         if (curves == null) {
             return src;
         }
 
+        dest = getConfiguredFilter().filter(src, dest);
+        return dest;
+    }
+
+    @Override
+    public PointOp getPointOp() {
+        if (curves == null) {
+            return PointOp.identity();
+        }
+
+        int[][] tables = getConfiguredFilter().getTables();
+        // like the CurvesFilter, it doesn't unpremultiply
+        return PointOp.fromTables(tables[0], tables[1], tables[2])
+                .onPremultipliedValues();
+    }
+
+    private CurvesFilter getConfiguredFilter() {
+        if (filter == null) {
+            filter = new CurvesFilter(NAME);
+        }
         filter.setCurves(
                 curves.getCurve(ToneCurveType.RGB).curve,
                 curves.getCurve(ToneCurveType.RED).curve,
                 curves.getCurve(ToneCurveType.GREEN).curve,
                 curves.getCurve(ToneCurveType.BLUE).curve
         );
-
-        dest = filter.filter(src, dest);
-        return dest;
+        return filter;
     }
 
     @Override
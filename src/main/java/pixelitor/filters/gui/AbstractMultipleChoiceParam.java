@@ -48,14 +48,17 @@ public abstract class AbstractMultipleChoiceParam<E>
 
     @Override
     public ParamState<?> copyState() {
-        throw new UnsupportedOperationException();
+        return new FixedParamState<>(getSelectedItem());
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void setState(ParamState<?> state) {
-        throw new UnsupportedOperationException();
+        setSelectedItem((E) ((FixedParamState<?>) state).getValue(), false);
     }
 
+    public abstract void setSelectedItem(E item, boolean trigger);
+
     /**
      * Sets up the automatic enabling of another {@link FilterSetting}
      * depending on the selected item of this one.
@@ -165,13 +165,15 @@ public class AngleParam extends AbstractFilterParam {
     @Override
     public AngleParamState copyState() {
         // save the degrees so that the interpolation
-        // does not confuse the user
-        return new AngleParamState(getValueInDegrees());
+        // does not confuse the user, but without rounding,
+        // because the state is also used for copying the value
+        return new AngleParamState(Math.toDegrees(getValueInIntuitiveRadians()));
     }
 
     @Override
     public void setState(ParamState<?> state) {
-        setValueInDegrees(((AngleParamState) state).angle, false);
+        double intuitiveRadians = Math.toRadians(((AngleParamState) state).angle);
+        setValue(Utils.intuitiveToAtan2Angle(intuitiveRadians), false);
     }
 
     @Override
@@ -198,6 +200,23 @@ public class AngleParam extends AbstractFilterParam {
             return new AngleParamState(interpolatedAngle);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AngleParamState other = (AngleParamState) o;
+            return Double.compare(angle, other.angle) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(angle);
+        }
+
         @Override
         public String toString() {
             return format("%s[degrees=%.2f]",
@@ -145,12 +145,12 @@ public class BooleanParam extends AbstractFilterParam {
 
     @Override
     public ParamState<?> copyState() {
-        throw new UnsupportedOperationException();
+        return new FixedParamState<>(currentValue);
     }
 
     @Override
     public void setState(ParamState<?> state) {
-        throw new UnsupportedOperationException();
+        setValue((Boolean) ((FixedParamState<?>) state).getValue(), true, false);
     }
 
     public void addActionListener(ActionListener actionListener) {
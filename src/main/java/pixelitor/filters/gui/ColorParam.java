@@ -139,6 +139,23 @@ public class ColorParam extends AbstractFilterParam {
                     color, endState.color, (float) progress));
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ColorParamState other = (ColorParamState) o;
+            return Objects.equals(color, other.color);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(color);
+        }
+
         @Override
         public String toString() {
             return format("%s[color=%s]",
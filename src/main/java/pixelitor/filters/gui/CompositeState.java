@@ -86,6 +86,23 @@ public class CompositeState implements ParamState<CompositeState>, Iterable<Para
         return new CompositeState(interpolatedStates);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CompositeState other = (CompositeState) o;
+        return states.equals(other.states);
+    }
+
+    @Override
+    public int hashCode() {
+        return states.hashCode();
+    }
+
     @Override
     public Iterator<ParamState<?>> iterator() {
         return states.iterator();
@@ -85,6 +85,10 @@ public class DialogParam extends AbstractFilterParam {
         }
     }
 
+    List<FilterParam> getChildren() {
+        return List.of(children);
+    }
+
     @Override
     public CompositeState copyState() {
         return new CompositeState(children);
@@ -17,8 +17,10 @@
 
 package pixelitor.filters.gui;
 
+import pixelitor.Build;
 import pixelitor.filters.Filter;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.test.RandomGUITest;
 
 import javax.swing.*;
 
@@ -30,6 +32,7 @@ import static pixelitor.ChangeReason.PREVIEWING;
 public abstract class FilterGUI extends JPanel implements PreviewExecutor {
     protected Filter filter;
     private final Drawable dr;
+    private ProgressivePreview progressivePreview;
 
     protected FilterGUI(Filter filter, Drawable dr) {
         this.filter = filter;
@@ -38,6 +41,43 @@ public abstract class FilterGUI extends JPanel implements PreviewExecutor {
 
     @Override
     public void runFilterPreview() {
-        filter.run(dr, PREVIEWING, this);
+        if (Build.isUnitTesting() || RandomGUITest.isRunning()) {
+            // the tests expect the preview to be ready immediately
+            filter.run(dr, PREVIEWING, this);
+            return;
+        }
+
+        if (progressivePreview == null || !progressivePreview.isFor(filter)) {
+            // the filter can change in subclasses
+            cancelPreview();
+            progressivePreview = new ProgressivePreview(filter, dr);
+        }
+        progressivePreview.request();
+    }
+
+    /**
+     * Makes sure that the preview corresponds to the current
+     * settings. Must be called before the preview is accepted.
+     */
+    public void finishPreview() {
+        if (progressivePreview != null) {
+            progressivePreview.finish(this);
+        }
+    }
+
+    /**
+     * Stops the preview calculations which are still running.
+     */
+    public void cancelPreview() {
+        if (progressivePreview != null) {
+            progressivePreview.cancel();
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        // also called when the dialog is closed or a wizard page is replaced
+        cancelPreview();
+        super.removeNotify();
     }
 }
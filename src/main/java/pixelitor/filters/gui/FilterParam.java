@@ -46,13 +46,13 @@ public interface FilterParam extends FilterSetting, Resettable {
     /**
      * Captures the state of this parameter into the returned
      * "memento" object.
-     * Implemented only for parameters that can be animated.
+     * The states of the parameters that can't be animated
+     * are not interpolated, but they can be copied.
      */
     ParamState<?> copyState();
 
     /**
      * Sets the internal state according to the given {@link ParamState}
-     * Implemented only for parameters that can be animated.
      */
     void setState(ParamState<?> state);
 
@@ -51,8 +51,14 @@ public abstract class FilterWithGUI extends Filter {
                 .content(gui)
                 .align(FRAME_RIGHT)
                 .withScrollbars()
-                .okAction(() -> dr.onFilterDialogAccepted(getName()))
-                .cancelAction(dr::onFilterDialogCanceled)
+                .okAction(() -> {
+                    gui.finishPreview();
+                    dr.onFilterDialogAccepted(getName());
+                })
+                .cancelAction(() -> {
+                    gui.cancelPreview();
+                    dr.onFilterDialogCanceled();
+                })
                 .show();
     }
 }
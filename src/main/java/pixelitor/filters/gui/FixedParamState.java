@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.gui;
+
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * The state of a filter parameter that can't be animated.
+ * It can be still copied to another instance of the same filter,
+ * but the interpolation keeps the starting value.
+ */
+class FixedParamState<T> implements ParamState<FixedParamState<T>> {
+    private final T value;
+
+    FixedParamState(T value) {
+        this.value = value;
+    }
+
+    T getValue() {
+        return value;
+    }
+
+    @Override
+    public FixedParamState<T> interpolate(FixedParamState<T> endState, double progress) {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FixedParamState<?> other = (FixedParamState<?>) o;
+        return Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return format("%s[value=%s]",
+                getClass().getSimpleName(), value);
+    }
+}
@@ -282,6 +282,24 @@ public class GradientParam extends AbstractFilterParam {
             return interpolatedColors;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            GradientParamState other = (GradientParamState) o;
+            return Arrays.equals(thumbPositions, other.thumbPositions)
+                    && Arrays.equals(colors, other.colors);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(thumbPositions) + Arrays.hashCode(colors);
+        }
+
         @Override
         public String toString() {
             return format("%s[thumbPositions=%s]",
@@ -305,6 +305,23 @@ public class GroupedRangeParam extends AbstractFilterParam {
             return new GroupedRangeParamState(interpolatedValues);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            GroupedRangeParamState other = (GroupedRangeParamState) o;
+            return Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
         @Override
         public String toString() {
             return format("%s[values=%s]",
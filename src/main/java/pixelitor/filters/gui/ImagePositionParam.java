@@ -21,6 +21,7 @@ import com.jhlabs.image.ImageMath;
 
 import javax.swing.*;
 import java.awt.geom.Point2D;
+import java.util.Objects;
 
 import static java.lang.String.format;
 import static pixelitor.filters.gui.RandomizePolicy.ALLOW_RANDOMIZE;
@@ -158,6 +159,24 @@ public class ImagePositionParam extends AbstractFilterParam {
             return new ImagePositionParamState(interpolatedX, interpolatedY);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ImagePositionParamState other = (ImagePositionParamState) o;
+            return Double.compare(relativeX, other.relativeX) == 0
+                    && Double.compare(relativeY, other.relativeY) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(relativeX, relativeY);
+        }
+
         @Override
         public String toString() {
             return format("%s[relX=%.2f, relY=%.2f]",
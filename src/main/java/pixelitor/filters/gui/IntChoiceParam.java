@@ -89,12 +89,13 @@ public class IntChoiceParam extends AbstractMultipleChoiceParam<IntChoiceParam.V
 
     @Override
     public void setSelectedItem(Object item) {
-        setSelectedItem(item, true);
+        setSelectedItem((Value) item, true);
     }
 
-    public void setSelectedItem(Object item, boolean trigger) {
+    @Override
+    public void setSelectedItem(Value item, boolean trigger) {
         if (!currentChoice.equals(item)) {
-            currentChoice = (Value) item;
+            currentChoice = item;
             fireContentsChanged(this, -1, -1);
             if (trigger) {
                 if (adjustmentListener != null) {  // when called from randomize, this is null
@@ -164,6 +164,40 @@ public class ParamSet {
         return new CompositeState(this);
     }
 
+    /**
+     * Returns the states of all parameters, including those that
+     * can't be animated, so that two such lists are equal only if
+     * the filter would produce the same result with them.
+     */
+    public List<ParamState<?>> copyFullState() {
+        List<ParamState<?>> states = new ArrayList<>();
+        addFullStates(paramList, states);
+        return states;
+    }
+
+    private static void addFullStates(List<FilterParam> params, List<ParamState<?>> states) {
+        for (FilterParam param : params) {
+            if (param instanceof DialogParam) {
+                // the state of a DialogParam includes only the animatable children
+                addFullStates(((DialogParam) param).getChildren(), states);
+            } else {
+                states.add(param.copyState());
+            }
+        }
+    }
+
+    /**
+     * Sets all parameter values, including those that can't be animated,
+     * from the given param set, which must belong to another instance
+     * of the same filter class.
+     */
+    public void copyValuesFrom(ParamSet other) {
+        assert paramList.size() == other.paramList.size();
+        for (int i = 0; i < paramList.size(); i++) {
+            paramList.get(i).setState(other.paramList.get(i).copyState());
+        }
+    }
+
     public void setState(CompositeState newStateSet) {
         Iterator<ParamState<?>> newStates = newStateSet.iterator();
         paramList.stream()
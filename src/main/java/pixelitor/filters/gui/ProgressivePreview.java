@@ -0,0 +1,452 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.gui;
+
+import pixelitor.Composition;
+import pixelitor.filters.Filter;
+import pixelitor.filters.FilterUtils;
+import pixelitor.gui.View;
+import pixelitor.gui.utils.GUIUtils;
+import pixelitor.layers.Drawable;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static pixelitor.ChangeReason.PREVIEWING;
+
+/**
+ * Calculates the filter previews outside the EDT, so that the filter
+ * dialogs don't freeze while the filter is running.
+ *
+ * For big images a downscaled version of the image is filtered first,
+ * so that an approximate result is shown quickly, and then it is
+ * refined to the full resolution. A new request cancels the outdated
+ * calculations, and only the results of the latest request are shown.
+ *
+ * If the filter can calculate its result for a region, and only a part
+ * of the image is visible, then only the visible part is calculated,
+ * and the whole image is calculated only when the dialog is accepted.
+ * If the view is zoomed out, then the visible part is also calculated
+ * first at the resolution of the view.
+ */
+class ProgressivePreview {
+    // the images above this size get a low-resolution preview first
+    private static final int MIN_PROXY_SOURCE_PIXELS = 1024 * 1024;
+    private static final int PROXY_PIXELS = 512 * 512;
+
+    // the visible regions get a low-resolution preview first only
+    // if at least this many image pixels are shown in a view pixel
+    private static final double MAX_REGION_PROXY_SCALING = 0.5;
+
+    // the visible part is extended by this, so that small
+    // scrolling movements don't reveal unfiltered pixels
+    private static final int VISIBLE_REGION_MARGIN = 32;
+
+    // how long a closing dialog waits for a cancelled calculation
+    private static final long CANCEL_WAIT_MILLIS = 200;
+
+    // a single thread, because the filters are not thread-safe
+    private static final ThreadFactory threadFactory
+            = r -> new Thread(r, "[preview thread]");
+    private static final ExecutorService executor
+            = Executors.newSingleThreadExecutor(threadFactory);
+
+    private final Filter filter;
+    private final Drawable dr;
+
+    // the fields are accessed only on the EDT
+    private long latestRequest;
+    private boolean fullResultShown = true;
+    private Future<BufferedImage> running;
+    // true if the running task calculates the whole image
+    private boolean runningIsFull;
+
+    // the preview image for the region calculations, which is the
+    // source image with the last calculated region patched into it
+    private BufferedImage regionPreview;
+    private Rectangle patchedRegion;
+
+    ProgressivePreview(Filter filter, Drawable dr) {
+        this.filter = filter;
+        this.dr = dr;
+    }
+
+    boolean isFor(Filter filter) {
+        return this.filter == filter;
+    }
+
+    /**
+     * Starts the calculation of a new preview with the current filter settings.
+     */
+    void request() {
+        assert EventQueue.isDispatchThread() : "not EDT thread";
+
+        cancelRunning();
+        long request = ++latestRequest;
+        fullResultShown = false;
+
+        BufferedImage src = dr.getFilterSourceImage();
+        Rectangle region = null;
+        if (filter.canTransformRegion(src)) {
+            region = calcVisibleRegion(src);
+        }
+        Rectangle finalRegion = region;
+        View view = dr.getComp().getView();
+        double viewScaling = view == null ? 1.0 : view.getScaling();
+        running = executor.submit(() -> calculate(request, src, finalRegion, viewScaling));
+        runningIsFull = region == null;
+    }
+
+    /**
+     * Makes sure that the full-resolution preview of the latest
+     * request is shown. If the whole image is already being calculated,
+     * then that calculation is waited for, otherwise a new one is started.
+     * In both cases the filter runs on the preview thread, so that it's
+     * never used on two threads, even if a cancelled calculation
+     * ignores the interruption.
+     */
+    void finish(Component busyCursorParent) {
+        assert EventQueue.isDispatchThread() : "not EDT thread";
+
+        if (fullResultShown) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        BufferedImage src = dr.getFilterSourceImage();
+        Future<BufferedImage> fullTask;
+        if (running != null && runningIsFull) {
+            fullTask = running;
+        } else {
+            cancelRunning();
+            fullTask = executor.submit(() -> filter.transformImage(src));
+        }
+        running = null;
+        latestRequest++; // the queued results are ignored from now on
+
+        BufferedImage[] result = new BufferedImage[1];
+        GUIUtils.runWithBusyCursor(busyCursorParent,
+                () -> result[0] = waitForResult(fullTask));
+        if (result[0] == null) {
+            // the reused calculation failed, and its exception was not
+            // shown, because it was outdated, so it's shown now
+            result[0] = waitForResult(executor.submit(() -> filter.transformImage(src)));
+            if (result[0] == null) {
+                return;
+            }
+        }
+
+        dr.changePreviewImage(result[0], filter.getName(), PREVIEWING);
+        fullResultShown = true;
+        long totalTime = (System.nanoTime() - startTime) / 1_000_000;
+        Messages.showPerformanceMessage(filter.getName(), totalTime);
+        FilterUtils.setLastFilter(filter);
+    }
+
+    private BufferedImage waitForResult(Future<BufferedImage> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            filter.handleException(e.getCause(), dr);
+        }
+        return null;
+    }
+
+    /**
+     * Cancels the calculation in progress. It waits only for a short
+     * time until the calculation really stops, because the filters
+     * that don't process their lines in chunks ignore the interruption,
+     * and their outdated results are ignored anyway.
+     */
+    void cancel() {
+        assert EventQueue.isDispatchThread() : "not EDT thread";
+
+        cancelRunning();
+        latestRequest++; // the already queued results are also ignored
+        try {
+            // the executor has a single thread, so this
+            // returns after the cancelled task has stopped
+            executor.submit(() -> {
+            }).get(CANCEL_WAIT_MILLIS, MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the cancelled task can finish later in the background
+        }
+    }
+
+    private void cancelRunning() {
+        if (running != null) {
+            // interrupting the preview thread stops the
+            // filters that process their lines in chunks
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    /**
+     * Returns the visible part of the given filter source image,
+     * or null if it's not much smaller than the whole image.
+     */
+    private Rectangle calcVisibleRegion(BufferedImage src) {
+        Composition comp = dr.getComp();
+        View view = comp.getView();
+        if (view == null || view.getViewContainer() == null) {
+            return null;
+        }
+
+        // the visible part in canvas coordinates...
+        Rectangle region = view.componentToImageSpace(
+                view.getVisiblePart()).getBounds();
+        // ...relative to the image...
+        region.translate(-dr.getTx(), -dr.getTy());
+        // ...relative to the filter source
+        var selection = comp.getSelection();
+        if (selection != null) {
+            Rectangle selBounds = selection.getShapeBounds(1);
+            selBounds.translate(-dr.getTx(), -dr.getTy());
+            selBounds = selBounds.intersection(new Rectangle(0, 0,
+                    dr.getImage().getWidth(), dr.getImage().getHeight()));
+            region.translate(-selBounds.x, -selBounds.y);
+        }
+
+        region.grow(VISIBLE_REGION_MARGIN, VISIBLE_REGION_MARGIN);
+        region = region.intersection(
+                new Rectangle(0, 0, src.getWidth(), src.getHeight()));
+        if (region.isEmpty()) {
+            return null;
+        }
+
+        long regionPixels = (long) region.width * region.height;
+        long srcPixels = (long) src.getWidth() * src.getHeight();
+        if (regionPixels > srcPixels / 2) {
+            return null;
+        }
+        return region;
+    }
+
+    /**
+     * Calculates the preview for the given request, and returns the
+     * full-resolution result, or null if it wasn't calculated.
+     */
+    private BufferedImage calculate(long request, BufferedImage src,
+                                    Rectangle region, double viewScaling) {
+        try {
+            if (region != null) {
+                if (regionPreview == null) {
+                    // only the preview thread creates it, but
+                    // after this it's modified only on the EDT
+                    regionPreview = ImageUtils.copyImage(src);
+                }
+                if (canUseRegionProxy(src, region, viewScaling)) {
+                    BufferedImage proxyResult = calcRegionProxyResult(src, region, viewScaling);
+                    if (proxyResult != null) {
+                        showRegion(request, src, proxyResult, region);
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        return null;
+                    }
+                }
+                BufferedImage regionResult = filter.transformRegion(src, region);
+                showRegion(request, src, regionResult, region);
+                return null;
+            }
+
+            if (canUseProxy(src)) {
+                BufferedImage proxyResult = calcProxyResult(src);
+                if (proxyResult != null) {
+                    show(request, proxyResult, false, 0);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+
+            long startTime = System.nanoTime();
+            BufferedImage result = filter.transformImage(src);
+            long totalTime = (System.nanoTime() - startTime) / 1_000_000;
+            show(request, result, true, totalTime);
+            return result;
+        } catch (CancellationException e) {
+            // a newer request was started
+        } catch (Throwable e) {
+            EventQueue.invokeLater(() -> {
+                if (isCurrent(request)) {
+                    filter.handleException(e, dr);
+                }
+            });
+        }
+        return null;
+    }
+
+    private static boolean canUseProxy(BufferedImage src) {
+        return src.getType() != BufferedImage.TYPE_CUSTOM
+                && (long) src.getWidth() * src.getHeight() > MIN_PROXY_SOURCE_PIXELS;
+    }
+
+    private static boolean canUseRegionProxy(BufferedImage src, Rectangle region,
+                                             double viewScaling) {
+        return viewScaling <= MAX_REGION_PROXY_SCALING
+                && src.getType() != BufferedImage.TYPE_CUSTOM
+                && (long) region.width * region.height > PROXY_PIXELS;
+    }
+
+    /**
+     * Calculates the given region at the resolution of the view, and
+     * returns the result upscaled to the size of the region, or null if
+     * it couldn't be calculated. Like the downscaled preview of the whole
+     * image, this is only an approximation, because the filter radii
+     * are not scaled.
+     */
+    private BufferedImage calcRegionProxyResult(BufferedImage src, Rectangle region,
+                                                double scaling) {
+        // the part of the source that is needed for the region
+        Rectangle srcBounds = new Rectangle(0, 0, src.getWidth(), src.getHeight());
+        Rectangle srcPart = srcBounds;
+        int margin = filter.getRegionMargin();
+        if (margin != Filter.WHOLE_SOURCE_NEEDED) {
+            srcPart = new Rectangle(region);
+            srcPart.grow(margin, margin);
+            srcPart = srcPart.intersection(srcBounds);
+        }
+
+        int proxyWidth = Math.max(1, (int) (srcPart.width * scaling));
+        int proxyHeight = Math.max(1, (int) (srcPart.height * scaling));
+        BufferedImage proxy = ImageUtils.getFasterScaledInstance(
+                src.getSubimage(srcPart.x, srcPart.y, srcPart.width, srcPart.height),
+                proxyWidth, proxyHeight, VALUE_INTERPOLATION_BILINEAR, true);
+        if (!filter.canTransformRegion(proxy)) {
+            return null;
+        }
+
+        // the region in the coordinates of the proxy
+        double sx = proxyWidth / (double) srcPart.width;
+        double sy = proxyHeight / (double) srcPart.height;
+        int x1 = (int) ((region.x - srcPart.x) * sx);
+        int y1 = (int) ((region.y - srcPart.y) * sy);
+        int x2 = (int) Math.ceil((region.x + region.width - srcPart.x) * sx);
+        int y2 = (int) Math.ceil((region.y + region.height - srcPart.y) * sy);
+        Rectangle proxyRegion = new Rectangle(x1, y1, x2 - x1, y2 - y1)
+                .intersection(new Rectangle(0, 0, proxyWidth, proxyHeight));
+        if (proxyRegion.isEmpty()) {
+            return null;
+        }
+
+        BufferedImage proxyResult = filter.transformRegion(proxy, proxyRegion);
+        BufferedImage upscaled = ImageUtils.createImageWithSameCM(
+                proxyResult, region.width, region.height);
+        Graphics2D g = upscaled.createGraphics();
+        g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(proxyResult, 0, 0, region.width, region.height, null);
+        g.dispose();
+        return upscaled;
+    }
+
+    /**
+     * Runs the filter on a downscaled version of the source image,
+     * and returns the result upscaled to the original size, or null
+     * if the filter didn't change the image.
+     */
+    private BufferedImage calcProxyResult(BufferedImage src) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        double scale = Math.sqrt(PROXY_PIXELS / ((double) srcWidth * srcHeight));
+        int proxyWidth = Math.max(1, (int) (srcWidth * scale));
+        int proxyHeight = Math.max(1, (int) (srcHeight * scale));
+
+        BufferedImage proxy = ImageUtils.getFasterScaledInstance(src,
+                proxyWidth, proxyHeight, VALUE_INTERPOLATION_BILINEAR, true);
+        BufferedImage proxyResult = filter.transformImage(proxy);
+        if (proxyResult == proxy) {
+            return null;
+        }
+
+        BufferedImage upscaled = ImageUtils.createImageWithSameCM(
+                proxyResult, srcWidth, srcHeight);
+        Graphics2D g = upscaled.createGraphics();
+        g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(proxyResult, 0, 0, srcWidth, srcHeight, null);
+        g.dispose();
+        return upscaled;
+    }
+
+    private void show(long request, BufferedImage result,
+                      boolean fullResolution, long totalTime) {
+        EventQueue.invokeLater(() -> {
+            if (!isCurrent(request)) {
+                return; // outdated result
+            }
+            dr.changePreviewImage(result, filter.getName(), PREVIEWING);
+            if (fullResolution) {
+                fullResultShown = true;
+                running = null;
+                Messages.showPerformanceMessage(filter.getName(), totalTime);
+                FilterUtils.setLastFilter(filter);
+            }
+        });
+    }
+
+    private void showRegion(long request, BufferedImage src,
+                            BufferedImage regionResult, Rectangle region) {
+        BufferedImage preview = regionPreview;
+        EventQueue.invokeLater(() -> {
+            if (!isCurrent(request)) {
+                return; // outdated result
+            }
+            Graphics2D g = preview.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            if (patchedRegion != null && !region.contains(patchedRegion)) {
+                // restore the source pixels in the previously patched region
+                g.setClip(patchedRegion);
+                g.drawImage(src, 0, 0, null);
+                g.setClip(null);
+            }
+            g.drawImage(regionResult, region.x, region.y, null);
+            g.dispose();
+            patchedRegion = region;
+
+            dr.changePreviewImage(preview, filter.getName(), PREVIEWING);
+            // the whole image will be calculated only if the dialog is accepted
+            running = null;
+        });
+    }
+
+    private boolean isCurrent(long request) {
+        // the layer can stop previewing without
+        // the dialog being closed (in the wizards)
+        return request == latestRequest && dr.isPreviewing();
+    }
+}
@@ -501,6 +501,23 @@ public class RangeParam extends AbstractFilterParam implements BoundedRangeModel
             return value;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            RangeParamState other = (RangeParamState) o;
+            return Double.compare(value, other.value) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value);
+        }
+
         @Override
         public String toString() {
             return format("%s[value=%.2f]",
@@ -23,6 +23,8 @@ import pixelitor.tools.shapes.BasicStrokeJoin;
 import pixelitor.tools.shapes.ShapeType;
 import pixelitor.tools.shapes.StrokeType;
 
+import java.util.Objects;
+
 /**
  * Represents the configuration of a stroke.
  * It also functions as the {@link ParamState} of {@link StrokeParam}
@@ -53,6 +55,28 @@ public class StrokeSettings implements ParamState<StrokeSettings> {
         return new StrokeSettings(newWidth, cap, join, type, shapeType, dashed);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StrokeSettings other = (StrokeSettings) o;
+        return Double.compare(width, other.width) == 0
+                && dashed == other.dashed
+                && cap == other.cap
+                && join == other.join
+                && type == other.type
+                && shapeType == other.shapeType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, cap, join, type, shapeType, dashed);
+    }
+
     public double getWidth() {
         return width;
     }
@@ -93,12 +93,15 @@ public class TextParam extends AbstractFilterParam {
 
     @Override
     public ParamState<?> copyState() {
-        throw new UnsupportedOperationException();
+        return new FixedParamState<>(getValue());
     }
 
     @Override
     public void setState(ParamState<?> state) {
-        throw new UnsupportedOperationException();
+        boolean triggerWasTrue = trigger;
+        trigger = false;
+        setValue((String) ((FixedParamState<?>) state).getValue());
+        trigger = triggerWasTrue;
     }
 
     public boolean isTrigger() {
@@ -78,4 +78,11 @@ public class JHBoxBlur extends ParametrizedFilter {
 
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        float maxRadius = Math.max(radius.getValueAsFloat(0), radius.getValueAsFloat(1));
+        // every iteration spreads the pixels further
+        return ((int) Math.ceil(maxRadius) + 1) * numberOfIterations.getValue();
+    }
+}
@@ -130,4 +130,9 @@ public class JHConvolutionEdge extends ParametrizedFilter {
 
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return 1; // 3x3 kernels
+    }
+}
@@ -23,6 +23,7 @@ import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ReseedActions;
 import pixelitor.filters.gui.ShowOriginal;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import static pixelitor.filters.gui.IntChoiceParam.EDGE_REPEAT_PIXELS;
@@ -50,6 +51,12 @@ public class JHFrostedGlass extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         if(amount.isZero()) {
             return src;
         }
@@ -62,7 +69,13 @@ public class JHFrostedGlass extends ParametrizedFilter {
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
@@ -69,6 +69,11 @@ public class JHGaussianBlur extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public int getRegionMargin() {
+        return (int) Math.ceil(radius.getValueAsFloat()) + 1;
+    }
+
     @Override
     protected boolean createDefaultDestImg() {
         return false;
@@ -77,4 +82,4 @@ public class JHGaussianBlur extends ParametrizedFilter {
     public void setRadius(int newRadius) {
         radius.setValue(newRadius);
     }
-}
\ No newline at end of file
+}
@@ -24,6 +24,7 @@ import pixelitor.filters.gui.IntChoiceParam;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -58,6 +59,12 @@ public class JHLensOverImage extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         float refraction = refractionIndex.getPercentageValF();
         int hRadius = radius.getValue(0);
         int vRadius = radius.getValue(1);
@@ -81,10 +88,16 @@ public class JHLensOverImage extends ParametrizedFilter {
 //        filter.setEdgeAction(edgeAction.getCurrentInt());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
 
         setAffectedAreaShapes(filter.getAffectedAreaShapes());
 
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+}
@@ -39,4 +39,9 @@ public class JHMedian extends Filter {
         dest = filter.filter(src, dest);
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return 1; // 3x3 neighborhood
+    }
+}
@@ -26,6 +26,7 @@ import pixelitor.filters.gui.IntChoiceParam;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.layers.Drawable;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -52,6 +53,12 @@ public class JHPerspective extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        return doTransform(src, dest, null);
+    }
+
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest,
+                                     Rectangle destRegion) {
         float northWestX = northWest.getRelativeX();
         float northWestY = northWest.getRelativeY();
         float northEastX = northEast.getRelativeX();
@@ -67,12 +74,18 @@ public class JHPerspective extends ParametrizedFilter {
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
 
+        filter.setDestRegion(destRegion);
         dest = filter.filter(src, dest);
         return dest;
     }
 
+    @Override
+    public int getRegionMargin() {
+        return WHOLE_SOURCE_NEEDED;
+    }
+
     @Override
     public FilterGUI createGUI(Drawable dr) {
         return new GridAdjustmentPanel(this, dr, false, ShowOriginal.YES);
     }
-}
\ No newline at end of file
+}
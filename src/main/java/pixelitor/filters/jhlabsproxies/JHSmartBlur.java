@@ -74,8 +74,13 @@ public class JHSmartBlur extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public int getRegionMargin() {
+        return radiusParam.getValue() + 1;
+    }
+
     @Override
     public boolean excludedFromAnimation() {
         return true;
     }
-}
\ No newline at end of file
+}
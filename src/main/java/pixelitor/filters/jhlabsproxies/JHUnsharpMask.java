@@ -64,4 +64,9 @@ public class JHUnsharpMask extends ParametrizedFilter {
 
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return (int) Math.ceil(radius.getValueAsFloat()) + 1;
+    }
+}
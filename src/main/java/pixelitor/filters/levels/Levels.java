@@ -17,6 +17,8 @@
 
 package pixelitor.filters.levels;
 
+import pixelitor.filters.PointOp;
+import pixelitor.filters.PointOpFilter;
 import pixelitor.filters.gui.FilterGUI;
 import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.levels.gui.LevelsGUI;
@@ -32,7 +34,7 @@ import java.util.Objects;
 /**
  * The Levels filter
  */
-public class Levels extends FilterWithGUI {
+public class Levels extends FilterWithGUI implements PointOpFilter {
     private RGBLookup rgbLookup;
 
     public Levels() {
@@ -60,6 +62,20 @@ public class Levels extends FilterWithGUI {
         return dest;
     }
 
+    @Override
+    public PointOp getPointOp() {
+        if (rgbLookup == null) {
+            throw new IllegalStateException("rgbLookup not initialized");
+        }
+
+        return PointOp.fromLookup((ShortLookupTable) rgbLookup.getLookupOp());
+    }
+
+    @Override
+    public boolean hasPointOp() {
+        return rgbLookup != null;
+    }
+
     @Override
     public void randomizeSettings() {
         int inputBlackValue = Rnd.nextInt(255);
@@ -19,6 +19,8 @@ package pixelitor.filters.lookup;
 
 import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.PointOp;
+import pixelitor.filters.PointOpFilter;
 import pixelitor.filters.gui.IntChoiceParam;
 import pixelitor.filters.gui.IntChoiceParam.Value;
 import pixelitor.filters.gui.RangeParam;
@@ -39,7 +41,7 @@ import static java.awt.Color.YELLOW;
 /**
  * Color balance filter
  */
-public class ColorBalance extends ParametrizedFilter {
+public class ColorBalance extends ParametrizedFilter implements PointOpFilter {
     private static final int EVERYTHING = 0;
     private static final int SHADOWS = 1;
     private static final int MIDTONES = 2;
@@ -77,17 +79,32 @@ public class ColorBalance extends ParametrizedFilter {
             return src;
         }
 
-        var rgbLookup = new LookupHelper(cr, mg, yb, affect.getValue())
-                .getLookup();
-
-        var filterOp = new FastLookupOp(
-                (ShortLookupTable) rgbLookup.getLookupOp());
-
+        var filterOp = new FastLookupOp(createLookupTable(cr, mg, yb));
         filterOp.filter(src, dest);
 
         return dest;
     }
 
+    @Override
+    public PointOp getPointOp() {
+        float cr = cyanRed.getValueAsFloat();
+        float mg = magentaGreen.getValueAsFloat();
+        float yb = yellowBlue.getValueAsFloat();
+
+        if (cr == 0 && mg == 0 && yb == 0) {
+            return PointOp.identity();
+        }
+
+        return PointOp.fromLookup(createLookupTable(cr, mg, yb));
+    }
+
+    private ShortLookupTable createLookupTable(float cr, float mg, float yb) {
+        var rgbLookup = new LookupHelper(cr, mg, yb, affect.getValue())
+                .getLookup();
+
+        return (ShortLookupTable) rgbLookup.getLookupOp();
+    }
+
     private static class LookupHelper {
         private final float cyanRed;
         private final float magentaGreen;
@@ -19,16 +19,17 @@ package pixelitor.gui;
 
 import pixelitor.Composition;
 import pixelitor.OpenImages;
-import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
 import pixelitor.utils.ViewActivationListener;
 
 import javax.swing.*;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.EventQueue;
 import java.awt.GridLayout;
-import java.awt.image.BufferedImage;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static java.awt.BorderLayout.CENTER;
 import static java.awt.BorderLayout.NORTH;
@@ -54,6 +55,11 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
     private boolean logarithmic;
     private final JComboBox<String> typeChooser;
 
+    // the composition whose histograms are being calculated, and the
+    // one whose calculation was requested in the meantime (used on the EDT)
+    private Composition calculatedComp;
+    private Composition pendingComp;
+
     private HistogramsPanel() {
         setLayout(new BorderLayout());
 
@@ -111,31 +117,55 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         updateFrom(newView.getComp());
     }
 
+    /**
+     * Starts calculating the histograms of the given composition outside the
+     * EDT. The requests arriving while a calculation is running are coalesced
+     * into a single calculation, which starts when the running one finishes.
+     */
     public void updateFrom(Composition comp) {
         Objects.requireNonNull(comp);
         if (!isShown()) {
             return;
         }
-        BufferedImage image = comp.getCompositeImage();
-
-        int[] reds = new int[HISTOGRAM_RESOLUTION];
-        int[] blues = new int[HISTOGRAM_RESOLUTION];
-        int[] greens = new int[HISTOGRAM_RESOLUTION];
-
-        int[] data = ImageUtils.getPixelsAsArray(image);
-        for (int rgb : data) {
-            int a = (rgb >>> 24) & 0xFF;
-            if (a > 0) {
-                int r = (rgb >>> 16) & 0xFF;
-                int g = (rgb >>> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                reds[r]++;
-                greens[g]++;
-                blues[b]++;
-            }
+        if (calculatedComp != null) {
+            pendingComp = comp;
+            return;
         }
+        calculatedComp = comp;
+        CompletableFuture<int[][]> histograms;
+        try {
+            histograms = comp.calcHistogramsAsync();
+        } catch (RuntimeException e) {
+            // otherwise all later updates would be queued as pending forever
+            calculatedComp = null;
+            throw e;
+        }
+        histograms
+                .thenAcceptAsync(this::histogramsCalculated, EventQueue::invokeLater)
+                .exceptionally(e -> {
+                    EventQueue.invokeLater(this::calculationFinished);
+                    return Messages.showExceptionOnEDT(e);
+                });
+    }
+
+    private void histogramsCalculated(int[][] histograms) {
+        // don't show the results of an already closed composition
+        if (OpenImages.getActiveComp() == calculatedComp) {
+            showHistograms(histograms[0], histograms[1], histograms[2]);
+        }
+        calculationFinished();
+    }
+
+    private void calculationFinished() {
+        calculatedComp = null;
+        Composition next = pendingComp;
+        pendingComp = null;
+        if (next != null) {
+            updateFrom(next);
+        }
+    }
 
+    private void showHistograms(int[] reds, int[] greens, int[] blues) {
         if (logarithmic) {
             for (int i = 0; i < HISTOGRAM_RESOLUTION; i++) {
                 // Add one before taking the logarithm to avoid calculating log(0)
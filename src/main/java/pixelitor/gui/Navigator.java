@@ -19,6 +19,7 @@ package pixelitor.gui;
 
 import org.jdesktop.swingx.painter.CheckerboardPainter;
 import pixelitor.Canvas;
+import pixelitor.Composition;
 import pixelitor.OpenImages;
 import pixelitor.colors.ColorUtils;
 import pixelitor.gui.utils.DialogBuilder;
@@ -27,6 +28,7 @@ import pixelitor.menus.view.ZoomLevel;
 import pixelitor.menus.view.ZoomMenu;
 import pixelitor.utils.Cursors;
 import pixelitor.utils.ImageUtils;
+import pixelitor.utils.MipmapPyramid;
 import pixelitor.utils.ViewActivationListener;
 
 import javax.swing.*;
@@ -310,8 +312,12 @@ public class Navigator extends JComponent
 
         var origTransform = g2.getTransform();
 
-        g2.scale(imgScalingRatio, imgScalingRatio);
-        g2.drawImage(view.getComp().getCompositeImage(), 0, 0, null);
+        Composition comp = view.getComp();
+        Canvas canvas = comp.getCanvas();
+        int level = MipmapPyramid.levelFor(imgScalingRatio, canvas.getImWidth(), canvas.getImHeight());
+        double levelScaling = imgScalingRatio * (1 << level);
+        g2.scale(levelScaling, levelScaling);
+        g2.drawImage(comp.getCachedCompositeImage(level), 0, 0, null);
         g2.setTransform(origTransform);
 
         g2.setStroke(VIEW_BOX_STROKE);
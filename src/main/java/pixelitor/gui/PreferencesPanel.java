@@ -51,6 +51,7 @@ public class PreferencesPanel extends JPanel {
     private static final Border EMPTY_BORDER =
         BorderFactory.createEmptyBorder(0, 10, 5, 0);
     private JTextField undoLevelsTF;
+    private JTextField undoMemoryTF;
     private JComboBox<IntChoiceParam.Value> thumbSizeCB;
 
     private PreferencesPanel() {
@@ -72,6 +73,7 @@ public class PreferencesPanel extends JPanel {
         addThemeChooser(gbh);
         addUIChooser(gbh);
         addUndoLevelsChooser(gbh);
+        addUndoMemoryChooser(gbh);
         addThumbSizeChooser(gbh);
 
         generalPanel.setBorder(EMPTY_BORDER);
@@ -138,6 +140,15 @@ public class PreferencesPanel extends JPanel {
                         undoLevelsTF, true));
     }
 
+    private void addUndoMemoryChooser(GridBagHelper gbh) {
+        undoMemoryTF = new JTextField(4);
+        undoMemoryTF.setName("undoMemoryTF");
+        undoMemoryTF.setText(String.valueOf(History.getUndoMemory()));
+        gbh.addLabelAndControl("Undo Memory (MB): ",
+                TextFieldValidator.createMinIntLayer("Undo Memory",
+                        undoMemoryTF, History.MIN_UNDO_MEMORY));
+    }
+
     private void addThumbSizeChooser(GridBagHelper gbh) {
         IntChoiceParam.Value[] thumbSizes = {
                 new IntChoiceParam.Value("24x24 pixels", 24),
@@ -212,29 +223,34 @@ public class PreferencesPanel extends JPanel {
         // we don't want to continuously set the undo levels
         // as the user edits the text field, because low levels
         // erase the history, so we set it in the validator
-        int undoLevels = 0;
-        boolean couldParse = true;
-        try {
-            undoLevels = getUndoLevels();
-            if (undoLevels < 0) {
-                couldParse = false;
-            }
-        } catch (NumberFormatException ex) {
-            couldParse = false;
-        }
-
-        if (couldParse) {
-            History.setUndoLevels(undoLevels);
-            return true;
-        } else {
+        int undoLevels = parsePositiveInt(undoLevelsTF);
+        if (undoLevels < 0) {
             Dialogs.showErrorDialog(d, "Error",
                 "<html>The <b>Undo/Redo Levels</b> must be a positive integer.");
             return false;
         }
+        int undoMemory = parsePositiveInt(undoMemoryTF);
+        if (undoMemory < History.MIN_UNDO_MEMORY) {
+            Dialogs.showErrorDialog(d, "Error",
+                "<html>The <b>Undo Memory</b> must be at least "
+                    + History.MIN_UNDO_MEMORY + " megabytes.");
+            return false;
+        }
+
+        History.setUndoLevels(undoLevels);
+        History.setUndoMemory(undoMemory);
+        return true;
     }
 
-    private int getUndoLevels() {
-        return parseInt(undoLevelsTF.getText().trim());
+    /**
+     * Returns the value of the given text field, or -1 if it's invalid
+     */
+    private static int parsePositiveInt(JTextField tf) {
+        try {
+            return Math.max(-1, parseInt(tf.getText().trim()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
 
     private void updateThumbSize() {
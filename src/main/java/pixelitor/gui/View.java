@@ -46,6 +46,7 @@ import pixelitor.tools.util.PRectangle;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Lazy;
 import pixelitor.utils.Messages;
+import pixelitor.utils.MipmapPyramid;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.debug.DebugNodes;
 import pixelitor.utils.test.Assertions;
@@ -364,8 +365,7 @@ public class View extends JComponent
             assert mask != null : "no mask in " + maskViewMode;
             mask.paintLayerOnGraphics(g2, true);
         } else {
-            BufferedImage compositeImage = comp.getCompositeImage();
-            ImageUtils.drawImageWithClipping(g2, compositeImage);
+            paintCompositeImage(g2);
 
             if (maskViewMode.showRuby()) {
                 LayerMask mask = comp.getActiveLayer().getMask();
@@ -412,6 +412,26 @@ public class View extends JComponent
         return zoomLevel.allowPixelGrid() && !comp.showsSelection();
     }
 
+    /**
+     * Paints the composite image in image space. When zoomed out, a
+     * downsampled mipmap level is painted, so that the cost is
+     * proportional to the screen pixels, not to the image pixels.
+     */
+    private void paintCompositeImage(Graphics2D g2) {
+        int level = MipmapPyramid.levelFor(scaling, canvas.getImWidth(), canvas.getImHeight());
+        BufferedImage compositeImage = comp.getCachedCompositeImage(level);
+        if (level == 0) {
+            ImageUtils.drawImageWithClipping(g2, compositeImage);
+            return;
+        }
+
+        var imageTransform = g2.getTransform();
+        int levelScaling = 1 << level;
+        g2.scale(levelScaling, levelScaling);
+        ImageUtils.drawImageWithClipping(g2, compositeImage);
+        g2.setTransform(imageTransform);
+    }
+
     private void drawPixelGrid(Graphics2D g2) {
         g2.setXORMode(BLACK);
         double pixelSize = zoomLevel.getViewScale();
@@ -48,6 +48,22 @@ public interface TextFieldValidator {
         }
     }
 
+    static ValidationResult hasValidIntAtLeast(String label, JTextField textField, int min) {
+        String text = textField.getText().trim();
+        if (text.isEmpty()) {
+            return ValidationResult.error("<b>" + label + "</b> can't be empty.");
+        }
+        try {
+            int value = Integer.parseInt(text);
+            if (value < min) {
+                return ValidationResult.error("<b>" + label + "</b> must be at least " + min + ".");
+            }
+        } catch (NumberFormatException ex) {
+            return ValidationResult.error("<b>" + label + "</b> must be an integer.");
+        }
+        return ValidationResult.ok();
+    }
+
     static ValidationResult hasValidPositiveInt(String label, JTextField textField, boolean allowZero) {
         String text = textField.getText().trim();
         if (text.isEmpty()) {
@@ -68,6 +84,14 @@ public interface TextFieldValidator {
         return ValidationResult.ok();
     }
 
+    static JLayer<JTextField> createMinIntLayer(String label,
+                                                JTextField tf,
+                                                int min) {
+        TFValidationLayerUI layerUI = new TFValidationLayerUI(
+                textField1 -> hasValidIntAtLeast(label, textField1, min));
+        return new JLayer<>(tf, layerUI);
+    }
+
     static JLayer<JTextField> createPositiveIntLayer(String label,
                                                      JTextField tf,
                                                      boolean allowZero) {
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import pixelitor.utils.Messages;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores the backup pixels of the undoable edits within an explicit
+ * memory budget. All backups except the most recent one are compressed
+ * in the background, and if the budget is still exceeded, the least
+ * recently used ones are moved to a temporary file.
+ */
+public class BackupStore {
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "[history compressor]");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long budget;
+
+    // the number of bytes held on the heap by the stored backups
+    private long heapBytes;
+
+    // the live backups, from the least recently used to the most recently used
+    private final Set<Backup> backups = new LinkedHashSet<>();
+
+    // the last saved backup, which is kept uncompressed
+    private Backup newest;
+
+    private FileChannel spillFile;
+    private long spillFileEnd;
+    private boolean spillFailed;
+
+    // the space of the disposed spilled backups inside the spill
+    // file, as non-adjacent extents: start offset -> length
+    private final TreeMap<Long, Integer> freeExtents = new TreeMap<>();
+
+    public BackupStore(long budget) {
+        this.budget = budget;
+    }
+
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        enforceBudget();
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    synchronized long getHeapBytes() {
+        return heapBytes;
+    }
+
+    synchronized long getSpillFileSize() {
+        return spillFileEnd;
+    }
+
+    public Backup save(BufferedImage image) {
+        return save(new Backup(this, image.getRaster(), image));
+    }
+
+    public Backup save(Raster raster) {
+        return save(new Backup(this, raster, null));
+    }
+
+    private synchronized Backup save(Backup backup) {
+        if (newest != null) {
+            scheduleCompression(newest);
+        }
+        newest = backup;
+        backups.add(backup);
+        heapBytes += backup.rawSize;
+        enforceBudget();
+        return backup;
+    }
+
+    private void scheduleCompression(Backup backup) {
+        if (backup.isCompressible() && backup.raster != null) {
+            compressor.execute(() -> compressInBackground(backup));
+        }
+    }
+
+    private void compressInBackground(Backup backup) {
+        Raster raster;
+        synchronized (this) {
+            if (backup.disposed || backup.raster == null) {
+                return;
+            }
+            raster = backup.raster;
+        }
+
+        byte[] compressed = compress(raster);
+
+        synchronized (this) {
+            // it could have been used for undo or compressed by
+            // enforceBudget while this thread was compressing it
+            if (backup.disposed || backup.raster == null) {
+                return;
+            }
+            backup.setCompressed(compressed);
+            enforceBudget();
+        }
+    }
+
+    /**
+     * Moves the least recently used backups to the spill file until
+     * the heap usage fits into the budget.
+     */
+    private void enforceBudget() {
+        Iterator<Backup> it = backups.iterator();
+        while (heapBytes > budget && !spillFailed && it.hasNext()) {
+            Backup backup = it.next();
+            if (backup == newest || backup.fileOffset >= 0 || !backup.isCompressible()) {
+                continue;
+            }
+            if (backup.compressed == null) {
+                backup.setCompressed(compress(backup.raster));
+            }
+            if (!spill(backup)) {
+                // the file can't be written, so the backups stay in memory
+                return;
+            }
+        }
+    }
+
+    private boolean spill(Backup backup) {
+        int length = backup.compressed.length;
+        long offset = allocate(length);
+        try {
+            if (spillFile == null) {
+                Path path = Files.createTempFile("pixelitor_undo", ".tmp");
+                spillFile = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE);
+            }
+            ByteBuffer data = ByteBuffer.wrap(backup.compressed);
+            long position = offset;
+            while (data.hasRemaining()) {
+                position += spillFile.write(data, position);
+            }
+        } catch (IOException e) {
+            release(offset, length);
+            // don't try again for every new backup
+            spillFailed = true;
+            Messages.showExceptionOnEDT(e);
+            return false;
+        }
+
+        backup.fileOffset = offset;
+        backup.fileLength = length;
+
+        heapBytes -= length;
+        backup.compressed = null;
+        return true;
+    }
+
+    /**
+     * Returns the offset of a free space with the given length in the
+     * spill file, reusing the space of the disposed backups if possible.
+     */
+    private long allocate(int length) {
+        for (Map.Entry<Long, Integer> extent : freeExtents.entrySet()) {
+            int extentLength = extent.getValue();
+            if (extentLength >= length) {
+                long offset = extent.getKey();
+                freeExtents.remove(offset);
+                if (extentLength > length) {
+                    freeExtents.put(offset + length, extentLength - length);
+                }
+                return offset;
+            }
+        }
+        long offset = spillFileEnd;
+        spillFileEnd += length;
+        return offset;
+    }
+
+    /**
+     * Marks the given space of the spill file as free, merging it with
+     * the neighboring free extents. A free space at the end of the file
+     * is truncated, so the file is empty if no backup is spilled.
+     */
+    private void release(long offset, int length) {
+        Map.Entry<Long, Integer> before = freeExtents.lowerEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            freeExtents.remove(before.getKey());
+            offset = before.getKey();
+            length += before.getValue();
+        }
+        Integer afterLength = freeExtents.remove(offset + length);
+        if (afterLength != null) {
+            length += afterLength;
+        }
+
+        if (offset + length == spillFileEnd) {
+            spillFileEnd = offset;
+            truncateSpillFile();
+        } else {
+            freeExtents.put(offset, length);
+        }
+    }
+
+    private synchronized Raster getRaster(Backup backup) {
+        if (backup.disposed) {
+            return null;
+        }
+        // mark it as the most recently used
+        backups.remove(backup);
+        backups.add(backup);
+
+        if (backup.raster != null) {
+            return backup.raster;
+        }
+
+        byte[] compressed = backup.compressed;
+        if (compressed == null) {
+            try {
+                compressed = readSpilled(backup);
+            } catch (IOException e) {
+                // the edit using this backup can't be undone
+                Messages.showExceptionOnEDT(e);
+                return null;
+            }
+        }
+        return backup.decompress(compressed);
+    }
+
+    private byte[] readSpilled(Backup backup) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(backup.fileLength);
+        long position = backup.fileOffset;
+        while (buffer.hasRemaining()) {
+            int read = spillFile.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of the undo file");
+            }
+            position += read;
+        }
+        return buffer.array();
+    }
+
+    private synchronized void dispose(Backup backup) {
+        if (backup.disposed) {
+            return;
+        }
+        backup.disposed = true;
+        backups.remove(backup);
+        if (newest == backup) {
+            newest = null;
+        }
+
+        if (backup.raster != null) {
+            heapBytes -= backup.rawSize;
+        } else if (backup.compressed != null) {
+            heapBytes -= backup.compressed.length;
+        } else if (backup.fileOffset >= 0) {
+            release(backup.fileOffset, backup.fileLength);
+        }
+        backup.raster = null;
+        backup.image = null;
+        backup.compressed = null;
+    }
+
+    private void truncateSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillFile.truncate(spillFileEnd);
+        } catch (IOException e) {
+            // the space after the end is reused by the next spills anyway
+            Messages.showExceptionOnEDT(e);
+        }
+    }
+
+    private static byte[] compress(Raster raster) {
+        Object elements = raster.getDataElements(raster.getMinX(), raster.getMinY(),
+                raster.getWidth(), raster.getHeight(), null);
+        byte[] raw;
+        if (elements instanceof int[]) {
+            int[] ints = (int[]) elements;
+            ByteBuffer buffer = ByteBuffer.allocate(ints.length * 4);
+            buffer.asIntBuffer().put(ints);
+            raw = buffer.array();
+        } else if (elements instanceof short[]) {
+            short[] shorts = (short[]) elements;
+            ByteBuffer buffer = ByteBuffer.allocate(shorts.length * 2);
+            buffer.asShortBuffer().put(shorts);
+            raw = buffer.array();
+        } else {
+            raw = (byte[]) elements;
+        }
+
+        // the fastest level, because it runs for every edit
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw);
+        deflater.finish();
+        var out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buf = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * The handle of a stored backup, which is either an image
+     * or a raster that can be positioned anywhere.
+     */
+    public static class Backup {
+        private final BackupStore store;
+        private final SampleModel sampleModel;
+        private final int minX;
+        private final int minY;
+        private final long rawSize;
+
+        // only for image backups
+        private final ColorModel colorModel;
+        private final boolean premultiplied;
+
+        // the uncompressed data, which is null after the compression
+        private Raster raster;
+        private BufferedImage image;
+
+        private byte[] compressed;
+        private long fileOffset = -1;
+        private int fileLength;
+
+        private boolean disposed;
+
+        private Backup(BackupStore store, Raster raster, BufferedImage image) {
+            this.store = store;
+            this.raster = raster;
+            this.image = image;
+
+            sampleModel = raster.getSampleModel().createCompatibleSampleModel(
+                    raster.getWidth(), raster.getHeight());
+            minX = raster.getMinX();
+            minY = raster.getMinY();
+            rawSize = (long) raster.getWidth() * raster.getHeight()
+                    * raster.getNumDataElements()
+                    * DataBuffer.getDataTypeSize(raster.getTransferType()) / 8;
+
+            if (image != null) {
+                colorModel = image.getColorModel();
+                premultiplied = image.isAlphaPremultiplied();
+            } else {
+                colorModel = null;
+                premultiplied = false;
+            }
+        }
+
+        private boolean isCompressible() {
+            int type = sampleModel.getTransferType();
+            return type == DataBuffer.TYPE_INT
+                    || type == DataBuffer.TYPE_BYTE
+                    || type == DataBuffer.TYPE_USHORT;
+        }
+
+        private void setCompressed(byte[] compressed) {
+            this.compressed = compressed;
+            store.heapBytes += compressed.length - rawSize;
+            raster = null;
+            image = null;
+        }
+
+        private Raster decompress(byte[] data) {
+            int numElements = sampleModel.getWidth() * sampleModel.getHeight()
+                    * sampleModel.getNumDataElements();
+            int transferType = sampleModel.getTransferType();
+            int elementSize = DataBuffer.getDataTypeSize(transferType) / 8;
+            byte[] raw = new byte[numElements * elementSize];
+
+            Inflater inflater = new Inflater();
+            inflater.setInput(data);
+            try {
+                int pos = 0;
+                while (pos < raw.length) {
+                    int len = inflater.inflate(raw, pos, raw.length - pos);
+                    if (len == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IllegalStateException("truncated undo backup");
+                    }
+                    pos += len;
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inflater.end();
+            }
+
+            Object elements;
+            if (transferType == DataBuffer.TYPE_INT) {
+                int[] ints = new int[numElements];
+                ByteBuffer.wrap(raw).asIntBuffer().get(ints);
+                elements = ints;
+            } else if (transferType == DataBuffer.TYPE_USHORT) {
+                short[] shorts = new short[numElements];
+                ByteBuffer.wrap(raw).asShortBuffer().get(shorts);
+                elements = shorts;
+            } else {
+                elements = raw;
+            }
+
+            WritableRaster restored = Raster.createWritableRaster(
+                    sampleModel, new Point(minX, minY));
+            restored.setDataElements(minX, minY,
+                    sampleModel.getWidth(), sampleModel.getHeight(), elements);
+            return restored;
+        }
+
+        /**
+         * Returns the backed up raster, decompressing it if necessary,
+         * or null if it could not be read back.
+         */
+        public Raster getRaster() {
+            return store.getRaster(this);
+        }
+
+        /**
+         * Returns the backed up image, decompressing it if necessary,
+         * or null if it could not be read back.
+         */
+        public BufferedImage getImage() {
+            assert colorModel != null : "not an image backup";
+            synchronized (store) {
+                if (image != null) {
+                    store.getRaster(this); // marks it as recently used
+                    return image;
+                }
+                Raster restored = store.getRaster(this);
+                if (restored == null) {
+                    return null;
+                }
+                return new BufferedImage(colorModel, (WritableRaster) restored,
+                        premultiplied, null);
+            }
+        }
+
+        /**
+         * Returns the backed up image only if it's
+         * in memory, without decompressing it.
+         */
+        public BufferedImage peekImage() {
+            synchronized (store) {
+                return image;
+            }
+        }
+
+        public int getWidth() {
+            return sampleModel.getWidth();
+        }
+
+        public int getHeight() {
+            return sampleModel.getHeight();
+        }
+
+        /**
+         * Releases the memory or disk space used by this backup.
+         */
+        public void dispose() {
+            store.dispose(this);
+        }
+    }
+}
@@ -26,6 +26,8 @@ import pixelitor.menus.MenuAction.AllowedLayerType;
 import pixelitor.utils.AppPreferences;
 import pixelitor.utils.Icons;
 import pixelitor.utils.Messages;
+import pixelitor.utils.TiledImageBackup;
+import pixelitor.utils.Utils;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.test.Events;
@@ -47,10 +49,16 @@ import static java.lang.String.format;
  * Static methods for managing history and undo/redo
  */
 public class History {
+    // in megabytes, so that at least a few edits of
+    // a typical image can be undone without the disk
+    public static final int MIN_UNDO_MEMORY = 16;
+
     private static final UndoableEditSupport undoableEditSupport = new UndoableEditSupport();
     private static final PixelitorUndoManager undoManager = new PixelitorUndoManager();
     private static int numUndoneEdits = 0;
     private static boolean ignoreEdits = false;
+    private static final BackupStore backupStore = new BackupStore(
+            AppPreferences.loadUndoMemory() * (long) Utils.BYTES_IN_1_MEGABYTE);
 
     static {
         setUndoLevels(AppPreferences.loadUndoLevels());
@@ -117,23 +125,8 @@ public class History {
                                                           Drawable dr,
                                                           boolean relativeToImage,
                                                           String editName) {
-        assert rect.width > 0 : "rectangle.width = " + rect.width;
-        assert rect.height > 0 : "rectangle.height = " + rect.height;
-
-        if (!relativeToImage) {
-            // if the coordinates are relative to the canvas,
-            // translate them to be relative to the image
-            int dx = -dr.getTx();
-            int dy = -dr.getTy();
-            rect.translate(dx, dy);
-        }
-
-        rect = SwingUtilities.computeIntersection(0, 0,
-                origImage.getWidth(), origImage.getHeight(), // full image bounds
-                rect
-        );
-
         assert origImage != null;
+        rect = toImageRect(rect, origImage, dr, relativeToImage);
         if (rect.isEmpty()) {
             return null;
         }
@@ -148,6 +141,43 @@ public class History {
         return edit;
     }
 
+    /**
+     * Like the other createPartialImageEdit, but the original pixels
+     * are taken from a tiled backup instead of a full copy.
+     * The rectangle is given relative to the canvas.
+     */
+    public static PartialImageEdit createPartialImageEdit(Rectangle rect,
+                                                          TiledImageBackup backup,
+                                                          Drawable dr,
+                                                          String editName) {
+        rect = toImageRect(rect, backup.getImage(), dr, false);
+        if (rect.isEmpty()) {
+            return null;
+        }
+
+        return new PartialImageEdit(editName, dr.getComp(),
+                dr, backup.getOriginalData(rect), rect, false);
+    }
+
+    private static Rectangle toImageRect(Rectangle rect, BufferedImage image,
+                                         Drawable dr, boolean relativeToImage) {
+        assert rect.width > 0 : "rectangle.width = " + rect.width;
+        assert rect.height > 0 : "rectangle.height = " + rect.height;
+
+        if (!relativeToImage) {
+            // if the coordinates are relative to the canvas,
+            // translate them to be relative to the image
+            int dx = -dr.getTx();
+            int dy = -dr.getTy();
+            rect.translate(dx, dy);
+        }
+
+        return SwingUtilities.computeIntersection(0, 0,
+                image.getWidth(), image.getHeight(), // full image bounds
+                rect
+        );
+    }
+
     public static String getUndoPresentationName() {
         return undoManager.getUndoPresentationName();
     }
@@ -173,7 +203,7 @@ public class History {
                 throw new RuntimeException("No undo available", e);
             } else {
                 Messages.showInfo("No undo available",
-                        "No undo available, probably because the undo image was discarded in order to save memory");
+                        "No undo available, probably because the undo image could not be read back");
             }
         }
     }
@@ -213,6 +243,23 @@ public class History {
         return undoManager.getLimit();
     }
 
+    /**
+     * Sets the maximum heap memory used by the undo backups.
+     * The backups beyond this are moved to a temporary file.
+     */
+    public static void setUndoMemory(int megabytes) {
+        assert megabytes >= MIN_UNDO_MEMORY : "megabytes = " + megabytes;
+        backupStore.setBudget(megabytes * (long) Utils.BYTES_IN_1_MEGABYTE);
+    }
+
+    public static int getUndoMemory() {
+        return (int) (backupStore.getBudget() / Utils.BYTES_IN_1_MEGABYTE);
+    }
+
+    static BackupStore getBackupStore() {
+        return backupStore;
+    }
+
     public static boolean canRepeatOperation() {
         if (numUndoneEdits > 0) {
             return false;
@@ -24,14 +24,13 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import java.awt.image.BufferedImage;
-import java.lang.ref.SoftReference;
 
 /**
  * A PixelitorEdit that represents the changes made to an image.
  */
 public class ImageEdit extends FadeableEdit {
     private final boolean ignoreSelection;
-    private SoftReference<BufferedImage> imgRef;
+    private BackupStore.Backup backup;
     protected Drawable dr;
 
     private final boolean canRepeat;
@@ -47,8 +46,8 @@ public class ImageEdit extends FadeableEdit {
 
 //        Utils.debugImage(backupImage, "Backup for " + name);
         
-        // the backup image is stored in an SoftReference
-        imgRef = new SoftReference<>(backupImage);
+        // the backup image is stored in the memory-budgeted store
+        backup = History.getBackupStore().save(backupImage);
         this.dr = dr;
         this.canRepeat = canRepeat;
 
@@ -72,7 +71,7 @@ public class ImageEdit extends FadeableEdit {
     // otherwise the backup might be also edited
     private void checkBackupDifferentFromActive() {
         BufferedImage layerImage = dr.getImage();
-        if (layerImage == imgRef.get()) {
+        if (layerImage == backup.peekImage()) {
             throw new IllegalStateException("backup image is identical to the active one");
         }
     }
@@ -99,7 +98,7 @@ public class ImageEdit extends FadeableEdit {
      * Returns true if successful
      */
     private boolean swapImages()  {
-        BufferedImage backupImage = imgRef.get();
+        BufferedImage backupImage = backup.getImage();
         if(backupImage == null) {
             return false;
         }
@@ -113,7 +112,8 @@ public class ImageEdit extends FadeableEdit {
         dr.changeImageForUndoRedo(backupImage, ignoreSelection);
 
         // create new backup image from tmp
-        imgRef = new SoftReference<>(tmp);
+        backup.dispose();
+        backup = History.getBackupStore().save(tmp);
 
         if(!embedded) {
             comp.imageChanged();
@@ -128,20 +128,18 @@ public class ImageEdit extends FadeableEdit {
     public void die() {
         super.die();
 
-        BufferedImage backupImage = imgRef.get();
-        if(backupImage != null) {
-            backupImage.flush();
+        if (backup != null) {
+            backup.dispose();
+            backup = null;
         }
-
-        imgRef = null;
         dr = null;
     }
 
     @Override
     public BufferedImage getBackupImage() {
-        if(imgRef != null) {
-            // this still could be null
-            return imgRef.get();
+        if(backup != null) {
+            // this still could be null if it can't be read back
+            return backup.getImage();
         }
         return null;
     }
@@ -155,10 +153,9 @@ public class ImageEdit extends FadeableEdit {
     public DebugNode getDebugNode() {
         var node = super.getDebugNode();
 
-        BufferedImage img = imgRef.get();
-        if (img != null) {
-            node.addInt("backup image width", img.getWidth());
-            node.addInt("backup image height", img.getHeight());
+        if (backup != null) {
+            node.addInt("backup image width", backup.getWidth());
+            node.addInt("backup image height", backup.getHeight());
         }
 
         return node;
@@ -18,8 +18,10 @@
 package pixelitor.history;
 
 import pixelitor.Composition;
+import pixelitor.ThreadPool;
 import pixelitor.layers.Drawable;
 import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.DebugUtils;
 
@@ -29,7 +31,8 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
-import java.lang.ref.SoftReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static java.lang.String.format;
 
@@ -40,12 +43,25 @@ import static java.lang.String.format;
 public class PartialImageEdit extends FadeableEdit {
     private final Rectangle saveRect;
     private final boolean canRepeat;
-    private SoftReference<Raster> backupRasterRef;
+    private BackupStore.Backup backup;
+
+    // if not null, it replaces the backup
+    private PixelDelta delta;
+    private Future<?> deltaEncoding;
 
     private final Drawable dr;
 
     public PartialImageEdit(String name, Composition comp, Drawable dr,
                             BufferedImage image, Rectangle saveRect, boolean canRepeat) {
+        this(name, comp, dr, image.getData(saveRect), saveRect, canRepeat);
+    }
+
+    /**
+     * Creates the edit with the already saved original pixels
+     * of the given rectangle, relative to the image.
+     */
+    public PartialImageEdit(String name, Composition comp, Drawable dr,
+                            Raster backupRaster, Rectangle saveRect, boolean canRepeat) {
         super(name, comp, dr);
 //        Utils.debugCall(saveRect.toString());
 
@@ -53,12 +69,54 @@ public class PartialImageEdit extends FadeableEdit {
         this.dr = dr;
         this.saveRect = saveRect;
 
-        Raster backupRaster = image.getData(this.saveRect);
-        backupRasterRef = new SoftReference<>(backupRaster);
+        backup = History.getBackupStore().save(backupRaster);
 
 //        EventQueue.invokeLater(() -> Utils.debugRaster(backupRaster, "Partial Image"));
     }
 
+    /**
+     * Starts replacing the saved rectangle with only the changed pixels
+     * in the background. It must be called after the edited pixels were
+     * finalized in the image, but before the image is changed again.
+     */
+    public void encodeDelta() {
+        Raster after = dr.getImage().getData(saveRect);
+        if (!PixelDelta.isSupported(after)) {
+            return;
+        }
+        BackupStore.Backup fullBackup = backup;
+        deltaEncoding = ThreadPool.submit(() -> {
+            Raster before = fullBackup.getRaster();
+            if (before == null) {
+                return;
+            }
+            PixelDelta encoded = PixelDelta.encode(before, after);
+            if (encoded != null) {
+                // if it's too big, the full backup is kept,
+                // because that can be compressed and spilled
+                fullBackup.dispose();
+                delta = encoded;
+                backup = null;
+            }
+        });
+    }
+
+    /**
+     * Waits until the delta encoding (if any) finishes, so
+     * that the backup fields can be used on the current thread.
+     */
+    private void finishDeltaEncoding() {
+        if (deltaEncoding == null) {
+            return;
+        }
+        try {
+            deltaEncoding.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Messages.showException(e);
+        }
+        deltaEncoding = null;
+    }
+
     @Override
     public void undo() throws CannotUndoException {
         super.undo();
@@ -81,7 +139,16 @@ public class PartialImageEdit extends FadeableEdit {
      * Returns true if successful
      */
     private boolean swapRasters() {
-        Raster backupRaster = backupRasterRef.get();
+        finishDeltaEncoding();
+        if (delta != null) {
+            delta.applyTo(dr.getImage().getRaster());
+
+            comp.imageChanged();
+            dr.updateIconImage();
+            return true;
+        }
+
+        Raster backupRaster = backup.getRaster();
         if (backupRaster == null) {
             return false;
         }
@@ -104,7 +171,8 @@ public class PartialImageEdit extends FadeableEdit {
             throw e;
         }
 
-        backupRasterRef = new SoftReference<>(tmpRaster);
+        backup.dispose();
+        backup = History.getBackupStore().save(tmpRaster);
 
         comp.imageChanged();
         dr.updateIconImage();
@@ -138,7 +206,12 @@ public class PartialImageEdit extends FadeableEdit {
     public void die() {
         super.die();
 
-        backupRasterRef = null;
+        finishDeltaEncoding();
+        delta = null;
+        if (backup != null) {
+            backup.dispose();
+            backup = null;
+        }
     }
 
     @Override
@@ -148,20 +221,26 @@ public class PartialImageEdit extends FadeableEdit {
 
     @Override
     public BufferedImage getBackupImage() {
-        if (backupRasterRef == null) { // died
-            return null;
-        }
-        Raster backupRaster = backupRasterRef.get();
-        if (backupRaster == null) { // soft reference lost
-            return null;
-        }
+        finishDeltaEncoding();
 
         // recreate the full image as if it was backed up entirely
         // because Fade expects to fade images of equal size
         // TODO this is not the optimal solution  - Fade should fade only the changed area
-        BufferedImage fullImage = dr.getImage();
-        BufferedImage previousImage = ImageUtils.copyImage(fullImage);
-        previousImage.setData(backupRaster);
+        BufferedImage previousImage;
+        if (delta != null) {
+            previousImage = ImageUtils.copyImage(dr.getImage());
+            delta.applyTo(previousImage.getRaster());
+        } else {
+            if (backup == null) { // died
+                return null;
+            }
+            Raster backupRaster = backup.getRaster();
+            if (backupRaster == null) { // couldn't be read back
+                return null;
+            }
+            previousImage = ImageUtils.copyImage(dr.getImage());
+            previousImage.setData(backupRaster);
+        }
 
         var selection = dr.getComp().getSelection();
         if (selection != null) {
@@ -176,17 +255,20 @@ public class PartialImageEdit extends FadeableEdit {
     @Override
     public DebugNode getDebugNode() {
         var node = super.getDebugNode();
+        finishDeltaEncoding();
 
         int width = -1;
         int height = -1;
-        Raster backupRaster = backupRasterRef.get();
-        if (backupRaster != null) {
-            width = backupRaster.getWidth();
-            height = backupRaster.getHeight();
+        if (backup != null) {
+            width = backup.getWidth();
+            height = backup.getHeight();
         }
 
         node.addInt("backup image width", width);
         node.addInt("backup image height", height);
+        if (delta != null) {
+            node.addInt("delta size", delta.getMemorySize());
+        }
 
         return node;
     }
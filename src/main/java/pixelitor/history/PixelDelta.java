@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * The difference between two versions of a rectangular area,
+ * stored as runs of XOR-ed pixels, where the unchanged pixels
+ * between the runs are skipped. Because XOR is its own inverse,
+ * applying the same delta alternately restores both versions.
+ */
+class PixelDelta {
+    // unchanged gaps up to this length don't end a run, because
+    // a new run costs as much memory as two changed int pixels
+    private static final int MIN_GAP = 2;
+
+    private final Rectangle bounds;
+
+    // pairs of (start index relative to the bounds, length),
+    // each run is within a single row
+    private final int[] runs;
+
+    // the XOR-ed values of all runs, one of them is null
+    private final int[] intValues;
+    private final byte[] byteValues;
+
+    private final int maxRunLength;
+
+    private PixelDelta(Rectangle bounds, int[] runs, int[] values, boolean bytes) {
+        this.bounds = bounds;
+        this.runs = runs;
+        if (bytes) {
+            byteValues = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                byteValues[i] = (byte) values[i];
+            }
+            intValues = null;
+        } else {
+            intValues = values;
+            byteValues = null;
+        }
+
+        int max = 0;
+        for (int i = 1; i < runs.length; i += 2) {
+            max = Math.max(max, runs[i]);
+        }
+        maxRunLength = max;
+    }
+
+    static boolean isSupported(Raster raster) {
+        if (raster.getNumDataElements() != 1) {
+            return false;
+        }
+        int type = raster.getTransferType();
+        return type == DataBuffer.TYPE_INT || type == DataBuffer.TYPE_BYTE;
+    }
+
+    /**
+     * Returns the delta between the given rasters with equal bounds,
+     * or null if it wouldn't be smaller than half of a full copy.
+     */
+    static PixelDelta encode(Raster before, Raster after) {
+        assert before.getBounds().equals(after.getBounds());
+        assert isSupported(before) && isSupported(after);
+
+        Rectangle bounds = before.getBounds();
+        int width = bounds.width;
+        int height = bounds.height;
+        boolean bytes = before.getTransferType() == DataBuffer.TYPE_BYTE;
+        int[] a = toInts(before.getDataElements(bounds.x, bounds.y, width, height, null));
+        int[] b = toInts(after.getDataElements(bounds.x, bounds.y, width, height, null));
+
+        int maxSize = width * height * (bytes ? 1 : 4) / 2;
+        int[] runs = new int[64];
+        int numRunInts = 0;
+        int[] values = new int[256];
+        int numValues = 0;
+
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int rowEnd = rowStart + width;
+            int i = rowStart;
+            while (i < rowEnd) {
+                if (a[i] == b[i]) {
+                    i++;
+                    continue;
+                }
+                // a run starts here and continues until
+                // a long enough gap or the end of the row
+                int runStart = i;
+                int lastChanged = i;
+                while (i < rowEnd && i - lastChanged <= MIN_GAP) {
+                    if (a[i] != b[i]) {
+                        lastChanged = i;
+                    }
+                    i++;
+                }
+                int length = lastChanged - runStart + 1;
+
+                if (numRunInts + 2 > runs.length) {
+                    runs = Arrays.copyOf(runs, runs.length * 2);
+                }
+                runs[numRunInts++] = runStart;
+                runs[numRunInts++] = length;
+
+                if (numValues + length > values.length) {
+                    values = Arrays.copyOf(values, Math.max(values.length * 2, numValues + length));
+                }
+                for (int j = runStart; j <= lastChanged; j++) {
+                    values[numValues++] = a[j] ^ b[j];
+                }
+
+                int size = numRunInts * 4 + numValues * (bytes ? 1 : 4);
+                if (size > maxSize) {
+                    return null;
+                }
+            }
+        }
+
+        return new PixelDelta(bounds,
+                Arrays.copyOf(runs, numRunInts),
+                Arrays.copyOf(values, numValues), bytes);
+    }
+
+    private static int[] toInts(Object elements) {
+        if (elements instanceof int[]) {
+            return (int[]) elements;
+        }
+        byte[] bytes = (byte[]) elements;
+        int[] ints = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            ints[i] = bytes[i] & 0xFF;
+        }
+        return ints;
+    }
+
+    /**
+     * Switches the pixels of the given raster between the two versions.
+     */
+    void applyTo(WritableRaster raster) {
+        int width = bounds.width;
+        Object buffer = intValues != null ? new int[maxRunLength] : new byte[maxRunLength];
+        int valueIndex = 0;
+        for (int r = 0; r < runs.length; r += 2) {
+            int start = runs[r];
+            int length = runs[r + 1];
+            int x = bounds.x + start % width;
+            int y = bounds.y + start / width;
+
+            raster.getDataElements(x, y, length, 1, buffer);
+            if (intValues != null) {
+                int[] pixels = (int[]) buffer;
+                for (int i = 0; i < length; i++) {
+                    pixels[i] ^= intValues[valueIndex++];
+                }
+            } else {
+                byte[] pixels = (byte[]) buffer;
+                for (int i = 0; i < length; i++) {
+                    pixels[i] ^= byteValues[valueIndex++];
+                }
+            }
+            raster.setDataElements(x, y, length, 1, buffer);
+        }
+    }
+
+    int getMemorySize() {
+        int valuesSize = intValues != null ? intValues.length * 4 : byteValues.length;
+        return runs.length * 4 + valuesSize;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * A horizontal band of an image in a PXC file, stored as an
+ * independently compressed block of raw pixels, so that the
+ * chunks can be compressed and decompressed in parallel.
+ */
+class ImageChunk {
+    // the number of pixels in a full chunk
+    private static final int TARGET_CHUNK_PIXELS = 1 << 20;
+
+    private final BufferedImage image;
+    private final int startY;
+    private final int rows;
+
+    // the compressed pixels
+    private ByteBuffer data;
+    private int compressedLength;
+
+    ImageChunk(BufferedImage image, int startY, int rows) {
+        this.image = image;
+        this.startY = startY;
+        this.rows = rows;
+    }
+
+    /**
+     * Returns the number of rows in the chunks of an image with the given width.
+     */
+    static int calcRowsPerChunk(int width) {
+        return Math.max(1, TARGET_CHUNK_PIXELS / Math.max(1, width));
+    }
+
+    static boolean isSupported(BufferedImage image) {
+        if (image.getRaster().getParent() != null) {
+            return false; // the pixels might not be contiguous
+        }
+        if (image.getType() == TYPE_BYTE_GRAY) {
+            return image.getRaster().getDataBuffer() instanceof DataBufferByte;
+        }
+        return image.getRaster().getDataBuffer() instanceof DataBufferInt;
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the compressed pixels. The returned buffer is
+     * a new view, so its position can be changed freely.
+     */
+    ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    void setData(ByteBuffer data) {
+        this.data = data;
+        if (data != null) {
+            compressedLength = data.remaining();
+        }
+    }
+
+    int getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * Compresses the pixels of this chunk. Can be called on any thread.
+     */
+    void compress() {
+        int width = image.getWidth();
+        int numPixels = width * rows;
+        int offset = width * startY;
+
+        byte[] raw;
+        if (image.getType() == TYPE_BYTE_GRAY) {
+            byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            raw = new byte[numPixels];
+            System.arraycopy(pixels, offset, raw, 0, numPixels);
+        } else {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer buffer = ByteBuffer.allocate(numPixels * 4);
+            buffer.asIntBuffer().put(pixels, offset, numPixels);
+            raw = buffer.array();
+        }
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        var out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buf = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+        deflater.end();
+
+        setData(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Decompresses the pixels of this chunk into the image.
+     * Can be called on any thread.
+     */
+    void decompress() {
+        int width = image.getWidth();
+        int numPixels = width * rows;
+        int offset = width * startY;
+        boolean gray = image.getType() == TYPE_BYTE_GRAY;
+
+        byte[] raw = new byte[gray ? numPixels : numPixels * 4];
+        Inflater inflater = new Inflater();
+        inflater.setInput(getData());
+        try {
+            int pos = 0;
+            while (pos < raw.length) {
+                int len = inflater.inflate(raw, pos, raw.length - pos);
+                if (len == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("truncated image chunk");
+                }
+                pos += len;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+        data = null;
+
+        if (gray) {
+            byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(raw, 0, pixels, offset, numPixels);
+        } else {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer.wrap(raw).asIntBuffer().get(pixels, offset, numPixels);
+        }
+    }
+}
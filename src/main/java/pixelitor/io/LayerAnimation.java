@@ -35,10 +35,13 @@ import java.util.List;
  */
 public class LayerAnimation {
     private final int delayMillis;
+    private final boolean frameDifferencing;
     private final List<BufferedImage> images = new ArrayList<>();
 
-    public LayerAnimation(Composition comp, int delayMillis, boolean pingPong) {
+    public LayerAnimation(Composition comp, int delayMillis,
+                          boolean pingPong, boolean frameDifferencing) {
         this.delayMillis = delayMillis;
+        this.frameDifferencing = frameDifferencing;
         addComposition(comp, pingPong);
     }
 
@@ -77,6 +80,7 @@ public class LayerAnimation {
 
     private void export(File f) {
         AnimatedGifEncoder e = new AnimatedGifEncoder();
+        e.setFrameDifferencing(frameDifferencing);
         e.start(f);
         e.setDelay(delayMillis);
         e.setRepeat(0);
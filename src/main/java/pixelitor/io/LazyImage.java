@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * An image in a PXC file, which is decompressed from the
+ * memory-mapped file only when its pixels are first needed.
+ */
+public class LazyImage {
+    // The images that still need their mapped file, by file.
+    // They can be referenced from anywhere (even from the history),
+    // so they are tracked here, and loaded before the file is overwritten.
+    private static final Map<Path, Set<LazyImage>> mappedImages = new HashMap<>();
+
+    private final int width;
+    private final int height;
+    private final int type;
+    private final int[] chunkRows;
+    private final int[] chunkLengths;
+
+    // the compressed chunks, mapped from the file
+    private ByteBuffer data;
+    private Path mappedFile;
+
+    // a small version of the image for the layer icons
+    private LazyImage preview;
+
+    private BufferedImage image;
+
+    LazyImage(int width, int height, int type, int[] chunkRows, int[] chunkLengths) {
+        this.width = width;
+        this.height = height;
+        this.type = type;
+        this.chunkRows = chunkRows;
+        this.chunkLengths = chunkLengths;
+    }
+
+    long getDataLength() {
+        long length = 0;
+        for (int chunkLength : chunkLengths) {
+            length += chunkLength;
+        }
+        return length;
+    }
+
+    void setData(ByteBuffer data, Path mappedFile) {
+        this.data = data;
+        this.mappedFile = mappedFile;
+        synchronized (mappedImages) {
+            mappedImages.computeIfAbsent(mappedFile,
+                    path -> Collections.newSetFromMap(new WeakHashMap<>())).add(this);
+        }
+    }
+
+    /**
+     * Loads all images that are still mapped from the given file,
+     * so that it can be overwritten.
+     */
+    static void loadAllMappedFrom(Path file) {
+        List<LazyImage> images;
+        synchronized (mappedImages) {
+            Set<LazyImage> mapped = mappedImages.get(file.toAbsolutePath().normalize());
+            if (mapped == null) {
+                return;
+            }
+            images = new ArrayList<>(mapped);
+        }
+        for (LazyImage image : images) {
+            image.load();
+        }
+    }
+
+    void setPreview(LazyImage preview) {
+        this.preview = preview;
+    }
+
+    /**
+     * Returns the small version of this image stored
+     * in the file, without loading this image.
+     */
+    public BufferedImage getPreview() {
+        return preview.load();
+    }
+
+    /**
+     * Returns the image, decompressing it when called the first time.
+     * Can be called on any thread.
+     */
+    public synchronized BufferedImage load() {
+        if (image == null) {
+            decompressAll(createChunks(), ProgressTracker.NULL_TRACKER);
+        }
+        return image;
+    }
+
+    /**
+     * Creates the still empty image, and the chunks that will fill it.
+     */
+    synchronized List<ImageChunk> createChunks() {
+        assert image == null;
+        image = new BufferedImage(width, height, type);
+
+        List<ImageChunk> chunks = new ArrayList<>(chunkRows.length);
+        int startY = 0;
+        int offset = 0;
+        for (int i = 0; i < chunkRows.length; i++) {
+            ImageChunk chunk = new ImageChunk(image, startY, chunkRows[i]);
+            ByteBuffer chunkData = data.duplicate();
+            chunkData.position(offset).limit(offset + chunkLengths[i]);
+            chunk.setData(chunkData.slice());
+            chunks.add(chunk);
+
+            startY += chunkRows[i];
+            offset += chunkLengths[i];
+        }
+        // the mapping can be released after the image is loaded
+        data = null;
+        synchronized (mappedImages) {
+            Set<LazyImage> mapped = mappedImages.get(mappedFile);
+            if (mapped != null) {
+                mapped.remove(this);
+                if (mapped.isEmpty()) {
+                    mappedImages.remove(mappedFile);
+                }
+            }
+        }
+        mappedFile = null;
+        return chunks;
+    }
+
+    /**
+     * Decompresses the given chunks in parallel.
+     */
+    static void decompressAll(List<ImageChunk> chunks, ProgressTracker pt) {
+        ThreadPool.runInChunks(chunks.size(), (start, end) -> {
+            for (int i = start; i < end; i++) {
+                chunks.get(i).decompress();
+            }
+        }, pt);
+    }
+}
@@ -121,21 +121,39 @@ public class OpenSave {
 
     private static CompletableFuture<Composition> loadLayered(File selectedFile,
                                                               String type) {
-        Callable<Composition> loadTask;
+        return CompletableFuture.supplyAsync(
+                Utils.toSupplier(createLayeredLoadTask(selectedFile, type)),
+                IOThread.getExecutor());
+    }
+
+    private static Callable<Composition> createLayeredLoadTask(File file, String type) {
         switch (type) {
             case "pxc":
-                loadTask = () -> PXCFormat.read(selectedFile);
-                break;
+                return () -> PXCFormat.read(file);
             case "ora":
-                loadTask = () -> OpenRaster.read(selectedFile);
-                break;
+                return () -> OpenRaster.read(file);
             default:
                 throw new IllegalStateException("type = " + type);
         }
+    }
 
-        return CompletableFuture.supplyAsync(
-                Utils.toSupplier(loadTask),
-                IOThread.getExecutor());
+    /**
+     * Loads a composition on the current thread, without adding it
+     * to the GUI, as in the headless batch mode. Unlike in the case
+     * of asynchronous loading, the decoding errors are thrown.
+     */
+    public static Composition loadComp(File file) throws Exception {
+        String ext = FileUtils.findExtension(file.getName()).orElse("");
+        if ("pxc".equals(ext) || "ora".equals(ext)) {
+            return createLayeredLoadTask(file, ext).call();
+        }
+
+        BufferedImage img = TrackedIO.uncheckedRead(file);
+        if (img == null) {
+            throw new IOException(format("Could not load \"%s\" as an image file.",
+                    file.getName()));
+        }
+        return Composition.fromImage(img, file, null);
     }
 
     public static void save(boolean saveAs) {
@@ -18,50 +18,102 @@
 package pixelitor.io;
 
 import pixelitor.Composition;
+import pixelitor.layers.ImageLayer;
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.ProgressTracker;
 import pixelitor.utils.StatusBarProgressTracker;
-import pixelitor.utils.SubtaskProgressTracker;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static pixelitor.utils.ImageUtils.getPixelsAsArray;
 
 /**
  * PXC file format support.
+ *
+ * Since version 4 the file consists of a header, the compressed
+ * serialized composition, in which the images are replaced by
+ * references, the compressed image chunks, and an index describing
+ * the images and the chunks. The chunks are compressed independently,
+ * and they are compressed and decompressed in parallel.
+ *
+ * The file also contains the composite image and small layer
+ * previews, therefore when reading, the layer images are not loaded
+ * immediately, but only when their pixels are first needed.
+ *
+ * Version 3 files, in which the pixels are written one by one
+ * into a single gzip stream, can still be read.
  */
 public class PXCFormat {
-    private static final int CURRENT_PXC_VERSION_NUMBER = 0x03;
+    private static final int CURRENT_PXC_VERSION_NUMBER = 0x04;
+
+    // the magic bytes, the version byte, the index offset and the structure length
+    private static final int HEADER_SIZE = 3 + 8 + 4;
+
+    // the size of the layer previews, which is the largest layer thumb size
+    private static final int PREVIEW_SIZE = 96;
 
     // tracks the reading-writing of the whole file
     private static ProgressTracker mainPT;
 
-    private static double workRatioForOneImage;
-
     private PXCFormat() {
     }
 
     public static Composition read(File file) throws NotPxcFormatException {
-        long fileSize = file.length();
-        mainPT = new StatusBarProgressTracker(
-                "Reading " + file.getName(), (int) fileSize);
         Composition comp = null;
-        try (InputStream is = new ProgressTrackingInputStream(
-                new FileInputStream(file), mainPT)) {
+        try {
+            int versionByte = readVersionByte(file);
+            if (versionByte == 3) {
+                comp = readV3(file);
+            } else {
+                comp = readChunked(file);
+            }
+
+            // file is transient in Composition because the pxc file can be renamed
+            comp.setFile(file);
+        } catch (IOException | ClassNotFoundException e) {
+            Messages.showException(e);
+        }
+
+        return comp;
+    }
+
+    private static int readVersionByte(File file) throws IOException, NotPxcFormatException {
+        try (InputStream is = new FileInputStream(file)) {
             int firstByte = is.read();
             int secondByte = is.read();
             if (firstByte == 0xAB && secondByte == 0xC4) {
@@ -85,45 +137,107 @@ public class PXCFormat {
                         .getName() + " is in an obsolete pxc format, " +
                         "it can only be opened in the old Pixelitor versions 0.9.9-1.1.2");
             }
-            if (versionByte > 3) {
+            if (versionByte > CURRENT_PXC_VERSION_NUMBER) {
                 throw new NotPxcFormatException(file.getName() + " has unknown version byte " + versionByte);
             }
+            return versionByte;
+        }
+    }
+
+    private static Composition readV3(File file) throws IOException, ClassNotFoundException {
+        mainPT = new StatusBarProgressTracker(
+                "Reading " + file.getName(), (int) file.length());
+        try (InputStream is = new ProgressTrackingInputStream(
+                new FileInputStream(file), mainPT)) {
+            is.readNBytes(3); // the already checked magic and version bytes
 
             try (GZIPInputStream gs = new GZIPInputStream(is)) {
                 try (ObjectInput ois = new ObjectInputStream(gs)) {
-                    comp = (Composition) ois.readObject();
+                    Composition comp = (Composition) ois.readObject();
                     mainPT.finished();
                     mainPT = null;
-                    
-                    // file is transient in Composition because the pxc file can be renamed
-                    comp.setFile(file);
+                    return comp;
                 }
             }
-        } catch (IOException | ClassNotFoundException e) {
-            Messages.showException(e);
         }
+    }
 
-        return comp;
+    private static Composition readChunked(File file) throws IOException, ClassNotFoundException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            ByteBuffer header = readFully(channel, 3, HEADER_SIZE - 3);
+            long indexOffset = header.getLong();
+            int structureLength = header.getInt();
+
+            ByteBuffer index = readFully(channel, indexOffset,
+                    (int) (channel.size() - indexOffset));
+            int numImages = index.getInt();
+            List<LazyImage> images = new ArrayList<>(numImages);
+            long offset = HEADER_SIZE + structureLength;
+            for (int i = 0; i < numImages; i++) {
+                int width = index.getInt();
+                int height = index.getInt();
+                int type = index.getInt();
+                int numChunks = index.getInt();
+                int[] chunkRows = new int[numChunks];
+                int[] chunkLengths = new int[numChunks];
+                for (int j = 0; j < numChunks; j++) {
+                    chunkRows[j] = index.getInt();
+                    chunkLengths[j] = index.getInt();
+                }
+                LazyImage img = new LazyImage(width, height, type, chunkRows, chunkLengths);
+
+                // the pixels are not read now, they are decompressed
+                // directly from the mapped file when they are needed
+                long length = img.getDataLength();
+                img.setData(channel.map(READ_ONLY, offset, length), path);
+                images.add(img);
+                offset += length;
+            }
+
+            ByteBuffer structure = readFully(channel, HEADER_SIZE, structureLength);
+            try (var ois = new ImageRefInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(structure.array())), images)) {
+                Composition comp = (Composition) ois.readObject();
+
+                // only the composite image is loaded now, so that
+                // the layers don't have to be loaded to show the image
+                LazyImage composite = ois.getImage(ois.readInt());
+                List<ImageChunk> chunks = composite.createChunks();
+                mainPT = new StatusBarProgressTracker(
+                        "Reading " + file.getName(), Math.max(1, chunks.size()));
+                LazyImage.decompressAll(chunks, mainPT);
+                comp.initCompositeImage(composite.load());
+
+                mainPT.finished();
+                mainPT = null;
+                return comp;
+            }
+        }
     }
 
     public static void write(Composition comp, File f) {
-        mainPT = new StatusBarProgressTracker(
-                "Writing " + f.getName(), 100);
-        int numImages = comp.calcNumImages();
-        if (numImages > 0) {
-            workRatioForOneImage = 1.0 / numImages;
-        } else {
-            workRatioForOneImage = -1;
-        }
-        try (FileOutputStream fos = new FileOutputStream(f)) {
-            fos.write(new byte[]{(byte) 0xAB, (byte) 0xC4, CURRENT_PXC_VERSION_NUMBER});
+        Path target = f.toPath().toAbsolutePath().normalize();
+        try {
+            // The images that are mapped from the file that will be
+            // replaced (like the not yet loaded images of the history,
+            // or of the hidden layers) can't be loaded after the save.
+            LazyImage.loadAllMappedFrom(target);
 
-            try (GZIPOutputStream gz = new GZIPOutputStream(fos)) {
-                try (ObjectOutput oos = new ObjectOutputStream(gz)) {
-                    oos.writeObject(comp);
-                    oos.flush();
-                }
+            // the object graph, with references instead of the pixels
+            var structure = new ByteArrayOutputStream();
+            List<BufferedImage> images;
+            try (var oos = new ImageRefOutputStream(new DeflaterOutputStream(structure))) {
+                oos.writeObject(comp);
+                oos.writeInt(oos.addImage(comp.getCompositeImage()));
+                oos.flush();
+                images = oos.images;
             }
+            List<ImageChunk> chunks = createChunks(images);
+
+            mainPT = new StatusBarProgressTracker(
+                    "Writing " + f.getName(), Math.max(1, chunks.size()));
+            writeChunked(target, structure, images, chunks);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -131,9 +245,146 @@ public class PXCFormat {
         mainPT = null;
     }
 
+    /**
+     * Writes into a temporary file, which replaces the target only at the end,
+     * so that the target is never truncated while it could still be mapped.
+     */
+    private static void writeChunked(Path target, ByteArrayOutputStream structure,
+                                     List<BufferedImage> images,
+                                     List<ImageChunk> chunks) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, CREATE_NEW, WRITE)) {
+                writeContents(channel, structure, images, chunks);
+            }
+            replaceFile(tmp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private static void replaceFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, REPLACE_EXISTING);
+        } catch (FileSystemException e) {
+            // On Windows a file can't be replaced while it is mapped,
+            // and the already loaded images are unmapped only by the GC.
+            System.gc();
+            Files.move(source, target, REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeContents(FileChannel channel, ByteArrayOutputStream structure,
+                                      List<BufferedImage> images,
+                                      List<ImageChunk> chunks) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(new byte[]{(byte) 0xAB, (byte) 0xC4, CURRENT_PXC_VERSION_NUMBER});
+        header.putLong(0); // the index offset is written at the end
+        header.putInt(structure.size());
+        header.flip();
+        writeFully(channel, header);
+        writeFully(channel, ByteBuffer.wrap(structure.toByteArray()));
+
+        // the chunks are compressed in batches, so that only
+        // a few compressed chunks are kept in the memory
+        int batchSize = 2 * ThreadPool.getNumCores();
+        for (int batchStart = 0; batchStart < chunks.size(); batchStart += batchSize) {
+            List<ImageChunk> batch = chunks.subList(batchStart,
+                    Math.min(chunks.size(), batchStart + batchSize));
+            ThreadPool.runInChunks(batch.size(), (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    batch.get(i).compress();
+                }
+            }, mainPT);
+            for (ImageChunk chunk : batch) {
+                writeFully(channel, chunk.getData());
+                chunk.setData(null);
+            }
+        }
+
+        long indexOffset = channel.position();
+        writeFully(channel, createIndex(images, chunks));
+        ByteBuffer indexOffsetBuffer = ByteBuffer.allocate(8).putLong(indexOffset);
+        indexOffsetBuffer.flip();
+        channel.position(3);
+        writeFully(channel, indexOffsetBuffer);
+    }
+
+    private static List<ImageChunk> createChunks(List<BufferedImage> images) {
+        List<ImageChunk> chunks = new ArrayList<>();
+        for (BufferedImage img : images) {
+            int rowsPerChunk = ImageChunk.calcRowsPerChunk(img.getWidth());
+            int height = img.getHeight();
+            for (int y = 0; y < height; y += rowsPerChunk) {
+                chunks.add(new ImageChunk(img, y, Math.min(rowsPerChunk, height - y)));
+            }
+        }
+        return chunks;
+    }
+
+    private static ByteBuffer createIndex(List<BufferedImage> images, List<ImageChunk> chunks) {
+        ByteBuffer index = ByteBuffer.allocate(4 + images.size() * 16 + chunks.size() * 8);
+        index.putInt(images.size());
+        int firstChunk = 0;
+        for (BufferedImage img : images) {
+            // the chunks of an image are consecutive
+            int lastChunk = firstChunk;
+            while (lastChunk < chunks.size() && chunks.get(lastChunk).getImage() == img) {
+                lastChunk++;
+            }
+            index.putInt(img.getWidth());
+            index.putInt(img.getHeight());
+            index.putInt(img.getType());
+            index.putInt(lastChunk - firstChunk);
+            for (int i = firstChunk; i < lastChunk; i++) {
+                ImageChunk chunk = chunks.get(i);
+                index.putInt(chunk.getRows());
+                index.putInt(chunk.getCompressedLength());
+            }
+            firstChunk = lastChunk;
+        }
+        index.flip();
+        return index;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("unexpected end of pxc file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
     public static void serializeImage(ObjectOutputStream out,
-                                      BufferedImage img) throws IOException {
+                                      ImageLayer layer) throws IOException {
+        BufferedImage img = layer.getImage();
         assert img != null;
+        if (out instanceof ImageRefOutputStream) {
+            // the pixels are written later in separate chunks
+            var refOut = (ImageRefOutputStream) out;
+            out.writeInt(refOut.addImage(img));
+            // the layer icon can be shown without loading the image
+            BufferedImage preview = ImageUtils.createThumbnail(
+                    layer.getCanvasSizedSubImage(), PREVIEW_SIZE, null);
+            out.writeInt(refOut.addImage(preview));
+            return;
+        }
+
+        // the version 3 format, inline in a plain object stream
         int imgType = img.getType();
         int imgWidth = img.getWidth();
         int imgHeight = img.getHeight();
@@ -142,26 +393,30 @@ public class PXCFormat {
         out.writeInt(imgHeight);
         out.writeInt(imgType);
 
-        ProgressTracker pt = getImageTracker();
-
         if (imgType == TYPE_BYTE_GRAY) {
             ImageIO.write(img, "PNG", out);
         } else {
             int[] pixels = getPixelsAsArray(img);
-            int length = pixels.length;
-            int progress = 0;
-            int fiveUnits = length / 20;
             for (int pixel : pixels) {
                 out.writeInt(pixel);
-                progress++;
-                if (progress > fiveUnits) {
-                    pt.unitsDone(5);
-                    progress = 0;
-                }
             }
         }
     }
 
+    /**
+     * Returns the not yet loaded image of a layer, or null
+     * if the pixels are in the stream (old pxc files).
+     */
+    public static LazyImage deserializeLazyImage(ObjectInputStream in) throws IOException {
+        if (!(in instanceof ImageRefInputStream)) {
+            return null;
+        }
+        var refIn = (ImageRefInputStream) in;
+        LazyImage img = refIn.getImage(in.readInt());
+        img.setPreview(refIn.getImage(in.readInt()));
+        return img;
+    }
+
     // when deserializing, the progress tracking
     // is done at the InputStream level, not here
     public static BufferedImage deserializeImage(ObjectInputStream in) throws IOException {
@@ -183,12 +438,45 @@ public class PXCFormat {
         }
     }
 
-    private static ProgressTracker getImageTracker() {
-        if (workRatioForOneImage == -1) {
-            // a pxc without images
-            return ProgressTracker.NULL_TRACKER;
-        } else {
-            return new SubtaskProgressTracker(workRatioForOneImage, mainPT);
+    /**
+     * Writes references instead of the images, and collects them.
+     */
+    private static class ImageRefOutputStream extends ObjectOutputStream {
+        private final List<BufferedImage> images = new ArrayList<>();
+        private final Map<BufferedImage, Integer> ids = new IdentityHashMap<>();
+
+        ImageRefOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        int addImage(BufferedImage img) {
+            return ids.computeIfAbsent(img, k -> {
+                BufferedImage stored = k;
+                if (!ImageChunk.isSupported(k)) {
+                    stored = ImageUtils.copyImage(k);
+                }
+                images.add(stored);
+                return images.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Resolves the references written by {@link ImageRefOutputStream}.
+     */
+    private static class ImageRefInputStream extends ObjectInputStream {
+        private final List<LazyImage> images;
+
+        ImageRefInputStream(InputStream in, List<LazyImage> images) throws IOException {
+            super(in);
+            this.images = images;
+        }
+
+        LazyImage getImage(int id) throws IOException {
+            if (id < 0 || id >= images.size()) {
+                throw new IOException("invalid image reference " + id);
+            }
+            return images.get(id);
         }
     }
 }
@@ -35,7 +35,6 @@ import javax.imageio.stream.ImageOutputStream;
 import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -132,8 +131,8 @@ public class TrackedIO {
     private static BufferedImage alternativeGifRead(File file) {
         BufferedImage img = null;
         try {
-            FileInputStream data = new FileInputStream(file);
-            GifDecoder.GifImage gif = GifDecoder.read(data);
+            // only the first frame is decoded
+            GifDecoder.GifImage gif = GifDecoder.read(file);
             img = gif.getFrame(0);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -19,7 +19,12 @@ package pixelitor.layers;
 
 import pixelitor.Composition;
 import pixelitor.filters.Filter;
+import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.PointOp;
+import pixelitor.filters.PointOpFilter;
+import pixelitor.filters.gui.ParamState;
 import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Utils;
 
 import java.awt.Dimension;
@@ -28,8 +33,13 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * A global adjustment to all the layers that are bellow this layer
  *
@@ -41,6 +51,14 @@ public class AdjustmentLayer extends Layer {
 
     private final Filter filter;
 
+    // The last filter result, together with the content versions of
+    // the layers bellow and the filter states it was calculated from.
+    // If the result was calculated by fusing the filters of several
+    // adjustment layers, then it is stored in the topmost one.
+    private transient SoftReference<BufferedImage> cachedResultRef;
+    private transient long[] cachedInputVersions;
+    private transient List<List<ParamState<?>>> cachedFilterStates;
+
     public AdjustmentLayer(Composition comp, String name, Filter filter) {
         super(comp, name, null);
         this.filter = filter;
@@ -76,9 +94,111 @@ public class AdjustmentLayer extends Layer {
 
     @Override
     public BufferedImage actOnImageFromLayerBellow(BufferedImage src) {
+        // the source can be anything (for example the image of the
+        // layer bellow when merging down), so the cache can't be used
         return filter.transformImage(src);
     }
 
+    @Override
+    protected BufferedImage actOnCompositeOfLayersBellow(BufferedImage src) {
+        return getResult(src, List.of(this));
+    }
+
+    /**
+     * Returns true if the filter of this layer can be fused with the
+     * filters of the neighboring adjustment layers into a single pass.
+     * This is possible only if nothing has to be done with the
+     * filtered image after the filter.
+     */
+    public boolean canBeFused() {
+        return filter instanceof PointOpFilter
+                && ((PointOpFilter) filter).hasPointOp()
+                && isNormalAndOpaque()
+                && !useMask();
+    }
+
+    /**
+     * Applies the filters of the given consecutive adjustment layers
+     * (ending with this one) in a single pass on the given image,
+     * which must be the composite of all the layers bellow them.
+     */
+    public BufferedImage applyFused(List<AdjustmentLayer> layers, BufferedImage src) {
+        assert layers.get(layers.size() - 1) == this;
+        assert layers.stream().allMatch(AdjustmentLayer::canBeFused);
+
+        return getResult(src, layers);
+    }
+
+    private BufferedImage getResult(BufferedImage src, List<AdjustmentLayer> layers) {
+        long[] inputVersions = getInputVersions();
+        List<List<ParamState<?>>> filterStates = layers.stream()
+                .map(AdjustmentLayer::getFilterState)
+                .collect(toList());
+        boolean cacheable = !filterStates.contains(null);
+
+        BufferedImage result = cachedResultRef == null ? null : cachedResultRef.get();
+        if (result == null
+                || !cacheable
+                || result.getWidth() != src.getWidth()
+                || result.getHeight() != src.getHeight()
+                || !Arrays.equals(inputVersions, cachedInputVersions)
+                || !filterStates.equals(cachedFilterStates)) {
+            if (layers.size() == 1) {
+                result = filter.transformImage(src);
+            } else {
+                List<PointOpFilter> filters = layers.stream()
+                        .map(layer -> (PointOpFilter) layer.filter)
+                        .collect(toList());
+                result = PointOp.fuse(filters).filter(src,
+                        ImageUtils.createImageWithSameCM(src));
+            }
+            if (result == src) {
+                // the source will be modified by the layers above
+                result = ImageUtils.copyImage(src);
+            }
+            if (cacheable) {
+                cachedResultRef = new SoftReference<>(result);
+                cachedInputVersions = inputVersions;
+                cachedFilterStates = filterStates;
+            } else {
+                cachedResultRef = null;
+            }
+        }
+
+        // the caller is allowed to modify the returned image
+        return ImageUtils.copyImage(result);
+    }
+
+    /**
+     * Returns the content versions of the layers bellow this one,
+     * which together identify the image that this layer transforms.
+     */
+    private long[] getInputVersions() {
+        List<Layer> layers = comp.getLayers();
+        int index = layers.indexOf(this);
+        long[] versions = new long[index];
+        for (int i = 0; i < index; i++) {
+            versions[i] = layers.get(i).getContentVersion();
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the state that fully determines the result of the filter,
+     * or null if it is not known, and therefore the result can't be cached.
+     */
+    private List<ParamState<?>> getFilterState() {
+        if (filter instanceof ParametrizedFilter) {
+            return ((ParametrizedFilter) filter).getParamSet().copyFullState();
+        }
+        if (filter instanceof FilterWithGUI) {
+            // the settings are not stored in a ParamSet
+            return null;
+        }
+        // a filter without a GUI has no settings
+        return List.of();
+    }
+
     @Override
     public void paintLayerOnGraphics(Graphics2D g, boolean firstVisibleLayer) {
         throw new UnsupportedOperationException();
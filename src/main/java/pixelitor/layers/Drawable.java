@@ -41,6 +41,8 @@ public interface Drawable {
 
     void stopPreviewing();
 
+    boolean isPreviewing();
+
     void tweenCalculatingStarted();
 
     void tweenCalculatingEnded();
@@ -31,11 +31,13 @@ import pixelitor.history.ImageEdit;
 import pixelitor.history.MultiEdit;
 import pixelitor.history.PixelitorEdit;
 import pixelitor.history.TranslationEdit;
+import pixelitor.io.LazyImage;
 import pixelitor.io.PXCFormat;
 import pixelitor.tools.Tools;
 import pixelitor.utils.ImageTrimUtil;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.RightAngleTransforms;
 import pixelitor.utils.Utils;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.test.Assertions;
@@ -106,7 +108,15 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * The regular image content of this image layer.
      * Transient because BufferedImage can't be directly serialized.
      */
-    protected transient BufferedImage image = null;
+    protected transient volatile BufferedImage image = null;
+
+    /**
+     * The not yet loaded image of a layer read from a pxc file.
+     * If it's not null, then the image is null until it's first needed.
+     * The image can be first needed on any thread, so it's loaded
+     * while holding the lock of the LazyImage.
+     */
+    private transient volatile LazyImage lazyImage;
 
     /**
      * The image shown during filter previews.
@@ -130,6 +140,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     private transient boolean imageContentChanged = false;
 
+    private transient MaskedImageCache maskedImageCache = new MaskedImageCache();
+
     private ImageLayer(Composition comp, String name, Layer parent) {
         super(comp, name, parent);
     }
@@ -244,7 +256,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        PXCFormat.serializeImage(out, image);
+        PXCFormat.serializeImage(out, this);
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
@@ -255,15 +267,22 @@ public class ImageLayer extends ContentLayer implements Drawable {
         filterSourceImage = null;
         image = null;
         trimmedBoundingBox = null;
+        maskedImageCache = new MaskedImageCache();
 
         in.defaultReadObject();
-        setImage(PXCFormat.deserializeImage(in));
+        lazyImage = PXCFormat.deserializeLazyImage(in);
+        if (lazyImage == null) {
+            // the pixels are in the stream. The composition isn't
+            // notified, because its layer list isn't read yet.
+            image = PXCFormat.deserializeImage(in);
+            imageRefChanged();
+        }
         imageContentChanged = false;
     }
 
     @Override
     public ImageLayer duplicate(boolean compCopy) {
-        BufferedImage imageCopy = copyImage(image);
+        BufferedImage imageCopy = copyImage(getImage());
         if (imageCopy == null) {
             // there was an out of memory error
             return null;
@@ -282,15 +301,56 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public BufferedImage getImage() {
+        if (lazyImage != null) {
+            loadLazyImage();
+        }
         return image;
     }
 
+    private void loadLazyImage() {
+        LazyImage lazy = lazyImage;
+        if (lazy == null) {
+            return; // loaded by another thread in the meantime
+        }
+        synchronized (lazy) {
+            // The image is not null here if another thread loaded it,
+            // or if imageRefChanged() calls back on the loading thread.
+            if (lazyImage == null || image != null) {
+                return;
+            }
+            image = lazy.load();
+            // The image derived from the mask image must be up-to-date
+            // before the other threads can see the loaded image.
+            imageRefChanged();
+            lazyImage = null;
+        }
+
+        EventQueue.invokeLater(() -> {
+            if (comp.getView() != null) {
+                // until now the icon showed the preview from the pxc file
+                updateIconImage();
+            }
+        });
+    }
+
+    /**
+     * Returns the image for the layer icon, which is the
+     * preview stored in the pxc file, if the image isn't loaded yet.
+     */
+    public BufferedImage getIconImage() {
+        LazyImage lazy = lazyImage;
+        if (image == null && lazy != null) {
+            return lazy.getPreview();
+        }
+        return getCanvasSizedSubImage();
+    }
+
     private void setPreviewWithSelection(BufferedImage newImage) {
         previewImage = replaceSelectedPart(previewImage, newImage, false);
     }
 
     private void setImageWithSelection(BufferedImage newImage, boolean isUndoRedo) {
-        image = replaceSelectedPart(image, newImage, isUndoRedo);
+        image = replaceSelectedPart(getImage(), newImage, isUndoRedo);
         imageRefChanged();
 
         comp.imageChanged(INVALIDATE_CACHE);
@@ -356,6 +416,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public void setImage(BufferedImage newImage) {
         BufferedImage oldRef = image;
         image = requireNonNull(newImage);
+        lazyImage = null;
         imageRefChanged();
 
         assert Assertions.checkRasterMinimum(newImage);
@@ -372,7 +433,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * Replaces the image with history and icon update
      */
     public void replaceImage(BufferedImage newImage, String editName) {
-        BufferedImage oldImage = image;
+        BufferedImage oldImage = getImage();
         setImage(newImage);
         var edit = new ImageEdit(editName, comp, this, oldImage, true, false);
         History.add(edit);
@@ -393,11 +454,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // the image reference, because when we draw into the preview image, we would
             // also draw on the real image, and after cancel we would still have the
             // changed version.
-            previewImage = copyImage(image);
+            previewImage = copyImage(getImage());
         } else {
             // if there is no selection, then there is no problem, because
             // the previewImage reference will be overwritten
-            previewImage = image;
+            previewImage = getImage();
         }
         setState(PREVIEW);
     }
@@ -414,7 +475,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
         imageRefChanged();
 
         previewImage = null;
-        comp.imageChanged();
+        comp.layerImageChanged(this);
+    }
+
+    @Override
+    public boolean isPreviewing() {
+        return state != NORMAL;
     }
 
     @Override
@@ -443,7 +509,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         setState(NORMAL);
 
         if (wasShowOriginal) {
-            comp.imageChanged();
+            comp.layerImageChanged(this);
         }
     }
 
@@ -480,7 +546,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                         filterName, cr, getClass().getSimpleName());
         assert img != null;
 
-        if (img == image) {
+        if (img == getImage()) {
             // this can happen if a filter with preview decides that no
             // change is necessary and returns the src
 
@@ -489,12 +555,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // it still can happen that the image needs to be repainted
             // because the preview image can be different from the image
             // (the user does something, but then resets the params to a do-nothing state)
-            boolean shouldRefresh = image != previewImage;
-            previewImage = image;
+            boolean shouldRefresh = getImage() != previewImage;
+            previewImage = getImage();
 
             if (shouldRefresh) {
                 imageRefChanged();
-                comp.imageChanged();
+                comp.layerImageChanged(this);
             }
         } else {
             imageContentChanged = true; // history will be necessary
@@ -502,7 +568,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             setPreviewWithSelection(img);
             setState(PREVIEW);
             imageRefChanged();
-            comp.imageChanged();
+            comp.layerImageChanged(this);
         }
     }
 
@@ -513,7 +579,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         comp.setDirty(true);
 
         // A filter without dialog should never return the original image...
-        if (transformedImage == image) {
+        if (transformedImage == getImage()) {
             // ...unless "Repeat Last" starts a filter with settings
             // without a dialog
             if (cr != REPEAT_LAST) {
@@ -536,7 +602,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
         // at this point we are sure that the image changed,
         // considering that a filter without dialog was running
-        if (imageForUndo == image) {
+        if (imageForUndo == getImage()) {
             throw new IllegalStateException("imageForUndo == image");
         }
         assert imageForUndo != null;
@@ -548,7 +614,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         // not the actual one
         filterSourceImage = null;
         updateIconImage();
-        comp.imageChanged();
+        comp.layerImageChanged(this);
         invalidateTrimCache();
         Tools.editedObjectChanged(this);
     }
@@ -556,7 +622,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public void changeImageForUndoRedo(BufferedImage img, boolean ignoreSelection) {
         requireNonNull(img);
-        assert img != image; // simple filters always change something
+        assert img != getImage(); // simple filters always change something
         assert state == NORMAL;
 
         if (ignoreSelection) {
@@ -572,7 +638,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public Rectangle getImageBounds() {
         return new Rectangle(
                 translationX, translationY,
-                image.getWidth(), image.getHeight());
+                getImage().getWidth(), getImage().getHeight());
     }
 
     private void invalidateTrimCache() {
@@ -603,11 +669,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public int getMouseHitPixelAtPoint(Point p) {
         int x = p.x - translationX;
         int y = p.y - translationY;
-        if (x >= 0 && y >= 0 && x < image.getWidth() && y < image.getHeight()) {
+        if (x >= 0 && y >= 0 && x < getImage().getWidth() && y < getImage().getHeight()) {
             if (hasMask() && getMask().isMaskEnabled()) {
                 int maskPixel = getMask().getMouseHitPixelAtPoint(p);
                 if (maskPixel != 0) {
-                    int imagePixel = image.getRGB(x, y);
+                    int imagePixel = getImage().getRGB(x, y);
                     float maskAlpha = (maskPixel & 0xff) / 255.0f;
                     int imageAlpha = (imagePixel >> 24) & 0xff;
                     int layerAlpha = (int) (imageAlpha * maskAlpha);
@@ -615,7 +681,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 }
             }
 
-            return image.getRGB(x, y);
+            return getImage().getRGB(x, y);
         }
 
         return 0x00000000;
@@ -640,7 +706,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             Graphics2D g = bi.createGraphics();
             int drawX = current.x - target.x;
             int drawY = current.y - target.y;
-            g.drawImage(image, drawX, drawY, null);
+            g.drawImage(getImage(), drawX, drawY, null);
             g.dispose();
 
             translationX = target.x - canvasBounds.x;
@@ -660,16 +726,16 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public BufferedImage getImageForFilterDialogs() {
         var selection = comp.getSelection();
         if (selection == null) {
-            return image;
+            return getImage();
         }
 
         Rectangle selBounds = selection.getShapeBounds(1);
 
-        assert image.getRaster().getBounds().contains(selBounds) :
-                "image bounds = " + image.getRaster().getBounds()
+        assert getImage().getRaster().getBounds().contains(selBounds) :
+                "image bounds = " + getImage().getRaster().getBounds()
                         + ", selection bounds = " + selBounds;
 
-        return image.getSubimage(
+        return getImage().getSubimage(
                 selBounds.x, selBounds.y,
                 selBounds.width, selBounds.height);
     }
@@ -684,11 +750,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
         int canvasWidth = canvas.getImWidth();
         int canvasHeight = canvas.getImHeight();
-        int imageWidth = image.getWidth();
-        int imageHeight = image.getHeight();
+        int imageWidth = getImage().getWidth();
+        int imageHeight = getImage().getHeight();
 
-        BufferedImage dest = ImageUtils.createImageWithSameCM(image);
-        Graphics2D g2 = dest.createGraphics();
+        BufferedImage dest = ImageUtils.createImageWithSameCM(getImage());
 
         if (direction == HORIZONTAL) {
             newTxAbs = imageWidth - canvasWidth - txAbs;
@@ -698,9 +763,15 @@ public class ImageLayer extends ContentLayer implements Drawable {
             newTyAbs = imageHeight - canvasHeight - tyAbs;
         }
 
-        g2.setTransform(imageTransform);
-        g2.drawImage(image, 0, 0, imageWidth, imageHeight, null);
-        g2.dispose();
+        if (RightAngleTransforms.canTransform(getImage())
+                && RightAngleTransforms.canTransform(dest)) {
+            RightAngleTransforms.flip(getImage(), dest, direction == HORIZONTAL);
+        } else {
+            Graphics2D g2 = dest.createGraphics();
+            g2.setTransform(imageTransform);
+            g2.drawImage(getImage(), 0, 0, imageWidth, imageHeight, null);
+            g2.dispose();
+        }
 
         setTranslation(-newTxAbs, -newTyAbs);
 
@@ -716,8 +787,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
         int newTxAbs = 0;
         int newTyAbs = 0;
 
-        int imageWidth = image.getWidth();
-        int imageHeight = image.getHeight();
+        int imageWidth = getImage().getWidth();
+        int imageHeight = getImage().getHeight();
 
         int canvasWidth = canvas.getImWidth();
         int canvasHeight = canvas.getImHeight();
@@ -734,16 +805,21 @@ public class ImageLayer extends ContentLayer implements Drawable {
             newTyAbs = imageHeight - canvasHeight - tyAbs;
         }
 
-        BufferedImage dest = angle.createDestImage(image);
+        BufferedImage dest = angle.createDestImage(getImage());
 
-        Graphics2D g2 = dest.createGraphics();
-        // nearest neighbor should be ok for 90, 180, 270 degrees
-        g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        if (RightAngleTransforms.canTransform(getImage())
+                && RightAngleTransforms.canTransform(dest)) {
+            RightAngleTransforms.rotate(getImage(), dest, angleDegree);
+        } else {
+            Graphics2D g2 = dest.createGraphics();
+            // nearest neighbor should be ok for 90, 180, 270 degrees
+            g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
 
-        g2.setTransform(angle.createImageTransform(image));
+            g2.setTransform(angle.createImageTransform(getImage()));
 
-        g2.drawImage(image, 0, 0, imageWidth, imageHeight, null);
-        g2.dispose();
+            g2.drawImage(getImage(), 0, 0, imageWidth, imageHeight, null);
+            g2.dispose();
+        }
 
         setTranslation(-newTxAbs, -newTyAbs);
 
@@ -771,10 +847,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (tmpDrawingLayer == null) {
             return;
         }
-        Graphics2D g = image.createGraphics();
+        Graphics2D g = getImage().createGraphics();
 
         tmpDrawingLayer.paintOn(g, -getTx(), -getTy());
         g.dispose();
+        invalidateCachedImages();
 
         tmpDrawingLayer.dispose();
         tmpDrawingLayer = null;
@@ -789,7 +866,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public BufferedImage getCanvasSizedSubImage() {
         if (!isBigLayer()) {
-            return image;
+            return getImage();
         }
 
         int x = -getTx();
@@ -805,14 +882,14 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
         BufferedImage subImage;
         try {
-            subImage = image.getSubimage(x, y, canvasWidth, canvasHeight);
+            subImage = getImage().getSubimage(x, y, canvasWidth, canvasHeight);
         } catch (RasterFormatException e) {
             System.out.printf("ImageLayer.getCanvasSizedSubImage x = %d, y = %d, " +
                             "canvasWidth = %d, canvasHeight = %d, " +
                             "imageWidth = %d, imageHeight = %d%n",
                     x, y, canvasWidth, canvasHeight,
-                    image.getWidth(), image.getHeight());
-            WritableRaster raster = image.getRaster();
+                    getImage().getWidth(), getImage().getHeight());
+            WritableRaster raster = getImage().getRaster();
 
             System.out.printf("ImageLayer.getCanvasSizedSubImage " +
                             "minX = %d, minY = %d, width = %d, height=%d %n",
@@ -844,13 +921,13 @@ public class ImageLayer extends ContentLayer implements Drawable {
         var selection = comp.getSelection();
         if (selection == null) { // no selection => return full image
             if (copyIfNoSelection) {
-                return copyImage(image);
+                return copyImage(getImage());
             }
-            return image;
+            return getImage();
         }
 
         // there is selection
-        return ImageUtils.getSelectionSizedPartFrom(image,
+        return ImageUtils.getSelectionSizedPartFrom(getImage(),
                 selection, getTx(), getTy());
     }
 
@@ -892,19 +969,19 @@ public class ImageLayer extends ContentLayer implements Drawable {
             boolean imageCoversNewCanvas =
                     cropX >= 0
                             && cropY >= 0
-                            && cropX + cropWidth <= image.getWidth()
-                            && cropY + cropHeight <= image.getHeight();
+                            && cropX + cropWidth <= getImage().getWidth()
+                            && cropY + cropHeight <= getImage().getHeight();
             if (imageCoversNewCanvas) {
                 // no need to change the image, just set the translation
                 super.crop(cropRect, false, allowGrowing);
             } else {
                 // the image still has to be enlarged, but the translation will not be zero
                 int westEnlargement = Math.max(0, -cropX);
-                int newWidth = westEnlargement + Math.max(image.getWidth(), cropX + cropWidth);
+                int newWidth = westEnlargement + Math.max(getImage().getWidth(), cropX + cropWidth);
                 int northEnlargement = Math.max(0, -cropY);
-                int newHeight = northEnlargement + Math.max(image.getHeight(), cropY + cropHeight);
+                int newHeight = northEnlargement + Math.max(getImage().getHeight(), cropY + cropHeight);
 
-                BufferedImage newImage = ImageUtils.crop(image,
+                BufferedImage newImage = ImageUtils.crop(getImage(),
                         -westEnlargement, -northEnlargement,
                         newWidth, newHeight);
                 setImage(newImage);
@@ -922,7 +999,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         assert deleteCroppedPixels;
 
         // this method call can also grow the image
-        BufferedImage newImage = ImageUtils.crop(image, cropX, cropY, cropWidth, cropHeight);
+        BufferedImage newImage = ImageUtils.crop(getImage(), cropX, cropY, cropWidth, cropHeight);
         setImage(newImage);
         setTranslation(0, 0);
     }
@@ -943,16 +1020,16 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * Returns true if something was changed.
      */
     public boolean toCanvasSize() {
-        int imageWidth = image.getWidth();
-        int imageHeight = image.getHeight();
+        int imageWidth = getImage().getWidth();
+        int imageHeight = getImage().getHeight();
         int canvasWidth = canvas.getImWidth();
         int canvasHeight = canvas.getImHeight();
 
         if (imageWidth > canvasWidth || imageHeight > canvasHeight) {
-            BufferedImage newImage = ImageUtils.crop(image,
+            BufferedImage newImage = ImageUtils.crop(getImage(),
                     -getTx(), -getTy(), canvasWidth, canvasHeight);
 
-            BufferedImage tmp = image;
+            BufferedImage tmp = getImage();
             setImage(newImage);
             tmp.flush();
 
@@ -1033,8 +1110,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (bigLayer) {
             double horRatio = newSize.getWidth() / canvas.getImWidth();
             double verRatio = newSize.getHeight() / canvas.getImHeight();
-            imgTargetWidth = (int) (image.getWidth() * horRatio);
-            imgTargetHeight = (int) (image.getHeight() * verRatio);
+            imgTargetWidth = (int) (getImage().getWidth() * horRatio);
+            imgTargetHeight = (int) (getImage().getHeight() * verRatio);
 
             newTx = (int) (getTx() * horRatio);
             newTy = (int) (getTy() * verRatio);
@@ -1053,7 +1130,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                             + ", imgTargetWidth = " + imgTargetWidth + ", imgTargetHeight = " + imgTargetHeight
                             + ", newSize.getWidth() = " + newSize.getWidth() + ", newSize.getHeight() = " + newSize
                             .getHeight()
-                            + ", imgWidth = " + image.getWidth() + ", imgHeight = " + image.getHeight()
+                            + ", imgWidth = " + getImage().getWidth() + ", imgHeight = " + getImage().getHeight()
                             + ", canvasWidth = " + canvas.getImWidth() + ", canvasHeight = " + canvas.getImHeight()
                             + ", horRatio = " + horRatio + ", verRatio = " + verRatio;
         }
@@ -1061,7 +1138,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         int finalTx = newTx;
         int finalTy = newTy;
         return ImageUtils
-                .resizeAsync(image, imgTargetWidth, imgTargetHeight)
+                .resizeAsync(getImage(), imgTargetWidth, imgTargetHeight)
                 .thenAcceptAsync(resizedImg -> {
                     setImage(resizedImg);
                     if (bigLayer) {
@@ -1106,10 +1183,46 @@ public class ImageLayer extends ContentLayer implements Drawable {
         }
     }
 
+    @Override
+    protected void paintLayerOnGraphicsWithMask(Graphics2D g, boolean firstVisibleLayer) {
+        if (tmpDrawingLayer != null || isShapesDrawnInto()) {
+            // the brush or shape drawing is only temporary, not worth caching
+            super.paintLayerOnGraphicsWithMask(g, firstVisibleLayer);
+            return;
+        }
+
+        Rectangle bounds = getClippedCanvasBounds(g);
+        if (bounds.isEmpty()) {
+            return;
+        }
+        BufferedImage maskedImage = maskedImageCache.get(this, bounds);
+
+        // the cached image is canvas-sized, but only
+        // the clipped region is painted
+        setupDrawingComposite(g, firstVisibleLayer);
+        g.drawImage(maskedImage, 0, 0, null);
+    }
+
+    @Override
+    public void invalidateCachedImages() {
+        super.invalidateCachedImages();
+        maskedImageCache.invalidateAll();
+    }
+
+    @Override
+    public void invalidateCachedImages(Rectangle area) {
+        super.invalidateCachedImages(area);
+        maskedImageCache.invalidate(area);
+    }
+
+    private boolean isShapesDrawnInto() {
+        return Tools.isShapesDrawing() && isActive() && !isMaskEditing();
+    }
+
     protected void paintLayerOnGraphicsWOTmpLayer(Graphics2D g,
                                                   BufferedImage visibleImage,
                                                   boolean firstVisibleLayer) {
-        if (Tools.isShapesDrawing() && isActive() && !isMaskEditing()) {
+        if (isShapesDrawnInto()) {
             paintDraggedShapesIntoActiveLayer(g, visibleImage, firstVisibleLayer);
         } else { // the simple case
             g.drawImage(visibleImage, getTx(), getTy(), null);
@@ -1156,7 +1269,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
         switch (state) {
             case NORMAL:
-                visibleImage = image;
+                visibleImage = getImage();
                 break;
             case PREVIEW:
                 assert previewImage != null : "no preview image in state " + state;
@@ -1164,7 +1277,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 break;
             case SHOW_ORIGINAL:
                 assert previewImage != null : "no preview image in state " + state;
-                visibleImage = image;
+                visibleImage = getImage();
                 break;
             default:
                 throw new IllegalStateException("state = " + state);
@@ -1186,7 +1299,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             setState(PREVIEW);
         }
         imageRefChanged();
-        comp.imageChanged(REPAINT);
+        comp.layerImageChanged(this, REPAINT);
     }
 
     private void setState(State newState) {
@@ -1199,7 +1312,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public void debugImages() {
-        Utils.debugImage(image, "image");
+        Utils.debugImage(getImage(), "image");
         if (previewImage != null) {
             Utils.debugImage(previewImage, "previewImage");
         } else {
@@ -1236,12 +1349,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     public BufferedImage applyLayerMask(boolean addToHistory) {
         // the image reference will not be replaced
-        BufferedImage oldImage = copyImage(image);
+        BufferedImage oldImage = copyImage(getImage());
 
         LayerMask oldMask = mask;
         MaskViewMode oldMode = comp.getView().getMaskViewMode();
 
-        mask.applyToImage(image);
+        mask.applyToImage(getImage());
         deleteMask(false);
 
         if (addToHistory) {
@@ -1280,15 +1393,15 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 + ", canvasHeight=" + canvas.getImHeight()
                 + ", tx=" + translationX
                 + ", ty=" + translationY
-                + ", imgWidth=" + image.getWidth()
-                + ", imgHeight=" + image.getHeight()
+                + ", imgWidth=" + getImage().getWidth()
+                + ", imgHeight=" + getImage().getHeight()
                 + '}';
     }
 
     @Override
     public String toString() {
         return getClass().getSimpleName()
-                + "{img=" + image.getWidth() + "x" + image.getHeight()
+                + "{img=" + getImage().getWidth() + "x" + getImage().getHeight()
                 + ", state=" + state
                 + ", super=" + super.toString()
                 + '}';
@@ -47,6 +47,7 @@ import java.awt.Composite;
 import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.event.ActionEvent;
 import java.awt.geom.Rectangle2D;
@@ -57,6 +58,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.awt.AlphaComposite.DstIn;
 import static java.awt.AlphaComposite.SRC_OVER;
@@ -75,8 +77,9 @@ public abstract class Layer implements Serializable {
     protected String name;
 
     // the real layer for layer masks,
-    // null for real layers
-    protected final Layer owner;
+    // null for real layers (not final, because it's
+    // missing from the masks in some older pxc files)
+    protected Layer owner;
 
     private boolean visible = true;
     private float opacity = 1.0f;
@@ -103,6 +106,12 @@ public abstract class Layer implements Serializable {
      */
     private transient boolean maskEditing = false;
 
+    private static final AtomicLong lastContentVersion = new AtomicLong();
+
+    // A globally unique stamp, renewed whenever the pixels of this layer
+    // or the way it is composited change. Zero means not yet assigned.
+    private transient long contentVersion;
+
     // can be called on any thread
     Layer(Composition comp, String name, Layer owner) {
         assert comp != null;
@@ -139,13 +148,14 @@ public abstract class Layer implements Serializable {
             ui = Lazy.of(this::createUI);
 
             if (mask != null) {
+                mask.owner = this;
                 mask.setUI(ui);
             }
         }
     }
 
     private LayerUI createUI() {
-        if (Build.isUnitTesting()) {
+        if (Build.isUnitTesting() || Build.isHeadless()) {
             return new TestLayerUI();
         }
         assert EventQueue.isDispatchThread();
@@ -167,7 +177,11 @@ public abstract class Layer implements Serializable {
         }
 
         visible = newVisibility;
-        comp.imageChanged();
+        if (!visible) {
+            // free the memory until the layer is visible again
+            invalidateCachedImages();
+        }
+        compositingPropertyChanged();
 
         if(changeGUI) {
             ui.get().setOpenEye(newVisibility);
@@ -216,7 +230,7 @@ public abstract class Layer implements Serializable {
     }
 
     private void updateAfterBMorOpacityChange() {
-        comp.imageChanged();
+        compositingPropertyChanged();
 
         HistogramsPanel hp = HistogramsPanel.INSTANCE;
         if (hp.isShown()) {
@@ -478,8 +492,21 @@ public abstract class Layer implements Serializable {
     public BufferedImage applyLayer(Graphics2D g,
                                     BufferedImage imageSoFar,
                                     boolean firstVisibleLayer) {
+        return applyLayer(g, imageSoFar, firstVisibleLayer, false);
+    }
+
+    /**
+     * Like {@link #applyLayer(Graphics2D, BufferedImage, boolean)}, but if
+     * onComposite is true, then the given image must be the composite of
+     * all the layers bellow this one, and adjustment layers can return
+     * their cached result instead of transforming it again.
+     */
+    public BufferedImage applyLayer(Graphics2D g,
+                                    BufferedImage imageSoFar,
+                                    boolean firstVisibleLayer,
+                                    boolean onComposite) {
         if (isAdjustment) { // adjustment layer or watermarked text layer
-            return adjustImageWithMasksAndBlending(imageSoFar, firstVisibleLayer);
+            return adjustImageWithMasksAndBlending(imageSoFar, firstVisibleLayer, onComposite);
         } else {
             if (!useMask()) {
                 setupDrawingComposite(g, firstVisibleLayer);
@@ -497,37 +524,67 @@ public abstract class Layer implements Serializable {
     public abstract void paintLayerOnGraphics(Graphics2D g, boolean firstVisibleLayer);
 
     /**
-     * Returns the masked image for the non-adjustment case.
-     * The returned image is canvas-sized, and the masks and the
-     * translations are taken into account
+     * Paints the masked image for the non-adjustment case.
+     * The masks and the translations are taken into account
      */
-    private void paintLayerOnGraphicsWithMask(Graphics2D g, boolean firstVisibleLayer) {
+    protected void paintLayerOnGraphicsWithMask(Graphics2D g, boolean firstVisibleLayer) {
+        // if only a region of the composite is calculated,
+        // then the masked image is needed only for that region
+        Rectangle bounds = getClippedCanvasBounds(g);
+        if (bounds.isEmpty()) {
+            return;
+        }
+
         // 1. create the masked image
-        // TODO the masked image should be cached
         BufferedImage maskedImage = new BufferedImage(
-                canvas.getImWidth(), canvas.getImHeight(), TYPE_INT_ARGB);
+                bounds.width, bounds.height, TYPE_INT_ARGB);
         Graphics2D mig = maskedImage.createGraphics();
-        paintLayerOnGraphics(mig, firstVisibleLayer);
-        mig.setComposite(DstIn);
-        mig.drawImage(mask.getTransparencyImage(),
-                mask.getTx(), mask.getTy(), null);
+        mig.translate(-bounds.x, -bounds.y);
+        paintMaskedLayer(mig, firstVisibleLayer);
         mig.dispose();
 
         // 2. paint the masked image onto the graphics
 //            g.drawImage(maskedImage, getTx(), getTy(), null);
         setupDrawingComposite(g, firstVisibleLayer);
-        g.drawImage(maskedImage, 0, 0, null);
+        g.drawImage(maskedImage, bounds.x, bounds.y, null);
+    }
+
+    /**
+     * Paints this layer with the mask applied on the given
+     * graphics, which must be transparent in the painted area.
+     */
+    void paintMaskedLayer(Graphics2D g, boolean firstVisibleLayer) {
+        paintLayerOnGraphics(g, firstVisibleLayer);
+        g.setComposite(DstIn);
+        g.drawImage(mask.getTransparencyImage(),
+                mask.getTx(), mask.getTy(), null);
+    }
+
+    /**
+     * Returns the part of the canvas that is not clipped
+     * away in the given graphics.
+     */
+    protected Rectangle getClippedCanvasBounds(Graphics2D g) {
+        Rectangle bounds = canvas.getImBounds();
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            bounds = bounds.intersection(clip);
+        }
+        return bounds;
     }
 
     /**
      * Used by adjustment layers and watermarked text layers
      */
     private BufferedImage adjustImageWithMasksAndBlending(BufferedImage imgSoFar,
-                                                          boolean isFirstVisibleLayer) {
+                                                          boolean isFirstVisibleLayer,
+                                                          boolean onComposite) {
         if (isFirstVisibleLayer) {
             return imgSoFar; // there's nothing we can do
         }
-        BufferedImage transformed = actOnImageFromLayerBellow(imgSoFar);
+        BufferedImage transformed = onComposite
+                ? actOnCompositeOfLayersBellow(imgSoFar)
+                : actOnImageFromLayerBellow(imgSoFar);
         if (useMask()) {
             mask.applyToImage(transformed);
         }
@@ -542,11 +599,61 @@ public abstract class Layer implements Serializable {
         }
     }
 
+    /**
+     * Returns true for adjustment layers and watermarked text layers,
+     * which transform the image of the layers bellow them
+     */
+    public boolean isAdjustment() {
+        return isAdjustment;
+    }
+
+    /**
+     * Invalidates the cached images calculated from the pixels of this
+     * layer or of its mask, because they might have been changed in place.
+     * Subclasses with caches must call the super implementation.
+     */
+    public void invalidateCachedImages() {
+        contentVersion = lastContentVersion.incrementAndGet();
+    }
+
+    /**
+     * Like {@link #invalidateCachedImages()}, but only the given
+     * canvas-relative area could have been changed.
+     */
+    public void invalidateCachedImages(Rectangle area) {
+        contentVersion = lastContentVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns a stamp that changes whenever this layer's contribution
+     * to the composite image might have changed. Stamps are unique
+     * across all layers, so equal stamps mean the same, unchanged layer.
+     */
+    public long getContentVersion() {
+        if (contentVersion == 0) {
+            contentVersion = lastContentVersion.incrementAndGet();
+        }
+        return contentVersion;
+    }
+
+    private void compositingPropertyChanged() {
+        contentVersion = lastContentVersion.incrementAndGet();
+        comp.compositingChanged();
+    }
+
     /**
      * Used by adjustment layers and watermarked text layers
      */
     protected abstract BufferedImage actOnImageFromLayerBellow(BufferedImage src);
 
+    /**
+     * Like {@link #actOnImageFromLayerBellow(BufferedImage)}, but the given
+     * image is known to be the composite of all the layers bellow this one.
+     */
+    protected BufferedImage actOnCompositeOfLayersBellow(BufferedImage src) {
+        return actOnImageFromLayerBellow(src);
+    }
+
     public abstract CompletableFuture<Void> resize(Dimension newSize);
 
     /**
@@ -676,7 +783,7 @@ public abstract class Layer implements Serializable {
         assert mask != null;
         this.maskEnabled = maskEnabled;
 
-        comp.imageChanged();
+        compositingPropertyChanged();
         mask.updateIconImage();
         notifyLayerChangeListeners();
 
@@ -685,7 +792,7 @@ public abstract class Layer implements Serializable {
         }
     }
 
-    private boolean useMask() {
+    protected boolean useMask() {
         return mask != null && maskEnabled;
     }
 
@@ -694,7 +801,7 @@ public abstract class Layer implements Serializable {
     }
 
     public void activateUI() {
-        assert Build.isUnitTesting() || EventQueue.isDispatchThread();
+        assert Build.isUnitTesting() || Build.isHeadless() || EventQueue.isDispatchThread();
         ui.get().setSelected(true);
     }
 
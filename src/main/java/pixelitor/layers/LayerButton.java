@@ -20,7 +20,6 @@ package pixelitor.layers;
 import com.bric.util.JVM;
 import org.jdesktop.swingx.painter.CheckerboardPainter;
 import pixelitor.Build;
-import pixelitor.ThreadPool;
 import pixelitor.gui.PixelitorWindow;
 import pixelitor.gui.View;
 import pixelitor.utils.Icons;
@@ -150,6 +149,9 @@ public class LayerButton extends JToggleButton implements LayerUI {
     private JLabel layerIconLabel;
     private JLabel maskIconLabel;
 
+    private final ThumbnailUpdater layerThumbUpdater = new ThumbnailUpdater();
+    private final ThumbnailUpdater maskThumbUpdater = new ThumbnailUpdater();
+
     /**
      * The Y coordinate in the parent when it is not dragging
      */
@@ -364,20 +366,15 @@ public class LayerButton extends JToggleButton implements LayerUI {
 
         boolean isMask = layer instanceof LayerMask;
 
-        BufferedImage img = layer.getCanvasSizedSubImage();
-
-        Runnable notEDT = () -> {
-            CheckerboardPainter painter = null;
-            if (!isMask) {
-                painter = checkerBoardPainter;
-            }
+        // not a copy: the thumbnail creation reads only
+        // as many pixels as there are in the thumbnail
+        BufferedImage img = layer.getIconImage();
+        CheckerboardPainter painter = isMask ? null : checkerBoardPainter;
+        int size = thumbSize;
 
-            BufferedImage thumb = createThumbnail(img, thumbSize, painter);
-
-            SwingUtilities.invokeLater(() ->
-                    updateIconOnEDT(layer, isMask, thumb));
-        };
-        ThreadPool.submit(notEDT);
+        ThumbnailUpdater updater = isMask ? maskThumbUpdater : layerThumbUpdater;
+        updater.request(() -> createThumbnail(img, size, painter),
+                thumb -> updateIconOnEDT(layer, isMask, thumb));
     }
 
     private void updateIconOnEDT(ImageLayer layer, boolean isMask, BufferedImage thumb) {
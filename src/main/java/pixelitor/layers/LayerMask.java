@@ -89,8 +89,8 @@ public class LayerMask extends ImageLayer {
     }
 
     public void updateFromBWImage() {
-        assert image.getType() == TYPE_BYTE_GRAY;
-        assert image.getColorModel() != TRANSPARENCY_COLOR_MODEL;
+        assert getImage().getType() == TYPE_BYTE_GRAY;
+        assert getImage().getColorModel() != TRANSPARENCY_COLOR_MODEL;
 
         // The transparency image shares the raster data with the BW image,
         // but interprets the bytes differently.
@@ -129,6 +129,19 @@ public class LayerMask extends ImageLayer {
         updateFromBWImage();
     }
 
+    @Override
+    public void invalidateCachedImages() {
+        super.invalidateCachedImages();
+        // the owner's cached images are calculated from the mask as well
+        owner.invalidateCachedImages();
+    }
+
+    @Override
+    public void invalidateCachedImages(Rectangle area) {
+        super.invalidateCachedImages(area);
+        owner.invalidateCachedImages(area);
+    }
+
     @Override
     public void updateIconImage() {
         LayerUI ui = getUI();
@@ -142,7 +155,7 @@ public class LayerMask extends ImageLayer {
      * to the given layer
      */
     public LayerMask duplicate(Layer owner) {
-        BufferedImage maskImageCopy = ImageUtils.copyImage(image);
+        BufferedImage maskImageCopy = ImageUtils.copyImage(getImage());
 
         LayerMask d = new LayerMask(comp, maskImageCopy, owner,
                 getTx(), getTy());
@@ -189,15 +202,19 @@ public class LayerMask extends ImageLayer {
     public BufferedImage getTransparencyImage() {
         if (!owner.isMaskEditing() || !Tools.isShapesDrawing()) {
             // simple case
+            if (transparencyImage == null) {
+                // the mask was read from a pxc file, but not yet loaded
+                getImage();
+            }
             return transparencyImage;
         } else { // drawing with the shapes tool while in Ctrl-3 mode
 
             // Create a temporary image that shows how the image would look like
             // if the shapes tool would draw directly into the mask image
             BufferedImage tmp = new BufferedImage(
-                    image.getWidth(), image.getHeight(), TYPE_BYTE_GRAY);
+                    getImage().getWidth(), getImage().getHeight(), TYPE_BYTE_GRAY);
             Graphics2D tmpG = tmp.createGraphics();
-            tmpG.drawImage(image, 0, 0, null);
+            tmpG.drawImage(getImage(), 0, 0, null);
             Tools.SHAPES.paintOverActiveLayer(tmpG, comp);
             tmpG.dispose();
 
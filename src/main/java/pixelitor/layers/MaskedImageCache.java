@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.Canvas;
+import pixelitor.utils.TileValidity;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * The canvas-sized masked image of an {@link ImageLayer},
+ * cached between compositing runs.
+ *
+ * Only the tiles needed for the painted region are calculated.
+ * Replacing the layer or mask image and changing their translations
+ * is detected here, but in-place changes of their pixels have
+ * to be signaled with the invalidate methods.
+ */
+class MaskedImageCache {
+    private static final int TILE_SIZE = 256;
+
+    // a soft reference, because the cache can be recalculated
+    private SoftReference<BufferedImage> imageRef;
+    private TileValidity validity;
+
+    // the state for which the cached image was calculated
+    private BufferedImage srcImage;
+    private int srcTx;
+    private int srcTy;
+    private BufferedImage maskImage;
+    private int maskTx;
+    private int maskTy;
+
+    /**
+     * Returns the canvas-sized masked image of the given layer,
+     * which is up-to-date at least in the given region.
+     */
+    synchronized BufferedImage get(ImageLayer layer, Rectangle region) {
+        Canvas canvas = layer.getComp().getCanvas();
+        int width = canvas.getImWidth();
+        int height = canvas.getImHeight();
+        BufferedImage src = layer.getVisibleImage();
+        LayerMask mask = layer.getMask();
+
+        BufferedImage image = imageRef == null ? null : imageRef.get();
+        if (image == null
+                || !validity.hasSize(width, height)
+                || src != srcImage
+                || layer.getTx() != srcTx
+                || layer.getTy() != srcTy
+                || mask.getTransparencyImage() != maskImage
+                || mask.getTx() != maskTx
+                || mask.getTy() != maskTy) {
+            image = new BufferedImage(width, height, TYPE_INT_ARGB);
+            imageRef = new SoftReference<>(image);
+            validity = new TileValidity(width, height, TILE_SIZE, false);
+
+            srcImage = src;
+            srcTx = layer.getTx();
+            srcTy = layer.getTy();
+            maskImage = mask.getTransparencyImage();
+            maskTx = mask.getTx();
+            maskTy = mask.getTy();
+        }
+
+        BufferedImage target = image;
+        validity.validate(region, tile -> recalcTile(layer, target, tile));
+        return image;
+    }
+
+    private static void recalcTile(ImageLayer layer, BufferedImage target, Rectangle tile) {
+        Graphics2D g = target.createGraphics();
+        g.setClip(tile);
+        g.setComposite(AlphaComposite.Clear);
+        g.fill(tile);
+        g.setComposite(AlphaComposite.SrcOver);
+        layer.paintMaskedLayer(g, false);
+        g.dispose();
+    }
+
+    synchronized void invalidate(Rectangle area) {
+        if (validity != null) {
+            validity.invalidate(area);
+        }
+    }
+
+    synchronized void invalidateAll() {
+        imageRef = null;
+        validity = null;
+        srcImage = null;
+        maskImage = null;
+    }
+}
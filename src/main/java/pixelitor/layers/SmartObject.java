@@ -69,7 +69,7 @@ public class SmartObject extends ContentLayer {
 
     @Override
     public void paintLayerOnGraphics(Graphics2D g, boolean firstVisibleLayer) {
-        g.drawImage(content.getCompositeImage(), getTx(), getTy(), null);
+        g.drawImage(content.getCachedCompositeImage(), getTx(), getTy(), null);
     }
 
     @Override
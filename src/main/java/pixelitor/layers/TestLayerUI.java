@@ -24,6 +24,7 @@ import java.util.Map;
 
 /**
  * The {@link LayerUI} implementation used in unit tests
+ * and in the headless batch processing
  */
 public class TestLayerUI implements LayerUI {
     private String name;
@@ -32,7 +33,7 @@ public class TestLayerUI implements LayerUI {
     private final Map<ImageLayer, Integer> iconImageUpdateCounter = new IdentityHashMap<>();
 
     public TestLayerUI() {
-        assert Build.isUnitTesting();
+        assert Build.isUnitTesting() || Build.isHeadless();
     }
 
     @Override
@@ -248,14 +248,15 @@ public class TextLayer extends ContentLayer {
     }
 
     @Override
-    public BufferedImage applyLayer(Graphics2D g, BufferedImage imageSoFar, boolean firstVisibleLayer) {
+    public BufferedImage applyLayer(Graphics2D g, BufferedImage imageSoFar,
+                                    boolean firstVisibleLayer, boolean onComposite) {
         if (settings == null) {
             // the layer was just created, nothing to paint yet
             return imageSoFar;
         }
 
         // the text will be painted normally
-        return super.applyLayer(g, imageSoFar, firstVisibleLayer);
+        return super.applyLayer(g, imageSoFar, firstVisibleLayer, onComposite);
     }
 
     @Override
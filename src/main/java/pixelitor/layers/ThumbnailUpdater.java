@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Creates the thumbnails of a layer or mask icon outside the EDT.
+ *
+ * The requests are coalesced: while a request is waiting, a newer request
+ * only replaces it, and a finished thumbnail is dropped if a newer version
+ * was requested in the meantime. All thumbnails are created on a single
+ * low priority thread, so that they don't compete with the filters,
+ * tweening or batch processing for the cores.
+ */
+class ThumbnailUpdater {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "[thumbnail updater]");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // guarded by this
+    private long requestedVersion;
+    private Supplier<BufferedImage> thumbCreator;
+    private Consumer<BufferedImage> thumbConsumer;
+    private boolean scheduled;
+
+    /**
+     * Requests a new thumbnail, which will be created by the given
+     * creator outside the EDT, and passed to the given consumer on
+     * the EDT, unless another thumbnail is requested in the meantime.
+     */
+    synchronized void request(Supplier<BufferedImage> creator, Consumer<BufferedImage> consumer) {
+        requestedVersion++;
+        thumbCreator = creator;
+        thumbConsumer = consumer;
+        if (!scheduled) {
+            scheduled = true;
+            executor.execute(this::createThumb);
+        }
+    }
+
+    private void createThumb() {
+        long version;
+        Supplier<BufferedImage> creator;
+        Consumer<BufferedImage> consumer;
+        synchronized (this) {
+            // the later requests will schedule a new task
+            scheduled = false;
+            version = requestedVersion;
+            creator = thumbCreator;
+            consumer = thumbConsumer;
+        }
+
+        BufferedImage thumb = creator.get();
+
+        EventQueue.invokeLater(() -> {
+            if (isLatest(version)) {
+                consumer.accept(thumb);
+            }
+        });
+    }
+
+    private synchronized boolean isLatest(long version) {
+        return version == requestedVersion;
+    }
+}
@@ -176,6 +176,17 @@ public class MenuBar extends JMenuBar {
         add(createHelpMenu(pw));
     }
 
+    /**
+     * Creates the filter actions without a window, so that they can
+     * be found in {@link FilterUtils} when running headless.
+     */
+    public static void createFilterActions() {
+        if (FilterUtils.getAllFiltersSorted().length == 0) {
+            createColorMenu();
+            createFilterMenu();
+        }
+    }
+
     private static JMenu createFileMenu(PixelitorWindow pw) {
         PMenu fileMenu = new PMenu("File", 'F');
 
@@ -53,15 +53,17 @@ public class AnimGifExport {
                 .owner(dialogOwner)
                 .content(p)
                 .okText("Export")
-                .okAction(() -> export(comp, p.getDelayMillis(), p.isPingPong()))
+                .okAction(() -> export(comp, p.getDelayMillis(),
+                        p.isPingPong(), p.isFrameDifferencing()))
                 .show();
     }
 
-    private static void export(Composition activeComp, int delayMillis, boolean pingPong) {
+    private static void export(Composition activeComp, int delayMillis,
+                               boolean pingPong, boolean frameDifferencing) {
         File file = FileChoosers.selectSaveFileForSpecificFormat(gifFilter);
         if (file != null) {
             var animation = new LayerAnimation(activeComp,
-                    delayMillis, pingPong);
+                    delayMillis, pingPong, frameDifferencing);
             animation.saveToFile(file);
             Messages.showFileSavedMessage(file);
         }
@@ -70,6 +72,7 @@ public class AnimGifExport {
     static class ExportPanel extends JPanel {
         private final JTextField delayTF;
         private final JCheckBox pingPongCB;
+        private final JCheckBox frameDifferencingCB;
 
         public ExportPanel(int nrLayers) {
             setBorder(createEmptyBorder(10, 10, 10, 10));
@@ -92,6 +95,9 @@ public class AnimGifExport {
                 pingPongCB.setEnabled(false);
             }
             add(pingPongCB);
+
+            frameDifferencingCB = new JCheckBox("Only Write the Changed Areas (Smaller File)");
+            add(frameDifferencingCB);
         }
 
         private int getDelayMillis() {
@@ -101,5 +107,9 @@ public class AnimGifExport {
         private boolean isPingPong() {
             return pingPongCB.isSelected();
         }
+
+        private boolean isFrameDifferencing() {
+            return frameDifferencingCB.isSelected();
+        }
     }
 }
@@ -30,6 +30,7 @@ import pixelitor.gui.utils.SimpleCachedPainter;
 import pixelitor.gui.utils.SliderSpinner;
 import pixelitor.history.History;
 import pixelitor.history.MultiEdit;
+import pixelitor.history.PartialImageEdit;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.LayerMask;
 import pixelitor.tools.brushes.AffectedArea;
@@ -389,29 +390,35 @@ public abstract class AbstractBrushTool extends Tool {
     private void finishBrushStroke(Drawable dr) {
         brush.finishBrushStroke();
 
-        addBrushStrokeToHistory(dr);
+        var imageEdit = addBrushStrokeToHistory(dr);
 
         if (graphics != null) {
             graphics.dispose();
         }
         graphics = null;
 
+        affectedArea.setGrowListener(null);
         drawDestination.finishBrushStroke(dr);
 
+        if (imageEdit != null) {
+            // now the final pixels are in the image
+            imageEdit.encodeDelta();
+        }
+
         dr.updateIconImage();
 
-        dr.getComp().imageChanged(HISTOGRAM);
+        // the tiles outside the stroke don't have to be recomposited
+        // and their histograms don't have to be recalculated
+        var affectedRect = affectedArea.asRectangle(brush.getEffectiveRadius());
+        dr.getComp().regionChanged(affectedRect, HISTOGRAM);
     }
 
-    private void addBrushStrokeToHistory(Drawable dr) {
-        var originalImage = drawDestination.getOriginalImage(dr, this);
-
+    private PartialImageEdit addBrushStrokeToHistory(Drawable dr) {
         double brushRadius = brush.getEffectiveRadius();
         var affectedRect = affectedArea.asRectangle(brushRadius);
         assert !affectedRect.isEmpty() : "brush radius = " + brushRadius + ", affected area = " + affectedArea;
 
-        var imageEdit = History.createPartialImageEdit(affectedRect, originalImage, dr,
-                false, getName());
+        var imageEdit = drawDestination.createEdit(dr, affectedRect, getName());
         if (imageEdit != null) {
             if (typeCB != null && getBrushType() == BrushType.CONNECT) {
                 var comp = dr.getComp();
@@ -421,6 +428,7 @@ public abstract class AbstractBrushTool extends Tool {
                 History.add(imageEdit);
             }
         }
+        return imageEdit;
     }
 
     public void drawBrushStrokeProgrammatically(Drawable dr, PPoint start, PPoint end) {
@@ -433,10 +441,19 @@ public abstract class AbstractBrushTool extends Tool {
     }
 
     protected void prepareProgrammaticBrushStroke(Drawable dr, PPoint start) {
-        drawDestination.prepareBrushStroke(dr);
+        prepareBrushStroke(dr);
         graphics = createGraphicsForNewBrushStroke(dr);
     }
 
+    private void prepareBrushStroke(Drawable dr) {
+        drawDestination.prepareBrushStroke(dr);
+
+        // the affected area is updated before each brush movement is
+        // painted, so the destination can save the pixels in advance
+        affectedArea.setGrowListener(() -> drawDestination.beforePainting(
+                dr, affectedArea.asRectangle(brush.getEffectiveRadius())));
+    }
+
     /**
      * Creates the global Graphics2D object graphics.
      */
@@ -478,7 +495,7 @@ public abstract class AbstractBrushTool extends Tool {
      */
     private void newMousePoint(Drawable dr, PPoint p, boolean lineConnect) {
         if (graphics == null) { // a new brush stroke has to be initialized
-            drawDestination.prepareBrushStroke(dr);
+            prepareBrushStroke(dr);
             graphics = createGraphicsForNewBrushStroke(dr);
             graphics.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
 
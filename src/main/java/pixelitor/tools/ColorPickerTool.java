@@ -88,7 +88,7 @@ public class ColorPickerTool extends Tool {
             x -= dr.getTx();
             y -= dr.getTy();
         } else {
-            img = view.getComp().getCompositeImage();
+            img = view.getComp().getCachedCompositeImage();
         }
         int imgWidth = img.getWidth();
         int imgHeight = img.getHeight();
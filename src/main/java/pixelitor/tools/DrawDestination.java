@@ -17,12 +17,15 @@
 
 package pixelitor.tools;
 
+import pixelitor.history.History;
+import pixelitor.history.PartialImageEdit;
 import pixelitor.layers.Drawable;
-import pixelitor.utils.ImageUtils;
+import pixelitor.utils.TiledImageBackup;
 import pixelitor.utils.test.Assertions;
 
 import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -42,19 +45,27 @@ public enum DrawDestination {
             // nothing to be done
         }
 
+        @Override
+        public void beforePainting(Drawable dr, Rectangle area) {
+            // nothing to be done
+        }
+
         @Override
         public void finishBrushStroke(Drawable dr) {
             dr.mergeTmpDrawingLayerDown();
         }
 
         @Override
-        public BufferedImage getOriginalImage(Drawable dr, AbstractBrushTool tool) {
-            // it can simply return the drawable image because
+        public PartialImageEdit createEdit(Drawable dr, Rectangle area, String editName) {
+            // it can simply use the drawable image because
             // the drawing was on the temporary layer
-            return dr.getImage();
+            return History.createPartialImageEdit(area, dr.getImage(),
+                    dr, false, editName);
         }
     }, DIRECT {
-        private BufferedImage copyBeforeStart;
+        // the tiles are saved only before they are painted,
+        // so that starting a stroke doesn't copy the whole image
+        private TiledImageBackup backup;
 
         @Override
         public Graphics2D createGraphics(Drawable dr, Composite composite) {
@@ -69,22 +80,30 @@ public enum DrawDestination {
 
             assert Assertions.checkRasterMinimum(image);
 
-            copyBeforeStart = ImageUtils.copyImage(image);
+            backup = new TiledImageBackup(image);
+        }
+
+        @Override
+        public void beforePainting(Drawable dr, Rectangle area) {
+            if (backup != null) {
+                Rectangle imageArea = new Rectangle(area);
+                imageArea.translate(-dr.getTx(), -dr.getTy());
+                backup.saveTiles(imageArea);
+            }
         }
 
         @Override
         public void finishBrushStroke(Drawable dr) {
-            copyBeforeStart.flush();
-            copyBeforeStart = null;
+            backup = null;
         }
 
         @Override
-        public BufferedImage getOriginalImage(Drawable dr, AbstractBrushTool tool) {
-            if (copyBeforeStart == null) {
-                throw new IllegalStateException("copyBeforeStart is null for " + tool.getName());
+        public PartialImageEdit createEdit(Drawable dr, Rectangle area, String editName) {
+            if (backup == null) {
+                throw new IllegalStateException("no backup for " + editName);
             }
 
-            return copyBeforeStart;
+            return History.createPartialImageEdit(area, backup, dr, editName);
         }
     };
 
@@ -92,10 +111,17 @@ public enum DrawDestination {
 
     public abstract void prepareBrushStroke(Drawable dr);
 
+    /**
+     * Called before the brush paints into the given area,
+     * which is given relative to the canvas
+     */
+    public abstract void beforePainting(Drawable dr, Rectangle area);
+
     public abstract void finishBrushStroke(Drawable dr);
 
     /**
-     * Returns the original (untouched) image for undo
+     * Returns the undo edit for the given area (relative to
+     * the canvas), or null if the area is outside the image
      */
-    public abstract BufferedImage getOriginalImage(Drawable dr, AbstractBrushTool tool);
+    public abstract PartialImageEdit createEdit(Drawable dr, Rectangle area, String editName);
 }
@@ -171,7 +171,10 @@ public class Tools {
     }
 
     public static void imCoordsChanged(Composition comp, AffineTransform at) {
-        currentTool.imCoordsChanged(comp, at);
+        // there is no current tool in headless mode
+        if (currentTool != null) {
+            currentTool.imCoordsChanged(comp, at);
+        }
     }
 
     public static void editedObjectChanged(Layer layer) {
@@ -32,9 +32,16 @@ public class AffectedArea {
     private double maxX = Double.NEGATIVE_INFINITY;
     private double maxY = Double.NEGATIVE_INFINITY;
 
+    // notified after the area grows, but before the new part is painted
+    private Runnable growListener;
+
     public AffectedArea() {
     }
 
+    public void setGrowListener(Runnable growListener) {
+        this.growListener = growListener;
+    }
+
     /**
      * Initialize the area with a brush position.
      *
@@ -48,6 +55,10 @@ public class AffectedArea {
         minY = y;
         maxX = x;
         maxY = y;
+
+        if (growListener != null) {
+            growListener.run();
+        }
     }
 
     /**
@@ -69,6 +80,10 @@ public class AffectedArea {
         if (y < minY) {
             minY = y;
         }
+
+        if (growListener != null) {
+            growListener.run();
+        }
     }
 
     /**
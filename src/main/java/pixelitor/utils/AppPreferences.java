@@ -87,6 +87,7 @@ public final class AppPreferences {
     private static final String LAST_SAVE_DIR_KEY = "last_save_dir";
 
     private static final String UNDO_LEVELS_KEY = "undo_levels";
+    private static final String UNDO_MEMORY_KEY = "undo_memory";
 
     private static final String THUMB_SIZE_KEY = "thumb_size";
 
@@ -300,6 +301,22 @@ public final class AppPreferences {
         mainNode.putInt(UNDO_LEVELS_KEY, History.getUndoLevels());
     }
 
+    /**
+     * Returns the memory budget of the undo backups in megabytes
+     */
+    public static int loadUndoMemory() {
+        int retVal = mainNode.getInt(UNDO_MEMORY_KEY, -1);
+        if (retVal == -1) {
+            retVal = Utils.getMaxHeapInMegabytes() / 4;
+        }
+        // older versions accepted smaller values
+        return Math.max(History.MIN_UNDO_MEMORY, retVal);
+    }
+
+    private static void saveUndoMemory() {
+        mainNode.putInt(UNDO_MEMORY_KEY, History.getUndoMemory());
+    }
+
     public static int loadThumbSize() {
         return mainNode.getInt(THUMB_SIZE_KEY, LayerButtonLayout.SMALL_THUMB_SIZE);
     }
@@ -358,6 +375,7 @@ public final class AppPreferences {
         saveFgBgColors();
         WorkSpace.saveVisibility();
         saveUndoLevels();
+        saveUndoMemory();
         saveThumbSize();
         TipsOfTheDay.saveNextTipNr();
         saveNewImageSize();
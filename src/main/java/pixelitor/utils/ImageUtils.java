@@ -93,11 +93,16 @@ public class ImageUtils {
     public static final double DEG_315_IN_RADIANS = 0.7853981634;
     private static final Color CHECKERBOARD_GRAY = new Color(200, 200, 200);
 
-    private static final GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment
+    // null in the headless batch mode, where there is no screen
+    private static final GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment.isHeadless()
+            ? null
+            : GraphicsEnvironment
             .getLocalGraphicsEnvironment()
             .getDefaultScreenDevice()
             .getDefaultConfiguration();
-    private static final ColorModel defaultColorModel = graphicsConfiguration.getColorModel();
+    private static final ColorModel defaultColorModel = graphicsConfiguration == null
+            ? ColorModel.getRGBdefault()
+            : graphicsConfiguration.getColorModel();
 
     private ImageUtils() {
     }
@@ -115,8 +120,7 @@ public class ImageUtils {
             return input;
         }
 
-        BufferedImage output = graphicsConfiguration
-                .createCompatibleImage(input.getWidth(), input.getHeight(), TRANSLUCENT);
+        BufferedImage output = createSysCompatibleImage(input.getWidth(), input.getHeight());
         Graphics2D g = output.createGraphics();
         g.drawImage(input, 0, 0, null);
         g.dispose();
@@ -131,6 +135,9 @@ public class ImageUtils {
     public static BufferedImage createSysCompatibleImage(int width, int height) {
         assert width > 0 && height > 0;
 
+        if (graphicsConfiguration == null) {
+            return new BufferedImage(width, height, TYPE_INT_ARGB);
+        }
         return graphicsConfiguration.createCompatibleImage(width, height, TRANSLUCENT);
     }
 
@@ -160,9 +167,19 @@ public class ImageUtils {
     }
 
 
+    /**
+     * Resizes the given image on the thread pool. The layer and mask images
+     * are resized by the {@link Resampler}, which itself runs in parallel.
+     */
     public static CompletableFuture<BufferedImage> resizeAsync(BufferedImage img,
                                                                int targetWidth,
                                                                int targetHeight) {
+        if (Resampler.canResample(img)) {
+            return CompletableFuture.supplyAsync(
+                    () -> Resampler.resize(img, targetWidth, targetHeight),
+                    ThreadPool.getExecutor());
+        }
+
         boolean progressiveBilinear = false;
         if (targetWidth < img.getWidth() / 2
                 || targetHeight < img.getHeight() / 2) {
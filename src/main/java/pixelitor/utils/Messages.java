@@ -34,6 +34,8 @@ public class Messages {
         try {
             if (Build.isUnitTesting()) {
                 msgHandler = new TestMessageHandler();
+            } else if (Build.isHeadless()) {
+                msgHandler = new ConsoleMessageHandler();
             } else {
                 msgHandler = new GUIMessageHandler();
             }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+
+/**
+ * Downsampled versions of an image, where each level is half the size
+ * of the previous one (level 0 is the image itself). The levels are
+ * created lazily, when they are first requested, and they track the
+ * validity of their tiles, so that after a partial change of the image
+ * only the invalidated tiles are downsampled again.
+ */
+public class MipmapPyramid {
+    private static final int TILE_SIZE = 256;
+
+    // levels smaller than this in both directions are not used,
+    // because scaling them would be already cheap
+    private static final int MIN_LEVEL_SIZE = 64;
+
+    private int width;
+    private int height;
+
+    // the images and validities of the levels starting from level 1
+    private final List<BufferedImage> levels = new ArrayList<>();
+    private final List<TileValidity> validities = new ArrayList<>();
+
+    /**
+     * Returns the level which is closest to the given scaling without
+     * being smaller than it, so that it is never scaled up when painted.
+     * The level has to be painted with an extra scaling of 2^level.
+     */
+    public static int levelFor(double scaling, int width, int height) {
+        int level = 0;
+        while (scaling * (2 << level) <= 1.0
+                && Math.max(width >> (level + 1), height >> (level + 1)) >= MIN_LEVEL_SIZE) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the given level, downsampled from the given up-to-date
+     * image. The returned image can be updated in place later.
+     */
+    public BufferedImage getLevel(BufferedImage image, int level) {
+        if (level == 0) {
+            return image;
+        }
+        if (image.getWidth() != width || image.getHeight() != height) {
+            levels.clear();
+            validities.clear();
+            width = image.getWidth();
+            height = image.getHeight();
+        }
+
+        BufferedImage src = image;
+        for (int i = 1; i <= level; i++) {
+            if (levels.size() < i) {
+                int levelWidth = levelSize(width, i);
+                int levelHeight = levelSize(height, i);
+                levels.add(new BufferedImage(levelWidth, levelHeight, TYPE_INT_ARGB_PRE));
+                validities.add(new TileValidity(levelWidth, levelHeight, TILE_SIZE, false));
+            }
+            BufferedImage dest = levels.get(i - 1);
+            TileValidity validity = validities.get(i - 1);
+            if (validity.hasInvalidTiles()) {
+                BufferedImage finalSrc = src;
+                validity.validate(new Rectangle(0, 0, dest.getWidth(), dest.getHeight()),
+                        region -> downsample(finalSrc, dest, region));
+            }
+            src = dest;
+        }
+        return src;
+    }
+
+    /**
+     * Invalidates the tiles of all levels that are
+     * affected by the given area of the original image.
+     */
+    public void invalidate(Rectangle area) {
+        for (int i = 0; i < validities.size(); i++) {
+            int level = i + 1;
+            int x = area.x >> level;
+            int y = area.y >> level;
+            // a partially covered pixel is also affected
+            int maxX = (area.x + area.width + (1 << level) - 1) >> level;
+            int maxY = (area.y + area.height + (1 << level) - 1) >> level;
+            validities.get(i).invalidate(new Rectangle(x, y, maxX - x, maxY - y));
+        }
+    }
+
+    public void invalidateAll() {
+        for (TileValidity validity : validities) {
+            validity.invalidateAll();
+        }
+    }
+
+    private static int levelSize(int size, int level) {
+        // rounded up, so that the last row and column are not lost
+        return Math.max(1, (size + (1 << level) - 1) >> level);
+    }
+
+    /**
+     * Averages the 2x2 blocks of the source image into the given region
+     * of the destination image. The averaging of premultiplied pixels
+     * weights the colors by their alpha.
+     */
+    private static void downsample(BufferedImage src, BufferedImage dest, Rectangle region) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int destWidth = dest.getWidth();
+        int[] destPixels = ((DataBufferInt) dest.getRaster().getDataBuffer()).getData();
+
+        // the two source rows of the current destination row
+        int srcX = 2 * region.x;
+        int srcRowWidth = Math.min(2 * region.width, srcWidth - srcX);
+        int[] row0 = new int[srcRowWidth];
+        int[] row1 = new int[srcRowWidth];
+        int lastCol = srcRowWidth - 1;
+
+        for (int y = region.y; y < region.y + region.height; y++) {
+            int srcY = 2 * y;
+            readPremultipliedRow(src, srcX, srcY, row0);
+            // the last row is repeated for an odd source height
+            readPremultipliedRow(src, srcX, Math.min(srcY + 1, srcHeight - 1), row1);
+
+            int destIndex = y * destWidth + region.x;
+            for (int i = 0; i < region.width; i++, destIndex++) {
+                int col0 = 2 * i;
+                int col1 = Math.min(col0 + 1, lastCol);
+                destPixels[destIndex] = average(row0[col0], row0[col1], row1[col0], row1[col1]);
+            }
+        }
+    }
+
+    private static int average(int p1, int p2, int p3, int p4) {
+        int a = ((p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + (p4 >>> 24) + 2) >> 2;
+        int r = (((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + ((p4 >> 16) & 0xFF) + 2) >> 2;
+        int g = (((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + ((p4 >> 8) & 0xFF) + 2) >> 2;
+        int b = ((p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + (p4 & 0xFF) + 2) >> 2;
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static void readPremultipliedRow(BufferedImage src, int x, int y, int[] row) {
+        if (src.getType() == TYPE_INT_ARGB_PRE) {
+            // the composite image and the levels are read directly
+            src.getRaster().getDataElements(x, y, row.length, 1, row);
+            return;
+        }
+        src.getRGB(x, y, row.length, 1, row, 0, row.length);
+        for (int i = 0; i < row.length; i++) {
+            int argb = row[i];
+            int a = argb >>> 24;
+            if (a == 255) {
+                continue;
+            }
+            int r = ((argb >> 16) & 0xFF) * a / 255;
+            int g = ((argb >> 8) & 0xFF) * a / 255;
+            int b = (argb & 0xFF) * a / 255;
+            row[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+/**
+ * A separable resampler for high-quality resizing. The rows and the
+ * columns are resampled in two passes (in the cheaper order), using weight
+ * tables that are calculated only once per axis. The work is split into
+ * strips of target rows, which run in parallel, and only keep the rows
+ * that are needed by the vertical pass. The colors are weighted
+ * by their alpha (the calculations use premultiplied values), so
+ * that the transparent pixels don't bleed into the visible ones.
+ */
+public class Resampler {
+    /**
+     * The resampling filter kernels.
+     */
+    public enum Kernel {
+        /**
+         * Averages the covered pixels when shrinking,
+         * and repeats the pixels when enlarging.
+         */
+        BOX(0.5) {
+            @Override
+            double weight(double x) {
+                return x > -0.5 && x <= 0.5 ? 1.0 : 0.0;
+            }
+        },
+        /**
+         * The Mitchell-Netravali cubic with B = C = 1/3, which is smooth
+         * and has little ringing, and therefore it's good for enlarging.
+         */
+        MITCHELL(2.0) {
+            @Override
+            double weight(double x) {
+                final double b = 1.0 / 3.0;
+                final double c = 1.0 / 3.0;
+                x = Math.abs(x);
+                if (x < 1.0) {
+                    return ((12 - 9 * b - 6 * c) * x * x * x
+                            + (-18 + 12 * b + 6 * c) * x * x
+                            + (6 - 2 * b)) / 6.0;
+                } else if (x < 2.0) {
+                    return ((-b - 6 * c) * x * x * x
+                            + (6 * b + 30 * c) * x * x
+                            + (-12 * b - 48 * c) * x
+                            + (8 * b + 24 * c)) / 6.0;
+                }
+                return 0.0;
+            }
+        },
+        /**
+         * A windowed sinc with three lobes, which keeps
+         * the most detail, and therefore it's good for shrinking.
+         */
+        LANCZOS3(3.0) {
+            @Override
+            double weight(double x) {
+                if (x <= -3.0 || x >= 3.0) {
+                    return 0.0;
+                }
+                return sinc(x) * sinc(x / 3.0);
+            }
+        };
+
+        private final double support;
+
+        Kernel(double support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+
+        private static double sinc(double x) {
+            if (x == 0.0) {
+                return 1.0;
+            }
+            x *= Math.PI;
+            return Math.sin(x) / x;
+        }
+    }
+
+    // The cost of a weight in the horizontal pass relative to the vertical
+    // pass, where the JIT can vectorize the loop over the whole row.
+    // Estimated from the run times of the two orders when shrinking.
+    private static final long HOR_WEIGHT_COST = 3;
+
+    private Resampler() {
+    }
+
+    /**
+     * Returns true if the given image can be resampled, which
+     * is the case for the image types used by the layers and masks.
+     */
+    public static boolean canResample(BufferedImage img) {
+        int type = img.getType();
+        return type == TYPE_INT_ARGB || type == TYPE_INT_ARGB_PRE
+                || type == TYPE_INT_RGB || type == TYPE_BYTE_GRAY;
+    }
+
+    /**
+     * Resizes the given image with a kernel chosen separately for the
+     * two axes: {@link Kernel#LANCZOS3} for shrinking and
+     * {@link Kernel#MITCHELL} for enlarging.
+     */
+    public static BufferedImage resize(BufferedImage src, int targetWidth, int targetHeight) {
+        Kernel horKernel = targetWidth < src.getWidth() ? Kernel.LANCZOS3 : Kernel.MITCHELL;
+        Kernel verKernel = targetHeight < src.getHeight() ? Kernel.LANCZOS3 : Kernel.MITCHELL;
+        return resize(src, targetWidth, targetHeight, horKernel, verKernel);
+    }
+
+    public static BufferedImage resize(BufferedImage src, int targetWidth, int targetHeight, Kernel kernel) {
+        return resize(src, targetWidth, targetHeight, kernel, kernel);
+    }
+
+    /**
+     * Returns a resized copy of the given image with the same type. The calling
+     * thread also takes part in the work, so this can be called from a
+     * {@link ThreadPool} thread, which allows resizing several layers concurrently.
+     */
+    public static BufferedImage resize(BufferedImage src, int targetWidth, int targetHeight,
+                                       Kernel horKernel, Kernel verKernel) {
+        assert canResample(src) : "type = " + src.getType();
+        assert targetWidth > 0 && targetHeight > 0;
+
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int type = src.getType();
+        int numChannels = type == TYPE_BYTE_GRAY ? 1 : type == TYPE_INT_RGB ? 3 : 4;
+
+        Weights horWeights = new Weights(horKernel, srcWidth, targetWidth);
+        Weights verWeights = new Weights(verKernel, srcHeight, targetHeight);
+
+        // The two orders give the same result (apart from the float
+        // rounding), but the cost of the first pass depends on the
+        // unscaled size of the other axis, so the cheaper order is chosen.
+        long horFirstCost = HOR_WEIGHT_COST * srcHeight * targetWidth * horWeights.maxCount
+                + (long) targetHeight * targetWidth * verWeights.maxCount;
+        long verFirstCost = (long) targetHeight * srcWidth * verWeights.maxCount
+                + HOR_WEIGHT_COST * targetHeight * targetWidth * horWeights.maxCount;
+        boolean horFirst = horFirstCost <= verFirstCost;
+
+        BufferedImage dest = new BufferedImage(targetWidth, targetHeight, type);
+        WritableRaster srcRaster = src.getRaster();
+        WritableRaster destRaster = dest.getRaster();
+
+        // Each strip of target rows keeps only the source rows needed by
+        // the vertical kernel. The rows at the edges of the strips are
+        // prepared twice, therefore there is one strip per core.
+        int numStrips = Math.min(targetHeight, ThreadPool.getNumCores());
+        ThreadPool.runInChunks(numStrips, (start, end) -> {
+            int firstY = (int) ((long) start * targetHeight / numStrips);
+            int lastY = (int) ((long) end * targetHeight / numStrips);
+            var window = new RowWindow(srcRaster, type, numChannels,
+                    verWeights.maxCount, horFirst ? horWeights : null);
+            float[] sums = new float[numChannels * (horFirst ? targetWidth : srcWidth)];
+            float[] destSums = horFirst ? sums : new float[numChannels * targetWidth];
+            int[] destRow = new int[targetWidth];
+            byte[] grayRow = type == TYPE_BYTE_GRAY ? new byte[targetWidth] : null;
+            for (int y = firstY; y < lastY; y++) {
+                resampleColumns(window, y, verWeights, sums);
+                if (!horFirst) {
+                    resampleRow(sums, destSums, horWeights, numChannels);
+                }
+                writeRow(destRaster, type, y, destSums, destRow, grayRow);
+            }
+        }, ProgressTracker.NULL_TRACKER);
+
+        return dest;
+    }
+
+    /**
+     * A rolling window of the float source rows that are needed for
+     * the current target row, which are also resampled horizontally
+     * if the horizontal pass is the first one. The premultiplied
+     * channels aren't rounded and clamped, so that the two passes
+     * give the same result as a 2D kernel.
+     */
+    private static class RowWindow {
+        private final WritableRaster raster;
+        private final int type;
+        private final int numChannels;
+        private final Weights horWeights;
+
+        private final float[][] rows;
+        private final int[] rowYs; // the source y of each row, or -1
+
+        // buffers for reading the source rows
+        private final int[] srcRow;
+        private final byte[] grayRow;
+        private final float[] channels;
+
+        RowWindow(WritableRaster raster, int type, int numChannels,
+                  int size, Weights horWeights) {
+            this.raster = raster;
+            this.type = type;
+            this.numChannels = numChannels;
+            this.horWeights = horWeights;
+
+            int srcWidth = raster.getWidth();
+            int rowWidth = horWeights == null ? srcWidth : horWeights.starts.length;
+            rows = new float[size][numChannels * rowWidth];
+            rowYs = new int[size];
+            Arrays.fill(rowYs, -1);
+
+            srcRow = type == TYPE_BYTE_GRAY ? null : new int[srcWidth];
+            grayRow = type == TYPE_BYTE_GRAY ? new byte[srcWidth] : null;
+            channels = horWeights == null ? null : new float[numChannels * srcWidth];
+        }
+
+        float[] getRow(int y) {
+            // the rows needed for a target row are consecutive, and
+            // there are at most as many of them as the window size
+            int slot = y % rows.length;
+            if (rowYs[slot] != y) {
+                if (horWeights == null) {
+                    readRow(raster, type, y, srcRow, grayRow, rows[slot]);
+                } else {
+                    readRow(raster, type, y, srcRow, grayRow, channels);
+                    resampleRow(channels, rows[slot], horWeights, numChannels);
+                }
+                rowYs[slot] = y;
+            }
+            return rows[slot];
+        }
+    }
+
+    /**
+     * The contributing source pixels and their normalized
+     * weights for each target pixel along one axis.
+     */
+    private static class Weights {
+        private final int[] starts;
+        private final int[] counts;
+        private final float[] weights;
+        private final int maxCount;
+
+        Weights(Kernel kernel, int srcSize, int targetSize) {
+            double scale = (double) srcSize / targetSize;
+            // when shrinking, the kernel is stretched to cover all source pixels
+            double filterScale = Math.max(scale, 1.0);
+            double support = kernel.support * filterScale;
+
+            maxCount = (int) Math.ceil(support) * 2 + 1;
+            starts = new int[targetSize];
+            counts = new int[targetSize];
+            weights = new float[targetSize * maxCount];
+
+            double[] tmpWeights = new double[maxCount];
+            for (int i = 0; i < targetSize; i++) {
+                double center = (i + 0.5) * scale;
+                int first = Math.max(0, (int) Math.floor(center - support));
+                int last = Math.min(srcSize - 1, (int) Math.ceil(center + support));
+                int count = Math.min(last - first + 1, maxCount);
+
+                double sum = 0;
+                for (int j = 0; j < count; j++) {
+                    double w = kernel.weight((first + j + 0.5 - center) / filterScale);
+                    tmpWeights[j] = w;
+                    sum += w;
+                }
+                if (sum == 0) {
+                    // can happen only with the box kernel, use the nearest pixel
+                    first = Math.min(srcSize - 1, (int) center);
+                    count = 1;
+                    tmpWeights[0] = 1.0;
+                    sum = 1.0;
+                }
+
+                starts[i] = first;
+                counts[i] = count;
+                for (int j = 0; j < count; j++) {
+                    weights[i * maxCount + j] = (float) (tmpWeights[j] / sum);
+                }
+            }
+        }
+    }
+
+    private static void resampleRow(float[] srcRow, float[] dest, Weights ws, int numChannels) {
+        if (numChannels == 1) {
+            resampleGrayRow(srcRow, dest, ws);
+        } else if (numChannels == 3) {
+            resampleRGBRow(srcRow, dest, ws);
+        } else {
+            resampleARGBRow(srcRow, dest, ws);
+        }
+    }
+
+    private static void resampleGrayRow(float[] srcRow, float[] dest, Weights ws) {
+        int targetWidth = ws.starts.length;
+        for (int x = 0; x < targetWidth; x++) {
+            int weightIndex = x * ws.maxCount;
+            float gray = 0;
+            for (int j = 0, s = ws.starts[x], count = ws.counts[x]; j < count; j++, s++) {
+                gray += ws.weights[weightIndex + j] * srcRow[s];
+            }
+            dest[x] = gray;
+        }
+    }
+
+    private static void resampleRGBRow(float[] srcRow, float[] dest, Weights ws) {
+        int targetWidth = ws.starts.length;
+        for (int x = 0, d = 0; x < targetWidth; x++, d += 3) {
+            int weightIndex = x * ws.maxCount;
+            float r = 0, g = 0, b = 0;
+            for (int j = 0, s = 3 * ws.starts[x], count = ws.counts[x]; j < count; j++, s += 3) {
+                float w = ws.weights[weightIndex + j];
+                r += w * srcRow[s];
+                g += w * srcRow[s + 1];
+                b += w * srcRow[s + 2];
+            }
+            dest[d] = r;
+            dest[d + 1] = g;
+            dest[d + 2] = b;
+        }
+    }
+
+    private static void resampleARGBRow(float[] srcRow, float[] dest, Weights ws) {
+        int targetWidth = ws.starts.length;
+        for (int x = 0, d = 0; x < targetWidth; x++, d += 4) {
+            int weightIndex = x * ws.maxCount;
+            float a = 0, r = 0, g = 0, b = 0;
+            for (int j = 0, s = 4 * ws.starts[x], count = ws.counts[x]; j < count; j++, s += 4) {
+                float w = ws.weights[weightIndex + j];
+                a += w * srcRow[s];
+                r += w * srcRow[s + 1];
+                g += w * srcRow[s + 2];
+                b += w * srcRow[s + 3];
+            }
+            dest[d] = a;
+            dest[d + 1] = r;
+            dest[d + 2] = g;
+            dest[d + 3] = b;
+        }
+    }
+
+    private static void resampleColumns(RowWindow window, int y, Weights ws, float[] sums) {
+        Arrays.fill(sums, 0);
+        int start = ws.starts[y];
+        int weightIndex = y * ws.maxCount;
+        int rowLength = sums.length;
+        for (int j = 0, count = ws.counts[y]; j < count; j++) {
+            float w = ws.weights[weightIndex + j];
+            float[] row = window.getRow(start + j);
+            // the whole row is processed for each weight,
+            // so that the source pixels are read sequentially
+            for (int s = 0; s < rowLength; s++) {
+                sums[s] += w * row[s];
+            }
+        }
+    }
+
+    private static int clamp(int value, int max) {
+        if (value < 0) {
+            return 0;
+        }
+        return Math.min(value, max);
+    }
+
+    /**
+     * Reads a row of the given raster into the given float array. Gray
+     * images have one channel, RGB images three, and the other images
+     * have four premultiplied channels per pixel.
+     */
+    private static void readRow(WritableRaster raster, int type, int y,
+                                int[] row, byte[] grayRow, float[] dest) {
+        if (type == TYPE_BYTE_GRAY) {
+            int width = grayRow.length;
+            raster.getDataElements(0, y, width, 1, grayRow);
+            for (int x = 0; x < width; x++) {
+                dest[x] = grayRow[x] & 0xFF;
+            }
+            return;
+        }
+
+        int width = row.length;
+        raster.getDataElements(0, y, width, 1, row);
+        if (type == TYPE_INT_RGB) {
+            for (int x = 0, d = 0; x < width; x++, d += 3) {
+                int p = row[x];
+                dest[d] = (p >> 16) & 0xFF;
+                dest[d + 1] = (p >> 8) & 0xFF;
+                dest[d + 2] = p & 0xFF;
+            }
+            return;
+        }
+
+        for (int x = 0, d = 0; x < width; x++, d += 4) {
+            int p = row[x];
+            float a = p >>> 24;
+            float r = (p >> 16) & 0xFF;
+            float g = (p >> 8) & 0xFF;
+            float b = p & 0xFF;
+            if (type == TYPE_INT_ARGB && a != 255.0f) {
+                // premultiplied without rounding
+                float f = a / 255.0f;
+                r *= f;
+                g *= f;
+                b *= f;
+            }
+            dest[d] = a;
+            dest[d + 1] = r;
+            dest[d + 2] = g;
+            dest[d + 3] = b;
+        }
+    }
+
+    /**
+     * Writes the given float channels into a row of the raster,
+     * in the layout of {@link #readRow}.
+     * This is the only place where the channels are rounded
+     * and clamped, because the negative lobes of the kernels can take
+     * them out of range. In a premultiplied color the color channels
+     * can't be greater than the alpha.
+     */
+    private static void writeRow(WritableRaster raster, int type, int y,
+                                 float[] sums, int[] row, byte[] grayRow) {
+        int width = row.length;
+        if (type == TYPE_BYTE_GRAY) {
+            for (int x = 0; x < width; x++) {
+                grayRow[x] = (byte) clamp(Math.round(sums[x]), 255);
+            }
+            raster.setDataElements(0, y, width, 1, grayRow);
+            return;
+        }
+
+        if (type == TYPE_INT_RGB) {
+            for (int x = 0, s = 0; x < width; x++, s += 3) {
+                row[x] = clamp(Math.round(sums[s]), 255) << 16
+                        | clamp(Math.round(sums[s + 1]), 255) << 8
+                        | clamp(Math.round(sums[s + 2]), 255);
+            }
+            raster.setDataElements(0, y, width, 1, row);
+            return;
+        }
+
+        for (int x = 0, s = 0; x < width; x++, s += 4) {
+            float a = sums[s];
+            float r = sums[s + 1];
+            float g = sums[s + 2];
+            float b = sums[s + 3];
+            int ia = clamp(Math.round(a), 255);
+            if (ia == 0) {
+                row[x] = 0;
+                continue;
+            }
+            if (type == TYPE_INT_ARGB) {
+                // unpremultiplied with the unrounded alpha
+                float f = 255.0f / Math.min(a, 255.0f);
+                r *= f;
+                g *= f;
+                b *= f;
+                row[x] = ia << 24
+                        | clamp(Math.round(r), 255) << 16
+                        | clamp(Math.round(g), 255) << 8
+                        | clamp(Math.round(b), 255);
+            } else { // premultiplied
+                row[x] = ia << 24
+                        | clamp(Math.round(r), ia) << 16
+                        | clamp(Math.round(g), ia) << 8
+                        | clamp(Math.round(b), ia);
+            }
+        }
+        raster.setDataElements(0, y, width, 1, row);
+    }
+}
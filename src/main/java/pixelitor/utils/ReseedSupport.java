@@ -29,22 +29,22 @@ import static pixelitor.filters.gui.ReseedActions.reseedByCalling;
  * here, and the actions reseed it.
  */
 public class ReseedSupport {
-    private static long seed = System.nanoTime();
-    private static final Random rand = new Random();
+    private static volatile long seed = System.nanoTime();
 
     private ReseedSupport() {
     }
 
     /**
-     * Reinitializes and returns the random number generator in order to
-     * make sure that the filter runs with the same random numbers
+     * Returns a random number generator initialized with the current seed
+     * in order to make sure that the filter runs with the same random numbers
      * as before (when the filter execution is not started from
      * the "reseed" button).
      * This must be called at the beginning of the filter.
+     * A new generator is returned for each call, so that
+     * copies of a filter can run on several threads.
      */
     public static Random reInitialize() {
-        rand.setSeed(seed);
-        return rand;
+        return new Random(seed);
     }
 
     /**
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+/**
+ * Rotations by 90, 180 and 270 degrees and flips, implemented as
+ * pure data movement on the pixel arrays of the layer images (packed
+ * ints) and masks (gray bytes), in parallel blocks on the {@link ThreadPool}.
+ *
+ * The rotations by 90 and 270 degrees are transpositions, where the
+ * pixels are copied in square blocks, so that both the read and the
+ * written lines of a block stay in the CPU cache.
+ */
+public class RightAngleTransforms {
+    private static final int BLOCK_SIZE = 64;
+
+    private RightAngleTransforms() {
+    }
+
+    /**
+     * Returns true if the pixels of the given image can be moved
+     * directly, which is the case for the images of the layers
+     * and masks, but not for sub-images.
+     */
+    public static boolean canTransform(BufferedImage img) {
+        int type = img.getType();
+        if (type != TYPE_INT_ARGB && type != TYPE_INT_ARGB_PRE
+                && type != TYPE_INT_RGB && type != TYPE_BYTE_GRAY) {
+            return false;
+        }
+        WritableRaster raster = img.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        return raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && buffer.getNumBanks() == 1
+                && buffer.getOffset() == 0
+                && buffer.getSize() == img.getWidth() * img.getHeight();
+    }
+
+    /**
+     * Rotates the given source image clockwise by the given angle
+     * into the given destination image, which must have the same type
+     * and the appropriate dimensions.
+     */
+    public static void rotate(BufferedImage src, BufferedImage dest, int angleDegree) {
+        assert canTransform(src) && canTransform(dest);
+        assert src.getType() == dest.getType();
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        Object srcPixels = getPixels(src);
+        Object destPixels = getPixels(dest);
+
+        if (angleDegree == 180) {
+            // the same as the flip of each row into the mirrored row
+            ThreadPool.runInChunks(height, (start, end) -> {
+                for (int y = start; y < end; y++) {
+                    reverseRow(srcPixels, y * width, destPixels, (height - 1 - y) * width, width);
+                }
+            }, ProgressTracker.NULL_TRACKER);
+            return;
+        }
+
+        assert angleDegree == 90 || angleDegree == 270 : "angle = " + angleDegree;
+        assert dest.getWidth() == height && dest.getHeight() == width;
+        boolean clockwise = angleDegree == 90;
+        int numBlockRows = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ThreadPool.runInChunks(numBlockRows, (start, end) -> {
+            for (int blockY = start * BLOCK_SIZE; blockY < Math.min(end * BLOCK_SIZE, height); blockY += BLOCK_SIZE) {
+                int maxY = Math.min(blockY + BLOCK_SIZE, height);
+                for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                    int maxX = Math.min(blockX + BLOCK_SIZE, width);
+                    if (srcPixels instanceof int[]) {
+                        transposeBlock((int[]) srcPixels, (int[]) destPixels,
+                                width, height, blockX, maxX, blockY, maxY, clockwise);
+                    } else {
+                        transposeBlock((byte[]) srcPixels, (byte[]) destPixels,
+                                width, height, blockX, maxX, blockY, maxY, clockwise);
+                    }
+                }
+            }
+        }, ProgressTracker.NULL_TRACKER);
+    }
+
+    /**
+     * Mirrors the given source image into the given destination
+     * image, which must have the same type and dimensions.
+     */
+    public static void flip(BufferedImage src, BufferedImage dest, boolean horizontal) {
+        assert canTransform(src) && canTransform(dest);
+        assert src.getType() == dest.getType();
+        assert src.getWidth() == dest.getWidth() && src.getHeight() == dest.getHeight();
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        Object srcPixels = getPixels(src);
+        Object destPixels = getPixels(dest);
+
+        ThreadPool.runInChunks(height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                if (horizontal) {
+                    reverseRow(srcPixels, y * width, destPixels, y * width, width);
+                } else {
+                    System.arraycopy(srcPixels, y * width, destPixels, (height - 1 - y) * width, width);
+                }
+            }
+        }, ProgressTracker.NULL_TRACKER);
+    }
+
+    private static Object getPixels(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        if (buffer instanceof DataBufferInt) {
+            return ((DataBufferInt) buffer).getData();
+        }
+        return ((DataBufferByte) buffer).getData();
+    }
+
+    private static void reverseRow(Object src, int srcStart, Object dest, int destStart, int width) {
+        int destEnd = destStart + width - 1;
+        if (src instanceof int[]) {
+            int[] srcInts = (int[]) src;
+            int[] destInts = (int[]) dest;
+            for (int i = 0; i < width; i++) {
+                destInts[destEnd - i] = srcInts[srcStart + i];
+            }
+        } else {
+            byte[] srcBytes = (byte[]) src;
+            byte[] destBytes = (byte[]) dest;
+            for (int i = 0; i < width; i++) {
+                destBytes[destEnd - i] = srcBytes[srcStart + i];
+            }
+        }
+    }
+
+    // the source pixel (x, y) goes to (height - 1 - y, x) when rotating
+    // clockwise, and to (y, width - 1 - x) when rotating counterclockwise,
+    // where the width of the destination is the height of the source
+    private static void transposeBlock(int[] src, int[] dest, int width, int height,
+                                       int minX, int maxX, int minY, int maxY, boolean clockwise) {
+        for (int y = minY; y < maxY; y++) {
+            int srcIndex = y * width + minX;
+            if (clockwise) {
+                int destX = height - 1 - y;
+                for (int x = minX; x < maxX; x++) {
+                    dest[x * height + destX] = src[srcIndex++];
+                }
+            } else {
+                for (int x = minX; x < maxX; x++) {
+                    dest[(width - 1 - x) * height + y] = src[srcIndex++];
+                }
+            }
+        }
+    }
+
+    private static void transposeBlock(byte[] src, byte[] dest, int width, int height,
+                                       int minX, int maxX, int minY, int maxY, boolean clockwise) {
+        for (int y = minY; y < maxY; y++) {
+            int srcIndex = y * width + minX;
+            if (clockwise) {
+                int destX = height - 1 - y;
+                for (int x = minX; x < maxX; x++) {
+                    dest[x * height + destX] = src[srcIndex++];
+                }
+            } else {
+                for (int x = minX; x < maxX; x++) {
+                    dest[(width - 1 - x) * height + y] = src[srcIndex++];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+
+/**
+ * The red, green and blue histograms of an image, merged from the
+ * partial histograms of its square tiles, so that after a partial
+ * change only the invalidated tiles have to be scanned again.
+ *
+ * The calculation can run outside the EDT, while the image is
+ * invalidated and updated on the EDT: a partial calculated from
+ * pixels that were invalidated in the meantime is not kept.
+ */
+public class TileHistograms {
+    public static final int NUM_BINS = 256;
+
+    // a partial histogram takes 3 KB, and bigger
+    // tiles don't slow down the brush strokes much
+    private static final int TILE_SIZE = 512;
+
+    private final int width;
+    private final int height;
+    private final int numCols;
+    private final int numTiles;
+
+    // the red, green and blue bins of each tile after each other,
+    // or null if the tile has to be scanned again (guarded by this)
+    private final int[][] partials;
+
+    // incremented at each invalidation of the tile (guarded by this)
+    private final int[] versions;
+
+    public TileHistograms(int width, int height) {
+        this.width = width;
+        this.height = height;
+        numCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int numRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        numTiles = numCols * numRows;
+        partials = new int[numTiles][];
+        versions = new int[numTiles];
+    }
+
+    public boolean hasSize(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * Invalidates the tiles intersecting the given area.
+     */
+    public synchronized void invalidate(Rectangle area) {
+        Rectangle r = area.intersection(new Rectangle(0, 0, width, height));
+        if (r.isEmpty()) {
+            return;
+        }
+        int lastCol = (r.x + r.width - 1) / TILE_SIZE;
+        int lastRow = (r.y + r.height - 1) / TILE_SIZE;
+        for (int row = r.y / TILE_SIZE; row <= lastRow; row++) {
+            for (int col = r.x / TILE_SIZE; col <= lastCol; col++) {
+                invalidateTile(row * numCols + col);
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < numTiles; i++) {
+            invalidateTile(i);
+        }
+    }
+
+    private void invalidateTile(int index) {
+        partials[index] = null;
+        versions[index]++;
+    }
+
+    /**
+     * Returns the red, green and blue histograms of the given image.
+     * The image must be up-to-date when this is called, and it may
+     * change later only after the changed area is invalidated.
+     * Both the scanning of the invalid tiles and the merging of
+     * the partials runs in parallel on the {@link ThreadPool}.
+     */
+    public int[][] calculate(BufferedImage image) {
+        assert hasSize(image.getWidth(), image.getHeight());
+
+        int[][] tiles;
+        int[] startVersions;
+        synchronized (this) {
+            tiles = partials.clone();
+            startVersions = versions.clone();
+        }
+
+        int[] invalidTiles = new int[numTiles];
+        int numInvalid = 0;
+        for (int i = 0; i < numTiles; i++) {
+            if (tiles[i] == null) {
+                invalidTiles[numInvalid++] = i;
+            }
+        }
+        ThreadPool.runInChunks(numInvalid, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int index = invalidTiles[i];
+                tiles[index] = scanTile(image, index);
+            }
+        }, ProgressTracker.NULL_TRACKER);
+
+        synchronized (this) {
+            for (int i = 0; i < numInvalid; i++) {
+                int index = invalidTiles[i];
+                if (versions[index] == startVersions[index]) {
+                    partials[index] = tiles[index];
+                }
+            }
+        }
+
+        // the chunks sum up different bins, so they don't interfere
+        int[] merged = new int[3 * NUM_BINS];
+        ThreadPool.runInChunks(merged.length, (start, end) -> {
+            for (int[] tile : tiles) {
+                for (int bin = start; bin < end; bin++) {
+                    merged[bin] += tile[bin];
+                }
+            }
+        }, ProgressTracker.NULL_TRACKER);
+
+        return new int[][]{
+                Arrays.copyOfRange(merged, 0, NUM_BINS),
+                Arrays.copyOfRange(merged, NUM_BINS, 2 * NUM_BINS),
+                Arrays.copyOfRange(merged, 2 * NUM_BINS, 3 * NUM_BINS)};
+    }
+
+    private int[] scanTile(BufferedImage image, int index) {
+        int x = (index % numCols) * TILE_SIZE;
+        int y = (index / numCols) * TILE_SIZE;
+        int tileWidth = Math.min(TILE_SIZE, width - x);
+        int tileHeight = Math.min(TILE_SIZE, height - y);
+
+        int[] bins = new int[3 * NUM_BINS];
+        int[] row = new int[tileWidth];
+        // the composite image is read directly
+        int type = image.getType();
+        boolean packedArgb = type == TYPE_INT_ARGB_PRE || type == TYPE_INT_ARGB;
+        for (int rowY = y; rowY < y + tileHeight; rowY++) {
+            if (packedArgb) {
+                image.getRaster().getDataElements(x, rowY, tileWidth, 1, row);
+            } else {
+                image.getRGB(x, rowY, tileWidth, 1, row, 0, tileWidth);
+            }
+            for (int rgb : row) {
+                int a = (rgb >>> 24) & 0xFF;
+                if (a > 0) {
+                    bins[(rgb >>> 16) & 0xFF]++;
+                    bins[NUM_BINS + ((rgb >>> 8) & 0xFF)]++;
+                    bins[2 * NUM_BINS + (rgb & 0xFF)]++;
+                }
+            }
+        }
+        return bins;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the validity of the square tiles of a cached image,
+ * so that partial changes invalidate only the affected tiles.
+ */
+public class TileValidity {
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int numCols;
+    private final int numRows;
+
+    // the validity of the tiles, in row-major order
+    private final boolean[] validTiles;
+    private boolean hasInvalidTiles;
+
+    public TileValidity(int width, int height, int tileSize, boolean initiallyValid) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+
+        numCols = (width + tileSize - 1) / tileSize;
+        numRows = (height + tileSize - 1) / tileSize;
+        validTiles = new boolean[numCols * numRows];
+        if (initiallyValid) {
+            Arrays.fill(validTiles, true);
+        }
+        hasInvalidTiles = !initiallyValid;
+    }
+
+    public boolean hasSize(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public boolean hasInvalidTiles() {
+        return hasInvalidTiles;
+    }
+
+    /**
+     * Invalidates the tiles intersecting the given area.
+     */
+    public void invalidate(Rectangle area) {
+        Rectangle r = area.intersection(new Rectangle(0, 0, width, height));
+        if (r.isEmpty()) {
+            return;
+        }
+
+        int lastCol = (r.x + r.width - 1) / tileSize;
+        int lastRow = (r.y + r.height - 1) / tileSize;
+        for (int row = r.y / tileSize; row <= lastRow; row++) {
+            int rowStart = row * numCols;
+            for (int col = r.x / tileSize; col <= lastCol; col++) {
+                validTiles[rowStart + col] = false;
+            }
+        }
+        hasInvalidTiles = true;
+    }
+
+    public void invalidateAll() {
+        Arrays.fill(validTiles, false);
+        hasInvalidTiles = true;
+    }
+
+    /**
+     * Marks the invalid tiles intersecting the given area as valid,
+     * and calls the given action for each horizontal run of them
+     * with the bounds of the run, which should be recalculated.
+     */
+    public void validate(Rectangle area, Consumer<Rectangle> recalcAction) {
+        Rectangle r = area.intersection(new Rectangle(0, 0, width, height));
+        if (!hasInvalidTiles || r.isEmpty()) {
+            return;
+        }
+
+        int firstCol = r.x / tileSize;
+        int lastCol = (r.x + r.width - 1) / tileSize;
+        int lastRow = (r.y + r.height - 1) / tileSize;
+        for (int row = r.y / tileSize; row <= lastRow; row++) {
+            int rowStart = row * numCols;
+            int col = firstCol;
+            while (col <= lastCol) {
+                if (validTiles[rowStart + col]) {
+                    col++;
+                    continue;
+                }
+                int runStart = col;
+                while (col <= lastCol && !validTiles[rowStart + col]) {
+                    validTiles[rowStart + col] = true;
+                    col++;
+                }
+                int x = runStart * tileSize;
+                int y = row * tileSize;
+                recalcAction.accept(new Rectangle(x, y,
+                        Math.min(col * tileSize, width) - x,
+                        Math.min(y + tileSize, height) - y));
+            }
+        }
+
+        if (r.width == width && r.height == height) {
+            hasInvalidTiles = false;
+        } else {
+            hasInvalidTiles = !allValid();
+        }
+    }
+
+    private boolean allValid() {
+        for (boolean valid : validTiles) {
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * A copy-on-write backup of an image: instead of copying the whole
+ * image in advance, its square tiles are copied only before they are
+ * first modified. The tiles that were never saved are unchanged,
+ * so their original pixels can be read from the image itself.
+ */
+public class TiledImageBackup {
+    private static final int TILE_SIZE = 128;
+
+    private final BufferedImage image;
+    private final int numCols;
+    private final int numRows;
+
+    // the original pixels of the saved tiles, in row-major order
+    private final Raster[] tiles;
+
+    public TiledImageBackup(BufferedImage image) {
+        this.image = image;
+
+        numCols = (image.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        numRows = (image.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = new Raster[numCols * numRows];
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Saves the tiles intersecting the given area (relative to the image),
+     * if they were not saved yet. It must be called before the area is modified.
+     */
+    public void saveTiles(Rectangle area) {
+        Rectangle r = area.intersection(
+                new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (r.isEmpty()) {
+            return;
+        }
+
+        int lastCol = (r.x + r.width - 1) / TILE_SIZE;
+        int lastRow = (r.y + r.height - 1) / TILE_SIZE;
+        for (int row = r.y / TILE_SIZE; row <= lastRow; row++) {
+            for (int col = r.x / TILE_SIZE; col <= lastCol; col++) {
+                int index = row * numCols + col;
+                if (tiles[index] == null) {
+                    tiles[index] = image.getData(getTileBounds(col, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the original pixels of the given area (relative to the image),
+     * in a raster that has the same location as the area.
+     */
+    public Raster getOriginalData(Rectangle area) {
+        WritableRaster data = image.getRaster().createCompatibleWritableRaster(
+                area.x, area.y, area.width, area.height);
+        image.copyData(data);
+
+        int lastCol = (area.x + area.width - 1) / TILE_SIZE;
+        int lastRow = (area.y + area.height - 1) / TILE_SIZE;
+        for (int row = area.y / TILE_SIZE; row <= lastRow; row++) {
+            for (int col = area.x / TILE_SIZE; col <= lastCol; col++) {
+                Raster tile = tiles[row * numCols + col];
+                if (tile != null) {
+                    // copies only the part within the area
+                    data.setRect(tile);
+                }
+            }
+        }
+        return data;
+    }
+
+    private Rectangle getTileBounds(int col, int row) {
+        int x = col * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        return new Rectangle(x, y,
+                Math.min(TILE_SIZE, image.getWidth() - x),
+                Math.min(TILE_SIZE, image.getHeight() - y));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.filters.ChannelInvert;
+import pixelitor.filters.Filter;
+import pixelitor.filters.Invert;
+import pixelitor.filters.gui.IntChoiceParam;
+import pixelitor.layers.AdjustmentLayer;
+import pixelitor.layers.BlendingMode;
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.Layer;
+import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.MipmapPyramid;
+import pixelitor.utils.TileHistograms;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GradientPaint;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.layers.LayerMaskAddType.REVEAL_ALL;
+
+@DisplayName("CompositeCache tests")
+class CompositeCacheTest {
+    private static final int WIDTH = 3 * CompositeCache.TILE_SIZE - 20;
+    private static final int HEIGHT = 2 * CompositeCache.TILE_SIZE - 10;
+
+    private Composition comp;
+    private ImageLayer bottomLayer;
+    private ImageLayer topLayer;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        comp = TestHelper.createEmptyComposition(WIDTH, HEIGHT);
+
+        bottomLayer = new ImageLayer(comp, createGradientImage(Color.BLUE, Color.YELLOW), "bottom");
+        topLayer = new ImageLayer(comp, createGradientImage(Color.RED, Color.GREEN), "top");
+        comp.addLayerInInitMode(bottomLayer);
+        comp.addLayerInInitMode(topLayer);
+
+        topLayer.setBlendingMode(BlendingMode.MULTIPLY, false, false, false);
+        topLayer.setOpacity(0.7f, false, false, false);
+        topLayer.addMask(REVEAL_ALL);
+    }
+
+    @Test
+    void partialUpdateIsInPlaceAndCorrect() {
+        BufferedImage before = comp.getCachedCompositeImage();
+
+        changeRegion(new Rectangle(240, 200, 40, 100));
+
+        BufferedImage after = comp.getCachedCompositeImage();
+        assertThat(after).isSameAs(before);
+        assertThat(pixelsOf(after)).isEqualTo(pixelsOf(comp.calculateCompositeImage()));
+    }
+
+    @Test
+    void sharedImageIsNotModified() {
+        BufferedImage shared = comp.getCompositeImage();
+        int[] pixelsBefore = pixelsOf(shared).clone();
+
+        changeRegion(new Rectangle(10, 10, 30, 30));
+
+        BufferedImage after = comp.getCachedCompositeImage();
+        assertThat(after).isNotSameAs(shared);
+        assertThat(pixelsOf(shared)).isEqualTo(pixelsBefore);
+        assertThat(pixelsOf(after)).isEqualTo(pixelsOf(comp.calculateCompositeImage()));
+    }
+
+    @Test
+    void mipmapsAreUpdatedAfterPartialChanges() {
+        int level = MipmapPyramid.levelFor(0.25, WIDTH, HEIGHT);
+        assertThat(level).isEqualTo(2);
+        BufferedImage before = comp.getCachedCompositeImage(level);
+        assertThat(before.getWidth()).isEqualTo((WIDTH + 3) / 4);
+
+        changeRegion(new Rectangle(241, 201, 41, 99));
+
+        BufferedImage after = comp.getCachedCompositeImage(level);
+        assertThat(after).isSameAs(before);
+        BufferedImage expected = new MipmapPyramid().getLevel(comp.calculateCompositeImage(), level);
+        assertThat(pixelsOf(after)).isEqualTo(pixelsOf(expected));
+    }
+
+    @Test
+    void histogramsAreUpdatedAfterPartialChanges() throws Exception {
+        comp.calcHistogramsAsync().get();
+
+        changeRegion(new Rectangle(100, 30, 500, 20));
+
+        int[][] histograms = comp.calcHistogramsAsync().get();
+        int[][] expected = new TileHistograms(WIDTH, HEIGHT).calculate(comp.calculateCompositeImage());
+        assertThat(histograms).isEqualTo(expected);
+        // the transparent pixels are not counted
+        assertThat(IntStream.of(histograms[0]).sum()).isEqualTo(WIDTH * HEIGHT);
+    }
+
+    @Test
+    void parallelCompositingIsBitIdentical() {
+        bottomLayer.setTranslation(-7, -3);
+
+        // the canvas is big enough for the parallel bands
+        BufferedImage parallel = comp.calculateCompositeImage();
+
+        BufferedImage serial = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB_PRE);
+        Graphics2D g = serial.createGraphics();
+        boolean firstVisibleLayer = true;
+        for (Layer layer : comp.getLayers()) {
+            layer.applyLayer(g, serial, firstVisibleLayer);
+            firstVisibleLayer = false;
+        }
+        g.dispose();
+
+        assertThat(pixelsOf(parallel)).isEqualTo(pixelsOf(serial));
+    }
+
+    @Test
+    void maskedImageCacheIsUpdated() {
+        comp.getCachedCompositeImage();
+
+        // change the mask in place
+        Graphics2D g = topLayer.getMask().getImage().createGraphics();
+        g.setColor(Color.BLACK);
+        Rectangle region = new Rectangle(300, 50, 60, 300);
+        g.fill(region);
+        g.dispose();
+        comp.repaintRegion(PRectangle.fromIm(region, comp.getView()));
+        assertThat(pixelsOf(comp.getCachedCompositeImage()))
+                .isEqualTo(pixelsOf(comp.calculateCompositeImage()));
+
+        // the cached masked image can be reused with another blending mode
+        topLayer.setBlendingMode(BlendingMode.SCREEN, false, false, true);
+        assertThat(pixelsOf(comp.getCachedCompositeImage()))
+                .isEqualTo(pixelsOf(comp.calculateCompositeImage()));
+    }
+
+    @Test
+    void adjustmentResultIsReused() {
+        var adjustment = new AdjustmentLayer(comp, "invert", new Invert());
+        comp.addLayerInInitMode(adjustment);
+        comp.changeLayerOrder(2, 1); // between the two image layers
+
+        BufferedImage first = comp.calculateCompositeImage();
+        long runCount = Filter.runCount;
+
+        // a change above the adjustment layer
+        topLayer.setOpacity(0.4f, false, false, true);
+        comp.calculateCompositeImage();
+        assertThat(Filter.runCount).isEqualTo(runCount);
+
+        topLayer.setOpacity(0.7f, false, false, true);
+        assertThat(pixelsOf(comp.calculateCompositeImage())).isEqualTo(pixelsOf(first));
+
+        // a change bellow the adjustment layer
+        comp.setActiveLayer(bottomLayer, false);
+        changeRegion(new Rectangle(10, 10, 30, 30));
+        comp.calculateCompositeImage();
+        assertThat(Filter.runCount).isEqualTo(runCount + 1);
+    }
+
+    @Test
+    void adjustmentResultDependsOnAllParams() {
+        var filter = new ChannelInvert();
+        var choice = (IntChoiceParam) filter.getParamSet().getParams().get(0);
+        comp.addLayerInInitMode(new AdjustmentLayer(comp, "channel invert", filter));
+
+        BufferedImage first = comp.calculateCompositeImage();
+        long runCount = Filter.runCount;
+
+        // the choice can't be animated, but it must be part of the key
+        assertThat(choice.canBeAnimated()).isFalse();
+        choice.setSelectedItem(choice.getElementAt(choice.getSize() - 1), false);
+        BufferedImage second = comp.calculateCompositeImage();
+        assertThat(Filter.runCount).isEqualTo(runCount + 1);
+        assertThat(pixelsOf(second)).isNotEqualTo(pixelsOf(first));
+    }
+
+    @Test
+    void stackedAdjustmentsAreFused() {
+        BufferedImage withoutAdjustments = comp.calculateCompositeImage();
+
+        comp.addLayerInInitMode(new AdjustmentLayer(comp, "invert 1", new Invert()));
+        comp.addLayerInInitMode(new AdjustmentLayer(comp, "invert 2", new Invert()));
+        long runCount = Filter.runCount;
+
+        // the two inversions cancel each other for the opaque pixels
+        BufferedImage withAdjustments = comp.calculateCompositeImage();
+        assertThat(pixelsOf(withAdjustments)).isEqualTo(pixelsOf(withoutAdjustments));
+
+        // the filters weren't run separately
+        assertThat(Filter.runCount).isEqualTo(runCount);
+    }
+
+    private void changeRegion(Rectangle region) {
+        Graphics2D g = bottomLayer.getImage().createGraphics();
+        g.setColor(Color.MAGENTA);
+        g.fill(region);
+        g.dispose();
+
+        comp.repaintRegion(PRectangle.fromIm(region, comp.getView()));
+    }
+
+    private static BufferedImage createGradientImage(Color c1, Color c2) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, c1, WIDTH, HEIGHT, c2));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        return img;
+    }
+
+    private static int[] pixelsOf(BufferedImage img) {
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+}
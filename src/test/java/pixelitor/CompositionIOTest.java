@@ -20,6 +20,7 @@ package pixelitor;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import pixelitor.io.NotPxcFormatException;
 import pixelitor.io.OpenRaster;
 import pixelitor.io.OpenSave;
 import pixelitor.io.PXCFormat;
@@ -28,15 +29,21 @@ import pixelitor.layers.BlendingMode;
 import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
 import pixelitor.layers.TextLayer;
+import pixelitor.utils.ImageUtils;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static pixelitor.assertions.PixelitorAssertions.assertThat;
+import static pixelitor.layers.LayerMaskAddType.REVEAL_ALL;
 
 @DisplayName("Composition I/O tests")
 public class CompositionIOTest {
@@ -123,6 +130,73 @@ public class CompositionIOTest {
         }
     }
 
+    @Test
+    void writeReadBigPXC() throws IOException, NotPxcFormatException {
+        // big enough to be written in several chunks
+        var random = new Random(42);
+        BufferedImage img = new BufferedImage(1500, 900, TYPE_INT_ARGB);
+        int[] pixels = ImageUtils.getPixelsAsArray(img);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        var comp = Composition.fromImage(img, null, "big");
+        TestHelper.setupMockViewFor(comp);
+        var layer = (ImageLayer) comp.getLayer(0);
+        layer.addMask(REVEAL_ALL);
+        byte[] maskPixels = ((DataBufferByte) layer.getMask().getImage()
+                .getRaster().getDataBuffer()).getData();
+        random.nextBytes(maskPixels);
+
+        File tmp = File.createTempFile("pix_tmp", ".pxc");
+        PXCFormat.write(comp, tmp);
+        var readComp = PXCFormat.read(tmp);
+        tmp.delete();
+
+        var readLayer = (ImageLayer) readComp.getLayer(0);
+        assertThat(ImageUtils.getPixelsAsArray(readLayer.getImage()))
+                .isEqualTo(ImageUtils.getPixelsAsArray(layer.getImage()));
+        assertThat(((DataBufferByte) readLayer.getMask().getImage()
+                .getRaster().getDataBuffer()).getData())
+                .isEqualTo(maskPixels);
+    }
+
+    @Test
+    void saveOverOpenedPXC() throws IOException, NotPxcFormatException {
+        var random = new Random(42);
+        BufferedImage img = new BufferedImage(1500, 900, TYPE_INT_ARGB);
+        int[] pixels = ImageUtils.getPixelsAsArray(img);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        var comp = Composition.fromImage(img, null, "overwritten");
+        TestHelper.setupMockViewFor(comp);
+        ImageLayer secondLayer = comp.addNewEmptyLayer("second", false);
+        int[] secondPixels = ImageUtils.getPixelsAsArray(secondLayer.getImage());
+        for (int i = 0; i < secondPixels.length; i++) {
+            secondPixels[i] = random.nextInt();
+        }
+
+        File tmp = File.createTempFile("pix_tmp", ".pxc");
+        PXCFormat.write(comp, tmp);
+        var readComp = PXCFormat.read(tmp);
+        TestHelper.setupMockViewFor(readComp);
+
+        // the deleted layer is referenced only from outside the
+        // composition (like from the history), and it isn't loaded yet
+        var deletedLayer = (ImageLayer) readComp.getLayer(1);
+        readComp.deleteLayer(deletedLayer, false, false);
+
+        PXCFormat.write(readComp, tmp);
+        assertThat(ImageUtils.getPixelsAsArray(deletedLayer.getImage()))
+                .isEqualTo(secondPixels);
+
+        var rereadComp = PXCFormat.read(tmp);
+        tmp.delete();
+        assertThat(rereadComp.getNumLayers()).isEqualTo(1);
+        assertThat(ImageUtils.getPixelsAsArray(((ImageLayer) rereadComp.getLayer(0)).getImage()))
+                .isEqualTo(pixels);
+    }
+
     @Test
     void readWriteORA() throws IOException {
         Consumer<Layer> extraCheck = secondLayer ->
@@ -47,6 +47,8 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
 
 import static java.awt.event.MouseEvent.MOUSE_DRAGGED;
 import static java.awt.event.MouseEvent.MOUSE_MOVED;
@@ -166,6 +168,37 @@ public class TestHelper {
         return new BufferedImage(TEST_WIDTH, TEST_HEIGHT, BufferedImage.TYPE_INT_ARGB);
     }
 
+    /**
+     * Creates an image with random pixels, which are
+     * always the same for the same seed.
+     */
+    public static BufferedImage createRandomImage(int width, int height, int type, long seed) {
+        return createRandomImage(width, height, type, new Random(seed));
+    }
+
+    /**
+     * Creates an image with random pixels taken from the given
+     * {@link Random}, so that several different images can be
+     * created from the same seed.
+     */
+    public static BufferedImage createRandomImage(int width, int height, int type, Random random) {
+        return createImage(width, height, type, random::nextInt);
+    }
+
+    /**
+     * Creates an image with the ARGB colors returned
+     * by the given supplier, in row-major order.
+     */
+    public static BufferedImage createImage(int width, int height, int type, IntSupplier colors) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, colors.getAsInt());
+            }
+        }
+        return img;
+    }
+
     public static Graphics2D createGraphics() {
         return createImage().createGraphics();
     }
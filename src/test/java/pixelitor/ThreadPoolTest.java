@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.utils.ProgressTracker;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ThreadPool tests")
+class ThreadPoolTest {
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 1000, 20_000})
+    void everyUnitIsProcessedOnce(int numUnits) {
+        var counts = new AtomicIntegerArray(numUnits);
+        var pt = new CountingTracker();
+
+        ThreadPool.runInChunks(numUnits, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                counts.incrementAndGet(i);
+            }
+        }, pt);
+
+        for (int i = 0; i < numUnits; i++) {
+            assertThat(counts.get(i)).isEqualTo(1);
+        }
+        assertThat(pt.units).isEqualTo(numUnits);
+    }
+
+    @Test
+    void canBeCalledFromPoolThread() throws Exception {
+        var counts = new AtomicIntegerArray(100);
+
+        Future<?> future = ThreadPool.submit(() ->
+                ThreadPool.runInChunks(100, (start, end) -> {
+                    for (int i = start; i < end; i++) {
+                        counts.incrementAndGet(i);
+                    }
+                }, ProgressTracker.NULL_TRACKER));
+        future.get();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(counts.get(i)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void failureIsRethrown() {
+        assertThatThrownBy(() -> ThreadPool.runInChunks(100, (start, end) -> {
+            throw new ArithmeticException();
+        }, ProgressTracker.NULL_TRACKER)).hasRootCauseInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void interruptionCancels() {
+        var counts = new AtomicIntegerArray(1000);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> ThreadPool.runInChunks(1000, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    counts.incrementAndGet(i);
+                }
+            }, ProgressTracker.NULL_TRACKER)).isInstanceOf(CancellationException.class);
+        } finally {
+            // clears the flag for the other tests
+            assertThat(Thread.interrupted()).isTrue();
+        }
+
+        assertThat(counts.get(999)).isZero();
+    }
+
+    private static class CountingTracker implements ProgressTracker {
+        // only called on the calling thread
+        private int units;
+
+        @Override
+        public void unitDone() {
+            units++;
+        }
+
+        @Override
+        public void unitsDone(int units) {
+            this.units += units;
+        }
+
+        @Override
+        public void finished() {
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.Build;
+import pixelitor.compactions.Resize;
+import pixelitor.filters.Invert;
+import pixelitor.io.OutputFormat;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BatchProcessor tests")
+class BatchProcessorTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+    }
+
+    @Test
+    void filtersAndResizesWithoutViews(@TempDir Path tempDir) throws Exception {
+        File inputDir = Files.createDirectory(tempDir.resolve("in")).toFile();
+        File outputDir = Files.createDirectory(tempDir.resolve("out")).toFile();
+
+        File[] inputFiles = new File[6];
+        for (int i = 0; i < inputFiles.length; i++) {
+            inputFiles[i] = new File(inputDir, "img" + i + ".png");
+            writeTestImage(inputFiles[i], 0xFF_00_40_80 + i);
+        }
+        File badFile = new File(inputDir, "bad.png");
+        Files.writeString(badFile.toPath(), "not an image");
+
+        var processor = new BatchProcessor()
+                .setOutputDir(outputDir)
+                .setOutputFormat(OutputFormat.PNG)
+                .setNumThreads(3)
+                .addFilter(Invert::new)
+                .addAction(new Resize(50, 50, true));
+        int numFailed = processor.process(inputDir.listFiles());
+        assertThat(numFailed).isEqualTo(1);
+        assertThat(processor.getStageStats())
+                .extracting(BatchProcessor.StageStats::getNumDone)
+                .containsExactly(7, 6, 6);
+
+        for (int i = 0; i < inputFiles.length; i++) {
+            BufferedImage result = ImageIO.read(new File(outputDir, "img" + i + ".png"));
+            assertThat(result.getWidth()).isEqualTo(50);
+            assertThat(result.getHeight()).isEqualTo(25);
+            assertThat(result.getRGB(10, 10)).isEqualTo(0xFF_FF_BF_7F - i);
+        }
+        assertThat(new File(outputDir, "bad.png")).doesNotExist();
+        assertThat(processor.getFailures())
+                .extracting(BatchProcessor.Failure::getFile)
+                .containsExactly(badFile);
+    }
+
+    @Test
+    void existingFilesAreSkipped(@TempDir Path tempDir) throws Exception {
+        File inputFile = tempDir.resolve("in.png").toFile();
+        writeTestImage(inputFile, 0xFF_00_40_80);
+        File outputDir = Files.createDirectory(tempDir.resolve("out")).toFile();
+        File outputFile = new File(outputDir, "in.png");
+        Files.writeString(outputFile.toPath(), "existing");
+
+        var processor = new BatchProcessor()
+                .setOutputDir(outputDir)
+                .setOverwrite(false)
+                .addFilter(Invert::new);
+        int numFailed = processor.process(new File[]{inputFile});
+        assertThat(numFailed).isZero();
+        assertThat(outputFile).hasContent("existing");
+        assertThat(processor.getStageStats())
+                .extracting(BatchProcessor.StageStats::getNumDone)
+                .containsExactly(1, 0, 0);
+        assertThat(processor.getSkippedFiles()).containsExactly(inputFile);
+    }
+
+    @Test
+    void sameOutputIsWrittenOnlyOnce(@TempDir Path tempDir) throws Exception {
+        File inputDir = Files.createDirectory(tempDir.resolve("in")).toFile();
+        File outputDir = Files.createDirectory(tempDir.resolve("out")).toFile();
+        File pngInput = new File(inputDir, "a.png");
+        writeTestImage(pngInput, 0xFF_00_40_80);
+        File jpgInput = new File(inputDir, "a.jpg");
+        BufferedImage img = ImageIO.read(pngInput);
+        ImageIO.write(img, "jpg", jpgInput);
+
+        var processor = new BatchProcessor()
+                .setOutputDir(outputDir)
+                .setOutputFormat(OutputFormat.PNG)
+                .setNumThreads(2)
+                .addFilter(Invert::new);
+        int numFailed = processor.process(new File[]{pngInput, jpgInput});
+        assertThat(numFailed).isEqualTo(1);
+        assertThat(processor.getFailures()).hasSize(1);
+        assertThat(new File(outputDir, "a.png")).exists();
+    }
+
+    @Test
+    @Timeout(30)
+    void errorsDontStopTheWorkers(@TempDir Path tempDir) throws Exception {
+        File inputDir = Files.createDirectory(tempDir.resolve("in")).toFile();
+        File outputDir = Files.createDirectory(tempDir.resolve("out")).toFile();
+        for (int i = 0; i < 4; i++) {
+            writeTestImage(new File(inputDir, "img" + i + ".png"), 0xFF_00_40_80);
+        }
+
+        var processor = new BatchProcessor()
+                .setOutputDir(outputDir)
+                .setNumThreads(2)
+                .addAction(comp -> {
+                    throw new StackOverflowError("test");
+                });
+        int numFailed = processor.process(inputDir.listFiles());
+        assertThat(numFailed).isEqualTo(4);
+        assertThat(processor.getFailures())
+                .extracting(BatchProcessor.Failure::getCause)
+                .allMatch(cause -> cause instanceof StackOverflowError);
+        assertThat(outputDir.listFiles()).isEmpty();
+    }
+
+    private static void writeTestImage(File file, int rgb) throws IOException {
+        BufferedImage img = new BufferedImage(200, 100, TYPE_INT_RGB);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 200; x++) {
+                img.setRGB(x, y, rgb);
+            }
+        }
+        ImageIO.write(img, "png", file);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.Build;
+import pixelitor.TestHelper;
+import pixelitor.filters.jhlabsproxies.JHBoxBlur;
+import pixelitor.filters.jhlabsproxies.JHGaussianBlur;
+import pixelitor.filters.jhlabsproxies.JHMedian;
+import pixelitor.filters.jhlabsproxies.JHUnsharpMask;
+import pixelitor.filters.jhlabsproxies.JHWaves;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("filter region tests")
+class FilterRegionTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+    }
+
+    static Stream<Filter> regionComputableFilters() {
+        return Stream.of(new Invert(), new JHGaussianBlur(), new JHBoxBlur(),
+                new JHUnsharpMask(), new JHMedian(), new JHWaves(), new Mirror());
+    }
+
+    @ParameterizedTest
+    @MethodSource("regionComputableFilters")
+    void regionIsSameAsPartOfWhole(Filter filter) {
+        if (filter instanceof ParametrizedFilter) {
+            ((ParametrizedFilter) filter).randomizeSettings();
+        }
+        BufferedImage src = TestHelper.createRandomImage(WIDTH, HEIGHT, TYPE_INT_ARGB, 42);
+        assertThat(filter.canTransformRegion(src)).isTrue();
+
+        Rectangle region = new Rectangle(37, 21, 80, 60);
+        BufferedImage regionResult = filter.transformRegion(src, region);
+        BufferedImage wholeResult = filter.transformImage(src);
+
+        assertThat(regionResult.getWidth()).isEqualTo(region.width);
+        assertThat(regionResult.getHeight()).isEqualTo(region.height);
+        assertThat(pixelsOf(regionResult, new Rectangle(region.getSize())))
+                .isEqualTo(pixelsOf(wholeResult, region));
+    }
+
+    private static int[] pixelsOf(BufferedImage img, Rectangle r) {
+        return img.getRGB(r.x, r.y, r.width, r.height, null, 0, r.width);
+    }
+}
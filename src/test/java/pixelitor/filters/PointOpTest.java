@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import pixelitor.Build;
+import pixelitor.TestHelper;
+import pixelitor.filters.lookup.ColorBalance;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PointOp tests")
+class PointOpTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+    }
+
+    @RepeatedTest(3)
+    void fusedIsSameAsSequential(RepetitionInfo repetitionInfo) {
+        checkFusedIsSameAsSequential(TYPE_INT_ARGB, repetitionInfo.getCurrentRepetition());
+    }
+
+    @RepeatedTest(3)
+    void fusedIsSameAsSequentialForPremultiplied(RepetitionInfo repetitionInfo) {
+        // the random colors are mostly translucent
+        checkFusedIsSameAsSequential(TYPE_INT_ARGB_PRE, repetitionInfo.getCurrentRepetition());
+    }
+
+    private static void checkFusedIsSameAsSequential(int imageType, long seed) {
+        var posterize = new Posterize();
+        var colorBalance = new ColorBalance();
+        var channelMixer = new ChannelMixer();
+        var hueSat = new HueSat();
+        posterize.randomizeSettings();
+        colorBalance.randomizeSettings();
+        channelMixer.randomizeSettings();
+        hueSat.randomizeSettings();
+
+        // lookup tables and general functions mixed
+        List<PointOpFilter> filters = List.of(new Invert(), posterize,
+                colorBalance, channelMixer, new Invert(), hueSat);
+
+        BufferedImage src = TestHelper.createRandomImage(300, 250, imageType, seed);
+        BufferedImage sequential = src;
+        for (PointOpFilter filter : filters) {
+            sequential = ((Filter) filter).transformImage(sequential);
+        }
+
+        BufferedImage fused = PointOp.fuse(filters)
+                .filter(src, ImageUtils.createImageWithSameCM(src));
+
+        assertThat(ImageUtils.getPixelsAsArray(fused))
+                .isEqualTo(ImageUtils.getPixelsAsArray(sequential));
+    }
+}
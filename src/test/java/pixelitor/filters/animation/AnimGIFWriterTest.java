@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.animation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import pd.GifDecoder;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("AnimGIFWriter tests")
+class AnimGIFWriterTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 80;
+    private static final int NUM_FRAMES = 6;
+    private static final int UNCHANGED_FRAME = 3;
+
+    @ParameterizedTest
+    @CsvSource({"false,false", "true,false", "false,true", "true,true"})
+    void framesAreWrittenInOrder(boolean globalPalette, boolean frameDifferencing,
+                                 @TempDir Path tempDir) throws IOException {
+        File file = tempDir.resolve("test.gif").toFile();
+        BufferedImage[] frames = new BufferedImage[NUM_FRAMES];
+
+        var writer = new AnimGIFWriter(file, 100, globalPalette, frameDifferencing);
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            // the frame at UNCHANGED_FRAME is the same as the previous one
+            frames[i] = createFrame(i == UNCHANGED_FRAME ? i - 1 : i);
+            writer.addFrame(frames[i]);
+        }
+        writer.finish();
+
+        GifDecoder.GifImage gif = GifDecoder.read(file);
+        assertThat(gif.getFrameCount()).isEqualTo(NUM_FRAMES);
+        assertThat(gif.getWidth()).isEqualTo(WIDTH);
+        assertThat(gif.getHeight()).isEqualTo(HEIGHT);
+        int[][] decodedPixels = new int[NUM_FRAMES][];
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            assertThat(gif.getDelay(i)).isEqualTo(10);
+            BufferedImage decoded = gif.getFrame(i);
+            decodedPixels[i] = decoded.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+            // only black and white are used, so the quantization is
+            // almost exact, and the moving square is found only if
+            // the frames are not mixed up
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int expectedGray = frames[i].getRGB(x, y) & 0xFF;
+                    assertThat(decoded.getRGB(x, y) & 0xFF)
+                            .isCloseTo(expectedGray, within(4));
+                }
+            }
+        }
+
+        assertThat(decodedPixels[UNCHANGED_FRAME]).isEqualTo(decodedPixels[UNCHANGED_FRAME - 1]);
+
+        // the frames are not cached, a backwards jump decodes them again
+        for (int i = NUM_FRAMES - 1; i >= 0; i--) {
+            assertThat(gif.getFrame(i).getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH))
+                    .isEqualTo(decodedPixels[i]);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_INT_ARGB_PRE})
+    void translucentPixelsAreConvertedLikeDrawing(int type, @TempDir Path tempDir) throws IOException {
+        var random = new Random(42);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        if (type == TYPE_INT_ARGB_PRE) {
+            image = ImageUtils.convertToARGB_PRE(image, true);
+        }
+
+        // the int images are converted without drawing them
+        BufferedImage drawn = new BufferedImage(WIDTH, HEIGHT, TYPE_3BYTE_BGR);
+        Graphics2D g = drawn.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+
+        File directFile = tempDir.resolve("direct.gif").toFile();
+        File drawnFile = tempDir.resolve("drawn.gif").toFile();
+        writeSingleFrame(image, directFile);
+        writeSingleFrame(drawn, drawnFile);
+
+        assertThat(Files.readAllBytes(directFile.toPath()))
+                .isEqualTo(Files.readAllBytes(drawnFile.toPath()));
+    }
+
+    private static void writeSingleFrame(BufferedImage image, File file) {
+        var writer = new AnimGIFWriter(file, 100, false, false);
+        writer.addFrame(image);
+        writer.finish();
+    }
+
+    private static BufferedImage createFrame(int index) {
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(Color.BLACK);
+        g.fillRect(10 + index * 15, 20, 20, 20);
+        g.dispose();
+        return frame;
+    }
+}
@@ -23,12 +23,15 @@ import pixelitor.filters.ParamTest;
 import pixelitor.utils.ReseedSupport;
 
 import java.awt.Rectangle;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static pixelitor.utils.Utils.atan2AngleToIntuitive;
 
 public class ParamSetTest {
     private ParamSet params;
@@ -80,6 +83,30 @@ public class ParamSetTest {
         verify(adjustmentListener, never()).paramAdjusted();
     }
 
+    @Test
+    void copyValuesFrom() {
+        params.randomize();
+
+        var copy = new ParamSet(ParamTest.getTestParams());
+        copy.insertParam(new RangeParam("Extra Param", 0, 0, 200), 3);
+        copy.considerImageSize(new Rectangle(0, 0, 400, 800));
+        copy.copyValuesFrom(params);
+
+        List<FilterParam> origList = params.getParams();
+        List<FilterParam> copyList = copy.getParams();
+        for (int i = 0; i < origList.size(); i++) {
+            Object origValue = origList.get(i).getParamValue();
+            Object copyValue = copyList.get(i).getParamValue();
+            if (origValue instanceof Double) { // angles are copied through degrees
+                assertThat(atan2AngleToIntuitive((Double) copyValue))
+                        .isCloseTo(atan2AngleToIntuitive((Double) origValue), within(1.0e-9));
+            } else {
+                assertThat(copyValue).isEqualTo(origValue);
+            }
+        }
+        verify(adjustmentListener, never()).paramAdjusted();
+    }
+
     @Test
     void canBeAnimated() {
         assertThat(params.canBeAnimated()).isTrue();
@@ -23,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import pixelitor.filters.gui.PreviewExecutor;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -59,6 +60,15 @@ public class LevelsTest {
         }
     }
 
+    @Test
+    void hasPointOpOnlyWhenInitialized() {
+        var filter = new Levels();
+        assertThat(filter.hasPointOp()).isFalse();
+
+        filter.setRGBLookup(new RGBLookup());
+        assertThat(filter.hasPointOp()).isTrue();
+    }
+
     @Test
     void pageRGB_inputBlack100() {
         rgbPage.getInputDark().setValue(100);
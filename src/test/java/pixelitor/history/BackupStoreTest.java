@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.TestHelper;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BackupStore tests")
+class BackupStoreTest {
+    @Test
+    void backupsSurviveCompressionAndSpilling() {
+        // a budget that can hold only one uncompressed image
+        var store = new BackupStore(100 * 100 * 4);
+
+        List<BufferedImage> images = new ArrayList<>();
+        List<BackupStore.Backup> backups = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10; i++) {
+            BufferedImage image = createCompressibleImage(random, i % 2 == 0 ? TYPE_INT_ARGB : TYPE_BYTE_GRAY);
+            images.add(ImageUtils.copyImage(image));
+            backups.add(store.save(image));
+        }
+        assertThat(store.getHeapBytes()).isLessThanOrEqualTo(store.getBudget());
+
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage restored = backups.get(i).getImage();
+            assertThat(restored.getType()).isEqualTo(images.get(i).getType());
+            assertThat(restored.getRaster().getDataElements(0, 0, 100, 100, null))
+                    .isEqualTo(images.get(i).getRaster().getDataElements(0, 0, 100, 100, null));
+        }
+
+        backups.forEach(BackupStore.Backup::dispose);
+        assertThat(store.getHeapBytes()).isZero();
+    }
+
+    @Test
+    void rasterLocationIsKept() {
+        var store = new BackupStore(0);
+
+        BufferedImage image = createCompressibleImage(new Random(7), TYPE_INT_ARGB);
+        Rectangle rect = new Rectangle(10, 20, 30, 40);
+        Raster original = image.getData(rect);
+        BackupStore.Backup first = store.save(original);
+        // the second save makes the first one spillable
+        BackupStore.Backup second = store.save(image.getData(rect));
+
+        Raster restored = first.getRaster();
+        assertThat(restored.getBounds()).isEqualTo(rect);
+        assertThat(restored.getDataElements(10, 20, 30, 40, null))
+                .isEqualTo(original.getDataElements(10, 20, 30, 40, null));
+
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    void spillFileSpaceIsReused() {
+        var store = new BackupStore(0);
+        Random random = new Random(11);
+
+        // like a history with a limited number of undo levels
+        List<BackupStore.Backup> backups = new ArrayList<>();
+        long sizeWhenFull = 0;
+        for (int i = 0; i < 50; i++) {
+            backups.add(store.save(createCompressibleImage(random, TYPE_INT_ARGB)));
+            if (backups.size() > 4) {
+                backups.remove(0).dispose();
+            }
+            if (i == 5) {
+                sizeWhenFull = store.getSpillFileSize();
+            } else if (i > 5) {
+                assertThat(store.getSpillFileSize()).isLessThanOrEqualTo(2 * sizeWhenFull);
+            }
+        }
+        assertThat(sizeWhenFull).isPositive();
+
+        backups.forEach(BackupStore.Backup::dispose);
+        assertThat(store.getSpillFileSize()).isZero();
+    }
+
+    private static BufferedImage createCompressibleImage(Random random, int type) {
+        // a few colors, so that the pixels are compressible
+        return TestHelper.createImage(100, 100, type,
+                () -> 0xFF000000 | random.nextInt(4) * 0x3F3F3F);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.TestHelper;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PixelDelta tests")
+class PixelDeltaTest {
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_BYTE_GRAY})
+    void thinStrokeCanBeSwitched(int type) {
+        BufferedImage image = TestHelper.createRandomImage(400, 300, type, 42);
+        Rectangle rect = new Rectangle(20, 10, 350, 270);
+        Raster before = image.getData(rect);
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.setStroke(new BasicStroke(3));
+        g.drawLine(25, 15, 365, 275);
+        g.dispose();
+        Raster after = image.getData(rect);
+
+        PixelDelta delta = PixelDelta.encode(before, after);
+        assertThat(delta).isNotNull();
+        int fullSize = rect.width * rect.height * (type == TYPE_INT_ARGB ? 4 : 1);
+        assertThat(delta.getMemorySize()).isLessThan(fullSize / 10);
+
+        BufferedImage edited = ImageUtils.copyImage(image);
+        delta.applyTo(image.getRaster());
+        assertThat(image.getData(rect).getDataElements(20, 10, 350, 270, null))
+                .isEqualTo(before.getDataElements(20, 10, 350, 270, null));
+
+        delta.applyTo(image.getRaster());
+        assertThat(image.getRaster().getDataElements(0, 0, 400, 300, null))
+                .isEqualTo(edited.getRaster().getDataElements(0, 0, 400, 300, null));
+    }
+}
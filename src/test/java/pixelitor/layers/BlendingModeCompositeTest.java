@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.TestHelper;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the packed int blending of the images gives the same
+ * result as the generic blending used for other image types.
+ */
+@DisplayName("blending mode composite tests")
+class BlendingModeCompositeTest {
+    // big enough to be blended in parallel
+    private static final int WIDTH = 500;
+    private static final int HEIGHT = 400;
+
+    @ParameterizedTest
+    @EnumSource(BlendingMode.class)
+    void packedSameAsGeneric(BlendingMode mode) {
+        Random random = new Random(42);
+        BufferedImage src = TestHelper.createRandomImage(WIDTH, HEIGHT, TYPE_INT_ARGB, random);
+        BufferedImage dst = TestHelper.createRandomImage(WIDTH, HEIGHT, TYPE_INT_ARGB, random);
+
+        BufferedImage genericSrc = convert(src, TYPE_4BYTE_ABGR);
+        BufferedImage genericDst = convert(dst, TYPE_4BYTE_ABGR);
+
+        blend(src, dst, mode);
+        blend(genericSrc, genericDst, mode);
+
+        assertThat(convert(dst, TYPE_INT_ARGB).getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH))
+                .isEqualTo(convert(genericDst, TYPE_INT_ARGB).getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    private static void blend(BufferedImage src, BufferedImage dst, BlendingMode mode) {
+        Graphics2D g = dst.createGraphics();
+        g.setComposite(mode.getComposite(0.8f));
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+    }
+
+    private static BufferedImage convert(BufferedImage img, int type) {
+        BufferedImage converted = new BufferedImage(img.getWidth(), img.getHeight(), type);
+        // copies the samples without blending
+        converted.getRaster().setPixels(0, 0, img.getWidth(), img.getHeight(),
+                img.getRaster().getPixels(0, 0, img.getWidth(), img.getHeight(), (int[]) null));
+        return converted;
+    }
+}
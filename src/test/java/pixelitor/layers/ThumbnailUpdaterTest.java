@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ThumbnailUpdater tests")
+class ThumbnailUpdaterTest {
+    @Test
+    void requestsAreCoalesced() throws Exception {
+        var updater = new ThumbnailUpdater();
+        var blocker = new ThumbnailUpdater();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var numCreated = new AtomicInteger();
+        List<Integer> shownVersions = new CopyOnWriteArrayList<>();
+
+        // keeps the updater thread busy while the requests arrive
+        blocker.request(() -> {
+            started.countDown();
+            await(release);
+            return createThumb();
+        }, thumb -> {
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 1; i <= 5; i++) {
+            int version = i;
+            updater.request(() -> {
+                numCreated.incrementAndGet();
+                return createThumb();
+            }, thumb -> shownVersions.add(version));
+        }
+        // the last request is also made while the thread is busy
+        var done = new CountDownLatch(1);
+        updater.request(() -> {
+            numCreated.incrementAndGet();
+            return createThumb();
+        }, thumb -> done.countDown());
+        release.countDown();
+
+        // wait until the updater thread and then the EDT are idle
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        EventQueue.invokeAndWait(() -> {
+        });
+
+        // the five earlier requests were replaced by the last one,
+        // so the superseded versions were never shown
+        assertThat(numCreated.get()).isEqualTo(1);
+        assertThat(shownVersions).isEmpty();
+    }
+
+    private static BufferedImage createThumb() {
+        return new BufferedImage(4, 4, TYPE_INT_ARGB);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -28,15 +28,18 @@ import org.junit.runners.Parameterized.Parameters;
 import pixelitor.Build;
 import pixelitor.TestHelper;
 import pixelitor.gui.View;
+import pixelitor.history.History;
 import pixelitor.layers.Drawable;
 import pixelitor.tools.brushes.Brush;
 import pixelitor.tools.gui.ToolSettingsPanel;
 import pixelitor.tools.util.PPoint;
+import pixelitor.utils.ImageUtils;
 
 import java.awt.Rectangle;
 import java.util.Arrays;
 import java.util.Collection;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -122,4 +125,19 @@ public class AbstractBrushToolTest {
         verify(brushSpy).startAt(any());
         verify(brushSpy).continueTo(any());
     }
+
+    @Test
+    public void test_undoRedo() {
+        int[] before = ImageUtils.getPixelsAsArray(dr.getImage()).clone();
+        PPoint start = PPoint.eagerFromIm(2.0, 2.0, view);
+        PPoint end = PPoint.eagerFromIm(8.0, 5.0, view);
+        tool.drawBrushStrokeProgrammatically(dr, start, end);
+        int[] after = ImageUtils.getPixelsAsArray(dr.getImage()).clone();
+
+        History.undo();
+        assertThat(ImageUtils.getPixelsAsArray(dr.getImage())).isEqualTo(before);
+
+        History.redo();
+        assertThat(ImageUtils.getPixelsAsArray(dr.getImage())).isEqualTo(after);
+    }
 }
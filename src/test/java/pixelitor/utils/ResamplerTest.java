@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.utils.Resampler.Kernel;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Resampler tests")
+class ResamplerTest {
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void uniformColorIsKept(Kernel kernel) {
+        int color = 0x80_40_A0_E0;
+        BufferedImage src = new BufferedImage(97, 61, TYPE_INT_ARGB);
+        for (int y = 0; y < 61; y++) {
+            for (int x = 0; x < 97; x++) {
+                src.setRGB(x, y, color);
+            }
+        }
+
+        for (int[] size : new int[][]{{30, 20}, {200, 150}, {50, 100}}) {
+            BufferedImage dest = Resampler.resize(src, size[0], size[1], kernel);
+            assertThat(dest.getType()).isEqualTo(TYPE_INT_ARGB);
+            assertThat(dest.getWidth()).isEqualTo(size[0]);
+            assertThat(dest.getHeight()).isEqualTo(size[1]);
+            for (int y = 0; y < size[1]; y++) {
+                for (int x = 0; x < size[0]; x++) {
+                    assertChannelsClose(dest.getRGB(x, y), color, 2);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void lowAlphaColorsKeepTheirPrecision(Kernel kernel) {
+        // 8-bit premultiplied values would lose most of this color
+        int color = 0x03_40_A0_E0;
+        BufferedImage src = new BufferedImage(40, 30, TYPE_INT_ARGB);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                src.setRGB(x, y, color);
+            }
+        }
+
+        BufferedImage dest = Resampler.resize(src, 13, 70, kernel);
+        for (int y = 0; y < 70; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertChannelsClose(dest.getRGB(x, y), color, 2);
+            }
+        }
+    }
+
+    @Test
+    void transparentColorsDontBleed() {
+        // opaque white on the left, transparent green on the right
+        BufferedImage src = new BufferedImage(100, 10, TYPE_INT_ARGB);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 100; x++) {
+                src.setRGB(x, y, x < 50 ? 0xFF_FF_FF_FF : 0x00_00_FF_00);
+            }
+        }
+
+        BufferedImage dest = Resampler.resize(src, 33, 10);
+        for (int x = 0; x < 33; x++) {
+            int argb = dest.getRGB(x, 5);
+            if ((argb >>> 24) != 0) {
+                // a partially transparent white, without green tint
+                assertChannelsClose(argb | 0xFF_00_00_00, 0xFF_FF_FF_FF, 1);
+            }
+        }
+    }
+
+    @Test
+    void grayMaskIsResized() {
+        BufferedImage src = new BufferedImage(64, 64, TYPE_BYTE_GRAY);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                src.getRaster().setSample(x, y, 0, x < 32 ? 0 : 255);
+            }
+        }
+
+        BufferedImage dest = Resampler.resize(src, 16, 16, Kernel.BOX);
+        assertThat(dest.getType()).isEqualTo(TYPE_BYTE_GRAY);
+        for (int x = 0; x < 16; x++) {
+            int expected = x < 8 ? 0 : 255;
+            assertThat(dest.getRaster().getSample(x, 8, 0)).isEqualTo(expected);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_INT_ARGB_PRE, TYPE_INT_RGB, TYPE_BYTE_GRAY})
+    void passOrderDoesntMatter(int type) {
+        var random = new Random(42);
+        BufferedImage src = new BufferedImage(97, 61, type);
+        for (int y = 0; y < 61; y++) {
+            for (int x = 0; x < 97; x++) {
+                src.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        // the vertical pass is done first when shrinking the
+        // height a lot, and the horizontal one for the transposed image
+        BufferedImage dest = Resampler.resize(src, 200, 10);
+        BufferedImage transposedDest = transpose(Resampler.resize(transpose(src), 10, 200));
+        assertThat(transposedDest.getType()).isEqualTo(type);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 200; x++) {
+                assertChannelsClose(transposedDest.getRGB(x, y), dest.getRGB(x, y), 1);
+            }
+        }
+    }
+
+    private static BufferedImage transpose(BufferedImage img) {
+        BufferedImage transposed = new BufferedImage(img.getHeight(), img.getWidth(), img.getType());
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                transposed.getRaster().setDataElements(y, x,
+                        img.getRaster().getDataElements(x, y, null));
+            }
+        }
+        return transposed;
+    }
+
+    private static void assertChannelsClose(int actual, int expected, int tolerance) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (actual >>> shift) & 0xFF;
+            int e = (expected >>> shift) & 0xFF;
+            assertThat(Math.abs(a - e))
+                    .as("actual = %08X, expected = %08X", actual, expected)
+                    .isLessThanOrEqualTo(tolerance);
+        }
+    }
+}
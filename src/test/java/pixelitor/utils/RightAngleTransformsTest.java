@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.TestHelper;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that moving the pixels directly gives the same
+ * result as the nearest neighbor affine transforms.
+ */
+@DisplayName("RightAngleTransforms tests")
+class RightAngleTransformsTest {
+    // not multiples of the block size, and big enough to be split into chunks
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 170;
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_BYTE_GRAY})
+    void rotationsSameAsAffine(int type) {
+        BufferedImage src = TestHelper.createRandomImage(WIDTH, HEIGHT, type, 42);
+        for (int angle : new int[]{90, 180, 270}) {
+            boolean swap = angle != 180;
+            BufferedImage dest = new BufferedImage(
+                    swap ? HEIGHT : WIDTH, swap ? WIDTH : HEIGHT, type);
+            RightAngleTransforms.rotate(src, dest, angle);
+
+            var at = new AffineTransform();
+            if (angle == 90) {
+                at.translate(HEIGHT, 0);
+            } else if (angle == 180) {
+                at.translate(WIDTH, HEIGHT);
+            } else {
+                at.translate(0, WIDTH);
+            }
+            at.quadrantRotate(angle / 90);
+
+            assertSamePixels(dest, transform(src, at, dest.getWidth(), dest.getHeight()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_BYTE_GRAY})
+    void flipsSameAsAffine(int type) {
+        BufferedImage src = TestHelper.createRandomImage(WIDTH, HEIGHT, type, 42);
+
+        BufferedImage horizontal = new BufferedImage(WIDTH, HEIGHT, type);
+        RightAngleTransforms.flip(src, horizontal, true);
+        var hAT = new AffineTransform(-1, 0, 0, 1, WIDTH, 0);
+        assertSamePixels(horizontal, transform(src, hAT, WIDTH, HEIGHT));
+
+        BufferedImage vertical = new BufferedImage(WIDTH, HEIGHT, type);
+        RightAngleTransforms.flip(src, vertical, false);
+        var vAT = new AffineTransform(1, 0, 0, -1, 0, HEIGHT);
+        assertSamePixels(vertical, transform(src, vAT, WIDTH, HEIGHT));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_BYTE_GRAY})
+    void subImagesAreNotTransformed(int type) {
+        BufferedImage img = TestHelper.createRandomImage(WIDTH, HEIGHT, type, 42);
+        assertThat(RightAngleTransforms.canTransform(img)).isTrue();
+        assertThat(RightAngleTransforms.canTransform(img.getSubimage(1, 1, 10, 10))).isFalse();
+    }
+
+    private static BufferedImage transform(BufferedImage src, AffineTransform at, int width, int height) {
+        BufferedImage dest = new BufferedImage(width, height, src.getType());
+        new AffineTransformOp(at, AffineTransformOp.TYPE_NEAREST_NEIGHBOR).filter(src, dest);
+        return dest;
+    }
+
+    private static void assertSamePixels(BufferedImage a, BufferedImage b) {
+        assertThat(a.getRaster().getDataElements(0, 0, a.getWidth(), a.getHeight(), null))
+                .isEqualTo(b.getRaster().getDataElements(0, 0, b.getWidth(), b.getHeight(), null));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TiledImageBackup tests")
+class TiledImageBackupTest {
+    @Test
+    void originalPixelsAreReturned() {
+        BufferedImage image = new BufferedImage(300, 200, TYPE_INT_ARGB);
+        int[] pixels = ImageUtils.getPixelsAsArray(image);
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        BufferedImage original = ImageUtils.copyImage(image);
+
+        var backup = new TiledImageBackup(image);
+
+        // two separate modifications, the second overlapping the saved tiles
+        Rectangle first = new Rectangle(10, 20, 30, 30);
+        backup.saveTiles(first);
+        fill(image, first);
+        Rectangle second = new Rectangle(30, 100, 250, 80);
+        backup.saveTiles(second);
+        fill(image, second);
+
+        Rectangle area = new Rectangle(5, 15, 290, 180);
+        Raster data = backup.getOriginalData(area);
+        assertThat(data.getBounds()).isEqualTo(area);
+
+        BufferedImage restored = ImageUtils.copyImage(image);
+        restored.setData(data);
+        assertThat(ImageUtils.getPixelsAsArray(restored))
+                .isEqualTo(ImageUtils.getPixelsAsArray(original));
+    }
+
+    private static void fill(BufferedImage image, Rectangle area) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fill(area);
+        g.dispose();
+    }
+}